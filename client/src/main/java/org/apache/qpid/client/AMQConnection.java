@@ -100,6 +100,10 @@ import org.apache.qpid.jndi.ObjectFactory;
 import org.apache.qpid.protocol.ErrorCodes;
 import org.apache.qpid.transport.ConnectionSettings;
 import org.apache.qpid.url.URLSyntaxException;
+import org.apache.qpid.util.CompressionCodec;
+import org.apache.qpid.util.CompressionCodecs;
+import org.apache.qpid.util.UUIDGen;
+import org.apache.qpid.util.UUIDs;
 
 public class AMQConnection extends Closeable implements CommonConnection, Referenceable,
                                                         ClassLoadingAwareObjectInputStream.TrustedClassFilter
@@ -252,6 +256,12 @@ public class AMQConnection extends Closeable implements CommonConnection, Refere
     private volatile long _lastFailoverTime = 0;
 
     private boolean _compressMessages;
+
+    /** The codec compressing message payloads, or null if none is registered for the configured content-encoding */
+    private CompressionCodec _messageCompressionCodec;
+
+    /** The class name of the message id generator given by the connection URL, or null for the default */
+    private String _messageIdGenerator;
     private int _messageCompressionThresholdSize;
 
     private final Map<String, String> _virtualHostProperties = new HashMap<>();
@@ -396,6 +406,8 @@ public class AMQConnection extends Closeable implements CommonConnection, Refere
                 _populateUserId = Boolean.parseBoolean(connectionURL.getOption(ConnectionURL.OPTIONS_POPULATE_USER_ID));
             }
 
+            _messageIdGenerator = connectionURL.getOption(ConnectionURL.OPTIONS_MESSAGE_ID_GENERATOR);
+
             if (connectionURL.getOption(ConnectionURL.OPTIONS_USE_LEGACY_MAP_MESSAGE_FORMAT) != null)
             {
                 _useLegacyMapMessageFormat =  Boolean.parseBoolean(
@@ -455,6 +467,28 @@ public class AMQConnection extends Closeable implements CommonConnection, Refere
                 _messageCompressionThresholdSize = Integer.MAX_VALUE;
             }
 
+            String messageCompressionCodec;
+            if(connectionURL.getOption(ConnectionURL.OPTIONS_MESSAGE_COMPRESSION_CODEC) != null)
+            {
+                messageCompressionCodec = connectionURL.getOption(ConnectionURL.OPTIONS_MESSAGE_COMPRESSION_CODEC);
+            }
+            else
+            {
+                messageCompressionCodec = System.getProperty(ClientProperties.CONNECTION_OPTION_MESSAGE_COMPRESSION_CODEC,
+                                                             ClientProperties.DEFAULT_MESSAGE_COMPRESSION_CODEC);
+            }
+            _messageCompressionCodec = CompressionCodecs.getCodec(messageCompressionCodec);
+            if (_messageCompressionCodec == null)
+            {
+                if (_compressMessages)
+                {
+                    throw new IllegalArgumentException("No compression codec is registered for content-encoding '"
+                                                       + messageCompressionCodec + "'");
+                }
+                _logger.warn("No compression codec is registered for content-encoding '{}', messages sent on this"
+                             + " connection cannot be compressed", messageCompressionCodec);
+            }
+
             String amqpVersion = System.getProperty((ClientProperties.AMQP_VERSION), "0-10");
             if (_logger.isDebugEnabled())
             {
@@ -1762,6 +1796,11 @@ public class AMQConnection extends Closeable implements CommonConnection, Refere
         return _taskPool.scheduleAtFixedRate(task, initialDelay, period, timeUnit);
     }
 
+    ScheduledFuture<?> scheduleTask(Runnable task, long delay, TimeUnit timeUnit)
+    {
+        return _taskPool.schedule(task, delay, timeUnit);
+    }
+
     public AMQSession getSession(int channelId)
     {
         return _sessions.get(channelId);
@@ -1844,6 +1883,15 @@ public class AMQConnection extends Closeable implements CommonConnection, Refere
         return _populateUserId;
     }
 
+    /**
+     * Creates the generator a producer of this connection uses for message ids, of the class given by the
+     * {@value ConnectionURL#OPTIONS_MESSAGE_ID_GENERATOR} option or otherwise of the JVM wide default.
+     */
+    UUIDGen createMessageIdGenerator()
+    {
+        return _messageIdGenerator == null ? UUIDs.newGenerator() : UUIDs.newGenerator(_messageIdGenerator);
+    }
+
     public boolean isMessageCompressionDesired()
     {
         return _compressMessages;
@@ -1921,6 +1969,15 @@ public class AMQConnection extends Closeable implements CommonConnection, Refere
         return _messageCompressionThresholdSize;
     }
 
+    /**
+     * @return the codec compressing the payloads of the messages sent on this connection, or null if, when the
+     * connection was created, no codec was registered for the configured content-encoding
+     */
+    public CompressionCodec getMessageCompressionCodec()
+    {
+        return _messageCompressionCodec;
+    }
+
     void doWithAllLocks(Runnable r)
     {
         doWithAllLocks(r, _sessions.values());
@@ -58,7 +58,8 @@ import org.apache.qpid.properties.ConnectionStartProperties;
 import org.apache.qpid.transport.ConnectionSettings;
 import org.apache.qpid.transport.ExceptionHandlingByteBufferReceiver;
 import org.apache.qpid.transport.network.NetworkConnection;
-import org.apache.qpid.transport.network.io.IoNetworkTransport;
+import org.apache.qpid.transport.network.OutgoingNetworkTransport;
+import org.apache.qpid.transport.network.Transport;
 import org.apache.qpid.transport.network.security.SecurityLayer;
 import org.apache.qpid.transport.network.security.SecurityLayerFactory;
 
@@ -141,7 +142,7 @@ public class AMQConnectionDelegate_8_0 implements AMQConnectionDelegate
 
         SecurityLayer securityLayer = SecurityLayerFactory.newInstance(settings);
 
-        IoNetworkTransport transport = new IoNetworkTransport();
+        OutgoingNetworkTransport transport = Transport.getOutgoingTransport(settings);
 
         ReceiverClosedWaiter monitoringReceiver = new ReceiverClosedWaiter(securityLayer.receiver(_conn.getProtocolHandler()));
 
@@ -343,9 +344,7 @@ public class AMQConnectionDelegate_8_0 implements AMQConnectionDelegate
 
             _conn.getProtocolHandler().syncWrite(body.generateFrame(channelId), TxSelectOkBody.class);
         }
-        boolean useConfirms = (_confirmedPublishSupported || (!transacted && _confirmedPublishNonTransactionalSupported))
-                              && "all".equals(_conn.getSyncPublish());
-        if(useConfirms)
+        if(isConfirmedPublishEnabled(transacted))
         {
             if (_logger.isDebugEnabled())
             {
@@ -357,6 +356,16 @@ public class AMQConnectionDelegate_8_0 implements AMQConnectionDelegate
         }
     }
 
+    /**
+     * Whether channels with the given transactionality are put into confirm mode, which is the case when all
+     * messages are published synchronously and the broker supports confirms for such channels.
+     */
+    boolean isConfirmedPublishEnabled(boolean transacted)
+    {
+        return (_confirmedPublishSupported || (!transacted && _confirmedPublishNonTransactionalSupported))
+               && "all".equals(_conn.getSyncPublish());
+    }
+
     /**
      * For all sessions, and for all consumers in those sessions, resubscribe. This is called during failover handling.
      * The caller must hold the failover mutex before calling this method.
@@ -144,6 +144,9 @@ public class AMQProtocolHandler implements ExceptionHandlingByteBufferReceiver,
     private int _queueId = 1;
     private final Object _queueIdLock = new Object();
 
+    // null if frames are written and flushed one at a time
+    private final CoalescingFrameWriter _frameWriter;
+
     /**
      * Creates a new protocol handler, associated with the specified client connection instance.
      *
@@ -155,6 +158,32 @@ public class AMQProtocolHandler implements ExceptionHandlingByteBufferReceiver,
         _protocolSession = new AMQProtocolSession(this, _connection);
         _stateManager = new AMQStateManager(_protocolSession);
         _failoverHandler = new FailoverHandler(this);
+
+        int batchSize = Integer.getInteger(ClientProperties.QPID_WRITE_COALESCING_BATCH_SIZE,
+                                           ClientProperties.DEFAULT_WRITE_COALESCING_BATCH_SIZE);
+        long latency = Long.getLong(ClientProperties.QPID_WRITE_COALESCING_LATENCY,
+                                    ClientProperties.DEFAULT_WRITE_COALESCING_LATENCY);
+        if (batchSize > 0)
+        {
+            _frameWriter = new CoalescingFrameWriter(new CoalescingFrameWriter.FrameSink()
+            {
+                @Override
+                public void writeFrame(final AMQDataBlock frame)
+                {
+                    writeFrameToSender(frame);
+                }
+
+                @Override
+                public void flush()
+                {
+                    _sender.flush();
+                }
+            }, batchSize, latency);
+        }
+        else
+        {
+            _frameWriter = null;
+        }
     }
 
     /**
@@ -169,6 +198,10 @@ public class AMQProtocolHandler implements ExceptionHandlingByteBufferReceiver,
      */
     public void closed()
     {
+        if (_frameWriter != null)
+        {
+            _frameWriter.discardPendingFrames("Network connection closed");
+        }
         if (_connection.isClosed())
         {
             _logger.debug("Session closed called by client");
@@ -302,7 +335,7 @@ public class AMQProtocolHandler implements ExceptionHandlingByteBufferReceiver,
             failoverThread.setName("Failover");
             // Do not inherit daemon-ness from current thread as this can be a daemon
             // thread such as a AnonymousIoService thread.
-            failoverThread.setDaemon(false);
+            Threading.setDaemon(failoverThread, false);
             failoverThread.start();
         }
     }
@@ -568,15 +601,36 @@ public class AMQProtocolHandler implements ExceptionHandlingByteBufferReceiver,
         writeFrame(frame, true);
     }
 
-    public  synchronized void writeFrame(AMQDataBlock frame, boolean flush)
+    public void writeFrame(AMQDataBlock frame, boolean flush)
     {
-        _lastWriteTime = System.currentTimeMillis();
-        _writtenBytes += frame.getSize();
-        frame.writePayload(_sender);
+        if (_frameWriter != null)
+        {
+            _frameWriter.write(frame, flush);
+        }
+        else
+        {
+            writeAndFlushFrame(frame, flush);
+        }
+    }
+
+    private synchronized void writeAndFlushFrame(AMQDataBlock frame, boolean flush)
+    {
+        writeFrameToSender(frame);
         if(flush)
         {
             _sender.flush();
         }
+    }
+
+    /**
+     * Writes a frame to the sender without flushing it.  Callers are serialised either by the handler's monitor or,
+     * when writes are coalesced, by the frame writer.
+     */
+    private void writeFrameToSender(AMQDataBlock frame)
+    {
+        _lastWriteTime = System.currentTimeMillis();
+        _writtenBytes += frame.getSize();
+        frame.writePayload(_sender);
 
         _logger.debug("SEND: {}", frame);
 
@@ -619,35 +673,7 @@ public class AMQProtocolHandler implements ExceptionHandlingByteBufferReceiver,
     {
         try
         {
-            synchronized (_frameListeners)
-            {
-                if (_lastFailoverException != null)
-                {
-                    throw _lastFailoverException;
-                }
-
-                if(_stateManager.getCurrentState() == AMQState.CONNECTION_CLOSED ||
-                        _stateManager.getCurrentState() == AMQState.CONNECTION_CLOSING)
-                {
-                    Exception e = _stateManager.getLastException();
-                    if (e != null)
-                    {
-                        if (e instanceof QpidException)
-                        {
-                            QpidException amqe = (QpidException) e;
-                            throw amqe.cloneForCurrentThread();
-                        }
-                        else
-                        {
-                            throw new AMQException(ErrorCodes.INTERNAL_ERROR, e.getMessage(), e);
-                        }
-                    }
-                }
-
-                _frameListeners.add(listener);
-                //FIXME: At this point here we should check or before add we should check _stateManager is in an open
-                // state so as we don't check we are likely just to time out here as I believe is being seen in QPID-1255
-            }
+            addFrameListener(listener);
             writeFrame(frame);
 
             long actualTimeout = timeout == -1 ? DEFAULT_SYNC_TIMEOUT : timeout;
@@ -663,6 +689,51 @@ public class AMQProtocolHandler implements ExceptionHandlingByteBufferReceiver,
 
     }
 
+    /**
+     * Registers a listener for incoming methods.  Unlike the one-shot listeners used by
+     * {@link #writeCommandFrameAndWaitForReply}, the caller may keep the listener registered across many frames and
+     * must remove it with {@link #removeFrameListener} when it is no longer required.
+     *
+     * @param listener the listener to register
+     */
+    public void addFrameListener(AMQMethodListener listener) throws QpidException, FailoverException
+    {
+        synchronized (_frameListeners)
+        {
+            if (_lastFailoverException != null)
+            {
+                throw _lastFailoverException;
+            }
+
+            if(_stateManager.getCurrentState() == AMQState.CONNECTION_CLOSED ||
+                    _stateManager.getCurrentState() == AMQState.CONNECTION_CLOSING)
+            {
+                Exception e = _stateManager.getLastException();
+                if (e != null)
+                {
+                    if (e instanceof QpidException)
+                    {
+                        QpidException amqe = (QpidException) e;
+                        throw amqe.cloneForCurrentThread();
+                    }
+                    else
+                    {
+                        throw new AMQException(ErrorCodes.INTERNAL_ERROR, e.getMessage(), e);
+                    }
+                }
+            }
+
+            _frameListeners.add(listener);
+            //FIXME: At this point here we should check or before add we should check _stateManager is in an open
+            // state so as we don't check we are likely just to time out here as I believe is being seen in QPID-1255
+        }
+    }
+
+    public void removeFrameListener(AMQMethodListener listener)
+    {
+        _frameListeners.remove(listener);
+    }
+
     /** More convenient method to write a frame and wait for it's response. */
     public AMQMethodEvent syncWrite(AMQFrame frame, Class responseClass) throws QpidException, FailoverException
     {
@@ -842,6 +913,10 @@ public class AMQProtocolHandler implements ExceptionHandlingByteBufferReceiver,
 
     public void setNetworkConnection(NetworkConnection network, ByteBufferSender sender)
     {
+        if (_frameWriter != null)
+        {
+            _frameWriter.discardPendingFrames("Network connection replaced");
+        }
         _network = network;
         _sender = sender;
         _protocolSession.setSender(sender);
@@ -864,6 +939,31 @@ public class AMQProtocolHandler implements ExceptionHandlingByteBufferReceiver,
         return _sender;
     }
 
+    /**
+     * @return the number of times coalesced frames have been flushed to the network, or zero if writes are not coalesced
+     */
+    public long getFlushCount()
+    {
+        return _frameWriter == null ? 0L : _frameWriter.getFlushCount();
+    }
+
+    /**
+     * @return the number of frames flushed by coalesced writes; divided by {@link #getFlushCount()} this gives the
+     * average number of frames per flush
+     */
+    public long getFlushedFrameCount()
+    {
+        return _frameWriter == null ? 0L : _frameWriter.getFlushedFrameCount();
+    }
+
+    /**
+     * @return the largest number of frames written with a single flush when writes are coalesced
+     */
+    public int getMaxFramesPerFlush()
+    {
+        return _frameWriter == null ? 0 : _frameWriter.getMaxFramesPerFlush();
+    }
+
     public NetworkConnection getNetworkConnection()
     {
         return _network;
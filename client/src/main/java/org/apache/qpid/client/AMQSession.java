@@ -24,6 +24,7 @@ import java.io.Serializable;
 import java.lang.ref.WeakReference;
 import java.net.URISyntaxException;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -35,11 +36,12 @@ import java.util.Objects;
 import java.util.UUID;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -81,6 +83,7 @@ import org.apache.qpid.client.message.MessageFactoryRegistry;
 import org.apache.qpid.client.message.UnprocessedMessage;
 import org.apache.qpid.client.messaging.address.Link;
 import org.apache.qpid.client.messaging.address.Node;
+import org.apache.qpid.client.util.DeliveryTagQueue;
 import org.apache.qpid.client.util.FlowControllingBlockingQueue;
 import org.apache.qpid.client.util.JMSExceptionHelper;
 import org.apache.qpid.common.AMQPFilterTypes;
@@ -151,6 +154,15 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
      */
     protected final boolean DAEMON_DISPATCHER_THREAD = Boolean.getBoolean(ClientProperties.DAEMON_DISPATCHER);
 
+    /** Whether the session's messages are dispatched by the JVM-wide dispatcher pool rather than a thread of its own */
+    private final boolean _useDispatcherPool = DispatcherPool.isEnabled();
+
+    /** Whether the messages received by this session are built on the shared {@link MessagePreprocessor} */
+    private final boolean _useMessagePreprocessor = MessagePreprocessor.isEnabled();
+
+    /** Whether the prefetch of the session's consumers is resized to follow the rate at which they consume */
+    private final boolean _adaptivePrefetch = Boolean.getBoolean(ClientProperties.QPID_ADAPTIVE_PREFETCH);
+
     private final Map<AMQDestination, WeakReference<AMQDestination>>
             _resolvedDestinations = Collections.synchronizedMap(new WeakHashMap<AMQDestination, WeakReference<AMQDestination>> ());
 
@@ -195,16 +207,19 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
     private final AtomicLong _highestDeliveryTag = new AtomicLong(-1);
     private final AtomicLong _rollbackMark = new AtomicLong(-1);
 
-    private ConcurrentLinkedQueue<Long> _prefetchedMessageTags = new ConcurrentLinkedQueue<Long>();
+    private final DeliveryTagQueue _prefetchedMessageTags = new DeliveryTagQueue();
 
-    private ConcurrentLinkedQueue<Long> _unacknowledgedMessageTags = new ConcurrentLinkedQueue<Long>();
+    private final DeliveryTagQueue _unacknowledgedMessageTags = new DeliveryTagQueue();
 
-    private ConcurrentLinkedQueue<Long> _deliveredMessageTags = new ConcurrentLinkedQueue<Long>();
+    private final DeliveryTagQueue _deliveredMessageTags = new DeliveryTagQueue();
 
     private volatile Dispatcher _dispatcher;
 
     private volatile Thread _dispatcherThread;
 
+    /** The pool thread currently running the session's dispatcher, when dispatchers share the dispatcher pool */
+    private volatile Thread _dispatchingThread;
+
     private MessageFactoryRegistry _messageFactoryRegistry;
 
     /** Holds all of the producers created by this session, keyed by their unique identifiers. */
@@ -269,6 +284,9 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
     private MessageEncryptionHelper _messageEncryptionHelper;
 
+    /** The asynchronous sends of this session's producers that the broker has yet to complete */
+    private final SendCompletionTracker _sendCompletions;
+
     /** Holds the highest received delivery tag. */
     protected AtomicLong getHighestDeliveryTag()
     {
@@ -276,19 +294,19 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
     }
 
     /** Pre-fetched message tags */
-    protected ConcurrentLinkedQueue<Long> getPrefetchedMessageTags()
+    protected DeliveryTagQueue getPrefetchedMessageTags()
     {
         return _prefetchedMessageTags;
     }
 
     /** All the not yet acknowledged message tags */
-    protected ConcurrentLinkedQueue<Long> getUnacknowledgedMessageTags()
+    protected DeliveryTagQueue getUnacknowledgedMessageTags()
     {
         return _unacknowledgedMessageTags;
     }
 
     /** All the delivered message tags */
-    protected ConcurrentLinkedQueue<Long> getDeliveredMessageTags()
+    protected DeliveryTagQueue getDeliveredMessageTags()
     {
         return _deliveredMessageTags;
     }
@@ -372,6 +390,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
             _acknowledgeMode = acknowledgeMode;
         }
         _messageEncryptionHelper = new MessageEncryptionHelper(this);
+        _sendCompletions = new SendCompletionTracker(con);
         _channelId = channelId;
         _messageFactoryRegistry = MessageFactoryRegistry.newDefaultRegistry(this);
 
@@ -383,8 +402,8 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
                     : defaultPrefetchLowMark;
 
             // we coalesce suspend jobs using single threaded pool executor with queue length of one
-            // and discarding policy
-            _flowControlNoAckTaskPool = new ThreadPoolExecutor(1, 1,
+            // and discarding policy, or a serial task on the shared dispatcher pool
+            _flowControlNoAckTaskPool = _useDispatcherPool ? null : new ThreadPoolExecutor(1, 1,
                                                                0L, TimeUnit.MILLISECONDS,
                                                                new LinkedBlockingQueue<Runnable>(1),
                                                                new ThreadFactory()
@@ -406,6 +425,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
                     new FlowControllingBlockingQueue.ThresholdListener()
                     {
                         private final AtomicBoolean _suspendState = new AtomicBoolean();
+                        private final AtomicInteger _pendingSuspends = new AtomicInteger();
 
                         public void aboveThreshold(int currentValue)
                         {
@@ -442,7 +462,28 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
                         private void doSuspend()
                         {
-                            _flowControlNoAckTaskPool.execute(new SuspenderRunner(_suspendState));
+                            if (_flowControlNoAckTaskPool != null)
+                            {
+                                _flowControlNoAckTaskPool.execute(new SuspenderRunner(_suspendState));
+                            }
+                            else if (_pendingSuspends.getAndIncrement() == 0)
+                            {
+                                DispatcherPool.getInstance().execute(new Runnable()
+                                {
+                                    @Override
+                                    public void run()
+                                    {
+                                        // requests made while running are served by running once more
+                                        int requests;
+                                        do
+                                        {
+                                            requests = _pendingSuspends.get();
+                                            new SuspenderRunner(_suspendState).run();
+                                        }
+                                        while (_pendingSuspends.addAndGet(-requests) != 0);
+                                    }
+                                });
+                            }
                         }
                     };
             _queue = new FlowControllingBlockingQueue<>(_prefetchHighMark, _prefetchLowMark, listener);
@@ -711,6 +752,21 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
      */
     public abstract void acknowledgeMessage(long deliveryTag, boolean multiple);
 
+    /**
+     * Acknowledges the given messages together, so that the acknowledgement can be sent as a single command where
+     * the protocol allows it.
+     *
+     * @param deliveryTags the tags of the messages to be acknowledged
+     */
+    void acknowledgeMessages(Collection<Long> deliveryTags)
+    {
+        for (long deliveryTag : deliveryTags)
+        {
+            acknowledgeMessage(deliveryTag, false);
+        }
+        flushAcknowledgments();
+    }
+
     /**
      * Binds the named queue, with the specified routing key, to the named exchange.
      * <p>
@@ -837,7 +893,9 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
             }
             finally
             {
+                _sendCompletions.failOutstanding(new IllegalStateException("Session closed before the send completed"));
                 shutdownFlowControlNoAckTaskPool();
+                releaseProtocolResources();
                 _connection.deregisterSession(_channelId);
             }
         }
@@ -885,17 +943,230 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
             _connection.deregisterSession(_channelId);
             closeProducersAndConsumers(amqe);
+            _sendCompletions.failOutstanding(amqe);
             shutdownFlowControlNoAckTaskPool();
+            releaseProtocolResources();
         }
 
     }
 
+    /**
+     * Called once the session has been closed, by the application or because of an error, so that any protocol
+     * specific resources held by the session can be released.
+     */
+    protected void releaseProtocolResources()
+    {
+    }
+
+    boolean isAdaptivePrefetch()
+    {
+        return _adaptivePrefetch;
+    }
+
+    AdaptivePrefetchController createPrefetchController(final int window)
+    {
+        return new AdaptivePrefetchController(window,
+                                              Integer.getInteger(ClientProperties.QPID_ADAPTIVE_PREFETCH_MIN,
+                                                                 ClientProperties.DEFAULT_ADAPTIVE_PREFETCH_MIN),
+                                              Integer.getInteger(ClientProperties.QPID_ADAPTIVE_PREFETCH_MAX,
+                                                                 ClientProperties.DEFAULT_ADAPTIVE_PREFETCH_MAX),
+                                              Integer.getInteger(ClientProperties.QPID_ADAPTIVE_PREFETCH_MARGIN,
+                                                                 ClientProperties.DEFAULT_ADAPTIVE_PREFETCH_MARGIN),
+                                              System.nanoTime());
+    }
+
+    /**
+     * Schedules the periodic resizing of the prefetch of the session's consumers.  The task stops once the session
+     * has been closed.
+     */
+    protected void scheduleAdaptivePrefetch()
+    {
+        final long interval = Long.getLong(ClientProperties.QPID_ADAPTIVE_PREFETCH_INTERVAL,
+                                           ClientProperties.DEFAULT_ADAPTIVE_PREFETCH_INTERVAL);
+        if (interval > 0)
+        {
+            PrefetchAdapter adapter = new PrefetchAdapter(this);
+            adapter.setFuture(_connection.scheduleTask(adapter, interval, interval, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Resizes the prefetch of the session's consumers from their recent consumption rate and the current round trip
+     * time.  Called periodically when the adaptive prefetch mode is enabled.
+     */
+    protected void adaptPrefetch() throws QpidException
+    {
+    }
+
+    /**
+     * Records that the application has consumed a message from one of the session's consumers, when the adaptive
+     * prefetch mode is enabled.
+     *
+     * @param starved whether there was no further message waiting to be consumed
+     */
+    void messageConsumed(final boolean starved)
+    {
+    }
+
+    /**
+     * @return the number of messages currently prefetched for the session's consumers, which changes over time when
+     *         the adaptive prefetch mode is enabled
+     */
+    public int getCurrentPrefetch()
+    {
+        return getPrefetch();
+    }
+
+    long getDispatcherShutdownTimeoutMs()
+    {
+        return _dispatcherShutdownTimeoutMs;
+    }
+
+    boolean isDispatchQueueEmpty()
+    {
+        return !hasDispatchable();
+    }
+
+    /**
+     * @return whether there is anything to dispatch, including the rest of the dispatcher's current batch
+     */
+    private boolean hasDispatchable()
+    {
+        if (!_queue.isEmpty())
+        {
+            return true;
+        }
+        Dispatcher dispatcher = _dispatcher;
+        return dispatcher != null && dispatcher.hasBatchedEntries();
+    }
+
+    /**
+     * Takes the next entry to dispatch, which is the next in the dispatcher's current batch if it has one, so that
+     * entries are dispatched in the order they were queued whichever thread does so.
+     */
+    private Dispatchable takeDispatchable() throws InterruptedException
+    {
+        Dispatcher dispatcher = _dispatcher;
+        if (dispatcher != null)
+        {
+            return dispatcher.takeNext();
+        }
+        return _queue.take();
+    }
+
+    private static class PrefetchAdapter implements Runnable
+    {
+        private final WeakReference<AMQSession<?, ?>> _session;
+        private volatile ScheduledFuture<?> _future;
+
+        PrefetchAdapter(AMQSession<?, ?> session)
+        {
+            _session = new WeakReference<AMQSession<?, ?>>(session);
+        }
+
+        void setFuture(final ScheduledFuture<?> future)
+        {
+            _future = future;
+        }
+
+        public void run()
+        {
+            AMQSession<?, ?> ssn = _session.get();
+            if (ssn == null || ssn.isClosed())
+            {
+                if (_future != null)
+                {
+                    _future.cancel(false);
+                }
+            }
+            else if (!ssn.isClosing())
+            {
+                try
+                {
+                    ssn.adaptPrefetch();
+                }
+                catch (Exception e)
+                {
+                    _logger.warn("Error resizing the prefetch of session " + ssn.getChannelId(), e);
+                }
+            }
+        }
+    }
+
     protected void stopDispatcherThread()
     {
         if (_dispatcherThread != null)
         {
             _dispatcherThread.interrupt();
         }
+        else
+        {
+            Dispatcher dispatcher = _dispatcher;
+            if (dispatcher != null)
+            {
+                dispatcher._closed.set(true);
+            }
+        }
+    }
+
+    private boolean isDispatcherThread()
+    {
+        final Thread currentThread = Thread.currentThread();
+        return currentThread == _dispatcherThread || currentThread == _dispatchingThread;
+    }
+
+    private void addToDispatchQueue(Dispatchable dispatchable)
+    {
+        _queue.add(dispatchable);
+        Dispatcher dispatcher = _dispatcher;
+        if (dispatcher != null)
+        {
+            dispatcher.wakeUp();
+        }
+    }
+
+    /**
+     * Requests that the batch being collected by the given consumer is delivered by the dispatcher after the given
+     * delay, or once the messages already waiting for dispatch have been dispatched if the delay is zero.
+     *
+     * @param consumer the consumer with a batch listener
+     * @param generation the batch the flush is requested for
+     * @param delay the delay in milliseconds
+     */
+    void scheduleBatchFlush(final BasicMessageConsumer<?> consumer, final int generation, final long delay)
+    {
+        final DispatchableControl flush = new DispatchableControl()
+        {
+            public void dispatch(AMQSession ssn)
+            {
+                consumer.flushBatch(generation);
+            }
+        };
+
+        if (delay <= 0)
+        {
+            addToDispatchQueue(flush);
+        }
+        else
+        {
+            try
+            {
+                getAMQConnection().scheduleTask(new Runnable()
+                {
+                    public void run()
+                    {
+                        if (!isClosed())
+                        {
+                            addToDispatchQueue(flush);
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                _logger.debug("Batch flush not scheduled as the connection is closing", e);
+            }
+        }
     }
     /**
      * Commits all messages done in this transaction and releases any locks currently held.
@@ -992,7 +1263,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
                     }
                     else
                     {
-                        _queue.add(new CloseConsumerMessage(consumer));
+                        addToDispatchQueue(new CloseConsumerMessage(consumer));
                     }
                 }
             }
@@ -1808,7 +2079,16 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
             _logger.debug("Message[" + message.toString() + "] received in session");
         }
         _highestDeliveryTag.set(message.getDeliveryTag());
-        _queue.add(message);
+        if (_useMessagePreprocessor)
+        {
+            final C consumer = _consumers.get(message.getConsumerTag());
+            if (consumer != null)
+            {
+                // the message keeps its place in the dispatch queue, which waits for it to be built if need be
+                consumer.prepareMessage(message);
+            }
+        }
+        addToDispatchQueue(message);
     }
 
     public void declareAndBind(AMQDestination amqd)
@@ -2293,20 +2573,21 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
         setClosed();
         _connection.deregisterSession(_channelId);
         markClosedProducersAndConsumers();
+        releaseProtocolResources();
 
     }
 
 
     void syncDispatchQueue(final boolean holdDispatchLock)
     {
-        if (Thread.currentThread() == _dispatcherThread || holdDispatchLock)
+        if (isDispatcherThread() || holdDispatchLock)
         {
-            while (!super.isClosed() && !_queue.isEmpty())
+            while (!super.isClosed() && hasDispatchable())
             {
                 Dispatchable disp;
                 try
                 {
-                    disp = _queue.take();
+                    disp = takeDispatchable();
                 }
                 catch (InterruptedException e)
                 {
@@ -2330,7 +2611,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
             final CountDownLatch signal = new CountDownLatch(1);
 
-            _queue.add(new DispatchableControl()
+            addToDispatchQueue(new DispatchableControl()
             {
                 public void dispatch(AMQSession ssn)
                 {
@@ -2351,14 +2632,14 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
     void drainDispatchQueue()
     {
-        if (Thread.currentThread() == _dispatcherThread)
+        if (isDispatcherThread())
         {
-            while (!super.isClosed() && !_queue.isEmpty())
+            while (!super.isClosed() && hasDispatchable())
             {
                 Dispatchable disp;
                 try
                 {
-                    disp = _queue.take();
+                    disp = takeDispatchable();
                 }
                 catch (InterruptedException e)
                 {
@@ -2382,7 +2663,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
             final CountDownLatch signal = new CountDownLatch(1);
 
-            _queue.add(new DispatchableControl()
+            addToDispatchQueue(new DispatchableControl()
             {
                 public void dispatch(AMQSession ssn)
                 {
@@ -2474,7 +2755,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
     void startDispatcherIfNecessary()
     {
         //If we are the dispatcher then we don't need to check we are started
-        if (Thread.currentThread() == _dispatcherThread)
+        if (isDispatcherThread())
         {
             return;
         }
@@ -2502,7 +2783,17 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
 
     synchronized void startDispatcherIfNecessary(boolean initiallyStopped)
     {
-        if (_dispatcher == null)
+        if (_dispatcher == null && _useDispatcherPool)
+        {
+            _dispatcher = new PooledDispatcher();
+            _dispatcher.setConnectionStopped(initiallyStopped);
+            _dispatcher.wakeUp();
+            if (_dispatcherLogger.isDebugEnabled())
+            {
+                _dispatcherLogger.debug("Pooled dispatcher created for channel " + _channelId);
+            }
+        }
+        else if (_dispatcher == null)
         {
             _dispatcher = new Dispatcher();
             try
@@ -2518,7 +2809,7 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
             String dispatcherThreadName = "Dispatcher-" + _channelId + "-Conn-" + _connection.getConnectionNumber();
 
             _dispatcherThread.setName(dispatcherThreadName);
-            _dispatcherThread.setDaemon(DAEMON_DISPATCHER_THREAD);
+            Threading.setDaemon(_dispatcherThread, DAEMON_DISPATCHER_THREAD);
             _dispatcher.setConnectionStopped(initiallyStopped);
             _dispatcherThread.start();
             if (_dispatcherLogger.isDebugEnabled())
@@ -3405,18 +3696,47 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
     /** Responsible for decoding a message fragment and passing it to the appropriate message consumer. */
     class Dispatcher implements Runnable
     {
+        /** The largest number of entries taken from the dispatch queue at a time */
+        static final int DISPATCH_BATCH_SIZE = 64;
 
         /** Track the 'stopped' state of the dispatcher, a session starts in the stopped state. */
-        private final AtomicBoolean _closed = new AtomicBoolean(false);
+        final AtomicBoolean _closed = new AtomicBoolean(false);
         private final CountDownLatch _closeCompleted = new CountDownLatch(1);
 
-        private final Object _lock = new Object();
+        final Object _lock = new Object();
+
+        /**
+         * Entries taken from the dispatch queue but not yet dispatched, guarded by the lock.  They are dispatched
+         * before anything still in the queue, by the dispatcher or by a thread draining the queue in its place.
+         */
+        final ArrayDeque<Dispatchable> _batch = new ArrayDeque<>(DISPATCH_BATCH_SIZE);
         private final String dispatcherID = "" + System.identityHashCode(this);
 
         public Dispatcher()
         {
         }
 
+        boolean hasBatchedEntries()
+        {
+            synchronized (_lock)
+            {
+                return !_batch.isEmpty();
+            }
+        }
+
+        /**
+         * Takes the next entry of the current batch or, once that is used up, of the dispatch queue, without waiting.
+         * The lock keeps the dispatcher from taking a batch from the queue in between.
+         */
+        Dispatchable takeNext() throws InterruptedException
+        {
+            synchronized (_lock)
+            {
+                Dispatchable disp = _batch.poll();
+                return disp != null ? disp : _queue.nonBlockingTake();
+            }
+        }
+
         public void close()
         {
             _closed.set(true);
@@ -3445,6 +3765,14 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
             return _closed;
         }
 
+        /**
+         * Called when an entry has been added to the dispatch queue.  The dispatcher thread is woken by the queue
+         * itself.
+         */
+        void wakeUp()
+        {
+        }
+
 
         public void rollback()
         {
@@ -3539,10 +3867,12 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
                     {
                         synchronized (_lock)
                         {
-                            final Dispatchable disp = _queue.nonBlockingTake();
-                            if (disp instanceof DispatchableControl || (!isClosed() && !isClosing() && !_closed.get()))
+                            _queue.drainTo(_batch, DISPATCH_BATCH_SIZE);
+
+                            Dispatchable disp;
+                            while (!_closed.get() && (disp = _batch.poll()) != null)
                             {
-                                if(disp != null)
+                                if (disp instanceof DispatchableControl || (!isClosed() && !isClosing() && !_closed.get()))
                                 {
                                     disp.dispatch(AMQSession.this);
                                 }
@@ -3707,6 +4037,140 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
         }
     }
 
+    /**
+     * A dispatcher run as a task of the shared {@link DispatcherPool} rather than on a thread of its own.  The task is
+     * submitted when an entry is added to the dispatch queue or the session is started.  It dispatches a bounded
+     * number of entries and then resubmits itself if entries remain, so that the sessions sharing the pool take turns.
+     * Only one instance of the task runs at a time, so the session's entries are still dispatched in order, each
+     * while holding the dispatcher lock.
+     */
+    class PooledDispatcher extends Dispatcher
+    {
+        private final AtomicBoolean _scheduled = new AtomicBoolean();
+        private final Object _runLock = new Object();
+        private boolean _running;
+
+        @Override
+        void wakeUp()
+        {
+            if (!_closed.get() && !isDispatchSuspended() && !_scheduled.getAndSet(true))
+            {
+                try
+                {
+                    DispatcherPool.getInstance().execute(this);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    _scheduled.set(false);
+                    _dispatcherLogger.warn("Dispatcher pool rejected the dispatcher of channel " + _channelId, e);
+                }
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized (_runLock)
+            {
+                if (_closed.get())
+                {
+                    _scheduled.set(false);
+                    return;
+                }
+                _running = true;
+            }
+            _dispatchingThread = Thread.currentThread();
+            try
+            {
+                synchronized (_lock)
+                {
+                    // entries left over from a batch interrupted by the session being stopped go first
+                    if (_batch.isEmpty())
+                    {
+                        _queue.drainTo(_batch, DISPATCH_BATCH_SIZE);
+                    }
+
+                    Dispatchable disp;
+                    while (!_closed.get() && !isDispatchSuspended() && (disp = _batch.poll()) != null)
+                    {
+                        if (disp instanceof DispatchableControl || (!isClosed() && !isClosing() && !_closed.get()))
+                        {
+                            disp.dispatch(AMQSession.this);
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                _dispatchingThread = null;
+                synchronized (_runLock)
+                {
+                    _running = false;
+                    _runLock.notifyAll();
+                }
+                // cleared before the queue is checked so that an entry added meanwhile is not left behind
+                _scheduled.set(false);
+                if ((!_queue.isEmpty() || hasBatchedEntries()) && !isDispatchSuspended())
+                {
+                    wakeUp();
+                }
+            }
+        }
+
+        /**
+         * Messages are dispatched while the connection is stopped only if the connection is failing over, as they are
+         * by the dispatcher thread.
+         */
+        private boolean isDispatchSuspended()
+        {
+            return connectionStopped() && !getAMQConnection().isFailingOver();
+        }
+
+        @Override
+        boolean setConnectionStopped(boolean connectionStopped)
+        {
+            boolean currently = super.setConnectionStopped(connectionStopped);
+            if (!connectionStopped)
+            {
+                wakeUp();
+            }
+            return currently;
+        }
+
+        @Override
+        public void close()
+        {
+            _closed.set(true);
+            _queue.close();
+
+            // as for the dispatcher thread, await the end of a dispatch in progress elsewhere. See QPID-6672.
+            if (Thread.currentThread() != _dispatchingThread)
+            {
+                final long deadline = System.currentTimeMillis() + _dispatcherShutdownTimeoutMs;
+                synchronized (_runLock)
+                {
+                    try
+                    {
+                        while (_running)
+                        {
+                            final long remaining = deadline - System.currentTimeMillis();
+                            if (remaining <= 0)
+                            {
+                                throw new RuntimeException("Dispatcher did not close down within the timeout of "
+                                                           + _dispatcherShutdownTimeoutMs + " ms.");
+                            }
+                            _runLock.wait(remaining);
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+
     protected abstract boolean tagLE(long tag1, long tag2);
 
     protected abstract boolean updateRollbackMark(long current, long deliveryTag);
@@ -3845,9 +4309,14 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
         return _messageEncryptionHelper;
     }
 
+    SendCompletionTracker getSendCompletionTracker()
+    {
+        return _sendCompletions;
+    }
+
     protected void drainDispatchQueueWithDispatcher()
     {
-        if (!_queue.isEmpty())
+        if (hasDispatchable())
         {
             try
             {
@@ -3868,6 +4337,12 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
         {
             dispatcher.setConnectionStopped(true);
         }
+
+        // listeners run by partition workers are outside the dispatcher lock, so wait for them separately
+        for (C consumer : _consumers.values())
+        {
+            consumer.awaitMessageListenerIdle();
+        }
     }
 
     protected void suspendChannelIfNotClosing() throws QpidException
@@ -25,14 +25,16 @@ import static org.apache.qpid.transport.Option.UNRELIABLE;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.jms.Destination;
 import javax.jms.JMSException;
@@ -53,7 +55,9 @@ import org.apache.qpid.client.messaging.address.AddressHelper;
 import org.apache.qpid.client.messaging.address.Link;
 import org.apache.qpid.client.messaging.address.Link.SubscriptionQueue;
 import org.apache.qpid.client.messaging.address.Node;
+import org.apache.qpid.client.util.DeliveryTagQueue;
 import org.apache.qpid.common.AMQPFilterTypes;
+import org.apache.qpid.configuration.ClientProperties;
 import org.apache.qpid.protocol.ErrorCodes;
 import org.apache.qpid.transport.*;
 import org.apache.qpid.util.Serial;
@@ -128,7 +132,8 @@ public class AMQSession_0_10 extends AMQSession<BasicMessageConsumer_0_10, Basic
     // a ref on the qpid connection
     private org.apache.qpid.transport.Connection _qpidConnection;
 
-    private long maxAckDelay = Long.getLong("qpid.session.max_ack_delay", 1000);
+    private long maxAckDelay = Long.getLong(ClientProperties.QPID_SESSION_MAX_ACK_DELAY,
+                                            ClientProperties.DEFAULT_SESSION_MAX_ACK_DELAY);
     private ScheduledFuture<?> _flushTaskFuture = null;
     private RangeSet unacked = RangeSetFactory.createRangeSet();
     private int unackedCount = 0;
@@ -139,6 +144,11 @@ public class AMQSession_0_10 extends AMQSession<BasicMessageConsumer_0_10, Basic
     private final RangeSet _txRangeSet = RangeSetFactory.createRangeSet();
     private int _txSize = 0;
     private boolean _isHardError = Boolean.getBoolean("qpid.session.legacy_exception_behaviour");
+
+    /** Whether an execution sync timing the round trip for the adaptive prefetch is awaiting completion */
+    private final AtomicBoolean _roundTripSampling = new AtomicBoolean();
+    /** The round trip time most recently measured and not yet used to resize the consumers, or -1 */
+    private final AtomicLong _roundTripSample = new AtomicLong(-1L);
     //--- constructors
 
 
@@ -169,6 +179,11 @@ public class AMQSession_0_10 extends AMQSession<BasicMessageConsumer_0_10, Basic
             _flushTaskFuture = con.scheduleTask(flusher, 0, maxAckDelay, TimeUnit.MILLISECONDS);
             flusher.setFuture(_flushTaskFuture);
         }
+
+        if (isAdaptivePrefetch())
+        {
+            scheduleAdaptivePrefetch();
+        }
     }
 
     protected Session createSession()
@@ -240,13 +255,9 @@ public class AMQSession_0_10 extends AMQSession<BasicMessageConsumer_0_10, Basic
         // acknowledge this message
         if (multiple)
         {
-            for (Long messageTag : getUnacknowledgedMessageTags())
+            for (long messageTag : getUnacknowledgedMessageTags().drainUpTo(deliveryTag))
             {
-                if( messageTag <= deliveryTag )
-                {
-                    addUnacked(messageTag.intValue());
-                    getUnacknowledgedMessageTags().remove(messageTag);
-                }
+                addUnacked((int) messageTag);
             }
             //empty the list of unack messages
 
@@ -265,6 +276,17 @@ public class AMQSession_0_10 extends AMQSession<BasicMessageConsumer_0_10, Basic
         }
     }
 
+    @Override
+    void acknowledgeMessages(final Collection<Long> deliveryTags)
+    {
+        for (long deliveryTag : deliveryTags)
+        {
+            addUnacked((int) deliveryTag);
+            getUnacknowledgedMessageTags().remove(deliveryTag);
+        }
+        flushAcknowledgments();
+    }
+
     protected void flushAcknowledgments()
     {
         flushAcknowledgments(false);
@@ -480,18 +502,12 @@ public class AMQSession_0_10 extends AMQSession<BasicMessageConsumer_0_10, Basic
         sync();
     }
 
-    private RangeSet gatherRangeSet(ConcurrentLinkedQueue<Long> messageTags)
+    private RangeSet gatherRangeSet(DeliveryTagQueue messageTags)
     {
         RangeSet ranges = RangeSetFactory.createRangeSet();
-        while (true)
+        for (long tag : messageTags.drain())
         {
-            Long tag = messageTags.poll();
-            if (tag == null)
-            {
-                break;
-            }
-
-            ranges.add(tag.intValue());
+            ranges.add((int) tag);
         }
 
         return ranges;
@@ -1030,6 +1046,49 @@ public class AMQSession_0_10 extends AMQSession<BasicMessageConsumer_0_10, Basic
         return Serial.lt((int) currentMark, (int) deliveryTag);
     }
 
+    /**
+     * Resizes the credit window of each consumer with the round trip time measured since the previous resize, if
+     * any, and starts timing another.  The round trip is timed by the completion of an execution sync rather than
+     * by waiting for it, so that a slow broker does not hold up the connection's other scheduled tasks.  Consumers
+     * are left alone while the session is stopped as their credit has been withdrawn.
+     */
+    @Override
+    protected void adaptPrefetch() throws QpidException
+    {
+        if (isStarted() && !getConsumers().isEmpty())
+        {
+            final long roundTrip = _roundTripSample.getAndSet(-1L);
+            for (BasicMessageConsumer_0_10 consumer : getConsumers())
+            {
+                consumer.adaptCapacity(roundTrip);
+            }
+
+            if (_roundTripSampling.compareAndSet(false, true))
+            {
+                final long start = System.nanoTime();
+                final ExecutionSync executionSync = new ExecutionSync(SYNC);
+                executionSync.setCompletionListener(new Method.CompletionListener()
+                {
+                    @Override
+                    public void onComplete(final Method method)
+                    {
+                        _roundTripSample.set(System.nanoTime() - start);
+                        _roundTripSampling.set(false);
+                    }
+                });
+                try
+                {
+                    getQpidSession().invoke(executionSync);
+                }
+                catch (RuntimeException e)
+                {
+                    _roundTripSampling.set(false);
+                    throw e;
+                }
+            }
+        }
+    }
+
     public void sync() throws QpidException
     {
         try
@@ -26,12 +26,15 @@ import static org.apache.qpid.configuration.ClientProperties.DEFAULT_FLOW_CONTRO
 import static org.apache.qpid.configuration.ClientProperties.QPID_FLOW_CONTROL_WAIT_FAILURE;
 import static org.apache.qpid.configuration.ClientProperties.QPID_FLOW_CONTROL_WAIT_NOTIFY_PERIOD;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -43,6 +46,7 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.qpid.QpidException;
 import org.apache.qpid.AMQException;
+import org.apache.qpid.AMQTimeoutException;
 import org.apache.qpid.AMQUndeliveredException;
 import org.apache.qpid.client.failover.FailoverException;
 import org.apache.qpid.client.failover.FailoverNoopSupport;
@@ -65,6 +69,7 @@ import org.apache.qpid.framing.*;
 import org.apache.qpid.jms.Session;
 import org.apache.qpid.protocol.ErrorCodes;
 import org.apache.qpid.protocol.AMQMethodEvent;
+import org.apache.qpid.protocol.AMQMethodListener;
 import org.apache.qpid.transport.TransportException;
 import org.apache.qpid.util.Strings;
 
@@ -90,10 +95,77 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
                                                                   DEFAULT_FLOW_CONTROL_WAIT_FAILURE);
     private AtomicInteger _unacknowledgedMessages = new AtomicInteger();
 
+    /** Messages published on the channel that the broker has yet to confirm, when the channel is in confirm mode */
+    private final PublishConfirmTracker _publishConfirms;
+
+    /** The number of published messages that may remain unconfirmed when a synchronous publish returns */
+    private final int _publishConfirmWindow = Integer.getInteger(ClientProperties.QPID_PUBLISH_CONFIRM_WINDOW,
+                                                                 ClientProperties.DEFAULT_PUBLISH_CONFIRM_WINDOW);
+
     /** Flow control */
     private FlowControlIndicator _flowControl = new FlowControlIndicator();
     private final AtomicBoolean _creditChanged = new AtomicBoolean();
 
+    /** The longest time the acknowledgement of a consumed message is held back so that it can be coalesced */
+    private final long _maxAckDelay = Long.getLong(ClientProperties.QPID_SESSION_MAX_ACK_DELAY,
+                                                   ClientProperties.DEFAULT_SESSION_MAX_ACK_DELAY);
+
+    /** Coalesces the acknowledgements of auto-acknowledged messages, or null if they are sent one at a time */
+    private final CoalescingAcknowledger _acknowledger;
+    private ScheduledFuture<?> _ackFlushTaskFuture;
+
+    /** The highest delivery tag received on the channel, tracked only when acknowledgements are coalesced */
+    private volatile long _highestDeliveryTag;
+
+    /** Resizes the channel's QoS in the adaptive prefetch mode, or null if the QoS is fixed */
+    private final AdaptivePrefetchController _prefetchController;
+
+    /**
+     * Keeps a QoS from being sent while another awaits its reply, as the replies cannot be told apart.  Guarded by
+     * itself.
+     */
+    private final Object _qosLock = new Object();
+    private boolean _qosInProgress;
+
+    private static class AckFlusher implements Runnable
+    {
+        private final WeakReference<AMQSession_0_8> _session;
+        private ScheduledFuture<?> _future;
+
+        AckFlusher(AMQSession_0_8 session)
+        {
+            _session = new WeakReference<>(session);
+        }
+
+        void setFuture(final ScheduledFuture<?> future)
+        {
+            _future = future;
+        }
+
+        public void run()
+        {
+            AMQSession_0_8 ssn = _session.get();
+            if (ssn == null)
+            {
+                if(_future != null)
+                {
+                    _future.cancel(false);
+                }
+            }
+            else
+            {
+                try
+                {
+                    ssn.flushAcknowledgments();
+                }
+                catch (Exception e)
+                {
+                    _logger.error("error flushing acks", e);
+                }
+            }
+        }
+    }
+
     /**
      * Creates a new session on a connection.
      * @param con                     The connection on which to create the session.
@@ -113,6 +185,60 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
 
         super(con,channelId,transacted,acknowledgeMode, defaultPrefetchHighMark,defaultPrefetchLowMark);
         _unacknowledgedMessages.set(0);
+        _publishConfirms = new PublishConfirmTracker(channelId, con.getProtocolHandler().getDefaultTimeout());
+
+        final boolean autoAckLike = acknowledgeMode == AUTO_ACKNOWLEDGE || acknowledgeMode == DUPS_OK_ACKNOWLEDGE;
+
+        // the QoS of the other modes is managed by the credit given for each receive
+        if (isAdaptivePrefetch() && autoAckLike && getPrefetch() > 0)
+        {
+            _prefetchController = createPrefetchController(getPrefetch());
+        }
+        else
+        {
+            _prefetchController = null;
+        }
+
+        final int ackBatchSize = getAckBatchSize(getCurrentPrefetch());
+        if (autoAckLike && ackBatchSize > 1)
+        {
+            _acknowledger = new CoalescingAcknowledger(new CoalescingAcknowledger.AckSink()
+            {
+                @Override
+                public void acknowledge(final long deliveryTag, final boolean multiple, final boolean flush)
+                {
+                    writeAcknowledgement(deliveryTag, multiple, flush);
+                }
+            }, ackBatchSize);
+
+            if (_maxAckDelay > 0)
+            {
+                AckFlusher flusher = new AckFlusher(this);
+                _ackFlushTaskFuture = con.scheduleTask(flusher, _maxAckDelay, _maxAckDelay, TimeUnit.MILLISECONDS);
+                flusher.setFuture(_ackFlushTaskFuture);
+            }
+        }
+        else
+        {
+            _acknowledger = null;
+        }
+
+        if (_prefetchController != null)
+        {
+            scheduleAdaptivePrefetch();
+        }
+    }
+
+    /**
+     * The number of consumed messages whose acknowledgements are coalesced.  Half the prefetch is acknowledged at a
+     * time so that the broker can keep the consumers supplied while the rest are consumed.
+     */
+    private int getAckBatchSize(final int prefetch)
+    {
+        final int configured = Integer.getInteger(ClientProperties.QPID_SESSION_MAX_ACK_BATCH_SIZE,
+                                                  ClientProperties.DEFAULT_SESSION_MAX_ACK_BATCH_SIZE);
+        final int halfPrefetch = prefetch / 2;
+        return configured > 0 ? Math.min(configured, halfPrefetch) : halfPrefetch;
     }
 
 
@@ -133,14 +259,8 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
             throw JMSExceptionHelper.chainJMSException(new JMSException("Session.reduceCreditToOriginalSize failed"),
                                                        e);
         }
-        while (true)
+        for (long tag : getUnacknowledgedMessageTags().drain())
         {
-            Long tag = getUnacknowledgedMessageTags().poll();
-            if (tag == null)
-            {
-                break;
-            }
-
             acknowledgeMessage(tag, false);
             syncRequired = true;
         }
@@ -159,6 +279,19 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
     }
 
     public void acknowledgeMessage(long deliveryTag, boolean multiple)
+    {
+        if (_acknowledger != null && !multiple)
+        {
+            _acknowledger.consumed(deliveryTag);
+        }
+        else
+        {
+            writeAcknowledgement(deliveryTag, multiple, !isTransacted());
+        }
+        getUnacknowledgedMessageTags().remove(deliveryTag);
+    }
+
+    private void writeAcknowledgement(long deliveryTag, boolean multiple, boolean flush)
     {
         BasicAckBody body = getMethodRegistry().createBasicAckBody(deliveryTag, multiple);
 
@@ -166,11 +299,11 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
 
         if (_logger.isDebugEnabled())
         {
-            _logger.debug("Sending ack for delivery tag " + deliveryTag + " on channel " + getChannelId());
+            _logger.debug("Sending ack for delivery tag " + deliveryTag + (multiple ? " (multiple)" : "")
+                          + " on channel " + getChannelId());
         }
 
-        getProtocolHandler().writeFrame(ackFrame, !isTransacted());
-        getUnacknowledgedMessageTags().remove(deliveryTag);
+        getProtocolHandler().writeFrame(ackFrame, flush);
     }
 
     @Override
@@ -188,6 +321,12 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
         }
 
         getDeliveredMessageTags().clear();
+        if (_acknowledger != null)
+        {
+            // the re-opened channel numbers its deliveries afresh
+            _highestDeliveryTag = 0L;
+            _acknowledger.reset(0L);
+        }
         super.resubscribe();
     }
 
@@ -249,6 +388,18 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
             || getProtocolHandler().getStateManager().getCurrentState().equals(AMQState.CONNECTION_CLOSING)))
         {
 
+            flushAcknowledgments();
+
+            QpidException confirmFailure = null;
+            try
+            {
+                _publishConfirms.awaitConfirms(0);
+            }
+            catch (QpidException e)
+            {
+                confirmFailure = e;
+            }
+
             getProtocolHandler().closeSession(this);
             getProtocolHandler().syncWrite(getProtocolHandler().getMethodRegistry()
                                                    .createChannelCloseBody(ErrorCodes.REPLY_SUCCESS,
@@ -258,20 +409,80 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
                                            ChannelCloseOkBody.class, timeout);
             // When control resumes at this point, a reply will have been received that
             // indicates the broker has closed the channel successfully.
+
+            if (confirmFailure != null)
+            {
+                throw confirmFailure;
+            }
         }
     }
 
+    @Override
+    protected void releaseProtocolResources()
+    {
+        _publishConfirms.close();
+        if (_ackFlushTaskFuture != null)
+        {
+            _ackFlushTaskFuture.cancel(false);
+            _ackFlushTaskFuture = null;
+        }
+    }
+
+    /**
+     * Publishes a message on a channel in confirm mode.  When requested, waits until no more than the configured
+     * window of published messages remain unconfirmed.
+     *
+     * @param frame        the frames making up the message
+     * @param awaitConfirm whether the publisher waits for confirms
+     */
+    void publishConfirmed(final AMQDataBlock frame, final boolean awaitConfirm) throws QpidException, FailoverException
+    {
+        _publishConfirms.publish(getProtocolHandler(), frame);
+        if (awaitConfirm)
+        {
+            _publishConfirms.awaitConfirms(_publishConfirmWindow);
+        }
+    }
+
+    /**
+     * Publishes a batch of messages, written as a single frame, on a channel in confirm mode.  When requested, waits
+     * until no more than the configured window of published messages remain unconfirmed.
+     */
+    void publishConfirmedBatch(final AMQDataBlock frame, final int messageCount, final boolean awaitConfirm)
+            throws QpidException, FailoverException
+    {
+        _publishConfirms.publishBatch(getProtocolHandler(), frame, messageCount);
+        if (awaitConfirm)
+        {
+            _publishConfirms.awaitConfirms(_publishConfirmWindow);
+        }
+    }
+
+    /**
+     * Publishes a message on a channel in confirm mode without waiting, completing the given asynchronous send once
+     * the broker confirms the message.
+     */
+    void publishConfirmed(final AMQDataBlock frame, final SendCompletionTracker.PendingSend pendingSend)
+            throws QpidException, FailoverException
+    {
+        _publishConfirms.publish(getProtocolHandler(), frame, pendingSend);
+    }
+
+    /**
+     * Waits until the broker has confirmed every message published on this session.
+     */
+    void awaitPublishConfirms() throws QpidException, FailoverException
+    {
+        _publishConfirms.awaitConfirms(0);
+    }
+
     public void commitImpl() throws QpidException, FailoverException, TransportException
     {
+        _publishConfirms.awaitConfirms(0);
+
         // Acknowledge all delivered messages
-        while (true)
+        for (long tag : getDeliveredMessageTags().drain())
         {
-            Long tag = getDeliveredMessageTags().poll();
-            if (tag == null)
-            {
-                break;
-            }
-
             acknowledgeMessage(tag, false);
         }
 
@@ -293,6 +504,11 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
         enforceRejectBehaviourDuringRecover();
         getPrefetchedMessageTags().clear();
         getUnacknowledgedMessageTags().clear();
+        if (_acknowledger != null)
+        {
+            // recover settles every delivery received so far; redeliveries arrive with higher tags
+            _acknowledger.reset(_highestDeliveryTag);
+        }
 
         if (isStrictAMQP())
         {
@@ -352,7 +568,7 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
                         break;
                     }
                 case Session.CLIENT_ACKNOWLEDGE:
-                    for(Long tag : getUnacknowledgedMessageTags())
+                    for(long tag : getUnacknowledgedMessageTags().toArray())
                     {
                         rejectMessage(tag, false);
                     }
@@ -380,14 +596,8 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
             }
         }
 
-        while (true)
+        for (long tag : getDeliveredMessageTags().drain())
         {
-            Long tag = getDeliveredMessageTags().poll();
-            if (tag == null)
-            {
-                break;
-            }
-
             rejectMessage(tag, normalRejectBehaviour);
         }
     }
@@ -406,6 +616,11 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
             AMQFrame frame = body.generateFrame(getChannelId());
 
             getAMQConnection().getProtocolHandler().writeFrame(frame);
+
+            if (_acknowledger != null)
+            {
+                _acknowledger.rejected(deliveryTag);
+            }
         }
     }
 
@@ -761,6 +976,10 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
         }
         else
         {
+            if (_acknowledger != null && message.getDeliveryTag() > _highestDeliveryTag)
+            {
+                _highestDeliveryTag = message.getDeliveryTag();
+            }
             super.messageReceived(message);
         }
     }
@@ -827,11 +1046,206 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
         _unacknowledgedMessages.set(0);
         if(messagePrefetch > 0 || sizePrefetch > 0)
         {
-            BasicQosBody basicQosBody =
-                    getProtocolHandler().getMethodRegistry().createBasicQosBody(sizePrefetch, messagePrefetch, false);
+            writeQos(messagePrefetch, sizePrefetch);
+            if (_prefetchController != null)
+            {
+                _prefetchController.windowChanged(messagePrefetch);
+                prefetchResized(_prefetchController.getWindow());
+            }
+        }
+    }
+
+    /**
+     * Sets the channel's QoS, timing the exchange to sample the round trip time when the QoS is adapted.
+     */
+    private void writeQos(final int messagePrefetch, final long sizePrefetch) throws QpidException, FailoverException
+    {
+        BasicQosBody basicQosBody =
+                getProtocolHandler().getMethodRegistry().createBasicQosBody(sizePrefetch, messagePrefetch, false);
 
+        awaitQos();
+        try
+        {
+            final long start = System.nanoTime();
             getProtocolHandler().syncWrite(basicQosBody.generateFrame(getChannelId()), BasicQosOkBody.class);
+            if (_prefetchController != null)
+            {
+                _prefetchController.roundTripMeasured(System.nanoTime() - start);
+            }
+        }
+        finally
+        {
+            qosCompleted();
+        }
+    }
+
+    /**
+     * Resizes the channel's QoS from the recent consumption rate.  The QoS is only sent when the window changes, or
+     * to take the first sample of the round trip time, and is not waited for, its reply being timed to refresh the
+     * round trip time, so that a slow broker does not hold up the connection's other scheduled tasks.  Nothing is
+     * done while an earlier QoS awaits its reply.
+     */
+    @Override
+    protected void adaptPrefetch() throws QpidException
+    {
+        if (_prefetchController != null && tryStartQos())
+        {
+            boolean sent = false;
+            try
+            {
+                final int previous = _prefetchController.getWindow();
+                final int window = _prefetchController.evaluate(System.nanoTime());
+                if (window != previous || _prefetchController.getRoundTripTime() < 0)
+                {
+                    sent = writeQosAsync(window);
+                    if (sent)
+                    {
+                        prefetchResized(window);
+                    }
+                    else
+                    {
+                        _prefetchController.windowChanged(previous);
+                    }
+                }
+            }
+            finally
+            {
+                if (!sent)
+                {
+                    qosCompleted();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether the QoS was written, in which case {@link #qosCompleted()} is called once its reply arrives or
+     *         the channel fails
+     */
+    private boolean writeQosAsync(final int messagePrefetch) throws QpidException
+    {
+        final AMQProtocolHandler protocolHandler = getProtocolHandler();
+        final long start = System.nanoTime();
+        final AMQMethodListener listener = new AMQMethodListener()
+        {
+            @Override
+            public <B extends AMQMethodBody> boolean methodReceived(final AMQMethodEvent<B> evt)
+            {
+                if (evt.getChannelId() == getChannelId() && evt.getMethod() instanceof BasicQosOkBody)
+                {
+                    protocolHandler.removeFrameListener(this);
+                    _prefetchController.roundTripMeasured(System.nanoTime() - start);
+                    qosCompleted();
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public void error(final Exception e)
+            {
+                protocolHandler.removeFrameListener(this);
+                qosCompleted();
+            }
+        };
+
+        try
+        {
+            protocolHandler.addFrameListener(listener);
+        }
+        catch (FailoverException e)
+        {
+            // the QoS is set afresh once the channel has been re-established
+            return false;
         }
+        BasicQosBody basicQosBody = protocolHandler.getMethodRegistry().createBasicQosBody(0, messagePrefetch, false);
+        protocolHandler.writeFrame(basicQosBody.generateFrame(getChannelId()));
+        return true;
+    }
+
+    private boolean tryStartQos()
+    {
+        synchronized (_qosLock)
+        {
+            if (_qosInProgress)
+            {
+                return false;
+            }
+            _qosInProgress = true;
+            return true;
+        }
+    }
+
+    /**
+     * Waits, for at most the default sync timeout, for the reply to a QoS sent by {@link #adaptPrefetch()}.  A QoS
+     * must not be sent while that reply is outstanding, as both listeners would take the first reply and the second
+     * would be left unclaimed, so the wait failing fails the QoS.
+     */
+    private void awaitQos() throws QpidException
+    {
+        synchronized (_qosLock)
+        {
+            final long timeout = getProtocolHandler().getDefaultTimeout();
+            final long deadline = System.currentTimeMillis() + timeout;
+            long remaining;
+            while (_qosInProgress)
+            {
+                remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                {
+                    throw new AMQTimeoutException("Timed out after " + timeout
+                                                  + "ms waiting for the reply to an earlier QoS on channel "
+                                                  + getChannelId(), null);
+                }
+                try
+                {
+                    _qosLock.wait(remaining);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new QpidException("Interrupted waiting for the reply to an earlier QoS on channel "
+                                            + getChannelId(), e);
+                }
+            }
+            _qosInProgress = true;
+        }
+    }
+
+    private void qosCompleted()
+    {
+        synchronized (_qosLock)
+        {
+            _qosInProgress = false;
+            _qosLock.notifyAll();
+        }
+    }
+
+    private void prefetchResized(final int window)
+    {
+        if (_acknowledger != null)
+        {
+            _acknowledger.setBatchSize(getAckBatchSize(window));
+        }
+    }
+
+    @Override
+    void messageConsumed(final boolean starved)
+    {
+        if (_prefetchController != null)
+        {
+            _prefetchController.messageConsumed();
+            if (starved)
+            {
+                _prefetchController.starved();
+            }
+        }
+    }
+
+    @Override
+    public int getCurrentPrefetch()
+    {
+        return _prefetchController == null ? getPrefetch() : _prefetchController.getWindow();
     }
 
 
@@ -1385,7 +1799,10 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
 
     protected void flushAcknowledgments()
     {
-
+        if (_acknowledger != null)
+        {
+            _acknowledger.flush();
+        }
     }
 
     @Override
@@ -1508,7 +1925,7 @@ public class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, BasicMe
     {
         private final Map<String, Map<String, T>> cache = new HashMap<String, Map<String, T>>();
 
-        public T getDestination(String exchangeName, String routingKey)
+        public synchronized T getDestination(String exchangeName, String routingKey)
         {
             Map<String, T> routingMap = cache.get(exchangeName);
             if(routingMap == null)
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sizes a prefetch window from the rate at which the application consumes messages and the round trip time to the
+ * broker.
+ * <p>
+ * A window holding the messages consumed during one round trip, plus a margin, keeps a consumer busy while its
+ * credit is being replenished without buffering more messages than it can work through, which would keep them from
+ * competing consumers.  The rate measured while the window is the limiting factor understates what the consumer could
+ * achieve, so the window grows beyond that estimate whenever the consumer has run out of messages after consuming at
+ * least a whole window since the previous evaluation, and shrinks by at most half per evaluation.
+ */
+final class AdaptivePrefetchController
+{
+    /** The weight given to the newest sample by the moving averages */
+    private static final double SMOOTHING = 0.5;
+    /** Keeps floating point error from rounding an exact number of messages up to the next one */
+    private static final double ROUNDING_TOLERANCE = 1e-6;
+
+    private final int _minimum;
+    private final int _maximum;
+    private final int _marginPercent;
+
+    private final AtomicLong _consumed = new AtomicLong();
+    private volatile boolean _starved;
+    private volatile int _window;
+
+    private long _lastEvaluation;
+    private long _consumedAtLastEvaluation;
+    /** Messages consumed per nanosecond, or negative before the first evaluation */
+    private double _rate = -1d;
+    /** Round trip time in nanoseconds, or negative before the first sample */
+    private double _roundTrip = -1d;
+
+    AdaptivePrefetchController(final int window,
+                               final int minimum,
+                               final int maximum,
+                               final int marginPercent,
+                               final long now)
+    {
+        _minimum = Math.max(1, minimum);
+        _maximum = Math.max(_minimum, maximum);
+        _marginPercent = Math.max(0, marginPercent);
+        _window = clamp(window);
+        _lastEvaluation = now;
+    }
+
+    void messageConsumed()
+    {
+        _consumed.incrementAndGet();
+    }
+
+    /**
+     * Records that the consumer has been left waiting for messages.
+     */
+    void starved()
+    {
+        if (!_starved)
+        {
+            _starved = true;
+        }
+    }
+
+    synchronized void roundTripMeasured(final long nanos)
+    {
+        if (nanos >= 0)
+        {
+            _roundTrip = _roundTrip < 0 ? nanos : _roundTrip + SMOOTHING * (nanos - _roundTrip);
+        }
+    }
+
+    /**
+     * Records a window size set by other means, such as the re-establishment of the consumer after failover.
+     */
+    void windowChanged(final int window)
+    {
+        _window = clamp(window);
+    }
+
+    /**
+     * Updates the consumption rate with the messages consumed since the previous evaluation.
+     *
+     * @param now the current value of {@link System#nanoTime()}
+     * @return the window the consumer should now use, which is also recorded as its current window
+     */
+    synchronized int evaluate(final long now)
+    {
+        final long elapsed = now - _lastEvaluation;
+        if (elapsed <= 0)
+        {
+            return _window;
+        }
+
+        final long consumed = _consumed.get();
+        final long count = consumed - _consumedAtLastEvaluation;
+        final boolean starved = _starved;
+        _starved = false;
+        _consumedAtLastEvaluation = consumed;
+        _lastEvaluation = now;
+
+        final double rate = count / (double) elapsed;
+        _rate = _rate < 0 ? rate : _rate + SMOOTHING * (rate - _rate);
+        if (_roundTrip < 0)
+        {
+            return _window;
+        }
+
+        final int window = _window;
+        final long target = (long) Math.ceil(_rate * _roundTrip * (100 + _marginPercent) / 100d
+                                         - ROUNDING_TOLERANCE);
+        final long next;
+        if (starved && count >= window)
+        {
+            next = Math.max(target, 2L * window);
+        }
+        else if (target > window)
+        {
+            next = target;
+        }
+        else if (target < window - window / 4)
+        {
+            next = Math.max(target, window / 2);
+        }
+        else
+        {
+            next = window;
+        }
+        _window = clamp(next);
+        return _window;
+    }
+
+    int getWindow()
+    {
+        return _window;
+    }
+
+    /**
+     * @return the smoothed number of messages consumed per second
+     */
+    synchronized double getConsumptionRate()
+    {
+        return _rate < 0 ? 0d : _rate * TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * @return the smoothed round trip time in nanoseconds, or -1 before it has been measured
+     */
+    synchronized long getRoundTripTime()
+    {
+        return _roundTrip < 0 ? -1L : (long) _roundTrip;
+    }
+
+    private int clamp(final long window)
+    {
+        return (int) Math.min(_maximum, Math.max(_minimum, window));
+    }
+}
@@ -21,12 +21,13 @@
 package org.apache.qpid.client;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -49,8 +50,10 @@ import org.apache.qpid.client.message.AMQMessageDelegateFactory;
 import org.apache.qpid.client.message.AbstractJMSMessage;
 import org.apache.qpid.client.message.CloseConsumerMessage;
 import org.apache.qpid.client.message.MessageFactoryRegistry;
+import org.apache.qpid.client.message.UnprocessedMessage;
 import org.apache.qpid.client.util.JMSExceptionHelper;
 import org.apache.qpid.common.AMQPFilterTypes;
+import org.apache.qpid.jms.BatchMessageListener;
 import org.apache.qpid.jms.MessageConsumer;
 import org.apache.qpid.jms.Session;
 import org.apache.qpid.transport.TransportException;
@@ -76,6 +79,17 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
      */
     private final AtomicReference<MessageListener> _messageListener = new AtomicReference<MessageListener>();
 
+    /**
+     * Identifies the batch that a pending batch flush belongs to, so that flushes for batches that have already been
+     * delivered are ignored
+     */
+    private volatile int _batchGeneration;
+
+    /**
+     * When true indicates that a flush has been requested for the batch being collected for a batch listener
+     */
+    private volatile boolean _batchFlushPending;
+
     private String _consumerTag;
 
     private final int _channelId;
@@ -107,11 +121,6 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
 
     private final int _acknowledgeMode;
 
-    /**
-     * List of tags delievered, The last of which which should be acknowledged on commit in transaction mode.
-     */
-    private ConcurrentLinkedQueue<Long> _receivedDeliveryTags = new ConcurrentLinkedQueue<Long>();
-
     /**
      * The thread that was used to call receive(). This is important for being able to interrupt that thread if a
      * receive() is in progress.
@@ -247,10 +256,73 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
         return _messageListener.get() != null;
     }
 
+    public void setBatchMessageListener(final BatchMessageListener listener, final int maxBatchSize,
+                                        final long lingerTime) throws JMSException
+    {
+        if (maxBatchSize < 1)
+        {
+            throw new IllegalArgumentException("Maximum batch size must be positive: " + maxBatchSize);
+        }
+        if (lingerTime < 0)
+        {
+            throw new IllegalArgumentException("Linger time must not be negative: " + lingerTime);
+        }
+        setMessageListener(listener == null ? null : new BatchListenerAdapter(listener, maxBatchSize, lingerTime));
+    }
+
+    public void setPartitionedMessageListener(final MessageListener listener, final String keyProperty,
+                                              final int concurrency) throws JMSException
+    {
+        if (concurrency < 1)
+        {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        if (listener != null && _acknowledgeMode != Session.AUTO_ACKNOWLEDGE
+            && _acknowledgeMode != Session.DUPS_OK_ACKNOWLEDGE)
+        {
+            throw new javax.jms.IllegalStateException(
+                    "A partitioned message listener requires a session that acknowledges automatically");
+        }
+        if (listener == null)
+        {
+            setMessageListener(null);
+        }
+        else
+        {
+            final PartitionedListenerAdapter adapter =
+                    new PartitionedListenerAdapter(this, listener, keyProperty, concurrency);
+            try
+            {
+                setMessageListener(adapter);
+            }
+            catch (JMSException | RuntimeException e)
+            {
+                adapter.close(0L);
+                throw e;
+            }
+        }
+    }
+
     public void setMessageListener(final MessageListener messageListener) throws JMSException
     {
         checkPreConditions();
 
+        final MessageListener previousListener = _messageListener.get();
+        try
+        {
+            setMessageListenerInternal(messageListener);
+        }
+        finally
+        {
+            if (previousListener instanceof PartitionedListenerAdapter && _messageListener.get() != previousListener)
+            {
+                ((PartitionedListenerAdapter) previousListener).close(_session.getDispatcherShutdownTimeoutMs());
+            }
+        }
+    }
+
+    private void setMessageListenerInternal(final MessageListener messageListener) throws JMSException
+    {
         // if the current listener is non-null and the session is not stopped, then
         // it is an error to call this method.
 
@@ -301,11 +373,18 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
                     _session.startDispatcherIfNecessary();
                     
                     // If we already have messages on the queue, deliver them to the listener
-                    Object o = _synchronousQueue.poll();
-                    while (o != null)
+                    if (messageListener instanceof BatchListenerAdapter)
                     {
-                        notifyMessage((AbstractJMSMessage) o);
-                        o = _synchronousQueue.poll();
+                        deliverBatches((BatchListenerAdapter) messageListener, false);
+                    }
+                    else
+                    {
+                        Object o = _synchronousQueue.poll();
+                        while (o != null)
+                        {
+                            notifyMessage((AbstractJMSMessage) o);
+                            o = _synchronousQueue.poll();
+                        }
                     }
                 }
             }
@@ -469,6 +548,75 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
         }
     }
 
+    public List<Message> receive(final int maxMessages, final long timeout) throws JMSException
+    {
+        if (maxMessages < 1)
+        {
+            throw new IllegalArgumentException("Maximum number of messages must be positive: " + maxMessages);
+        }
+
+        checkPreConditions();
+
+        try
+        {
+            if (!acquireReceiving(timeout < 0))
+            {
+                return Collections.emptyList();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            _logger.warn("Interrupted acquire: " + e);
+            if (isClosed())
+            {
+                return Collections.emptyList();
+            }
+        }
+
+        _session.startDispatcherIfNecessary();
+
+        try
+        {
+            final List<AbstractJMSMessage> messages = new ArrayList<AbstractJMSMessage>();
+            // only the first message is waited for, the rest have to be prefetched already
+            Object o = getMessageFromQueue(timeout);
+            _receivingThread = null;
+            AbstractJMSMessage m = returnMessageOrThrow(o);
+            while (m != null)
+            {
+                preDeliver(m);
+                messages.add(m);
+
+                // errors and close notifications are left for the next call
+                o = messages.size() < maxMessages ? _synchronousQueue.peek() : null;
+                m = o instanceof AbstractJMSMessage ? (AbstractJMSMessage) _synchronousQueue.poll() : null;
+            }
+
+            if (!messages.isEmpty())
+            {
+                postDeliver(messages);
+            }
+            return Collections.<Message>unmodifiableList(messages);
+        }
+        catch (InterruptedException e)
+        {
+            _logger.warn("Interrupted: " + e);
+
+            return Collections.emptyList();
+        }
+        catch(TransportException e)
+        {
+            throw _session.toJMSException("Exception while receiving:" + e.getMessage(), e);
+        }
+        finally
+        {
+            releaseReceiving();
+            // clear the interrupted flag - prevents spurious interrupts caused by the consumer being closed from
+            // another thread racing
+            Thread.interrupted();
+        }
+    }
+
     public  Object getMessageFromQueue(long l) throws InterruptedException
     {
          Object o;
@@ -723,7 +871,13 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
 
         try
         {
-            AbstractJMSMessage jmsMessage = createJMSMessageFromUnprocessedMessage(_session.getMessageDelegateFactory(), messageFrame);
+            AbstractJMSMessage jmsMessage = messageFrame instanceof UnprocessedMessage
+                    ? ((UnprocessedMessage) messageFrame).getPreparedMessage(MessagePreprocessor.PREPARED_MESSAGE_WAIT_MS)
+                    : null;
+            if (jmsMessage == null)
+            {
+                jmsMessage = createJMSMessageFromUnprocessedMessage(_session.getMessageDelegateFactory(), messageFrame);
+            }
 
             if (_logger.isDebugEnabled())
             {
@@ -747,12 +901,65 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
     public abstract AbstractJMSMessage createJMSMessageFromUnprocessedMessage(AMQMessageDelegateFactory delegateFactory, U messageFrame)
             throws Exception;
 
+    /**
+     * Whether the JMS message for the given frame can be built without waiting for the broker, and so on the
+     * pre-processing pool.
+     *
+     * @param messageFrame the frame received for this consumer
+     * @return true unless building the message needs a broker round trip
+     */
+    protected boolean canPrepareMessage(U messageFrame)
+    {
+        return true;
+    }
+
+    /**
+     * Starts building the JMS message for the given frame on the pre-processing pool, so that it is ready, or nearly
+     * so, by the time the dispatcher reaches the frame.  A frame whose message cannot be built on the pool is left
+     * for the dispatcher to build.
+     *
+     * @param messageFrame the frame received for this consumer
+     */
+    void prepareMessage(final U messageFrame)
+    {
+        if (!canPrepareMessage(messageFrame))
+        {
+            return;
+        }
+
+        final UnprocessedMessage message = (UnprocessedMessage) messageFrame;
+        message.setPreparedMessage(MessagePreprocessor.getInstance().submit(new Callable<AbstractJMSMessage>()
+        {
+            @Override
+            public AbstractJMSMessage call() throws Exception
+            {
+                return createJMSMessageFromUnprocessedMessage(_session.getMessageDelegateFactory(), messageFrame);
+            }
+        }));
+    }
+
     /** @param jmsMessage this message has already been processed so can't redo preDeliver */
     public void notifyMessage(AbstractJMSMessage jmsMessage)
     {
         try
         {
-            if (isMessageListenerSet())
+            final MessageListener messageListener = _messageListener.get();
+            if (messageListener instanceof BatchListenerAdapter)
+            {
+                if (_synchronousQueue.isEmpty())
+                {
+                    // a flush requested for an earlier batch may have been discarded along with its messages
+                    _batchFlushPending = false;
+                    _batchGeneration++;
+                }
+                _synchronousQueue.put(jmsMessage);
+                deliverBatches((BatchListenerAdapter) messageListener, false);
+            }
+            else if (messageListener instanceof PartitionedListenerAdapter)
+            {
+                ((PartitionedListenerAdapter) messageListener).deliver(jmsMessage);
+            }
+            else if (messageListener != null)
             {
                 preDeliver(jmsMessage);
                 getMessageListener().onMessage(jmsMessage);
@@ -778,6 +985,87 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
         }
     }
 
+    /**
+     * Hands the messages collected in the synchronous queue to the batch listener. Full batches are delivered
+     * straight away, whereas a partial batch is delivered when no further message is waiting in the session and no
+     * linger time is set, or once the flush requested for it runs.
+     *
+     * @param listener the batch listener
+     * @param flush whether a partial batch is to be delivered regardless of the linger time
+     */
+    private void deliverBatches(final BatchListenerAdapter listener, final boolean flush) throws JMSException
+    {
+        final int maxBatchSize = listener.getMaxBatchSize();
+        int pending = _synchronousQueue.size();
+        while (pending >= maxBatchSize)
+        {
+            deliverBatch(listener);
+            pending = _synchronousQueue.size();
+        }
+
+        if (pending > 0)
+        {
+            final long lingerTime = listener.getLingerTime();
+            if (flush || (lingerTime == 0 && _session.isDispatchQueueEmpty()))
+            {
+                deliverBatch(listener);
+            }
+            else if (!_batchFlushPending)
+            {
+                // without a linger time the flush is queued behind the messages already waiting for dispatch
+                _batchFlushPending = true;
+                _session.scheduleBatchFlush(this, _batchGeneration, lingerTime);
+            }
+        }
+    }
+
+    private void deliverBatch(final BatchListenerAdapter listener) throws JMSException
+    {
+        _batchFlushPending = false;
+        _batchGeneration++;
+
+        final int maxBatchSize = listener.getMaxBatchSize();
+        final List<AbstractJMSMessage> batch =
+                new ArrayList<AbstractJMSMessage>(Math.min(maxBatchSize, _synchronousQueue.size()));
+        Object o;
+        while (batch.size() < maxBatchSize && (o = _synchronousQueue.poll()) != null)
+        {
+            if (o instanceof AbstractJMSMessage)
+            {
+                final AbstractJMSMessage message = (AbstractJMSMessage) o;
+                preDeliver(message);
+                batch.add(message);
+            }
+        }
+
+        if (!batch.isEmpty())
+        {
+            listener.getBatchListener().onMessages(Collections.<Message>unmodifiableList(batch));
+            postDeliver(batch);
+        }
+    }
+
+    /**
+     * Delivers the batch being collected for the batch listener, if it is still the one the flush was requested for.
+     *
+     * @param generation the batch generation at the time the flush was requested
+     */
+    void flushBatch(final int generation)
+    {
+        final MessageListener messageListener = _messageListener.get();
+        if (generation == _batchGeneration && messageListener instanceof BatchListenerAdapter && !isClosed())
+        {
+            try
+            {
+                deliverBatches((BatchListenerAdapter) messageListener, true);
+            }
+            catch (Exception e)
+            {
+                _logger.error("Caught exception (dump follows) - ignoring...", e);
+            }
+        }
+    }
+
     protected void preDeliver(AbstractJMSMessage msg)
     {
         _session.setInRecovery(false);
@@ -822,6 +1110,69 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
 
                 break;
         }
+
+        if (_session.isAdaptivePrefetch())
+        {
+            messageConsumed(_synchronousQueue.isEmpty() && _session.isDispatchQueueEmpty());
+        }
+    }
+
+    /**
+     * Completes the delivery of a batch of messages. Messages that the session acknowledges automatically are
+     * acknowledged together, so that the acknowledgement can be sent as a single command.
+     *
+     * @param messages the batch, in delivery order
+     */
+    void postDeliver(List<AbstractJMSMessage> messages)
+    {
+        switch (_acknowledgeMode)
+        {
+            case Session.DUPS_OK_ACKNOWLEDGE:
+            case Session.AUTO_ACKNOWLEDGE:
+                if (!_session.isInRecovery())
+                {
+                    final List<Long> deliveryTags = new ArrayList<Long>(messages.size());
+                    for (AbstractJMSMessage message : messages)
+                    {
+                        deliveryTags.add(message.getDeliveryTag());
+                    }
+                    _session.acknowledgeMessages(deliveryTags);
+                }
+
+                if (_session.isAdaptivePrefetch())
+                {
+                    for (int i = messages.size() - 1; i > 0; i--)
+                    {
+                        messageConsumed(false);
+                    }
+                    messageConsumed(_synchronousQueue.isEmpty() && _session.isDispatchQueueEmpty());
+                }
+                break;
+            default:
+                for (AbstractJMSMessage message : messages)
+                {
+                    postDeliver(message);
+                }
+        }
+    }
+
+    /**
+     * Records that the application has consumed a message, when the adaptive prefetch mode is enabled.
+     *
+     * @param starved whether there was no further message waiting for this consumer
+     */
+    void messageConsumed(final boolean starved)
+    {
+        _session.messageConsumed(starved);
+    }
+
+    /**
+     * @return the number of messages currently prefetched for this consumer, which changes over time when the
+     *         adaptive prefetch mode is enabled
+     */
+    public int getCurrentPrefetch()
+    {
+        return _session.getCurrentPrefetch();
     }
 
     void notifyError(Throwable cause)
@@ -850,6 +1201,24 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
     private void deregisterConsumer()
     {
         _session.deregisterConsumer(this);
+
+        final MessageListener messageListener = _messageListener.get();
+        if (messageListener instanceof PartitionedListenerAdapter)
+        {
+            ((PartitionedListenerAdapter) messageListener).close(_session.getDispatcherShutdownTimeoutMs());
+        }
+    }
+
+    /**
+     * Waits for a partitioned message listener to finish processing the messages already handed to its workers.
+     */
+    void awaitMessageListenerIdle()
+    {
+        final MessageListener messageListener = _messageListener.get();
+        if (messageListener instanceof PartitionedListenerAdapter)
+        {
+            ((PartitionedListenerAdapter) messageListener).awaitIdle(_session.getDispatcherShutdownTimeoutMs());
+        }
     }
 
     /** The consumer tag allows us to close the consumer by sending a jmsCancel method to the broker */
@@ -1048,4 +1417,42 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
     {
         return _addressType;
     }
+
+    /**
+     * Wraps a batch listener so that it can be installed like any other message listener.
+     */
+    private static final class BatchListenerAdapter implements MessageListener
+    {
+        private final BatchMessageListener _batchListener;
+        private final int _maxBatchSize;
+        private final long _lingerTime;
+
+        BatchListenerAdapter(final BatchMessageListener batchListener, final int maxBatchSize, final long lingerTime)
+        {
+            _batchListener = batchListener;
+            _maxBatchSize = maxBatchSize;
+            _lingerTime = lingerTime;
+        }
+
+        BatchMessageListener getBatchListener()
+        {
+            return _batchListener;
+        }
+
+        int getMaxBatchSize()
+        {
+            return _maxBatchSize;
+        }
+
+        long getLingerTime()
+        {
+            return _lingerTime;
+        }
+
+        @Override
+        public void onMessage(final Message message)
+        {
+            _batchListener.onMessages(Collections.singletonList(message));
+        }
+    }
 }
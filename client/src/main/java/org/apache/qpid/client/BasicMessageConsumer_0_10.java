@@ -17,7 +17,10 @@
  */
 package org.apache.qpid.client;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -77,6 +80,12 @@ public class BasicMessageConsumer_0_10 extends BasicMessageConsumer<UnprocessedM
 
     private final long _capacity;
 
+    /** The credit window currently granted to the broker, which differs from the configured capacity when adapted */
+    private volatile long _currentCapacity;
+
+    /** Resizes the credit window in the adaptive prefetch mode, or null if the window is fixed */
+    private final AdaptivePrefetchController _prefetchController;
+
     /** Flag indicating if the server supports message selectors */
     private final boolean _serverJmsSelectorSupport;
 
@@ -95,6 +104,10 @@ public class BasicMessageConsumer_0_10 extends BasicMessageConsumer<UnprocessedM
         _preAcquire = evaluatePreAcquire(browseOnly, destination, _serverJmsSelectorSupport);
 
         _capacity = evaluateCapacity(destination);
+        _currentCapacity = _capacity;
+        _prefetchController = session.isAdaptivePrefetch() && _capacity > 0
+                ? session.createPrefetchController((int) Math.min(Integer.MAX_VALUE, _capacity))
+                : null;
 
         // This is due to the Destination carrying the temporary subscription name which is incorrect.
         if (_0_10session.isResolved(destination) && AMQDestination.TOPIC_TYPE == destination.getAddressType())
@@ -200,6 +213,13 @@ public class BasicMessageConsumer_0_10 extends BasicMessageConsumer<UnprocessedM
         return getMessageFactory().createMessage(msg.getMessageTransfer());
     }
 
+    @Override
+    protected boolean canPrepareMessage(final UnprocessedMessage_0_10 msg)
+    {
+        // an exchange not yet in the exchange type mapping is looked up on the broker while building the message
+        return AMQMessageDelegate_0_10.isExchangeTypeMappingKnown(msg.getMessageTransfer().getHeader());
+    }
+
     /**
      * Check whether a message can be delivered to this consumer.
      *
@@ -398,7 +418,7 @@ public class BasicMessageConsumer_0_10 extends BasicMessageConsumer<UnprocessedM
                 _0_10session.getQpidSession().messageFlow
                                                (getConsumerTag(),
                                                 MessageCreditUnit.MESSAGE,
-                                                _capacity,
+                                                _currentCapacity,
                                                 Option.UNRELIABLE);
             }
             _0_10session.getQpidSession().sync();
@@ -437,6 +457,18 @@ public class BasicMessageConsumer_0_10 extends BasicMessageConsumer<UnprocessedM
         
     }
 
+    @Override
+    void postDeliver(List<AbstractJMSMessage> messages)
+    {
+        super.postDeliver(messages);
+
+        if (getAcknowledgeMode() == Session.AUTO_ACKNOWLEDGE
+            && !getSession().isInRecovery() && getSession().getAMQConnection().getSyncAck())
+        {
+            ((AMQSession_0_10) getSession()).getQpidSession().sync();
+        }
+    }
+
     Message receiveBrowse() throws JMSException
     {
         return receiveNoWait();
@@ -493,7 +525,59 @@ public class BasicMessageConsumer_0_10 extends BasicMessageConsumer<UnprocessedM
 
     long getCapacity()
     {
-        return _capacity;
+        return _currentCapacity;
+    }
+
+    @Override
+    public int getCurrentPrefetch()
+    {
+        return (int) Math.min(Integer.MAX_VALUE, _currentCapacity);
+    }
+
+    @Override
+    void messageConsumed(final boolean starved)
+    {
+        if (_prefetchController != null)
+        {
+            _prefetchController.messageConsumed();
+            if (starved)
+            {
+                _prefetchController.starved();
+            }
+        }
+    }
+
+    /**
+     * Resizes the credit window from the recent consumption rate, in the adaptive prefetch mode.  Additional credit
+     * is simply granted; the window is shrunk by stopping the subscription and granting the new window less the
+     * messages that are already waiting to be consumed.
+     *
+     * @param roundTrip the latest round trip time to the broker in nanoseconds, or -1 if none has been measured since
+     *                  the previous resize
+     */
+    void adaptCapacity(final long roundTrip)
+    {
+        if (_prefetchController != null && !isClosed())
+        {
+            _prefetchController.roundTripMeasured(roundTrip);
+            final long current = _currentCapacity;
+            final long capacity = _prefetchController.evaluate(System.nanoTime());
+            if (capacity > current)
+            {
+                _0_10session.getQpidSession().messageFlow(getConsumerTag(), MessageCreditUnit.MESSAGE,
+                                                          capacity - current, Option.UNRELIABLE);
+            }
+            else if (capacity < current)
+            {
+                _0_10session.getQpidSession().messageStop(getConsumerTag(), Option.UNRELIABLE);
+                _0_10session.getQpidSession().messageFlow(getConsumerTag(), MessageCreditUnit.BYTE,
+                                                          0xFFFFFFFF, Option.UNRELIABLE);
+                _0_10session.getQpidSession().messageFlow(getConsumerTag(), MessageCreditUnit.MESSAGE,
+                                                          Math.max(0, capacity - getSynchronousQueue().size()),
+                                                          Option.UNRELIABLE);
+            }
+            _currentCapacity = capacity;
+        }
     }
 
     boolean isPreAcquire()
@@ -574,6 +658,47 @@ public class BasicMessageConsumer_0_10 extends BasicMessageConsumer<UnprocessedM
         }
     }
 
+    @Override
+    public List<Message> receive(final int maxMessages, final long timeout) throws JMSException
+    {
+        long capacity = getCapacity();
+        try
+        {
+            AMQSession_0_10 session = (AMQSession_0_10) getSession();
+
+            final boolean issueCredit = capacity == 0 && getMessageListener() == null && maxMessages > 0;
+            if (issueCredit)
+            {
+                session.getQpidSession().messageFlow(getConsumerTag(),
+                                                     MessageCreditUnit.MESSAGE, maxMessages,
+                                                     Option.UNRELIABLE);
+            }
+
+            List<Message> messages = super.receive(maxMessages, timeout);
+
+            if (issueCredit && messages.size() < maxMessages)
+            {
+                // the broker sends what it can for the credit left and then drops the rest of it, so the messages
+                // sent are returned now rather than left waiting unrequested
+                session.getQpidSession().messageFlush(getConsumerTag(), Option.UNRELIABLE);
+                session.sync();
+
+                List<Message> flushed = super.receive(maxMessages - messages.size(), -1L);
+                if (!flushed.isEmpty())
+                {
+                    List<Message> all = new ArrayList<Message>(messages);
+                    all.addAll(flushed);
+                    messages = Collections.unmodifiableList(all);
+                }
+            }
+            return messages;
+        }
+        catch (QpidException e)
+        {
+            throw JMSExceptionHelper.chainJMSException(new JMSException("BasicMessageConsumer.receive failed"), e);
+        }
+    }
+
     @Override
     public Message receiveNoWait() throws JMSException
     {
@@ -20,6 +20,7 @@
  */
 package org.apache.qpid.client;
 
+import java.util.List;
 import java.util.Map;
 
 import javax.jms.JMSException;
@@ -206,6 +207,38 @@ public class BasicMessageConsumer_0_8 extends BasicMessageConsumer<UnprocessedMe
         }
     }
 
+    @Override
+    public List<Message> receive(final int maxMessages, final long timeout) throws JMSException
+    {
+        boolean manageCredit = getSession().isManagingCredit();
+        boolean creditModified = false;
+        try
+        {
+            if (manageCredit)
+            {
+                creditModified = getSession().ensureCreditForReceive();
+            }
+            List<Message> messages = super.receive(maxMessages, timeout);
+            if (creditModified && messages.isEmpty())
+            {
+                getSession().reduceCreditToOriginalSize();
+            }
+            if (manageCredit && !(getSession().getAcknowledgeMode() == Session.AUTO_ACKNOWLEDGE
+                                  || getSession().getAcknowledgeMode() == Session.DUPS_OK_ACKNOWLEDGE))
+            {
+                for (int i = 0; i < messages.size(); i++)
+                {
+                    getSession().incUnacknowledgedMessages();
+                }
+            }
+            return messages;
+        }
+        catch (QpidException e)
+        {
+            throw JMSExceptionHelper.chainJMSException(new JMSException("BasicMessageConsumer.receive failed."), e);
+        }
+    }
+
     @Override
     public Message receiveNoWait() throws JMSException
     {
@@ -246,4 +279,11 @@ public class BasicMessageConsumer_0_8 extends BasicMessageConsumer<UnprocessedMe
         getSession().stopFlowIfNeccessary();
         super.postDeliver(msg);
     }
+
+    @Override
+    void postDeliver(List<AbstractJMSMessage> messages)
+    {
+        getSession().stopFlowIfNeccessary();
+        super.postDeliver(messages);
+    }
 }
@@ -20,6 +20,7 @@
  */
 package org.apache.qpid.client;
 
+import java.util.List;
 import java.util.UUID;
 
 import javax.jms.BytesMessage;
@@ -40,9 +41,9 @@ import org.apache.qpid.QpidException;
 import org.apache.qpid.client.message.AbstractJMSMessage;
 import org.apache.qpid.client.message.MessageConverter;
 import org.apache.qpid.client.util.JMSExceptionHelper;
+import org.apache.qpid.jms.CompletionListener;
 import org.apache.qpid.transport.TransportException;
 import org.apache.qpid.util.UUIDGen;
-import org.apache.qpid.util.UUIDs;
 
 public abstract class BasicMessageProducer extends Closeable implements org.apache.qpid.jms.MessageProducer
 {
@@ -96,7 +97,7 @@ public abstract class BasicMessageProducer extends Closeable implements org.apac
 
     private boolean _disableMessageId;
 
-    private UUIDGen _messageIdGenerator = UUIDs.newGenerator();
+    private final UUIDGen _messageIdGenerator;
 
     private String _userID;  // ref user id used in the connection.
 
@@ -152,6 +153,7 @@ public abstract class BasicMessageProducer extends Closeable implements org.apac
                 : mandatory;
 
         _userID = connection.isPopulateUserId() ? connection.getUsername() : null;
+        _messageIdGenerator = connection.createMessageIdGenerator();
 
         if(destination != null && destination.getDeliveryDelay() != 0L)
         {
@@ -435,6 +437,186 @@ public abstract class BasicMessageProducer extends Closeable implements org.apac
         }
     }
 
+    public void send(Message message, CompletionListener completionListener) throws JMSException
+    {
+        checkPreConditions();
+        checkInitialDestination();
+
+        synchronized (_connection.getFailoverMutex())
+        {
+            sendAsync(_destination, message, _deliveryMode, _messagePriority, _timeToLive, _mandatory, _immediate,
+                      _deliveryDelay, completionListener);
+        }
+    }
+
+    public void send(Message message, int deliveryMode, int priority, long timeToLive,
+                     CompletionListener completionListener) throws JMSException
+    {
+        checkPreConditions();
+        checkInitialDestination();
+
+        synchronized (_connection.getFailoverMutex())
+        {
+            sendAsync(_destination, message, deliveryMode, priority, timeToLive, _mandatory, _immediate,
+                      _deliveryDelay, completionListener);
+        }
+    }
+
+    public void send(Destination destination, Message message, CompletionListener completionListener)
+            throws JMSException
+    {
+        send(destination, message, _deliveryMode, _messagePriority, _timeToLive, completionListener);
+    }
+
+    public void send(Destination destination, Message message, int deliveryMode, int priority, long timeToLive,
+                     CompletionListener completionListener) throws JMSException
+    {
+        checkPreConditions();
+        checkDestination(destination);
+        synchronized (_connection.getFailoverMutex())
+        {
+            validateDestination(destination);
+            AMQDestination amqDestination = (AMQDestination) destination;
+            sendAsync(amqDestination, message, deliveryMode, priority, timeToLive,
+                      _mandatory == null
+                              ? destination instanceof Topic
+                                  ? _defaultMandatoryTopicValue
+                                  : _defaultMandatoryValue
+                              : _mandatory,
+                      _immediate,
+                      amqDestination.getDeliveryDelay() != 0L ? amqDestination.getDeliveryDelay() : _deliveryDelay,
+                      completionListener);
+        }
+    }
+
+    public void sendBatch(List<? extends Message> messages) throws JMSException
+    {
+        checkPreConditions();
+        checkInitialDestination();
+
+        synchronized (_connection.getFailoverMutex())
+        {
+            sendBatchImpl(_destination, messages, _deliveryMode, _messagePriority, _timeToLive, _mandatory, _immediate,
+                          _deliveryDelay);
+        }
+    }
+
+    public void sendBatch(Destination destination, List<? extends Message> messages) throws JMSException
+    {
+        checkPreConditions();
+        checkDestination(destination);
+        synchronized (_connection.getFailoverMutex())
+        {
+            validateDestination(destination);
+            AMQDestination amqDestination = (AMQDestination) destination;
+            sendBatchImpl(amqDestination, messages, _deliveryMode, _messagePriority, _timeToLive,
+                          _mandatory == null
+                                  ? destination instanceof Topic
+                                      ? _defaultMandatoryTopicValue
+                                      : _defaultMandatoryValue
+                                  : _mandatory,
+                          _immediate,
+                          amqDestination.getDeliveryDelay() != 0L ? amqDestination.getDeliveryDelay() : _deliveryDelay);
+        }
+    }
+
+    /**
+     * Sends the messages between {@link #beginBatch(int)} and {@link #endBatch(boolean)}, so that the protocol
+     * specific producer can write them together and, in the synchronous publish modes, wait only once.
+     */
+    private void sendBatchImpl(AMQDestination destination,
+                               List<? extends Message> messages,
+                               int deliveryMode,
+                               int priority,
+                               long timeToLive,
+                               boolean mandatory,
+                               boolean immediate,
+                               long deliveryDelay) throws JMSException
+    {
+        if (messages.isEmpty())
+        {
+            return;
+        }
+
+        beginBatch(messages.size());
+        boolean sent = false;
+        try
+        {
+            for (Message message : messages)
+            {
+                sendImpl(destination, message, deliveryMode, priority, timeToLive, mandatory, immediate, deliveryDelay);
+            }
+            sent = true;
+        }
+        finally
+        {
+            // the messages sent ahead of a failure are still written, as they would have been by separate sends
+            endBatch(sent);
+        }
+    }
+
+    /**
+     * Called before the messages of a batch are sent.  Until {@link #endBatch(boolean)} is called the messages may be
+     * held back rather than written.
+     *
+     * @param size the number of messages in the batch
+     */
+    void beginBatch(int size) throws JMSException
+    {
+    }
+
+    /**
+     * Called once the messages of a batch have been sent, to write any messages held back.
+     *
+     * @param awaitCompletion whether the whole batch was sent, in which case the producer waits for the broker if
+     *                        its publish mode requires it
+     */
+    void endBatch(boolean awaitCompletion) throws JMSException
+    {
+    }
+
+    /**
+     * Sends the message without waiting for the broker, registering the listener to be notified once the broker has
+     * completed the send.  If the send itself fails the exception is thrown to the caller and the listener is not
+     * notified.
+     */
+    private void sendAsync(AMQDestination destination,
+                           Message message,
+                           int deliveryMode,
+                           int priority,
+                           long timeToLive,
+                           boolean mandatory,
+                           boolean immediate,
+                           long deliveryDelay,
+                           CompletionListener completionListener) throws JMSException
+    {
+        if (completionListener == null)
+        {
+            throw new IllegalArgumentException("Completion listener must not be null");
+        }
+
+        final SendCompletionTracker.PendingSend pendingSend =
+                _session.getSendCompletionTracker().register(message, completionListener);
+        boolean sent = false;
+        try
+        {
+            sendImpl(destination, message, deliveryMode, priority, timeToLive, mandatory, immediate, deliveryDelay,
+                     pendingSend);
+            sent = true;
+        }
+        finally
+        {
+            if (sent)
+            {
+                pendingSend.sent();
+            }
+            else
+            {
+                pendingSend.abandon();
+            }
+        }
+    }
+
     private AbstractJMSMessage convertToNativeMessage(Message message) throws JMSException
     {
         if (message instanceof AbstractJMSMessage)
@@ -528,6 +710,26 @@ public abstract class BasicMessageProducer extends Closeable implements org.apac
                             boolean mandatory,
                             boolean immediate,
                             long deliveryDelay) throws JMSException
+    {
+        sendImpl(destination, origMessage, deliveryMode, priority, timeToLive, mandatory, immediate, deliveryDelay,
+                 null);
+    }
+
+    /**
+     * The caller of this method must hold the failover mutex.
+     *
+     * @param pendingSend the asynchronous send to complete once the broker has completed the transfer, or null if the
+     *                    send is synchronous
+     */
+    private void sendImpl(AMQDestination destination,
+                          Message origMessage,
+                          int deliveryMode,
+                          int priority,
+                          long timeToLive,
+                          boolean mandatory,
+                          boolean immediate,
+                          long deliveryDelay,
+                          SendCompletionTracker.PendingSend pendingSend) throws JMSException
     {
         checkTemporaryDestination(destination);
         origMessage.setJMSDestination(destination);
@@ -548,7 +750,7 @@ public abstract class BasicMessageProducer extends Closeable implements org.apac
         try
         {
             sendMessage(destination, origMessage, message, messageId, deliveryMode, priority, timeToLive, mandatory, immediate,
-                        deliveryDelay);
+                        deliveryDelay, pendingSend);
         }
         catch (TransportException e)
         {
@@ -576,7 +778,8 @@ public abstract class BasicMessageProducer extends Closeable implements org.apac
 
     abstract void sendMessage(AMQDestination destination, Message origMessage, AbstractJMSMessage message,
                               UUID messageId, int deliveryMode, int priority, long timeToLive, boolean mandatory,
-                              boolean immediate, final long deliveryDelay) throws JMSException;
+                              boolean immediate, final long deliveryDelay,
+                              SendCompletionTracker.PendingSend pendingSend) throws JMSException;
 
     private void checkTemporaryDestination(AMQDestination destination) throws InvalidDestinationException
     {
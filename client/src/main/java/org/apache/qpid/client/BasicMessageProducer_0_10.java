@@ -17,6 +17,7 @@
  */
 package org.apache.qpid.client;
 
+import static org.apache.qpid.transport.Option.BATCH;
 import static org.apache.qpid.transport.Option.NONE;
 import static org.apache.qpid.transport.Option.SYNC;
 import static org.apache.qpid.transport.Option.UNRELIABLE;
@@ -56,9 +57,11 @@ import org.apache.qpid.transport.MessageAcquireMode;
 import org.apache.qpid.transport.MessageDeliveryMode;
 import org.apache.qpid.transport.MessageDeliveryPriority;
 import org.apache.qpid.transport.MessageProperties;
+import org.apache.qpid.transport.MessageTransfer;
+import org.apache.qpid.transport.Method;
 import org.apache.qpid.transport.Option;
 import org.apache.qpid.transport.codec.BBEncoder;
-import org.apache.qpid.util.GZIPUtils;
+import org.apache.qpid.util.CompressionCodec;
 import org.apache.qpid.util.Strings;
 
 /**
@@ -70,6 +73,12 @@ public class BasicMessageProducer_0_10 extends BasicMessageProducer
     private static final Logger _logger = LoggerFactory.getLogger(BasicMessageProducer_0_10.class);
     private byte[] userIDBytes;
 
+    /** Whether a batch is being sent, in which case the transfers are written without flushing each one */
+    private boolean _batching;
+
+    /** Whether any message of the batch being sent requires the producer to wait for the broker */
+    private boolean _batchSync;
+
     BasicMessageProducer_0_10(AMQConnection connection, AMQDestination destination, boolean transacted, int channelId,
                               AMQSession session, long producerId, Boolean immediate, Boolean mandatory) throws
                                                                                                          QpidException
@@ -112,7 +121,8 @@ public class BasicMessageProducer_0_10 extends BasicMessageProducer
      */
     void sendMessage(AMQDestination destination, Message origMessage, AbstractJMSMessage message,
                      UUID messageId, int deliveryMode, int priority, long timeToLive, boolean mandatory,
-                     boolean immediate, final long deliveryDelay) throws JMSException
+                     boolean immediate, final long deliveryDelay,
+                     final SendCompletionTracker.PendingSend pendingSend) throws JMSException
     {
         message.prepareForSending();
 
@@ -189,42 +199,31 @@ public class BasicMessageProducer_0_10 extends BasicMessageProducer
             deliveryProp.setRoutingKey(routingKey);
         }
         
-        Map<String,Object> appProps = messageProps.getApplicationHeaders();
-
+        // the application headers are only decoded if they have to change, otherwise they are sent on as received
         if (destination.getDestSyntax() == AMQDestination.DestSyntax.ADDR &&
            (destination.getSubject() != null ||
-              (messageProps.getApplicationHeaders() != null && messageProps.getApplicationHeaders().get(QpidMessageProperties.QPID_SUBJECT) != null))
+              messageProps.getApplicationHeader(QpidMessageProperties.QPID_SUBJECT) != null)
            )
         {
-            if (appProps == null)
-            {
-                appProps = new HashMap<String,Object>();
-                messageProps.setApplicationHeaders(appProps);          
-            }
-            
-            if (appProps.get(QpidMessageProperties.QPID_SUBJECT) == null)
+            if (messageProps.getApplicationHeader(QpidMessageProperties.QPID_SUBJECT) == null)
             {
                 // use default subject in address string
-                appProps.put(QpidMessageProperties.QPID_SUBJECT,destination.getSubject());
+                getApplicationHeadersForUpdate(messageProps).put(QpidMessageProperties.QPID_SUBJECT,
+                                                                 destination.getSubject());
             }
-                    
+
             if (destination.getAddressType() == AMQDestination.TOPIC_TYPE)
             {
                 deliveryProp.setRoutingKey((String)
-                        messageProps.getApplicationHeaders().get(QpidMessageProperties.QPID_SUBJECT));                
+                        messageProps.getApplicationHeader(QpidMessageProperties.QPID_SUBJECT));
             }
         }
 
 
-        if(deliveryDelay != 0L && (appProps == null || appProps.get(QpidMessageProperties.QPID_NOT_VALID_BEFORE) == null))
+        if(deliveryDelay != 0L && messageProps.getApplicationHeader(QpidMessageProperties.QPID_NOT_VALID_BEFORE) == null)
         {
-            if (appProps == null)
-            {
-                appProps = new HashMap<String,Object>();
-                messageProps.setApplicationHeaders(appProps);
-            }
-
-            appProps.put(QpidMessageProperties.QPID_NOT_VALID_BEFORE, deliveryDelay+currentTime);
+            getApplicationHeadersForUpdate(messageProps).put(QpidMessageProperties.QPID_NOT_VALID_BEFORE,
+                                                             deliveryDelay + currentTime);
         }
 
         ByteBuffer data = message.getData();
@@ -338,11 +337,12 @@ public class BasicMessageProducer_0_10 extends BasicMessageProducer
                 && getConnection().isMessageCompressionDesired()
                 && messageProps.getContentEncoding() == null)
             {
-                byte[] compressed = GZIPUtils.compressBufferToArray(data);
+                CompressionCodec codec = getConnection().getMessageCompressionCodec();
+                ByteBuffer compressed = codec == null ? null : codec.compress(data);
                 if (compressed != null)
                 {
-                    messageProps.setContentEncoding(GZIPUtils.GZIP_CONTENT_ENCODING);
-                    data = ByteBuffer.wrap(compressed);
+                    messageProps.setContentEncoding(codec.getContentEncoding());
+                    data = compressed;
                 }
             }
         }
@@ -358,10 +358,17 @@ public class BasicMessageProducer_0_10 extends BasicMessageProducer
             // if true, we need to sync the delivery of this message
             boolean sync = false;
 
-            sync = ( (getPublishMode() == PublishMode.SYNC_PUBLISH_ALL) ||
+            sync = pendingSend == null &&
+                   ( (getPublishMode() == PublishMode.SYNC_PUBLISH_ALL) ||
                      (getPublishMode() == PublishMode.SYNC_PUBLISH_PERSISTENT &&
                          deliveryMode == DeliveryMode.PERSISTENT)
                    );  
+            if (_batching)
+            {
+                // the batch waits once, in endBatch, for all of its transfers
+                _batchSync |= sync;
+                sync = false;
+            }
             
             boolean unreliable = (destination.getDestSyntax() == DestSyntax.ADDR) &&
                                  (destination.getLink().getReliability() == Reliability.UNRELIABLE);
@@ -369,11 +376,33 @@ public class BasicMessageProducer_0_10 extends BasicMessageProducer
 
             ByteBuffer buffer = data == null ? ByteBuffer.allocate(0) : data.slice();
             
-            ssn.messageTransfer(destination.getExchangeName() == null ? "" : destination.getExchangeName(),
-                                MessageAcceptMode.NONE,
-                                MessageAcquireMode.PRE_ACQUIRED,
-                                new Header(deliveryProp, messageProps),
-                    buffer, sync ? SYNC : NONE, unreliable ? UNRELIABLE : NONE);
+            if (pendingSend == null)
+            {
+                ssn.messageTransfer(destination.getExchangeName() == null ? "" : destination.getExchangeName(),
+                                    MessageAcceptMode.NONE,
+                                    MessageAcquireMode.PRE_ACQUIRED,
+                                    new Header(deliveryProp, messageProps),
+                        buffer, sync ? SYNC : NONE, unreliable ? UNRELIABLE : NONE, _batching ? BATCH : NONE);
+            }
+            else
+            {
+                // the sync flag asks the broker to complete the transfer promptly, without the client waiting for it
+                MessageTransfer transfer =
+                        new MessageTransfer(destination.getExchangeName() == null ? "" : destination.getExchangeName(),
+                                            MessageAcceptMode.NONE,
+                                            MessageAcquireMode.PRE_ACQUIRED,
+                                            new Header(deliveryProp, messageProps),
+                                            buffer, SYNC, unreliable ? UNRELIABLE : NONE);
+                transfer.setCompletionListener(new Method.CompletionListener()
+                {
+                    @Override
+                    public void onComplete(final Method method)
+                    {
+                        pendingSend.completed();
+                    }
+                });
+                ssn.invoke(transfer);
+            }
             if (sync)
             {
                 ssn.sync();
@@ -388,6 +417,48 @@ public class BasicMessageProducer_0_10 extends BasicMessageProducer
         }
     }
 
+    @Override
+    void beginBatch(final int size)
+    {
+        _batching = true;
+        _batchSync = false;
+    }
+
+    @Override
+    void endBatch(final boolean awaitCompletion) throws JMSException
+    {
+        _batching = false;
+        try
+        {
+            org.apache.qpid.transport.Session ssn = ((AMQSession_0_10) getSession()).getQpidSession();
+            if (awaitCompletion && _batchSync)
+            {
+                ssn.sync();
+                ((AMQSession_0_10) getSession()).getCurrentException();
+            }
+            else
+            {
+                ssn.getConnection().flush();
+            }
+        }
+        catch (Exception e)
+        {
+            throw JMSExceptionHelper.chainJMSException(new JMSException("Exception when sending messages:"
+                                                                        + e.getMessage()), e);
+        }
+    }
+
+    private Map<String, Object> getApplicationHeadersForUpdate(MessageProperties messageProps)
+    {
+        Map<String, Object> appProps = messageProps.getApplicationHeaders();
+        if (appProps == null)
+        {
+            appProps = new HashMap<String, Object>();
+            messageProps.setApplicationHeaders(appProps);
+        }
+        return appProps;
+    }
+
     @Override
     public boolean isBound(AMQDestination destination) throws JMSException
     {
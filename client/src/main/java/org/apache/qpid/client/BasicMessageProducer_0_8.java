@@ -44,14 +44,11 @@ import org.apache.qpid.client.message.AbstractJMSMessage;
 import org.apache.qpid.client.message.Encrypted091MessageFactory;
 import org.apache.qpid.client.message.MessageEncryptionHelper;
 import org.apache.qpid.client.message.QpidMessageProperties;
-import org.apache.qpid.client.protocol.BlockingMethodFrameListener;
 import org.apache.qpid.client.util.JMSExceptionHelper;
 import org.apache.qpid.configuration.ClientProperties;
+import org.apache.qpid.framing.AMQDataBlock;
 import org.apache.qpid.framing.AMQFrame;
-import org.apache.qpid.framing.AMQMethodBody;
-import org.apache.qpid.framing.BasicAckBody;
 import org.apache.qpid.framing.BasicContentHeaderProperties;
-import org.apache.qpid.framing.BasicNackBody;
 import org.apache.qpid.framing.BasicPublishBody;
 import org.apache.qpid.framing.CompositeAMQDataBlock;
 import org.apache.qpid.framing.ContentBody;
@@ -59,13 +56,16 @@ import org.apache.qpid.framing.ContentHeaderBody;
 import org.apache.qpid.framing.ExchangeDeclareBody;
 import org.apache.qpid.framing.FieldTable;
 import org.apache.qpid.framing.MethodRegistry;
-import org.apache.qpid.util.GZIPUtils;
+import org.apache.qpid.util.CompressionCodec;
 
 public class BasicMessageProducer_0_8 extends BasicMessageProducer
 {
     private static final Logger _logger = LoggerFactory.getLogger(BasicMessageProducer_0_8.class);
     private static final boolean SET_EXPIRATION_AS_TTL = Boolean.getBoolean(ClientProperties.SET_EXPIRATION_AS_TTL);
 
+    /** The frames of the messages of the batch being sent, or null if no batch is being sent */
+    private List<AMQDataBlock> _batchFrames;
+
     BasicMessageProducer_0_8(AMQConnection connection, AMQDestination destination, boolean transacted, int channelId,
             AMQSession session, AMQProtocolHandler protocolHandler, long producerId, Boolean immediate, Boolean mandatory) throws
                                                                                                                            QpidException
@@ -109,7 +109,8 @@ public class BasicMessageProducer_0_8 extends BasicMessageProducer
 
     void sendMessage(AMQDestination destination, Message origMessage, AbstractJMSMessage message,
                      UUID messageId, int deliveryMode, int priority, long timeToLive, boolean mandatory,
-                     boolean immediate, final long deliveryDelay) throws JMSException
+                     boolean immediate, final long deliveryDelay,
+                     final SendCompletionTracker.PendingSend pendingSend) throws JMSException
     {
 
 
@@ -297,16 +298,18 @@ public class BasicMessageProducer_0_8 extends BasicMessageProducer
         }
         else
         {
-            byte[] compressed;
+            CompressionCodec codec;
+            ByteBuffer compressed;
             if (size > getConnection().getMessageCompressionThresholdSize()
                 && getConnection().getDelegate().isMessageCompressionSupported()
                 && getConnection().isMessageCompressionDesired()
                 && contentHeaderProperties.getEncoding() == null
-                && (compressed = GZIPUtils.compressBufferToArray(payload)) != null)
+                && (codec = getConnection().getMessageCompressionCodec()) != null
+                && (compressed = codec.compress(payload)) != null)
             {
-                contentHeaderProperties.setEncoding("gzip");
-                payload = ByteBuffer.wrap(compressed);
-                size = compressed.length;
+                contentHeaderProperties.setEncoding(codec.getContentEncoding());
+                payload = compressed;
+                size = compressed.remaining();
 
             }
         }
@@ -318,6 +321,11 @@ public class BasicMessageProducer_0_8 extends BasicMessageProducer
             createContentBodies(payload, frames, 2, getChannelId());
         }
 
+        if (_batchFrames != null)
+        {
+            // the header is encoded when the batch is written, by which time the message may have been sent again
+            contentHeaderProperties = new BasicContentHeaderProperties(contentHeaderProperties);
+        }
         contentHeaderFrame =
                 ContentHeaderBody.createAMQFrame(getChannelId(),
                                                  contentHeaderProperties, size);
@@ -346,6 +354,13 @@ public class BasicMessageProducer_0_8 extends BasicMessageProducer
         frames[1] = contentHeaderFrame;
         final CompositeAMQDataBlock compositeFrame = new CompositeAMQDataBlock(frames);
 
+        if (_batchFrames != null)
+        {
+            // written, after a single flow control check, with the rest of the batch
+            _batchFrames.add(compositeFrame);
+            return;
+        }
+
         try
         {
             getSession().checkFlowControl();
@@ -358,28 +373,27 @@ public class BasicMessageProducer_0_8 extends BasicMessageProducer
 
         AMQConnectionDelegate_8_0 connectionDelegate80 = (AMQConnectionDelegate_8_0) (getConnection().getDelegate());
 
-        boolean useConfirms = getPublishMode() == PublishMode.SYNC_PUBLISH_ALL
-                              && (connectionDelegate80.isConfirmedPublishSupported()
-                               || (!getSession().isTransacted() && connectionDelegate80.isConfirmedPublishNonTransactionalSupported()));
-
         AMQProtocolHandler protocolHandler = getConnection().getProtocolHandler();
-        if(!useConfirms)
+        if(!connectionDelegate80.isConfirmedPublishEnabled(getSession().isTransacted()))
         {
             protocolHandler.writeFrame(compositeFrame);
+            // without publisher confirms the broker never acknowledges the publish, so the send is complete once written
+            if (pendingSend != null)
+            {
+                pendingSend.completed();
+            }
         }
         else
         {
-            final PublishConfirmMessageListener frameListener = new PublishConfirmMessageListener(getChannelId(),
-                                                                                                  protocolHandler.getConnectionDetails());
             try
             {
-
-                protocolHandler.writeCommandFrameAndWaitForReply(compositeFrame,
-                                                                                      frameListener);
-
-                if(frameListener.isRejected())
+                if (pendingSend == null)
                 {
-                    throw new JMSException("The message was not accepted by the server (e.g. because the address was no longer valid)");
+                    getSession().publishConfirmed(compositeFrame, getPublishMode() == PublishMode.SYNC_PUBLISH_ALL);
+                }
+                else
+                {
+                    getSession().publishConfirmed(compositeFrame, pendingSend);
                 }
             }
             catch (QpidException e)
@@ -395,6 +409,90 @@ public class BasicMessageProducer_0_8 extends BasicMessageProducer
         }
     }
 
+    @Override
+    void beginBatch(final int size) throws JMSException
+    {
+        try
+        {
+            getSession().checkFlowControl();
+        }
+        catch (InterruptedException e)
+        {
+            throw JMSExceptionHelper.chainJMSException(new JMSException(
+                    "Interrupted while waiting for flow control to be removed"), e);
+        }
+        _batchFrames = new ArrayList<>(size);
+    }
+
+    /**
+     * Writes the messages of the batch as a single frame, so that they reach the network in one write, and in the
+     * synchronous publish mode waits for their confirms once.
+     */
+    @Override
+    void endBatch(final boolean awaitCompletion) throws JMSException
+    {
+        final List<AMQDataBlock> batchFrames = _batchFrames;
+        _batchFrames = null;
+        if (batchFrames.isEmpty())
+        {
+            return;
+        }
+
+        final CompositeAMQDataBlock compositeFrame =
+                new CompositeAMQDataBlock(batchFrames.toArray(new AMQDataBlock[batchFrames.size()]));
+        AMQConnectionDelegate_8_0 connectionDelegate80 = (AMQConnectionDelegate_8_0) (getConnection().getDelegate());
+        if (!connectionDelegate80.isConfirmedPublishEnabled(getSession().isTransacted()))
+        {
+            getConnection().getProtocolHandler().writeFrame(compositeFrame);
+        }
+        else
+        {
+            try
+            {
+                getSession().publishConfirmedBatch(compositeFrame, batchFrames.size(),
+                                                   awaitCompletion && getPublishMode() == PublishMode.SYNC_PUBLISH_ALL);
+            }
+            catch (QpidException e)
+            {
+                throw JMSExceptionHelper.chainJMSException(new JMSException(e.getMessage()), e);
+            }
+            catch (FailoverException e)
+            {
+                throw JMSExceptionHelper.chainJMSException(new JMSException(
+                        "Fail-over interrupted send. Status of the send is uncertain."), e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the broker to confirm the messages published on the session before closing, so that a message the
+     * broker rejects is still reported to a publisher that does not wait for each confirm.
+     */
+    @Override
+    public void close() throws JMSException
+    {
+        try
+        {
+            if (!isClosed() && !getSession().isClosed() && getPublishMode() == PublishMode.SYNC_PUBLISH_ALL)
+            {
+                getSession().awaitPublishConfirms();
+            }
+        }
+        catch (QpidException e)
+        {
+            throw JMSExceptionHelper.chainJMSException(new JMSException(e.getMessage()), e);
+        }
+        catch (FailoverException e)
+        {
+            throw JMSExceptionHelper.chainJMSException(new JMSException(
+                    "Fail-over interrupted close. Status of previous sends is uncertain."), e);
+        }
+        finally
+        {
+            super.close();
+        }
+    }
+
     /**
      * Create content bodies. This will split a large message into numerous bodies depending on the negotiated
      * maximum frame size.
@@ -460,42 +558,4 @@ public class BasicMessageProducer_0_8 extends BasicMessageProducer
     {
         return (AMQSession_0_8) super.getSession();
     }
-
-    private static class PublishConfirmMessageListener extends BlockingMethodFrameListener
-    {
-        private boolean _rejected;
-
-        /**
-         * Creates a new method listener, that filters incoming method to just those that match the specified channel id.
-         *
-         * @param channelId The channel id to filter incoming methods with.
-         */
-        public PublishConfirmMessageListener(final int channelId, String connectionDetails)
-        {
-            super(channelId, connectionDetails);
-        }
-
-        @Override
-        public boolean processMethod(final int channelId, final AMQMethodBody frame)
-        {
-            if (frame instanceof BasicAckBody)
-            {
-                return true;
-            }
-            else if (frame instanceof BasicNackBody)
-            {
-                _rejected = true;
-                return true;
-            }
-            else
-            {
-                return false;
-            }
-        }
-
-        public boolean isRejected()
-        {
-            return _rejected;
-        }
-    }
 }
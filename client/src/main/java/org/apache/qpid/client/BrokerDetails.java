@@ -79,6 +79,7 @@ public class BrokerDetails implements Serializable
     public static final int DEFAULT_PORT = 5672;
     public static final String TCP = "tcp";
     public static final String SOCKET = "socket";
+    public static final String NIO = "nio";
     public static final String DEFAULT_TRANSPORT = BrokerDetails.TCP;
     public static final String URL_FORMAT_EXAMPLE =
             "<transport>://<hostname>[:<port Default=\"" + BrokerDetails.DEFAULT_PORT + "\">][?<option>='<value>'[,<option>='<value>']]";
@@ -124,7 +125,9 @@ public class BrokerDetails implements Serializable
             if (transport != null)
             {
                 //todo this list of valid transports should be enumerated somewhere
-                if (!(transport.equalsIgnoreCase(BrokerDetails.TCP) || transport.equalsIgnoreCase(BrokerDetails.SOCKET)))
+                if (!(transport.equalsIgnoreCase(BrokerDetails.TCP)
+                      || transport.equalsIgnoreCase(BrokerDetails.SOCKET)
+                      || transport.equalsIgnoreCase(BrokerDetails.NIO)))
                 {
                     if (transport.equalsIgnoreCase("localhost"))
                     {
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.client;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Accumulates the acknowledgements of an AMQP 0-9-1 channel so that they can be sent as a single cumulative
+ * (<tt>multiple=true</tt>) acknowledgement.
+ * <p>
+ * A cumulative acknowledgement settles every outstanding delivery on the channel up to its tag, so it may only be
+ * used for a run of delivery tags that have all been consumed, or otherwise settled, since the previous one.
+ * Consumed tags that extend that run are folded into it; any other tag, for example one consumed by a second
+ * consumer while an earlier delivery still waits in another consumer's queue, is acknowledged individually in the
+ * same batch, and the run extends over it once the earlier delivery has been consumed.  Rejected deliveries are
+ * settled already and so may be covered by a later cumulative acknowledgement.
+ */
+final class CoalescingAcknowledger
+{
+    interface AckSink
+    {
+        void acknowledge(long deliveryTag, boolean multiple, boolean flush);
+    }
+
+    /** Bounds the out of order tags remembered while an earlier delivery is outstanding */
+    static final int MAX_SETTLED_OUT_OF_ORDER = 8192;
+
+    private final AckSink _sink;
+    private int _batchSize;
+
+    /** Every delivery tag up to and including this one has been acknowledged or settled */
+    private long _acknowledgedThrough;
+    /** Every delivery tag up to and including this one has been consumed, rejected or acknowledged */
+    private long _settledThrough;
+    private int _consumedInRun;
+    private final NavigableSet<Long> _consumedOutOfOrder = new TreeSet<>();
+    /** Tags beyond the run that have been rejected or individually acknowledged */
+    private final NavigableSet<Long> _settledOutOfOrder = new TreeSet<>();
+
+    /**
+     * @param sink      writes the acknowledgements
+     * @param batchSize the number of consumed messages at which the pending acknowledgements are sent
+     */
+    CoalescingAcknowledger(final AckSink sink, final int batchSize)
+    {
+        _sink = sink;
+        _batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Changes the number of consumed messages at which the pending acknowledgements are sent, for example because the
+     * session's prefetch has been resized.
+     */
+    synchronized void setBatchSize(final int batchSize)
+    {
+        _batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Records that the message with the given delivery tag has been consumed, sending the pending acknowledgements if
+     * the batch is full.
+     */
+    synchronized void consumed(final long deliveryTag)
+    {
+        if (deliveryTag == _settledThrough + 1)
+        {
+            _settledThrough = deliveryTag;
+            _consumedInRun++;
+            extendRun();
+        }
+        else
+        {
+            _consumedOutOfOrder.add(deliveryTag);
+        }
+
+        if (getPendingCount() >= _batchSize)
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Records that the message with the given delivery tag has been rejected and so needs no acknowledgement.
+     */
+    synchronized void rejected(final long deliveryTag)
+    {
+        if (deliveryTag == _settledThrough + 1)
+        {
+            _settledThrough = deliveryTag;
+            extendRun();
+        }
+        else if (deliveryTag > _settledThrough)
+        {
+            settledOutOfOrder(deliveryTag);
+        }
+    }
+
+    private void settledOutOfOrder(final long deliveryTag)
+    {
+        _settledOutOfOrder.add(deliveryTag);
+        if (_settledOutOfOrder.size() > MAX_SETTLED_OUT_OF_ORDER)
+        {
+            // forgetting a settled tag only stops the run from extending past it
+            _settledOutOfOrder.pollLast();
+        }
+    }
+
+    private void extendRun()
+    {
+        while (true)
+        {
+            final Long next = _settledThrough + 1;
+            if (_consumedOutOfOrder.remove(next))
+            {
+                _consumedInRun++;
+            }
+            else if (!_settledOutOfOrder.remove(next))
+            {
+                break;
+            }
+            _settledThrough = next;
+        }
+    }
+
+    /**
+     * Sends any pending acknowledgements.
+     */
+    synchronized void flush()
+    {
+        final boolean sendRun = _consumedInRun > 0;
+        if (sendRun)
+        {
+            _sink.acknowledge(_settledThrough, true, _consumedOutOfOrder.isEmpty());
+        }
+        _acknowledgedThrough = _settledThrough;
+        _consumedInRun = 0;
+
+        final Iterator<Long> iterator = _consumedOutOfOrder.iterator();
+        while (iterator.hasNext())
+        {
+            final long deliveryTag = iterator.next();
+            iterator.remove();
+            _sink.acknowledge(deliveryTag, false, !iterator.hasNext());
+            if (deliveryTag > _settledThrough)
+            {
+                settledOutOfOrder(deliveryTag);
+            }
+        }
+    }
+
+    /**
+     * Discards any pending acknowledgements and treats every delivery tag up to and including the given one as
+     * settled, as is the case once the channel has been recovered or re-opened.
+     */
+    synchronized void reset(final long settledThrough)
+    {
+        _acknowledgedThrough = settledThrough;
+        _settledThrough = settledThrough;
+        _consumedInRun = 0;
+        _consumedOutOfOrder.clear();
+        _settledOutOfOrder.clear();
+    }
+
+    synchronized int getPendingCount()
+    {
+        return _consumedInRun + _consumedOutOfOrder.size();
+    }
+
+    synchronized long getAcknowledgedThrough()
+    {
+        return _acknowledgedThrough;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "CoalescingAcknowledger[acknowledgedThrough=" + _acknowledgedThrough
+               + ", settledThrough=" + _settledThrough
+               + ", pending=" + getPendingCount() + "]";
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.qpid.framing.AMQDataBlock;
+import org.apache.qpid.transport.SenderException;
+
+/**
+ * Coalesces the frames written by all the sessions of an AMQP 0-8..0-9-1 connection.
+ * <p>
+ * Writers queue their frames and the first of them to find the sender free writes out everything that is queued,
+ * including frames queued by other threads while it is writing, and flushes once per batch rather than once per
+ * frame.  The other writers wait until their frame has been written, and flushed if they asked for it, so that a
+ * failure to write a frame is reported to the thread that sent it.  A batch is flushed when it reaches the
+ * configured size, or when the queue is empty and the latency budget, if any, has passed without further frames
+ * arriving.
+ */
+final class CoalescingFrameWriter
+{
+    interface FrameSink
+    {
+        void writeFrame(AMQDataBlock frame);
+
+        void flush();
+    }
+
+    private final FrameSink _sink;
+    private final long _batchSize;
+    private final long _latencyNanos;
+
+    private final Queue<PendingFrame> _pendingFrames = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock _writeLock = new ReentrantLock();
+
+    // guarded by _writeLock
+    private final List<PendingFrame> _unflushedFrames = new ArrayList<>();
+
+    private volatile Thread _latencyWaiter;
+
+    private volatile long _flushCount;
+    private volatile long _flushedFrameCount;
+    private volatile int _maxFramesPerFlush;
+
+    CoalescingFrameWriter(FrameSink sink, long batchSize, long latencyMicros)
+    {
+        _sink = sink;
+        _batchSize = batchSize;
+        _latencyNanos = latencyMicros * 1000L;
+    }
+
+    void write(AMQDataBlock frame, boolean flush)
+    {
+        PendingFrame pending = new PendingFrame(frame, flush);
+        _pendingFrames.add(pending);
+
+        Thread latencyWaiter = _latencyWaiter;
+        if (latencyWaiter != null)
+        {
+            LockSupport.unpark(latencyWaiter);
+        }
+
+        // whoever held the lock while the frame was queued has either written it or left it for us
+        _writeLock.lock();
+        try
+        {
+            if (!pending.isDone())
+            {
+                writePendingFrames();
+            }
+        }
+        finally
+        {
+            _writeLock.unlock();
+        }
+
+        pending.checkResult();
+    }
+
+    /**
+     * Fails the frames queued but not yet written, so that they are not written to a connection other than the one
+     * they were sent on.
+     */
+    void discardPendingFrames(String reason)
+    {
+        _writeLock.lock();
+        try
+        {
+            failPendingFrames(new SenderException(reason));
+        }
+        finally
+        {
+            _writeLock.unlock();
+        }
+    }
+
+    private void writePendingFrames()
+    {
+        try
+        {
+            long batchBytes = 0;
+            long deadline = 0;
+            boolean flushRequested = false;
+
+            while (true)
+            {
+                PendingFrame pending = _pendingFrames.poll();
+                if (pending == null)
+                {
+                    long remaining = deadline - System.nanoTime();
+                    if (flushRequested && _latencyNanos > 0 && remaining > 0)
+                    {
+                        _latencyWaiter = Thread.currentThread();
+                        if (_pendingFrames.isEmpty())
+                        {
+                            LockSupport.parkNanos(this, remaining);
+                        }
+                        _latencyWaiter = null;
+                        continue;
+                    }
+                    break;
+                }
+
+                if (batchBytes == 0)
+                {
+                    deadline = System.nanoTime() + _latencyNanos;
+                }
+                _unflushedFrames.add(pending);
+                _sink.writeFrame(pending._frame);
+                batchBytes += pending._frame.getSize();
+                flushRequested |= pending._flush;
+
+                if (batchBytes >= _batchSize)
+                {
+                    flush();
+                    batchBytes = 0;
+                    flushRequested = false;
+                }
+            }
+
+            if (flushRequested)
+            {
+                flush();
+            }
+            else
+            {
+                // written without a flush being asked for; these will go out with the next flush
+                for (PendingFrame pending : _unflushedFrames)
+                {
+                    pending.completed(null);
+                }
+            }
+        }
+        catch (RuntimeException | Error e)
+        {
+            failPendingFrames(e);
+        }
+    }
+
+    private void failPendingFrames(Throwable cause)
+    {
+        for (PendingFrame pending : _unflushedFrames)
+        {
+            pending.completed(cause);
+        }
+        _unflushedFrames.clear();
+
+        PendingFrame pending;
+        while ((pending = _pendingFrames.poll()) != null)
+        {
+            pending.completed(cause);
+        }
+    }
+
+    private void flush()
+    {
+        _sink.flush();
+
+        int frames = _unflushedFrames.size();
+        for (PendingFrame pending : _unflushedFrames)
+        {
+            pending.completed(null);
+        }
+        _unflushedFrames.clear();
+        _flushCount++;
+        _flushedFrameCount += frames;
+        if (frames > _maxFramesPerFlush)
+        {
+            _maxFramesPerFlush = frames;
+        }
+    }
+
+    int getQueuedFrameCount()
+    {
+        return _pendingFrames.size();
+    }
+
+    long getFlushCount()
+    {
+        return _flushCount;
+    }
+
+    long getFlushedFrameCount()
+    {
+        return _flushedFrameCount;
+    }
+
+    int getMaxFramesPerFlush()
+    {
+        return _maxFramesPerFlush;
+    }
+
+    @Override
+    public String toString()
+    {
+        long flushCount = _flushCount;
+        return "CoalescingFrameWriter[flushes=" + flushCount
+               + ", framesPerFlush=" + (flushCount == 0 ? 0 : _flushedFrameCount / (double) flushCount)
+               + ", maxFramesPerFlush=" + _maxFramesPerFlush + "]";
+    }
+
+    private static final class PendingFrame
+    {
+        private final AMQDataBlock _frame;
+        private final boolean _flush;
+
+        // written and read under the writer's lock
+        private boolean _done;
+        private Throwable _failure;
+
+        private PendingFrame(AMQDataBlock frame, boolean flush)
+        {
+            _frame = frame;
+            _flush = flush;
+        }
+
+        private boolean isDone()
+        {
+            return _done;
+        }
+
+        private void completed(Throwable failure)
+        {
+            if (!_done)
+            {
+                _done = true;
+                _failure = failure;
+            }
+        }
+
+        private void checkResult()
+        {
+            if (_failure instanceof SenderException)
+            {
+                ((SenderException) _failure).rethrow();
+            }
+            else if (_failure instanceof RuntimeException)
+            {
+                throw (RuntimeException) _failure;
+            }
+            else if (_failure instanceof Error)
+            {
+                throw (Error) _failure;
+            }
+        }
+    }
+}
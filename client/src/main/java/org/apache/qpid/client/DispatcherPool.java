@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.client;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.configuration.ClientProperties;
+import org.apache.qpid.thread.Threading;
+
+/**
+ * The JVM-wide pool of threads that dispatches the messages of all sessions when
+ * {@link ClientProperties#QPID_DISPATCHER_POOL_SIZE} is set.  Each session submits its dispatcher as a task whenever
+ * it has something to dispatch, so the number of threads stays the same however many sessions there are.  Idle
+ * threads exit after a short while so that the pool does not keep the JVM running.
+ * <p>
+ * Whether a session uses the pool is decided when the session is created, and the size of the pool when it is first
+ * used.
+ */
+final class DispatcherPool
+{
+    private static final long KEEP_ALIVE_MS = 1000L;
+
+    private final ThreadPoolExecutor _executor;
+
+    private static class Holder
+    {
+        private static final DispatcherPool INSTANCE = new DispatcherPool(Math.max(getConfiguredSize(), 1));
+    }
+
+    private DispatcherPool(int size)
+    {
+        final boolean daemon = Boolean.getBoolean(ClientProperties.DAEMON_DISPATCHER);
+        final AtomicInteger threadNumber = new AtomicInteger();
+        _executor = new ThreadPoolExecutor(size, size, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                                           new LinkedBlockingQueue<Runnable>(),
+                                           new ThreadFactory()
+                                           {
+                                               @Override
+                                               public Thread newThread(final Runnable r)
+                                               {
+                                                   final Thread thread;
+                                                   try
+                                                   {
+                                                       thread = Threading.getThreadFactory().createThread(r);
+                                                   }
+                                                   catch (Exception e)
+                                                   {
+                                                       throw new Error("Error creating Dispatcher thread", e);
+                                                   }
+                                                   thread.setName("Dispatcher-Pool-" + threadNumber.getAndIncrement());
+                                                   Threading.setDaemon(thread, daemon);
+                                                   return thread;
+                                               }
+                                           });
+        _executor.allowCoreThreadTimeOut(true);
+    }
+
+    static boolean isEnabled()
+    {
+        return getConfiguredSize() > 0;
+    }
+
+    private static int getConfiguredSize()
+    {
+        return Integer.getInteger(ClientProperties.QPID_DISPATCHER_POOL_SIZE,
+                                  ClientProperties.DEFAULT_DISPATCHER_POOL_SIZE);
+    }
+
+    static DispatcherPool getInstance()
+    {
+        return Holder.INSTANCE;
+    }
+
+    void execute(Runnable task)
+    {
+        _executor.execute(task);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.client.message.AbstractJMSMessage;
+import org.apache.qpid.configuration.ClientProperties;
+import org.apache.qpid.thread.Threading;
+
+/**
+ * The JVM-wide pool of threads that builds the JMS messages of all sessions, when
+ * {@link ClientProperties#QPID_PREPROCESSOR_POOL_SIZE} is set.  A session hands each received message to the pool
+ * as it puts the message on its dispatch queue, so that uncompressing, decrypting and decoding successive messages
+ * happens in parallel rather than on the dispatcher.  The dispatcher still takes the messages in the order they were
+ * received, waiting for a message to be built if it gets there first.
+ * <p>
+ * Building a message on the pool must not wait for the broker, as one stalled connection would then hold up the
+ * messages of every other, so a consumer leaves to its dispatcher any message that needs a broker round trip to be
+ * built.  The dispatcher only waits a while for a message still queued behind the builds of other sessions before
+ * building it itself.
+ * <p>
+ * Whether a session uses the pool is decided when the session is created, and the size of the pool when it is first
+ * used.
+ */
+final class MessagePreprocessor
+{
+    /** How long the dispatcher waits for a message to be built by the pool before building it itself */
+    static final long PREPARED_MESSAGE_WAIT_MS = 1000L;
+
+    private static final long KEEP_ALIVE_MS = 1000L;
+
+    private final ThreadPoolExecutor _executor;
+
+    private static class Holder
+    {
+        private static final MessagePreprocessor INSTANCE = new MessagePreprocessor(Math.max(getConfiguredSize(), 1));
+    }
+
+    private MessagePreprocessor(int size)
+    {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        _executor = new ThreadPoolExecutor(size, size, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                                           new LinkedBlockingQueue<Runnable>(),
+                                           new ThreadFactory()
+                                           {
+                                               @Override
+                                               public Thread newThread(final Runnable r)
+                                               {
+                                                   final Thread thread;
+                                                   try
+                                                   {
+                                                       thread = Threading.getThreadFactory().createThread(r);
+                                                   }
+                                                   catch (Exception e)
+                                                   {
+                                                       throw new Error("Error creating Preprocessor thread", e);
+                                                   }
+                                                   thread.setName("Message-Preprocessor-" + threadNumber.getAndIncrement());
+                                                   Threading.setDaemon(thread, true);
+                                                   return thread;
+                                               }
+                                           });
+        _executor.allowCoreThreadTimeOut(true);
+    }
+
+    static boolean isEnabled()
+    {
+        return getConfiguredSize() > 0;
+    }
+
+    private static int getConfiguredSize()
+    {
+        return Integer.getInteger(ClientProperties.QPID_PREPROCESSOR_POOL_SIZE,
+                                  ClientProperties.DEFAULT_PREPROCESSOR_POOL_SIZE);
+    }
+
+    static MessagePreprocessor getInstance()
+    {
+        return Holder.INSTANCE;
+    }
+
+    Future<AbstractJMSMessage> submit(Callable<AbstractJMSMessage> task)
+    {
+        return _executor.submit(task);
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.client.message.AbstractJMSMessage;
+import org.apache.qpid.thread.Threading;
+
+/**
+ * Runs the message listener of a consumer on a number of worker threads, partitioning the messages by the value of
+ * a message property so that messages with the same key are handed to the listener one at a time, in the order they
+ * were delivered.  Messages without the property are spread over the workers.
+ * <p>
+ * The number of messages handed to each worker and not yet processed is bounded, the dispatcher waiting once the
+ * bound of the worker for the next message is reached.  Messages are acknowledged once they, and every message
+ * delivered to the consumer before them, have been processed, so that the acknowledgements cover contiguous runs of
+ * deliveries.  A message whose listener call throws, that arrives after the workers have been stopped, or for which
+ * the dispatcher is still waiting when the consumer or session is closed, is released back to the broker instead.
+ */
+final class PartitionedListenerAdapter implements MessageListener
+{
+    private static final Logger _logger = LoggerFactory.getLogger(PartitionedListenerAdapter.class);
+
+    /** The number of messages that may wait for each worker */
+    static final int IN_FLIGHT_PER_WORKER = 16;
+
+    /** How often the dispatcher, while waiting for a worker, checks whether the consumer is being closed */
+    private static final long CLOSE_CHECK_INTERVAL_MS = 100L;
+
+    private static final AtomicInteger INSTANCE_NUMBER = new AtomicInteger();
+
+    private final BasicMessageConsumer<?> _consumer;
+    private final MessageListener _listener;
+    private final String _keyProperty;
+    private final ExecutorService[] _workers;
+    private final Semaphore[] _inFlight;
+
+    /** The deliveries not yet acknowledged, in delivery order, guarded by itself */
+    private final ArrayDeque<Delivery> _outstanding = new ArrayDeque<Delivery>();
+
+    private final ThreadLocal<Boolean> _isWorker = new ThreadLocal<Boolean>();
+
+    private int _nextWorker;
+
+    PartitionedListenerAdapter(final BasicMessageConsumer<?> consumer, final MessageListener listener,
+                               final String keyProperty, final int concurrency)
+    {
+        _consumer = consumer;
+        _listener = listener;
+        _keyProperty = keyProperty;
+        _inFlight = new Semaphore[concurrency];
+        _workers = new ExecutorService[concurrency];
+
+        final int instance = INSTANCE_NUMBER.getAndIncrement();
+        for (int i = 0; i < concurrency; i++)
+        {
+            final String name = "Partitioned-Listener-" + instance + "-" + i;
+            _inFlight[i] = new Semaphore(IN_FLIGHT_PER_WORKER);
+            _workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                 new ThreadFactory()
+                                                 {
+                                                     @Override
+                                                     public Thread newThread(final Runnable r)
+                                                     {
+                                                         final Thread thread;
+                                                         try
+                                                         {
+                                                             thread = Threading.getThreadFactory().createThread(r);
+                                                         }
+                                                         catch (Exception e)
+                                                         {
+                                                             throw new Error("Error creating listener thread", e);
+                                                         }
+                                                         thread.setName(name);
+                                                         Threading.setDaemon(thread, true);
+                                                         return thread;
+                                                     }
+                                                 });
+        }
+    }
+
+    MessageListener getListener()
+    {
+        return _listener;
+    }
+
+    /**
+     * Hands a message to the worker for its key, waiting if too many messages are waiting for that worker.  Called by
+     * the dispatcher.
+     */
+    void deliver(final AbstractJMSMessage message) throws InterruptedException
+    {
+        final int worker = selectWorker(message);
+
+        // the dispatcher holds the message delivery lock, which a listener closing its consumer or session waits for
+        while (!_inFlight[worker].tryAcquire(CLOSE_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS))
+        {
+            if (_consumer.isClosed() || _consumer.getSession().isClosing())
+            {
+                _logger.debug("Consumer closing, releasing message {}", message.getDeliveryTag());
+                release(message);
+                return;
+            }
+        }
+
+        _consumer.preDeliver(message);
+        final Delivery delivery = new Delivery(message, worker);
+        synchronized (_outstanding)
+        {
+            _outstanding.add(delivery);
+        }
+        try
+        {
+            _workers[worker].execute(delivery);
+        }
+        catch (RejectedExecutionException e)
+        {
+            _logger.debug("Listener workers stopped, releasing message {}", message.getDeliveryTag());
+            synchronized (_outstanding)
+            {
+                _outstanding.removeLastOccurrence(delivery);
+                if (_outstanding.isEmpty())
+                {
+                    _outstanding.notifyAll();
+                }
+            }
+            _inFlight[worker].release();
+            release(message);
+        }
+    }
+
+    @Override
+    public void onMessage(final Message message)
+    {
+        _listener.onMessage(message);
+    }
+
+    /**
+     * Stops the workers, waiting for the messages handed to them to be processed unless called by a worker.
+     */
+    void close(final long timeoutMillis)
+    {
+        for (ExecutorService worker : _workers)
+        {
+            worker.shutdown();
+        }
+        if (_isWorker.get() == null)
+        {
+            try
+            {
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                for (ExecutorService worker : _workers)
+                {
+                    worker.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits for the messages handed to the workers to be processed, unless called by a worker.  Called once the
+     * dispatcher has stopped so that the session is not reported stopped while the listener is still running.
+     */
+    void awaitIdle(final long timeoutMillis)
+    {
+        if (_isWorker.get() != null)
+        {
+            return;
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (_outstanding)
+        {
+            try
+            {
+                long remaining;
+                while (!_outstanding.isEmpty()
+                       && (remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0)
+                {
+                    _outstanding.wait(remaining);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            if (!_outstanding.isEmpty())
+            {
+                _logger.warn("Message listener still processing {} message(s) after {}ms",
+                             _outstanding.size(), timeoutMillis);
+            }
+        }
+    }
+
+    private void release(final AbstractJMSMessage message)
+    {
+        final AMQSession<?, ?> session = _consumer.getSession();
+        session.getUnacknowledgedMessageTags().remove(message.getDeliveryTag());
+        session.rejectMessage(message, true);
+    }
+
+    private int selectWorker(final AbstractJMSMessage message)
+    {
+        Object key = null;
+        try
+        {
+            key = message.getObjectProperty(_keyProperty);
+        }
+        catch (JMSException e)
+        {
+            _logger.debug("Could not read partitioning key of message {}", message.getDeliveryTag(), e);
+        }
+
+        if (key == null)
+        {
+            _nextWorker = (_nextWorker + 1) % _workers.length;
+            return _nextWorker;
+        }
+        return (key.hashCode() & Integer.MAX_VALUE) % _workers.length;
+    }
+
+    private void completed(final Delivery delivery)
+    {
+        synchronized (_outstanding)
+        {
+            delivery._completed = true;
+            if (_outstanding.peekFirst() != delivery)
+            {
+                return;
+            }
+
+            final List<AbstractJMSMessage> processed = new ArrayList<AbstractJMSMessage>();
+            while (!_outstanding.isEmpty() && _outstanding.peekFirst()._completed)
+            {
+                final Delivery first = _outstanding.poll();
+                if (!first._failed)
+                {
+                    processed.add(first._message);
+                }
+            }
+
+            // acknowledged while holding the lock so that the runs are acknowledged in delivery order
+            try
+            {
+                if (!processed.isEmpty())
+                {
+                    _consumer.postDeliver(Collections.unmodifiableList(processed));
+                }
+            }
+            finally
+            {
+                if (_outstanding.isEmpty())
+                {
+                    _outstanding.notifyAll();
+                }
+            }
+        }
+    }
+
+    private final class Delivery implements Runnable
+    {
+        private final AbstractJMSMessage _message;
+        private final int _worker;
+        private boolean _completed;
+        private boolean _failed;
+
+        Delivery(final AbstractJMSMessage message, final int worker)
+        {
+            _message = message;
+            _worker = worker;
+        }
+
+        @Override
+        public void run()
+        {
+            _isWorker.set(Boolean.TRUE);
+            try
+            {
+                _listener.onMessage(_message);
+            }
+            catch (RuntimeException e)
+            {
+                _logger.error("Message listener threw an exception, releasing message " + _message.getDeliveryTag(), e);
+                _failed = true;
+                release(_message);
+            }
+            finally
+            {
+                try
+                {
+                    completed(this);
+                }
+                finally
+                {
+                    _inFlight[_worker].release();
+                }
+            }
+        }
+    }
+}
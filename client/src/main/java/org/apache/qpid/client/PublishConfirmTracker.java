@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.qpid.AMQTimeoutException;
+import org.apache.qpid.QpidException;
+import org.apache.qpid.client.failover.FailoverException;
+import org.apache.qpid.framing.AMQDataBlock;
+import org.apache.qpid.framing.AMQMethodBody;
+import org.apache.qpid.framing.BasicAckBody;
+import org.apache.qpid.framing.BasicNackBody;
+import org.apache.qpid.protocol.AMQMethodEvent;
+import org.apache.qpid.protocol.AMQMethodListener;
+
+/**
+ * Tracks the messages published on a 0-9-1 channel in confirm mode that the broker has yet to confirm.
+ * <p>
+ * Each publish is given the next channel sequence number, and {@link BasicAckBody} or {@link BasicNackBody}
+ * confirms, including those with <tt>multiple</tt> set, are matched against the outstanding sequence numbers.
+ * Publishers call {@link #awaitConfirms(int)} to bound the number of unconfirmed messages, so that with a window of
+ * zero every send waits for its own confirm while a larger window keeps several publishes in flight.  A rejection
+ * or a connection failure affecting an outstanding message is reported to the next caller of
+ * {@link #awaitConfirms(int)}.
+ * <p>
+ * A publish made by an asynchronous send carries the send's {@link SendCompletionTracker.PendingSend}, which is
+ * completed or failed by the confirm instead, so that its rejection is reported to its completion listener rather than
+ * to the next caller of {@link #awaitConfirms(int)}.
+ */
+class PublishConfirmTracker implements AMQMethodListener
+{
+    private final int _channelId;
+    private final long _timeout;
+    private final Object _publishLock = new Object();
+    private final Lock _lock = new ReentrantLock();
+    private final Condition _confirmed = _lock.newCondition();
+    /** The outstanding sequence numbers, mapped to the pending asynchronous send if there is one */
+    private final NavigableMap<Long, SendCompletionTracker.PendingSend> _outstanding = new TreeMap<>();
+
+    private AMQProtocolHandler _registeredHandler;
+    private long _nextSequence = 1L;
+    private boolean _rejected;
+    private Exception _failure;
+
+    PublishConfirmTracker(final int channelId, final long timeout)
+    {
+        _channelId = channelId;
+        _timeout = timeout;
+    }
+
+    /**
+     * Assigns the next sequence number to the given publish and writes it.  The sequence number is allocated and the
+     * frame written under the same lock so that the numbering matches the order in which the broker sees the
+     * publishes.
+     */
+    void publish(final AMQProtocolHandler handler, final AMQDataBlock frame) throws QpidException, FailoverException
+    {
+        publish(handler, frame, null);
+    }
+
+    void publish(final AMQProtocolHandler handler,
+                 final AMQDataBlock frame,
+                 final SendCompletionTracker.PendingSend pendingSend) throws QpidException, FailoverException
+    {
+        synchronized (_publishLock)
+        {
+            if (_registeredHandler == null)
+            {
+                handler.addFrameListener(this);
+                _registeredHandler = handler;
+            }
+            recordPublish(pendingSend);
+            handler.writeFrame(frame);
+        }
+    }
+
+    /**
+     * Assigns consecutive sequence numbers to the given number of publishes written together as a single frame.
+     */
+    void publishBatch(final AMQProtocolHandler handler, final AMQDataBlock frame, final int publishCount)
+            throws QpidException, FailoverException
+    {
+        synchronized (_publishLock)
+        {
+            if (_registeredHandler == null)
+            {
+                handler.addFrameListener(this);
+                _registeredHandler = handler;
+            }
+            for (int i = 0; i < publishCount; i++)
+            {
+                recordPublish(null);
+            }
+            handler.writeFrame(frame);
+        }
+    }
+
+    long recordPublish()
+    {
+        return recordPublish(null);
+    }
+
+    long recordPublish(final SendCompletionTracker.PendingSend pendingSend)
+    {
+        _lock.lock();
+        try
+        {
+            final long sequence = _nextSequence++;
+            _outstanding.put(sequence, pendingSend);
+            return sequence;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until no more than the given number of publishes are awaiting confirmation.  The wait times out if no
+     * confirm arrives within the timeout.
+     *
+     * @param maxOutstanding the number of unconfirmed publishes that may remain outstanding
+     *
+     * @throws QpidException if a message was rejected, the wait timed out or the connection failed
+     * @throws FailoverException if fail-over occurred while publishes were outstanding
+     */
+    void awaitConfirms(final int maxOutstanding) throws QpidException, FailoverException
+    {
+        _lock.lock();
+        try
+        {
+            int outstanding = _outstanding.size();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(_timeout);
+            while (_failure == null && outstanding > maxOutstanding)
+            {
+                if (remaining <= 0L)
+                {
+                    throw new AMQTimeoutException(String.format(
+                            "%d published message(s) were not confirmed by the server within the time-out period "
+                            + "of %d ms.", outstanding, _timeout), null);
+                }
+
+                try
+                {
+                    remaining = _confirmed.awaitNanos(remaining);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new QpidException("Interrupted whilst waiting for publish confirms", e);
+                }
+
+                if (_outstanding.size() < outstanding)
+                {
+                    outstanding = _outstanding.size();
+                    remaining = TimeUnit.MILLISECONDS.toNanos(_timeout);
+                }
+            }
+
+            if (_failure != null)
+            {
+                final Exception failure = _failure;
+                _failure = null;
+                if (failure instanceof FailoverException)
+                {
+                    throw (FailoverException) failure;
+                }
+                else if (failure instanceof QpidException)
+                {
+                    throw ((QpidException) failure).cloneForCurrentThread();
+                }
+                else
+                {
+                    throw new QpidException("Woken up due to " + failure.getClass(), failure);
+                }
+            }
+
+            if (_rejected)
+            {
+                _rejected = false;
+                throw new QpidException("The message was not accepted by the server "
+                                        + "(e.g. because the address was no longer valid)", null);
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    int getOutstandingCount()
+    {
+        _lock.lock();
+        try
+        {
+            return _outstanding.size();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public <B extends AMQMethodBody> boolean methodReceived(final AMQMethodEvent<B> evt)
+    {
+        if (evt.getChannelId() != _channelId)
+        {
+            return false;
+        }
+
+        final B method = evt.getMethod();
+        if (method instanceof BasicAckBody)
+        {
+            final BasicAckBody ack = (BasicAckBody) method;
+            confirmed(ack.getDeliveryTag(), ack.getMultiple(), false);
+            return true;
+        }
+        else if (method instanceof BasicNackBody)
+        {
+            final BasicNackBody nack = (BasicNackBody) method;
+            confirmed(nack.getDeliveryTag(), nack.getMultiple(), true);
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    private void confirmed(final long sequence, final boolean multiple, final boolean rejected)
+    {
+        final List<SendCompletionTracker.PendingSend> pendingSends = new ArrayList<>();
+        _lock.lock();
+        try
+        {
+            boolean matched = false;
+            if (multiple)
+            {
+                final Map<Long, SendCompletionTracker.PendingSend> confirmed = _outstanding.headMap(sequence, true);
+                matched = takePendingSends(confirmed.values(), pendingSends);
+                confirmed.clear();
+            }
+            else if (_outstanding.containsKey(sequence))
+            {
+                final SendCompletionTracker.PendingSend pendingSend = _outstanding.remove(sequence);
+                if (pendingSend == null)
+                {
+                    matched = true;
+                }
+                else
+                {
+                    pendingSends.add(pendingSend);
+                }
+            }
+            _rejected |= rejected && matched;
+            _confirmed.signalAll();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+
+        for (SendCompletionTracker.PendingSend pendingSend : pendingSends)
+        {
+            if (rejected)
+            {
+                pendingSend.failed(new QpidException("The message was not accepted by the server "
+                                                     + "(e.g. because the address was no longer valid)", null));
+            }
+            else
+            {
+                pendingSend.completed();
+            }
+        }
+    }
+
+    /**
+     * Moves the pending asynchronous sends among the given values to the list, returning whether there were any
+     * synchronous publishes among them.
+     */
+    private boolean takePendingSends(final Collection<SendCompletionTracker.PendingSend> values,
+                                     final List<SendCompletionTracker.PendingSend> pendingSends)
+    {
+        boolean synchronousPublishes = false;
+        for (SendCompletionTracker.PendingSend pendingSend : values)
+        {
+            if (pendingSend == null)
+            {
+                synchronousPublishes = true;
+            }
+            else
+            {
+                pendingSends.add(pendingSend);
+            }
+        }
+        return synchronousPublishes;
+    }
+
+    /**
+     * Fails any outstanding publishes.  The channel's sequence numbering starts again once it has been re-opened, so
+     * the numbering is reset too.
+     */
+    @Override
+    public void error(final Exception e)
+    {
+        final List<SendCompletionTracker.PendingSend> pendingSends = new ArrayList<>();
+        _lock.lock();
+        try
+        {
+            if (takePendingSends(_outstanding.values(), pendingSends))
+            {
+                _failure = e;
+            }
+            _outstanding.clear();
+            _nextSequence = 1L;
+            _confirmed.signalAll();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+
+        for (SendCompletionTracker.PendingSend pendingSend : pendingSends)
+        {
+            pendingSend.failed(e);
+        }
+    }
+
+    void close()
+    {
+        synchronized (_publishLock)
+        {
+            if (_registeredHandler != null)
+            {
+                _registeredHandler.removeFrameListener(this);
+                _registeredHandler = null;
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PublishConfirmTracker[channelId=" + _channelId + ", outstanding=" + getOutstandingCount() + "]";
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.jms.Message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.jms.CompletionListener;
+
+/**
+ * Keeps the asynchronous sends of a session that await completion by the broker, in the order in which they were
+ * sent, and notifies their completion listeners on the connection's task thread.  A send the broker completes ahead
+ * of an earlier one is held back until the earlier one has completed too, so that the listeners are always notified
+ * in send order.
+ */
+class SendCompletionTracker
+{
+    private static final Logger _logger = LoggerFactory.getLogger(SendCompletionTracker.class);
+
+    private final AMQConnection _connection;
+    private final Deque<PendingSend> _pending = new ArrayDeque<>();
+
+    SendCompletionTracker(final AMQConnection connection)
+    {
+        _connection = connection;
+    }
+
+    PendingSend register(final Message message, final CompletionListener listener)
+    {
+        final PendingSend send = new PendingSend(message, listener);
+        synchronized (_pending)
+        {
+            _pending.add(send);
+        }
+        return send;
+    }
+
+    int getOutstandingCount()
+    {
+        synchronized (_pending)
+        {
+            return _pending.size();
+        }
+    }
+
+    /**
+     * Fails every send still awaiting completion, for instance because the session has been closed.
+     */
+    void failOutstanding(final Exception cause)
+    {
+        synchronized (_pending)
+        {
+            for (PendingSend send : _pending)
+            {
+                if (!send._done)
+                {
+                    send._done = true;
+                    send._failure = cause;
+                }
+                send._sent = true;
+            }
+            notifyReady();
+        }
+    }
+
+    private void notifyReady()
+    {
+        final List<PendingSend> ready = new ArrayList<>();
+        synchronized (_pending)
+        {
+            PendingSend head;
+            while ((head = _pending.peek()) != null && head._sent && head._done)
+            {
+                ready.add(_pending.poll());
+            }
+
+            // submitted whilst holding the lock so that the single task thread sees the batches in send order
+            if (!ready.isEmpty())
+            {
+                _connection.performConnectionTask(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for (PendingSend send : ready)
+                        {
+                            send.notifyListener();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * A send awaiting completion.  Its listener is notified only once the sending thread has finished with the
+     * message, so that a completion arriving whilst the send is still returning does not race with it.
+     */
+    final class PendingSend
+    {
+        private final Message _message;
+        private final CompletionListener _listener;
+        private boolean _sent;
+        private boolean _done;
+        private Exception _failure;
+
+        private PendingSend(final Message message, final CompletionListener listener)
+        {
+            _message = message;
+            _listener = listener;
+        }
+
+        /**
+         * Called by the sending thread once the send has returned.
+         */
+        void sent()
+        {
+            synchronized (_pending)
+            {
+                _sent = true;
+                notifyReady();
+            }
+        }
+
+        /**
+         * Called by the sending thread if the send failed, in which case the failure is reported to the caller of
+         * send rather than to the listener.
+         */
+        void abandon()
+        {
+            synchronized (_pending)
+            {
+                _done = true;
+                if (_pending.remove(this))
+                {
+                    notifyReady();
+                }
+            }
+        }
+
+        void completed()
+        {
+            complete(null);
+        }
+
+        void failed(final Exception cause)
+        {
+            complete(cause);
+        }
+
+        private void complete(final Exception cause)
+        {
+            synchronized (_pending)
+            {
+                if (!_done)
+                {
+                    _done = true;
+                    _failure = cause;
+                    notifyReady();
+                }
+            }
+        }
+
+        private void notifyListener()
+        {
+            try
+            {
+                if (_failure == null)
+                {
+                    _listener.onCompletion(_message);
+                }
+                else
+                {
+                    _listener.onException(_message, _failure);
+                }
+            }
+            catch (RuntimeException e)
+            {
+                _logger.warn("Completion listener " + _listener + " threw an exception", e);
+            }
+        }
+    }
+}
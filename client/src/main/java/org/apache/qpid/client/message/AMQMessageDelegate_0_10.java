@@ -124,9 +124,9 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
         else
         {
             String subject = null;
-            if (isStrictJMS && messageProps != null && messageProps.getApplicationHeaders() != null)
+            if (isStrictJMS && messageProps != null)
             {
-                subject = (String)messageProps.getApplicationHeaders().get(QpidMessageProperties.QPID_SUBJECT);
+                subject = (String)messageProps.getApplicationHeader(QpidMessageProperties.QPID_SUBJECT);
                 if (subject != null)
                 {
                     messageProps.getApplicationHeaders().remove(QpidMessageProperties.QPID_SUBJECT);
@@ -137,7 +137,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
                     _deliveryProps.getRoutingKey(), subject, false, AMQDestination.UNKNOWN_TYPE);
         }
 
-        if(messageProps != null && messageProps.getApplicationHeaders() != null)
+        if(messageProps != null && messageProps.hasApplicationHeader(QpidMessageProperties.QPID_NOT_VALID_BEFORE))
         {
             messageProps.getApplicationHeaders().remove(QpidMessageProperties.QPID_NOT_VALID_BEFORE);
         }
@@ -175,6 +175,30 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
         }
     }
     
+    /**
+     * Whether the types of the exchanges named in the message headers are already known, so that
+     * {@link #updateExchangeTypeMapping(Header, org.apache.qpid.transport.Session)} need not query the broker.
+     *
+     * @param header The message headers, from which the exchange names can be extracted
+     * @return true if no ExchangeQuery is needed for the message
+     */
+    public static boolean isExchangeTypeMappingKnown(Header header)
+    {
+        DeliveryProperties deliveryProps = header.getDeliveryProperties();
+        if (deliveryProps != null && !isExchangeKnown(deliveryProps.getExchange()))
+        {
+            return false;
+        }
+
+        MessageProperties msgProps = header.getMessageProperties();
+        return msgProps == null || msgProps.getReplyTo() == null || isExchangeKnown(msgProps.getReplyTo().getExchange());
+    }
+
+    private static boolean isExchangeKnown(String exchange)
+    {
+        return exchange == null || exchangeMapContains(exchange);
+    }
+
     private static void checkAndUpdateExchange(String exchange, org.apache.qpid.transport.Session session)
     {
         if (exchange != null && !exchangeMapContains(exchange))
@@ -435,7 +459,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
 
     public String getJMSType() throws JMSException
     {
-        if(getApplicationHeaders().containsKey(JMS_TYPE))
+        if(_messageProps.hasApplicationHeader(JMS_TYPE))
         {
             return getStringProperty(JMS_TYPE);
         }
@@ -487,14 +511,14 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
 
     public boolean propertyExists(String propertyName) throws JMSException
     {
-        return getApplicationHeaders().containsKey(propertyName);
+        return _messageProps.hasApplicationHeader(propertyName);
     }
 
     public boolean getBooleanProperty(String propertyName) throws JMSException
     {
         checkPropertyName(propertyName);
 
-        Object o = getApplicationHeaders().get(propertyName);
+        Object o = _messageProps.getApplicationHeader(propertyName);
 
         if(o instanceof Boolean)
         {
@@ -504,7 +528,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
         {
             return Boolean.valueOf((String) o).booleanValue();
         }
-        else if(getApplicationHeaders().containsKey(propertyName))
+        else if(_messageProps.hasApplicationHeader(propertyName))
         {
             throw new MessageFormatException("getBooleanProperty(\""+propertyName+"\") failed as value is not boolean: " + o);
         }
@@ -518,9 +542,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
     {
         checkPropertyName(propertyName);
 
-        Map<String, Object> propertyMap = getApplicationHeaders();
-
-        Object o = propertyMap.get(propertyName);
+        Object o = _messageProps.getApplicationHeader(propertyName);
 
         if(o instanceof Byte)
         {
@@ -530,7 +552,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
         {
             return Byte.valueOf((String) o).byteValue();
         }
-        else if(getApplicationHeaders().containsKey(propertyName))
+        else if(_messageProps.hasApplicationHeader(propertyName))
         {
             throw new MessageFormatException("getByteProperty(\""+propertyName+"\") failed as value is not a byte: " + o);
         }
@@ -544,9 +566,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
     {
         checkPropertyName(propertyName);
 
-        Map<String, Object> propertyMap = getApplicationHeaders();
-
-        Object o = propertyMap.get(propertyName);
+        Object o = _messageProps.getApplicationHeader(propertyName);
 
         if(o instanceof Short)
         {
@@ -575,9 +595,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
     {
         checkPropertyName(propertyName);
 
-        Map<String, Object> propertyMap = getApplicationHeaders();
-
-        Object o = propertyMap.get(propertyName);
+        Object o = _messageProps.getApplicationHeader(propertyName);
 
         if(o instanceof Integer)
         {
@@ -605,9 +623,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
     {
         checkPropertyName(propertyName);
 
-        Map<String, Object> propertyMap = getApplicationHeaders();
-
-        Object o = propertyMap.get(propertyName);
+        Object o = _messageProps.getApplicationHeader(propertyName);
 
         if(o instanceof Long)
         {
@@ -634,9 +650,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
     public float getFloatProperty(String propertyName) throws JMSException
     {
         checkPropertyName(propertyName);
-        Map<String, Object> propertyMap = getApplicationHeaders();
-
-        Object o = propertyMap.get(propertyName);
+        Object o = _messageProps.getApplicationHeader(propertyName);
 
         if(o instanceof Float)
         {
@@ -646,7 +660,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
         {
             return Float.valueOf((String) o).floatValue();
         }
-        else if(getApplicationHeaders().containsKey(propertyName))
+        else if(_messageProps.hasApplicationHeader(propertyName))
         {
             throw new MessageFormatException("getFloatProperty(\""+propertyName+"\") failed as value is not a float: " + o);
         }
@@ -661,9 +675,7 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
     {
         checkPropertyName(propertyName);
 
-        Map<String, Object> propertyMap = getApplicationHeaders();
-
-        Object o = propertyMap.get(propertyName);
+        Object o = _messageProps.getApplicationHeader(propertyName);
 
         if(o instanceof Double)
         {
@@ -706,14 +718,12 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
         }
         else if (isStrictJMS && QpidMessageProperties.QPID_SUBJECT.equals(propertyName))
         {
-            return (String)getApplicationHeaders().get(QpidMessageProperties.QPID_SUBJECT_JMS_PROPERTY);
+            return (String)_messageProps.getApplicationHeader(QpidMessageProperties.QPID_SUBJECT_JMS_PROPERTY);
         }
         else
         {
             checkPropertyName(propertyName);
-            Map<String, Object> propertyMap = getApplicationHeaders();
-
-            Object o = propertyMap.get(propertyName);
+            Object o = _messageProps.getApplicationHeader(propertyName);
 
             if(o instanceof String)
             {
@@ -738,9 +748,8 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
     public Object getObjectProperty(String propertyName) throws JMSException
     {
         checkPropertyName(propertyName);
-        Map<String, Object> propertyMap = getApplicationHeaders();
 
-        return propertyMap.get(propertyName);
+        return _messageProps.getApplicationHeader(propertyName);
 
     }
 
@@ -867,10 +876,9 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
 
     public void removeProperty(String propertyName) throws JMSException
     {
-        Map<String, Object> headers = _messageProps.getApplicationHeaders();
-        if(headers != null)
+        if(_messageProps.hasApplicationHeader(propertyName))
         {
-            headers.remove(propertyName);
+            _messageProps.getApplicationHeaders().remove(propertyName);
         }
     }
 
@@ -1004,12 +1012,12 @@ public class AMQMessageDelegate_0_10 extends AbstractAMQMessageDelegate
     @Override
     Object getProperty(final String name)
     {
-        return _messageProps.getApplicationHeaders().get(name);
+        return _messageProps.getApplicationHeader(name);
     }
 
     @Override
     boolean hasProperty(final String name)
     {
-        return _messageProps.getApplicationHeaders().containsKey(name);
+        return _messageProps.hasApplicationHeader(name);
     }
 }
@@ -20,9 +20,6 @@
  */
 package org.apache.qpid.client.message;
 
-import java.io.EOFException;
-import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
@@ -40,7 +37,9 @@ import org.apache.qpid.framing.ContentBody;
 import org.apache.qpid.framing.ContentHeaderBody;
 import org.apache.qpid.transport.DeliveryProperties;
 import org.apache.qpid.transport.MessageProperties;
-import org.apache.qpid.util.GZIPUtils;
+import org.apache.qpid.util.CompositeByteBuffer;
+import org.apache.qpid.util.CompressionCodec;
+import org.apache.qpid.util.CompressionCodecs;
 
 public abstract class AbstractJMSMessageFactory
 {
@@ -55,16 +54,17 @@ public abstract class AbstractJMSMessageFactory
                                                          AMQSession_0_8.DestinationCache<AMQTopic> topicDestinationCache,
                                                          final int addressType) throws QpidException
     {
-        ByteBuffer data;
+        ByteBuffer data = null;
+        CompositeByteBuffer fragmentedData = null;
         final boolean debug = _logger.isDebugEnabled();
 
-        byte[] uncompressed;
+        final CompressionCodec codec = CompressionCodecs.getCodec(contentHeader.getProperties().getEncodingAsString());
+        ByteBuffer uncompressed;
 
-        if(GZIPUtils.GZIP_CONTENT_ENCODING.equals(contentHeader.getProperties().getEncodingAsString())
-                && (uncompressed = GZIPUtils.uncompressStreamToArray(new BodyInputStream(bodies))) != null )
+        if(codec != null && (uncompressed = codec.uncompress(concatenateBodies(bodies))) != null)
         {
             contentHeader.getProperties().setEncoding((String)null);
-            data = ByteBuffer.wrap(uncompressed);
+            data = uncompressed;
         }
         else
         {
@@ -76,7 +76,35 @@ public abstract class AbstractJMSMessageFactory
                     _logger.debug("Non-fragmented message body (bodySize=" + contentHeader.getBodySize() + ")");
                 }
 
-                data = ((ContentBody) bodies.get(0)).getPayload().duplicate();
+                final ContentBody body = (ContentBody) bodies.get(0);
+                if (body.isPooled())
+                {
+                    // the payload is a view of a pooled receive buffer which is given back below
+                    final ByteBuffer payload = body.getPayload().duplicate();
+                    data = ByteBuffer.allocate(payload.remaining());
+                    data.put(payload);
+                    data.flip();
+                }
+                else
+                {
+                    data = body.getPayload().duplicate();
+                }
+            }
+            else if (bodies != null && !containsPooledBody(bodies))
+            {
+                if (debug)
+                {
+                    _logger.debug("Fragmented message body (" + bodies
+                            .size() + " frames, bodySize=" + contentHeader.getBodySize() + ")");
+                }
+
+                // the frames are not pooled so the message can read across them in place
+                final ByteBuffer[] payloads = new ByteBuffer[bodies.size()];
+                for (int i = 0; i < payloads.length; i++)
+                {
+                    payloads[i] = ((ContentBody) bodies.get(i)).getPayload().duplicate();
+                }
+                fragmentedData = new CompositeByteBuffer(payloads);
             }
             else if (bodies != null)
             {
@@ -111,10 +139,15 @@ public abstract class AbstractJMSMessageFactory
             }
         }
 
-        if (debug)
+        if (bodies != null)
         {
-            _logger.debug("Creating message from buffer with position=" + data.position() + " and remaining=" + data
-                    .remaining());
+            for (Object body : bodies)
+            {
+                if (((ContentBody) body).isPooled())
+                {
+                    ((ContentBody) body).dispose();
+                }
+            }
         }
 
         AMQMessageDelegate_0_8 delegate = new AMQMessageDelegate_0_8(messageNbr,
@@ -122,12 +155,50 @@ public abstract class AbstractJMSMessageFactory
                                                                      exchange, routingKey, queueDestinationCache,
                                                                      topicDestinationCache, addressType);
 
+        if (fragmentedData != null)
+        {
+            if (debug)
+            {
+                _logger.debug("Creating message from " + fragmentedData.getFragmentCount()
+                              + " fragments with remaining=" + fragmentedData.remaining());
+            }
+            return createMessage(delegate, fragmentedData);
+        }
+
+        if (debug)
+        {
+            _logger.debug("Creating message from buffer with position=" + data.position() + " and remaining=" + data
+                    .remaining());
+        }
+
         return createMessage(delegate, data);
     }
 
+    private static boolean containsPooledBody(List bodies)
+    {
+        for (Object body : bodies)
+        {
+            if (((ContentBody) body).isPooled())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected abstract AbstractJMSMessage createMessage(AbstractAMQMessageDelegate delegate, ByteBuffer data) throws
                                                                                                               QpidException;
 
+    /**
+     * Creates a message whose body is spread over several received frames.  Message types that can read their body
+     * in place override this; the default assembles the fragments into a single buffer.
+     */
+    protected AbstractJMSMessage createMessage(AbstractAMQMessageDelegate delegate, CompositeByteBuffer data) throws
+                                                                                                              QpidException
+    {
+        return createMessage(delegate, data.toByteBuffer());
+    }
+
 
     protected AbstractJMSMessage create010MessageWithBody(long messageNbr, MessageProperties msgProps,
                                                           DeliveryProperties deliveryProps,
@@ -153,13 +224,14 @@ public abstract class AbstractJMSMessageFactory
             _logger.debug("Creating message from buffer with position=" + data.position() + " and remaining=" + data
                     .remaining());
         }
-        if(GZIPUtils.GZIP_CONTENT_ENCODING.equals(msgProps.getContentEncoding()))
+        final CompressionCodec codec = CompressionCodecs.getCodec(msgProps.getContentEncoding());
+        if(codec != null)
         {
-            byte[] uncompressed = GZIPUtils.uncompressBufferToArray(data);
+            ByteBuffer uncompressed = codec.uncompress(data);
             if(uncompressed != null)
             {
                 msgProps.setContentEncoding(null);
-                data = ByteBuffer.wrap(uncompressed);
+                data = uncompressed;
             }
         }
         AMQMessageDelegate_0_10 delegate = new AMQMessageDelegate_0_10(msgProps, deliveryProps, messageNbr);
@@ -192,53 +264,31 @@ public abstract class AbstractJMSMessageFactory
         return msg;
     }
 
-    private class BodyInputStream extends InputStream
+    /**
+     * Returns the payload of the given content bodies as a single buffer, copying only if there is more than one.
+     */
+    private static ByteBuffer concatenateBodies(final List bodies)
     {
-        private final Iterator<ContentBody> _bodiesIter;
-        private ByteBuffer _currentBuffer;
-        public BodyInputStream(final List<ContentBody> bodies)
+        if (bodies == null || bodies.isEmpty())
         {
-            _bodiesIter = bodies.iterator();
-            _currentBuffer = _bodiesIter.next().getPayload().duplicate();
+            return ByteBuffer.allocate(0);
         }
-
-        @Override
-        public int read() throws IOException
+        else if (bodies.size() == 1)
         {
-            byte[] buf = new byte[1];
-            int size = read(buf);
-            if(size == -1)
-            {
-                throw new EOFException();
-            }
-            else
-            {
-                return ((int)buf[0])&0xff;
-            }
+            return ((ContentBody) bodies.get(0)).getPayload().duplicate();
         }
 
-        @Override
-        public int read(final byte[] dst, final int off, final int len)
+        int size = 0;
+        for (Object body : bodies)
         {
-            while(!_currentBuffer.hasRemaining())
-            {
-                if(!_bodiesIter.hasNext())
-                {
-                    return -1;
-                }
-                else
-                {
-                    _currentBuffer = _bodiesIter.next().getPayload().duplicate();
-                }
-            }
-            int size = Math.min(len, _currentBuffer.remaining());
-            _currentBuffer.get(dst,off,size);
-            return size;
+            size += ((ContentBody) body).getPayload().remaining();
         }
-
-        @Override
-        public void close()
+        final ByteBuffer data = ByteBuffer.allocate(size);
+        for (Object body : bodies)
         {
+            data.put(((ContentBody) body).getPayload().duplicate());
         }
+        data.flip();
+        return data;
     }
 }
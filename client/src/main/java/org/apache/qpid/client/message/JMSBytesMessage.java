@@ -30,6 +30,7 @@ import org.apache.qpid.QpidException;
 import org.apache.qpid.typedmessage.TypedBytesContentReader;
 import org.apache.qpid.typedmessage.TypedBytesContentWriter;
 import org.apache.qpid.typedmessage.TypedBytesFormatException;
+import org.apache.qpid.util.CompositeByteBuffer;
 
 public class JMSBytesMessage extends AbstractBytesTypedMessage implements BytesMessage
 {
@@ -52,6 +53,12 @@ public class JMSBytesMessage extends AbstractBytesTypedMessage implements BytesM
         _typedBytesContentReader = new TypedBytesContentReader(data);
     }
 
+    JMSBytesMessage(AMQMessageDelegate delegate, CompositeByteBuffer data) throws QpidException
+    {
+        super(delegate, data!=null);
+        _typedBytesContentReader = new TypedBytesContentReader(data);
+    }
+
 
     public void reset()
     {
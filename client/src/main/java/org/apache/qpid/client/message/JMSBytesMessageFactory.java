@@ -21,6 +21,7 @@
 package org.apache.qpid.client.message;
 
 import org.apache.qpid.QpidException;
+import org.apache.qpid.util.CompositeByteBuffer;
 
 import java.nio.ByteBuffer;
 
@@ -32,6 +33,13 @@ public class JMSBytesMessageFactory extends AbstractJMSMessageFactory
         return new JMSBytesMessage(delegate, data);
     }
 
+    @Override
+    protected AbstractJMSMessage createMessage(AbstractAMQMessageDelegate delegate, CompositeByteBuffer data) throws
+                                                                                                              QpidException
+    {
+        return new JMSBytesMessage(delegate, data);
+    }
+
     // 0_10 specific
 
 }
@@ -23,6 +23,7 @@ package org.apache.qpid.client.message;
 import org.apache.qpid.QpidException;
 import org.apache.qpid.client.CustomJMSXProperty;
 import org.apache.qpid.client.util.JMSExceptionHelper;
+import org.apache.qpid.util.CompositeByteBuffer;
 
 import javax.jms.JMSException;
 import javax.jms.MessageFormatException;
@@ -39,6 +40,8 @@ public class JMSTextMessage extends AbstractJMSMessage implements javax.jms.Text
 
     private Exception _exception;
     private String _decodedValue;
+    // the body as received, sent on as it is unless the text is replaced
+    private CompositeByteBuffer _receivedData;
 
     /**
      * This constant represents the name of a property that is set when the message payload is null.
@@ -58,9 +61,16 @@ public class JMSTextMessage extends AbstractJMSMessage implements javax.jms.Text
 
     JMSTextMessage(AMQMessageDelegate delegate, ByteBuffer data)
             throws QpidException
+    {
+        this(delegate, data == null ? null : new CompositeByteBuffer(data));
+    }
+
+    JMSTextMessage(AMQMessageDelegate delegate, CompositeByteBuffer data)
+            throws QpidException
     {
         super(delegate, data!=null);
 
+        _receivedData = data == null ? null : data.duplicate();
         try
         {
             if(propertyExists(PAYLOAD_NULL_PROPERTY))
@@ -69,7 +79,7 @@ public class JMSTextMessage extends AbstractJMSMessage implements javax.jms.Text
             }
             else
             {
-                _decodedValue = _decoder.decode(data).toString();
+                _decodedValue = data.duplicate().decode(_decoder);
             }
         }
         catch (CharacterCodingException e)
@@ -104,6 +114,10 @@ public class JMSTextMessage extends AbstractJMSMessage implements javax.jms.Text
                 throw JMSExceptionHelper.chainJMSException(new MessageFormatException("Cannot decode original message"),
                                                            _exception);
             }
+            else if(_receivedData != null)
+            {
+                return _receivedData.toByteBuffer();
+            }
             else if(_decodedValue == null)
             {
                 return EMPTY_BYTE_BUFFER;
@@ -126,6 +140,7 @@ public class JMSTextMessage extends AbstractJMSMessage implements javax.jms.Text
         super.clearBody();
         _decodedValue = null;
         _exception = null;
+        _receivedData = null;
     }
 
     public void setText(String text) throws JMSException
@@ -21,6 +21,7 @@
 package org.apache.qpid.client.message;
 
 import org.apache.qpid.QpidException;
+import org.apache.qpid.util.CompositeByteBuffer;
 
 import java.nio.ByteBuffer;
 
@@ -32,4 +33,11 @@ public class JMSTextMessageFactory extends AbstractJMSMessageFactory
     {
         return new JMSTextMessage(delegate, data);
     }
+
+    @Override
+    protected AbstractJMSMessage createMessage(AbstractAMQMessageDelegate delegate, CompositeByteBuffer data) throws
+                                                                                                              QpidException
+    {
+        return new JMSTextMessage(delegate, data);
+    }
 }
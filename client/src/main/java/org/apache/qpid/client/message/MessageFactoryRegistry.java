@@ -158,11 +158,14 @@ public class MessageFactoryRegistry
         {
             redelivered = deliverProps.getRedelivered();
         }
-        return mf.createMessage(transfer.getId(),
-                                redelivered,
-                                mprop == null? new MessageProperties():mprop,
-                                deliverProps == null? new DeliveryProperties():deliverProps,
-                                transfer.getBody());
+        AbstractJMSMessage message = mf.createMessage(transfer.getId(),
+                                                      redelivered,
+                                                      mprop == null? new MessageProperties():mprop,
+                                                      deliverProps == null? new DeliveryProperties():deliverProps,
+                                                      transfer.getBody());
+        // the message holds its own copy of the body, so a pooled receive buffer can be given back now
+        transfer.releaseBody();
+        return message;
     }
 
     public AMQSession<?, ?> getSession()
@@ -20,6 +20,11 @@
  */
 package org.apache.qpid.client.message;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.apache.qpid.client.AMQSession;
 
 
@@ -34,6 +39,8 @@ public abstract class UnprocessedMessage implements AMQSession.Dispatchable
 {
     private final String _consumerTag;
 
+    /** The JMS message being built from this one ahead of its dispatch, if any */
+    private volatile Future<AbstractJMSMessage> _preparedMessage;
 
     public UnprocessedMessage(String consumerTag)
     {
@@ -49,6 +56,55 @@ public abstract class UnprocessedMessage implements AMQSession.Dispatchable
         return _consumerTag;
     }
 
+    public void setPreparedMessage(final Future<AbstractJMSMessage> preparedMessage)
+    {
+        _preparedMessage = preparedMessage;
+    }
+
+    /**
+     * Waits for the JMS message being built from this one ahead of its dispatch.  If the build has not started by the
+     * end of the timeout it is cancelled, leaving the caller to build the message itself.
+     *
+     * @param timeoutMillis how long to wait for the build to start or finish
+     *
+     * @return the JMS message, or null if it is not being built ahead of dispatch or the build was cancelled
+     *
+     * @throws Exception if building the message failed, or the wait was interrupted
+     */
+    public AbstractJMSMessage getPreparedMessage(final long timeoutMillis) throws Exception
+    {
+        final Future<AbstractJMSMessage> preparedMessage = _preparedMessage;
+        if (preparedMessage == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            try
+            {
+                return preparedMessage.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e)
+            {
+                if (preparedMessage.cancel(false))
+                {
+                    return null;
+                }
+                // the build is under way and does not wait on anything
+                return preparedMessage.get();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+            {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     public void dispatch(AMQSession ssn)
     {
         ssn.dispatch(this);
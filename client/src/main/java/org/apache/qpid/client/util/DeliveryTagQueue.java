@@ -0,0 +1,226 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.client.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A collection of delivery tags kept in an array of primitive longs, so that tracking a delivery allocates nothing.
+ * <p>
+ * Tags are kept in the order they were added.  As the tags of a channel are normally added in ascending order, tags
+ * are looked up by binary search, and acknowledging the oldest delivery, or all deliveries up to a tag, only moves
+ * the start of the array.  Tags that are added out of order are still handled correctly, by linear search.
+ * <p>
+ * All methods are thread safe.
+ */
+public final class DeliveryTagQueue
+{
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long[] NO_TAGS = new long[0];
+
+    private long[] _tags = new long[INITIAL_CAPACITY];
+    private int _head;
+    private int _tail;
+
+    /** Whether the tags held are in ascending order */
+    private boolean _ascending = true;
+
+    public synchronized void add(final long tag)
+    {
+        if (_tail == _tags.length)
+        {
+            makeRoom();
+        }
+        if (_tail > _head && tag <= _tags[_tail - 1])
+        {
+            _ascending = false;
+        }
+        _tags[_tail++] = tag;
+    }
+
+    public synchronized void addAll(final Collection<Long> tags)
+    {
+        for (long tag : tags)
+        {
+            add(tag);
+        }
+    }
+
+    /**
+     * @return true if the tag was held
+     */
+    public synchronized boolean remove(final long tag)
+    {
+        final int index = indexOf(tag);
+        if (index < 0)
+        {
+            return false;
+        }
+
+        if (index == _head)
+        {
+            _head++;
+        }
+        else if (index == _tail - 1)
+        {
+            _tail--;
+        }
+        else if (index - _head < _tail - index)
+        {
+            System.arraycopy(_tags, _head, _tags, _head + 1, index - _head);
+            _head++;
+        }
+        else
+        {
+            System.arraycopy(_tags, index + 1, _tags, index, _tail - index - 1);
+            _tail--;
+        }
+        resetIfEmpty();
+        return true;
+    }
+
+    /**
+     * Removes all tags.
+     *
+     * @return the tags removed, in the order they were added
+     */
+    public synchronized long[] drain()
+    {
+        final long[] tags = toArray();
+        clear();
+        return tags;
+    }
+
+    /**
+     * Removes all tags less than or equal to the given tag.
+     *
+     * @param tag the highest tag to remove
+     *
+     * @return the tags removed, in the order they were added
+     */
+    public synchronized long[] drainUpTo(final long tag)
+    {
+        final long[] drained;
+        if (_ascending)
+        {
+            int end = _head;
+            while (end < _tail && _tags[end] <= tag)
+            {
+                end++;
+            }
+            drained = Arrays.copyOfRange(_tags, _head, end);
+            _head = end;
+        }
+        else
+        {
+            final long[] tags = new long[size()];
+            int count = 0;
+            int retained = _head;
+            for (int i = _head; i < _tail; i++)
+            {
+                if (_tags[i] <= tag)
+                {
+                    tags[count++] = _tags[i];
+                }
+                else
+                {
+                    _tags[retained++] = _tags[i];
+                }
+            }
+            _tail = retained;
+            drained = Arrays.copyOf(tags, count);
+        }
+        resetIfEmpty();
+        return drained;
+    }
+
+    /**
+     * @return the tags held, in the order they were added
+     */
+    public synchronized long[] toArray()
+    {
+        return isEmpty() ? NO_TAGS : Arrays.copyOfRange(_tags, _head, _tail);
+    }
+
+    public synchronized boolean contains(final long tag)
+    {
+        return indexOf(tag) >= 0;
+    }
+
+    public synchronized int size()
+    {
+        return _tail - _head;
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return _tail == _head;
+    }
+
+    public synchronized void clear()
+    {
+        _head = 0;
+        _tail = 0;
+        _ascending = true;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return Arrays.toString(toArray());
+    }
+
+    private int indexOf(final long tag)
+    {
+        if (_ascending)
+        {
+            final int index = Arrays.binarySearch(_tags, _head, _tail, tag);
+            return index < 0 ? -1 : index;
+        }
+        for (int i = _head; i < _tail; i++)
+        {
+            if (_tags[i] == tag)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void makeRoom()
+    {
+        final int size = size();
+        final long[] tags = size < _tags.length / 2 ? _tags : new long[_tags.length * 2];
+        System.arraycopy(_tags, _head, tags, 0, size);
+        _tags = tags;
+        _head = 0;
+        _tail = size;
+    }
+
+    private void resetIfEmpty()
+    {
+        if (_head == _tail)
+        {
+            clear();
+        }
+    }
+}
@@ -20,9 +20,12 @@
  */
 package org.apache.qpid.client.util;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,8 +35,12 @@ import org.slf4j.LoggerFactory;
  * control) to try to prevent the queue growing (much) further. The underlying queue itself is not bounded therefore the
  * caller is not obliged to react to the events.
  * <p>
- * This implementation is <b>only</b> safe where we have a single
- * thread adding items and a single (different) thread removing items.
+ * Adding and removing items takes no locks.  A thread waiting for an item parks, and is unparked by the thread
+ * adding an item only if it is actually waiting.  The threshold events alternate, the listener being told the queue
+ * has dropped under the low threshold only after it has been told the queue rose above the high threshold; crossings
+ * that have been reversed by the time the event would be emitted are not reported.
+ * <p>
+ * Items may be added by any number of threads; they are normally removed by a single thread.
  * <p>
  * TODO  Make this implement java.util.Queue and hide the implementation. Then different queue types can be substituted.
  */
@@ -50,12 +57,18 @@ public class FlowControllingBlockingQueue<T>
     private final ThresholdListener _listener;
 
     /** We require a separate count so we can track whether we have reached the threshold */
-    private int _count;
-    
+    private final AtomicInteger _count = new AtomicInteger();
+
+    /** Whether the listener was last told that the queue is above the threshold, guarded by the listener */
+    private boolean _aboveThreshold;
+
     private boolean disableFlowControl; 
 
     private volatile boolean _closed;
 
+    /** The threads waiting for an item */
+    private final Queue<Thread> _waiters = new ConcurrentLinkedQueue<Thread>();
+
     public boolean isEmpty()
     {
         return _queue.isEmpty();
@@ -63,11 +76,8 @@ public class FlowControllingBlockingQueue<T>
 
     public void close()
     {
-        synchronized (this)
-        {
-            _closed = true;
-            notifyAll();
-        }
+        _closed = true;
+        unparkWaiters();
     }
 
 
@@ -111,13 +121,24 @@ public class FlowControllingBlockingQueue<T>
         T o = _queue.peek();
         if (o == null)
         {
-            synchronized (this)
+            final Thread currentThread = Thread.currentThread();
+            _waiters.add(currentThread);
+            try
             {
+                // the queue is checked after registering, so an item added meanwhile unparks this thread
                 while (!_closed && (o = _queue.peek()) == null)
                 {
-                    wait();
+                    LockSupport.park(this);
+                    if (Thread.interrupted())
+                    {
+                        throw new InterruptedException();
+                    }
                 }
             }
+            finally
+            {
+                _waiters.remove(currentThread);
+            }
         }
         return o;
     }
@@ -128,7 +149,7 @@ public class FlowControllingBlockingQueue<T>
 
         if (o != null && !disableFlowControl && _listener != null)
         {
-            reportBelowIfNecessary();
+            reportBelowIfNecessary(1);
         }
 
         return o;
@@ -139,30 +160,62 @@ public class FlowControllingBlockingQueue<T>
         T o = _queue.poll();
         if(o == null)
         {
-            synchronized(this)
+            final Thread currentThread = Thread.currentThread();
+            _waiters.add(currentThread);
+            try
             {
                 while(!_closed && (o = _queue.poll())==null)
                 {
-                    wait();
+                    LockSupport.park(this);
+                    if (Thread.interrupted())
+                    {
+                        throw new InterruptedException();
+                    }
                 }
             }
+            finally
+            {
+                _waiters.remove(currentThread);
+            }
         }
-        if (!_closed && !disableFlowControl && _listener != null)
+        if (o != null && !_closed && !disableFlowControl && _listener != null)
         {
-            reportBelowIfNecessary();
+            reportBelowIfNecessary(1);
         }
 
         return o;
     }
 
-    public void add(T o)
+    /**
+     * Removes up to the given number of items, without waiting, and adds them to the given collection.
+     *
+     * @return the number of items removed
+     */
+    public int drainTo(Collection<? super T> c, int maxElements)
     {
-        synchronized(this)
+        int drained = 0;
+        T o;
+        while (drained < maxElements && (o = _queue.poll()) != null)
         {
-            _queue.add(o);
+            c.add(o);
+            drained++;
+        }
 
-            notifyAll();
+        if (drained > 0 && !disableFlowControl && _listener != null)
+        {
+            reportBelowIfNecessary(drained);
+        }
+        return drained;
+    }
+
+    public void add(T o)
+    {
+        _queue.add(o);
+        if (!_waiters.isEmpty())
+        {
+            unparkWaiters();
         }
+
         if (!disableFlowControl && _listener != null)
         {
             reportAboveIfNecessary();
@@ -174,7 +227,7 @@ public class FlowControllingBlockingQueue<T>
         final boolean removed = _queue.remove(o);
         if (removed && !disableFlowControl && _listener != null)
         {
-            reportBelowIfNecessary();
+            reportBelowIfNecessary(1);
         }
         return removed;
     }
@@ -192,11 +245,10 @@ public class FlowControllingBlockingQueue<T>
         {
             synchronized (_listener)
             {
-                int count = _count;
-                _count = 0;
-
-                if (count >= _flowControlLowThreshold)
+                _count.set(0);
+                if (_aboveThreshold)
                 {
+                    _aboveThreshold = false;
                     _listener.underThreshold(0);
                 }
             }
@@ -204,24 +256,49 @@ public class FlowControllingBlockingQueue<T>
         }
     }
 
+    private void unparkWaiters()
+    {
+        for (Thread waiter : _waiters)
+        {
+            LockSupport.unpark(waiter);
+        }
+    }
+
     private void reportAboveIfNecessary()
     {
-        synchronized (_listener)
+        if (_count.incrementAndGet() == _flowControlHighThreshold)
         {
-            if (++_count == _flowControlHighThreshold)
-            {
-                _listener.aboveThreshold(_count);
-            }
+            thresholdCrossed();
         }
     }
 
-    private void reportBelowIfNecessary()
+    private void reportBelowIfNecessary(int removed)
+    {
+        final int count = _count.addAndGet(-removed);
+        if (count < _flowControlLowThreshold && count + removed >= _flowControlLowThreshold)
+        {
+            thresholdCrossed();
+        }
+    }
+
+    /**
+     * Emits the event for a crossing of a threshold, unless it has been reversed or already reported meanwhile.  Only
+     * crossings take the listener's lock, which keeps the events in order.
+     */
+    private void thresholdCrossed()
     {
         synchronized (_listener)
         {
-            if (_count-- == _flowControlLowThreshold)
+            final int count = _count.get();
+            if (!_aboveThreshold && count >= _flowControlHighThreshold)
+            {
+                _aboveThreshold = true;
+                _listener.aboveThreshold(count);
+            }
+            else if (_aboveThreshold && count < _flowControlLowThreshold)
             {
-                _listener.underThreshold(_count);
+                _aboveThreshold = false;
+                _listener.underThreshold(count);
             }
         }
     }
@@ -34,6 +34,7 @@ import org.apache.qpid.framing.MethodProcessor;
 import org.apache.qpid.framing.ProtocolInitiation;
 import org.apache.qpid.framing.ProtocolVersion;
 import org.apache.qpid.protocol.ErrorCodes;
+import org.apache.qpid.transport.network.ReceiveBufferPool;
 import org.apache.qpid.util.ByteBufferUtils;
 
 /**
@@ -203,10 +204,26 @@ public abstract class AMQDecoder<T extends MethodProcessor>
         switch (type)
         {
             case 1:
-                processMethod(channel, in);
+                if (ReceiveBufferPool.isCurrentBuffer(in))
+                {
+                    processMethod(channel, copyFrameBody(in, bodySize));
+                }
+                else
+                {
+                    processMethod(channel, in);
+                }
                 break;
             case 2:
-                ContentHeaderBody.process(in, _methodProcessor.getChannelMethodProcessor(channel), bodySize);
+                if (ReceiveBufferPool.isCurrentBuffer(in))
+                {
+                    ContentHeaderBody.process(copyFrameBody(in, bodySize),
+                                              _methodProcessor.getChannelMethodProcessor(channel),
+                                              bodySize);
+                }
+                else
+                {
+                    ContentHeaderBody.process(in, _methodProcessor.getChannelMethodProcessor(channel), bodySize);
+                }
                 break;
             case 3:
                 ContentBody.process(in, _methodProcessor.getChannelMethodProcessor(channel), bodySize);
@@ -219,6 +236,20 @@ public abstract class AMQDecoder<T extends MethodProcessor>
         }
     }
 
+    /**
+     * Decoded methods and content headers may keep views of their field tables, whose lifetime cannot be tracked,
+     * so their bodies are copied out of pooled receive buffers before being decoded.
+     */
+    private static ByteBuffer copyFrameBody(final ByteBuffer in, final long bodySize)
+    {
+        final ByteBuffer copy = ByteBuffer.allocate((int) bodySize);
+        final ByteBuffer body = in.duplicate();
+        body.limit(body.position() + (int) bodySize);
+        copy.put(body);
+        copy.flip();
+        in.position(in.position() + (int) bodySize);
+        return copy;
+    }
 
     abstract void processMethod(int channelId, ByteBuffer in) throws AMQFrameDecodingException;
 
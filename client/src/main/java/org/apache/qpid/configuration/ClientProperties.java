@@ -170,6 +170,21 @@ public class ClientProperties
      */
     public static final String DAEMON_DISPATCHER = "qpid.jms.daemon.dispatcher";
 
+    /**
+     * System property to set the number of threads of a JVM-wide pool that dispatches the messages of all sessions.
+     * Zero, the default, gives each session a dispatcher thread of its own.
+     */
+    public static final String QPID_DISPATCHER_POOL_SIZE = "qpid.dispatcher_pool_size";
+    public static final int DEFAULT_DISPATCHER_POOL_SIZE = 0;
+
+    /**
+     * System property to set the number of threads of a JVM-wide pool that builds the JMS messages of all sessions,
+     * uncompressing, decrypting and decoding them, ahead of their dispatch.  Zero, the default, leaves this work to
+     * the dispatcher.
+     */
+    public static final String QPID_PREPROCESSOR_POOL_SIZE = "qpid.preprocessor_pool_size";
+    public static final int DEFAULT_PREPROCESSOR_POOL_SIZE = 0;
+
     /**
      * Used to name the process utilising the Qpid client, to override the default
      * value is used in the ConnectionStartOk reply to the broker.
@@ -258,6 +273,19 @@ public class ClientProperties
     public static final String CONNECTION_OPTION_MESSAGE_COMPRESSION_THRESHOLD_SIZE = "qpid.message_compression_threshold_size";
     public static final int DEFAULT_MESSAGE_COMPRESSION_THRESHOLD_SIZE = 102400;
 
+    /**
+     * System property to set a default value for a connection option 'message_compression_codec', the content-encoding
+     * of the codec that compresses message payloads
+     */
+    public static final String CONNECTION_OPTION_MESSAGE_COMPRESSION_CODEC = "qpid.message_compression_codec";
+    public static final String DEFAULT_MESSAGE_COMPRESSION_CODEC = "gzip";
+
+    /**
+     * System property listing, comma separated, the class names of compression codecs to register in addition to the
+     * built in ones
+     */
+    public static final String QPID_COMPRESSION_CODECS = "qpid.compression_codecs";
+
     public static final String ADDR_SYNTAX_SUPPORTED_IN_0_8 = "qpid.addr_syntax_supported";
     public static final boolean DEFAULT_ADDR_SYNTAX_0_8_SUPPORT = true;
 
@@ -271,6 +299,75 @@ public class ClientProperties
      */
     public static final String QPID_USE_LEGACY_GETQUEUEDEPTH_BEHAVIOUR = "qpid.use_legacy_getqueuedepth_behavior";
 
+    /**
+     * System property to set the number of bytes of frames an AMQP 0-8..0-9-1 connection coalesces from all its
+     * sessions before flushing them to the network.  Zero, the default, writes and flushes each frame as it is sent.
+     */
+    public static final String QPID_WRITE_COALESCING_BATCH_SIZE = "qpid.write_coalescing.batch_size";
+    public static final int DEFAULT_WRITE_COALESCING_BATCH_SIZE = 0;
+
+    /**
+     * System property to set the time (in microseconds) an AMQP 0-8..0-9-1 connection may hold back a flush so that
+     * frames sent shortly afterwards join the same batch.  Zero, the default, flushes as soon as no frame is waiting.
+     */
+    public static final String QPID_WRITE_COALESCING_LATENCY = "qpid.write_coalescing.latency";
+    public static final long DEFAULT_WRITE_COALESCING_LATENCY = 0L;
+
+    /**
+     * System property to set the number of messages an AMQP 0-9-1 session publishing with sync_publish=all may leave
+     * awaiting a publisher confirm when send returns.  Zero, the default, waits for the confirm of every message.
+     * Outstanding confirms are always awaited before the session commits or closes.
+     */
+    public static final String QPID_PUBLISH_CONFIRM_WINDOW = "qpid.publish_confirm_window";
+    public static final int DEFAULT_PUBLISH_CONFIRM_WINDOW = 0;
+
+    /**
+     * System property to set the longest time (in milliseconds) a session holds back the acknowledgements of consumed
+     * messages so that they can be sent together.  Zero sends them as soon as they are due.
+     */
+    public static final String QPID_SESSION_MAX_ACK_DELAY = "qpid.session.max_ack_delay";
+    public static final long DEFAULT_SESSION_MAX_ACK_DELAY = 1000L;
+
+    /**
+     * System property to cap the number of messages consumed by an AMQP 0-9-1 session in AUTO_ACKNOWLEDGE or
+     * DUPS_OK_ACKNOWLEDGE mode whose acknowledgements are coalesced into a single cumulative acknowledgement.  Zero,
+     * the default, coalesces up to half the session's prefetch.  One sends an acknowledgement for every message.
+     */
+    public static final String QPID_SESSION_MAX_ACK_BATCH_SIZE = "qpid.session.max_ack_batch_size";
+    public static final int DEFAULT_SESSION_MAX_ACK_BATCH_SIZE = 0;
+
+    /**
+     * System property to enable the adaptive prefetch mode.  When enabled, the prefetch window of each AMQP 0-10
+     * consumer, or the QoS of each AMQP 0-9-1 AUTO_ACKNOWLEDGE or DUPS_OK_ACKNOWLEDGE session, is periodically resized
+     * towards the number of messages the application consumes during one round trip to the broker.
+     */
+    public static final String QPID_ADAPTIVE_PREFETCH = "qpid.adaptive_prefetch";
+
+    /**
+     * System property to set the smallest prefetch window the adaptive prefetch mode will shrink to.
+     */
+    public static final String QPID_ADAPTIVE_PREFETCH_MIN = "qpid.adaptive_prefetch.min";
+    public static final int DEFAULT_ADAPTIVE_PREFETCH_MIN = 1;
+
+    /**
+     * System property to set the largest prefetch window the adaptive prefetch mode will grow to.
+     */
+    public static final String QPID_ADAPTIVE_PREFETCH_MAX = "qpid.adaptive_prefetch.max";
+    public static final int DEFAULT_ADAPTIVE_PREFETCH_MAX = 10000;
+
+    /**
+     * System property to set the margin, as a percentage, the adaptive prefetch mode adds on top of the number of
+     * messages consumed during one round trip.
+     */
+    public static final String QPID_ADAPTIVE_PREFETCH_MARGIN = "qpid.adaptive_prefetch.margin";
+    public static final int DEFAULT_ADAPTIVE_PREFETCH_MARGIN = 50;
+
+    /**
+     * System property to set how often (in milliseconds) the adaptive prefetch mode re-evaluates the prefetch window.
+     */
+    public static final String QPID_ADAPTIVE_PREFETCH_INTERVAL = "qpid.adaptive_prefetch.interval";
+    public static final long DEFAULT_ADAPTIVE_PREFETCH_INTERVAL = 1000L;
+
     private volatile static boolean _loaded;
 
     static
@@ -52,6 +52,26 @@ public class CommonProperties
     public static final String IO_NETWORK_TRANSPORT_TIMEOUT_PROP_NAME = "qpid.io_network_transport_timeout";
     public static final int IO_NETWORK_TRANSPORT_TIMEOUT_DEFAULT = 60000;
 
+    /**
+     * Whether sockets of the io transport are created through a channel so that the IoSender can write the queued
+     * buffers with a single gathering write instead of copying them into its ring buffer
+     */
+    public static final String IO_NETWORK_TRANSPORT_GATHERING_WRITES_PROP_NAME = "qpid.io_network_transport.gathering_writes";
+
+    /**
+     * The maximum number of released receive buffers the io transport keeps for reuse.  Zero, the default, disables
+     * pooling so that the receiver allocates a fresh buffer whenever the previous one has been filled.
+     */
+    public static final String IO_NETWORK_TRANSPORT_RECEIVE_BUFFER_POOL_SIZE_PROP_NAME = "qpid.io_network_transport.receive_buffer_pool_size";
+    public static final int IO_NETWORK_TRANSPORT_RECEIVE_BUFFER_POOL_SIZE_DEFAULT = 0;
+
+    /**
+     * The number of selector threads shared by all connections using the nio transport
+     */
+    public static final String NIO_NETWORK_TRANSPORT_SELECTOR_THREADS_PROP_NAME = "qpid.nio_network_transport.selector_threads";
+    public static final int NIO_NETWORK_TRANSPORT_SELECTOR_THREADS_DEFAULT =
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
     public static final String QPID_CLIENT_SECURITY_TLS_PROTOCOL_WHITE_LIST = "qpid.client.security.tls.protocolWhiteList";
     public static final String QPID_CLIENT_SECURITY_TLS_PROTOCOL_BLACK_LIST = "qpid.client.security.tls.protocolBlackList";
     public static final String QPID_CLIENT_SECURITY_TLS_CIPHER_SUITE_WHITE_LIST = "qpid.client.security.tls.cipherSuiteWhiteList";
@@ -66,10 +66,10 @@ public class AMQFrame extends AMQDataBlock implements EncodableAMQDataBlock
         ByteBufferUtils.putUnsignedShort(frameHeader, _channel);
         ByteBufferUtils.putUnsignedInt(frameHeader, _bodyFrame.getSize());
         frameHeader.flip();
-        sender.send(frameHeader);
+        ByteBufferUtils.transfer(sender, frameHeader);
         long size = 8 + _bodyFrame.writePayload(sender);
 
-        sender.send(FRAME_END_BYTE_BUFFER.duplicate());
+        ByteBufferUtils.transfer(sender, FRAME_END_BYTE_BUFFER.duplicate());
         return size;
     }
 
@@ -81,7 +81,7 @@ public abstract class AMQMethodBodyImpl implements AMQMethodBody
         ByteBufferUtils.putUnsignedShort(buf, getMethod());
         writeMethodPayload(buf);
         buf.flip();
-        sender.send(buf);
+        ByteBufferUtils.transfer(sender, buf);
         return size;
     }
 
@@ -83,6 +83,8 @@ public class BasicContentHeaderProperties
     private static final int CLUSTER_ID_MASK = 1 << 2;
 
     private ByteBuffer _encodedForm;
+    // set once the encoded form has been handed to a sender, which may still hold on to it
+    private boolean _encodedFormShared;
 
 
     public BasicContentHeaderProperties(BasicContentHeaderProperties other)
@@ -461,7 +463,8 @@ public class BasicContentHeaderProperties
     {
         if(useEncodedForm())
         {
-            sender.send(_encodedForm.duplicate());
+            _encodedFormShared = true;
+            ByteBufferUtils.transfer(sender, _encodedForm.duplicate());
             return _encodedForm.remaining();
         }
         else
@@ -470,7 +473,7 @@ public class BasicContentHeaderProperties
             ByteBuffer buf = ByteBuffer.allocate(propertyListSize);
             writePropertyListPayload(buf);
             buf.flip();
-            sender.send(buf);
+            ByteBufferUtils.transfer(sender, buf);
             return propertyListSize;
         }
 
@@ -485,6 +488,7 @@ public class BasicContentHeaderProperties
             _logger.debug("Property flags: " + _propertyFlags);
         }
         _encodedForm = ByteBufferUtils.view(buffer, 0, size);
+        _encodedFormShared = false;
 
         decode(_encodedForm.slice());
         buffer.position(buffer.position()+size);
@@ -582,6 +586,7 @@ public class BasicContentHeaderProperties
 
     public synchronized void setContentType(AMQShortString contentType)
     {
+        int oldPropertyFlags = _propertyFlags;
 
         if(contentType == null)
         {
@@ -592,7 +597,7 @@ public class BasicContentHeaderProperties
             _propertyFlags |= CONTENT_TYPE_MASK;
         }
         _contentType = contentType;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, CONTENT_TYPE_MASK);
     }
 
     public void setContentType(String contentType)
@@ -618,6 +623,7 @@ public class BasicContentHeaderProperties
 
     public synchronized void setEncoding(AMQShortString encoding)
     {
+        int oldPropertyFlags = _propertyFlags;
         if(encoding == null)
         {
             _propertyFlags &= (~ENCODING_MASK);
@@ -627,7 +633,7 @@ public class BasicContentHeaderProperties
             _propertyFlags |= ENCODING_MASK;
         }
         _encoding = encoding;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, ENCODING_MASK);
     }
 
     public FieldTable getHeaders()
@@ -661,9 +667,10 @@ public class BasicContentHeaderProperties
 
     public synchronized void setDeliveryMode(byte deliveryMode)
     {
+        int oldPropertyFlags = _propertyFlags;
         _propertyFlags |= DELIVERY_MODE_MASK;
         _deliveryMode = deliveryMode;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, DELIVERY_MODE_MASK);
     }
 
     public byte getPriority()
@@ -673,9 +680,10 @@ public class BasicContentHeaderProperties
 
     public synchronized void setPriority(byte priority)
     {
+        int oldPropertyFlags = _propertyFlags;
         _propertyFlags |= PRIORITY_MASK;
         _priority = priority;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, PRIORITY_MASK);
     }
 
     public AMQShortString getCorrelationId()
@@ -695,6 +703,7 @@ public class BasicContentHeaderProperties
 
     public synchronized void setCorrelationId(AMQShortString correlationId)
     {
+        int oldPropertyFlags = _propertyFlags;
         if(correlationId == null)
         {
             _propertyFlags &= (~CORRELATION_ID_MASK);
@@ -704,7 +713,7 @@ public class BasicContentHeaderProperties
             _propertyFlags |= CORRELATION_ID_MASK;
         }
         _correlationId = correlationId;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, CORRELATION_ID_MASK);
     }
 
     public String getReplyToAsString()
@@ -724,6 +733,7 @@ public class BasicContentHeaderProperties
 
     public synchronized void setReplyTo(AMQShortString replyTo)
     {
+        int oldPropertyFlags = _propertyFlags;
         if(replyTo == null)
         {
             _propertyFlags &= (~REPLY_TO_MASK);
@@ -733,7 +743,7 @@ public class BasicContentHeaderProperties
             _propertyFlags |= REPLY_TO_MASK;
         }
         _replyTo = replyTo;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, REPLY_TO_MASK);
     }
 
     public long getExpiration()
@@ -743,6 +753,7 @@ public class BasicContentHeaderProperties
 
     public synchronized void setExpiration(long expiration)
     {
+        int oldPropertyFlags = _propertyFlags;
         if(expiration == 0l)
         {
             _propertyFlags &= (~EXPIRATION_MASK);
@@ -752,7 +763,7 @@ public class BasicContentHeaderProperties
             _propertyFlags |= EXPIRATION_MASK;
         }
         _expiration = expiration;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, EXPIRATION_MASK);
     }
 
     public AMQShortString getMessageId()
@@ -772,6 +783,7 @@ public class BasicContentHeaderProperties
 
     public synchronized void setMessageId(AMQShortString messageId)
     {
+        int oldPropertyFlags = _propertyFlags;
         if(messageId == null)
         {
             _propertyFlags &= (~MESSAGE_ID_MASK);
@@ -781,7 +793,7 @@ public class BasicContentHeaderProperties
             _propertyFlags |= MESSAGE_ID_MASK;
         }
         _messageId = messageId;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, MESSAGE_ID_MASK);
     }
 
     public long getTimestamp()
@@ -791,9 +803,10 @@ public class BasicContentHeaderProperties
 
     public synchronized void setTimestamp(long timestamp)
     {
+        int oldPropertyFlags = _propertyFlags;
         _propertyFlags |= TIMESTAMP_MASK;
         _timestamp = timestamp;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, TIMESTAMP_MASK);
     }
 
     public String getTypeAsString()
@@ -813,6 +826,7 @@ public class BasicContentHeaderProperties
 
     public synchronized void setType(AMQShortString type)
     {
+        int oldPropertyFlags = _propertyFlags;
         if(type == null)
         {
             _propertyFlags &= (~TYPE_MASK);
@@ -822,7 +836,7 @@ public class BasicContentHeaderProperties
             _propertyFlags |= TYPE_MASK;
         }
         _type = type;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, TYPE_MASK);
     }
 
     public String getUserIdAsString()
@@ -842,6 +856,7 @@ public class BasicContentHeaderProperties
 
     public synchronized void setUserId(AMQShortString userId)
     {
+        int oldPropertyFlags = _propertyFlags;
         if(userId == null)
         {
             _propertyFlags &= (~USER_ID_MASK);
@@ -851,7 +866,7 @@ public class BasicContentHeaderProperties
             _propertyFlags |= USER_ID_MASK;
         }
         _userId = userId;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, USER_ID_MASK);
     }
 
     public String getAppIdAsString()
@@ -871,6 +886,7 @@ public class BasicContentHeaderProperties
 
     public synchronized void setAppId(AMQShortString appId)
     {
+        int oldPropertyFlags = _propertyFlags;
         if(appId == null)
         {
             _propertyFlags &= (~APPLICATION_ID_MASK);
@@ -880,7 +896,7 @@ public class BasicContentHeaderProperties
             _propertyFlags |= APPLICATION_ID_MASK;
         }
         _appId = appId;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, APPLICATION_ID_MASK);
     }
 
     public String getClusterIdAsString()
@@ -900,6 +916,7 @@ public class BasicContentHeaderProperties
 
     public synchronized void setClusterId(AMQShortString clusterId)
     {
+        int oldPropertyFlags = _propertyFlags;
         if(clusterId == null)
         {
             _propertyFlags &= (~CLUSTER_ID_MASK);
@@ -909,7 +926,7 @@ public class BasicContentHeaderProperties
             _propertyFlags |= CLUSTER_ID_MASK;
         }
         _clusterId = clusterId;
-        nullEncodedForm();
+        updateEncodedForm(oldPropertyFlags, CLUSTER_ID_MASK);
     }
 
     @Override
@@ -928,6 +945,132 @@ public class BasicContentHeaderProperties
     }
 
 
+    /**
+     * Brings the encoded form of received properties up to date after a single field has been set.  A field that is
+     * already present is overwritten in place if its new value encodes to the same size, as the message id, timestamp,
+     * delivery mode and priority set on every send usually do, so that a message can be forwarded without its
+     * properties being encoded again.  Any other change discards the encoded form.
+     */
+    private void updateEncodedForm(int oldPropertyFlags, int mask)
+    {
+        if (_encodedForm == null)
+        {
+            return;
+        }
+        else if (oldPropertyFlags != _propertyFlags)
+        {
+            nullEncodedForm();
+        }
+        else if ((_propertyFlags & mask) != 0)
+        {
+            ByteBuffer value = encodeField(mask);
+            int offset = getEncodedFieldOffset(mask);
+            if (getEncodedFieldSize(mask, offset) != value.remaining())
+            {
+                nullEncodedForm();
+            }
+            else
+            {
+                if (_encodedFormShared || _encodedForm.isReadOnly())
+                {
+                    ByteBuffer copy = ByteBuffer.allocate(_encodedForm.remaining());
+                    copy.put(_encodedForm.duplicate());
+                    copy.flip();
+                    offset -= _encodedForm.position();
+                    _encodedForm = copy;
+                    _encodedFormShared = false;
+                }
+                ByteBuffer field = _encodedForm.duplicate();
+                field.position(offset);
+                field.put(value);
+            }
+        }
+    }
+
+    private int getEncodedFieldOffset(int mask)
+    {
+        int offset = _encodedForm.position();
+        for (int field = CONTENT_TYPE_MASK; field > mask; field >>= 1)
+        {
+            if ((_propertyFlags & field) != 0)
+            {
+                offset += getEncodedFieldSize(field, offset);
+            }
+        }
+        return offset;
+    }
+
+    private int getEncodedFieldSize(int mask, int offset)
+    {
+        switch (mask)
+        {
+            case HEADERS_MASK:
+                return 4 + _encodedForm.getInt(offset);
+            case DELIVERY_MODE_MASK:
+            case PRIORITY_MASK:
+                return 1;
+            case TIMESTAMP_MASK:
+                return 8;
+            default:
+                return 1 + (_encodedForm.get(offset) & 0xff);
+        }
+    }
+
+    private ByteBuffer encodeField(int mask)
+    {
+        ByteBuffer value;
+        switch (mask)
+        {
+            case DELIVERY_MODE_MASK:
+                value = ByteBuffer.allocate(1).put(_deliveryMode);
+                break;
+            case PRIORITY_MASK:
+                value = ByteBuffer.allocate(1).put(_priority);
+                break;
+            case TIMESTAMP_MASK:
+                value = ByteBuffer.allocate(8).putLong(_timestamp);
+                break;
+            case EXPIRATION_MASK:
+                value = ByteBuffer.allocate(EncodingUtils.encodedShortStringLength(_expiration));
+                EncodingUtils.writeLongAsShortString(value, _expiration);
+                break;
+            default:
+                AMQShortString string = getShortStringField(mask);
+                value = ByteBuffer.allocate(EncodingUtils.encodedShortStringLength(string));
+                EncodingUtils.writeShortStringBytes(value, string);
+                break;
+        }
+        value.flip();
+        return value;
+    }
+
+    private AMQShortString getShortStringField(int mask)
+    {
+        switch (mask)
+        {
+            case CONTENT_TYPE_MASK:
+                return _contentType;
+            case ENCODING_MASK:
+                return _encoding;
+            case CORRELATION_ID_MASK:
+                return _correlationId;
+            case REPLY_TO_MASK:
+                return _replyTo;
+            case MESSAGE_ID_MASK:
+                return _messageId;
+            case TYPE_MASK:
+                return _type;
+            case USER_ID_MASK:
+                return _userId;
+            case APPLICATION_ID_MASK:
+                return _appId;
+            case CLUSTER_ID_MASK:
+                return _clusterId;
+            default:
+                throw new IllegalArgumentException("Not a short string property: " + mask);
+        }
+    }
+
     public synchronized void dispose()
     {
         nullEncodedForm();
@@ -951,6 +1094,7 @@ public class BasicContentHeaderProperties
         if(_encodedForm != null)
         {
             _encodedForm = null;
+            _encodedFormShared = false;
         }
     }
 }
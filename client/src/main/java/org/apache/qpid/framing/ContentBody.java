@@ -25,6 +25,7 @@ import java.nio.ByteBuffer;
 import org.apache.qpid.QpidException;
 import org.apache.qpid.protocol.AMQVersionAwareProtocolSession;
 import org.apache.qpid.transport.ByteBufferSender;
+import org.apache.qpid.transport.network.PooledReceiveBuffer;
 import org.apache.qpid.util.ByteBufferUtils;
 
 public class ContentBody implements AMQBody
@@ -32,11 +33,22 @@ public class ContentBody implements AMQBody
     public static final byte TYPE = 3;
 
     private ByteBuffer _payload;
+    private PooledReceiveBuffer _receiveBuffer;
 
 
     public ContentBody(ByteBuffer payload)
+    {
+        this(payload, null);
+    }
+
+    /**
+     * @param receiveBuffer the retained pooled receive buffer the payload is a view of, or null.  The body owns the
+     *                      reference and gives it up when disposed.
+     */
+    public ContentBody(ByteBuffer payload, PooledReceiveBuffer receiveBuffer)
     {
         _payload = payload.duplicate();
+        _receiveBuffer = receiveBuffer;
     }
 
     public byte getFrameType()
@@ -60,7 +72,7 @@ public class ContentBody implements AMQBody
     {
         if(_payload != null)
         {
-            sender.send(_payload.duplicate());
+            ByteBufferUtils.transfer(sender, _payload.duplicate());
             return _payload.remaining();
         }
         else
@@ -74,12 +86,26 @@ public class ContentBody implements AMQBody
         return _payload;
     }
 
+    /**
+     * Returns whether the payload is a view of a pooled receive buffer, and so must be copied if it is to be used
+     * after the body has been disposed.
+     */
+    public boolean isPooled()
+    {
+        return _receiveBuffer != null;
+    }
+
     public void dispose()
     {
         if (_payload != null)
         {
             _payload = null;
         }
+        if (_receiveBuffer != null)
+        {
+            _receiveBuffer.release();
+            _receiveBuffer = null;
+        }
     }
 
     public static void process(final ByteBuffer in,
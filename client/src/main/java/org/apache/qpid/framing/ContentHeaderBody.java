@@ -96,7 +96,7 @@ public class ContentHeaderBody implements AMQBody
         data.putLong(_bodySize);
         ByteBufferUtils.putUnsignedShort(data, _properties.getPropertyFlags());
         data.flip();
-        sender.send(data);
+        ByteBufferUtils.transfer(sender, data);
         return HEADER_SIZE + _properties.writePropertyListPayload(sender);
     }
 
@@ -31,6 +31,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -142,6 +143,14 @@ public class FieldTable
         initMapIfNecessary();
         if (_properties.containsKey(key))
         {
+            AMQTypedValue existing = _properties.get(key);
+            if (val != null && existing != null && existing.getType() == val.getType()
+                && Objects.equals(existing.getValue(), val.getValue()))
+            {
+                // setting a property to the value it already has leaves the encoded form intact
+                return existing;
+            }
+
             _encodedForm = null;
 
             if (val == null)
@@ -1061,7 +1070,6 @@ public class FieldTable
     public AMQTypedValue removeKey(AMQShortString key)
     {
         initMapIfNecessary();
-        _encodedForm = null;
         AMQTypedValue value = _properties.remove(key);
         if (value == null)
         {
@@ -1069,6 +1077,7 @@ public class FieldTable
         }
         else
         {
+            _encodedForm = null;
             _encodedSize -= EncodingUtils.encodedShortStringLength(key);
             _encodedSize--;
             _encodedSize -= value.getEncodingSize();
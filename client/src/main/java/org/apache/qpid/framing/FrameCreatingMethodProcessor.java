@@ -24,6 +24,8 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.qpid.transport.network.ReceiveBufferPool;
+
 public class FrameCreatingMethodProcessor implements MethodProcessor<FrameCreatingMethodProcessor.ClientAndServerChannelMethodProcessor>,
                                                      ClientMethodProcessor<FrameCreatingMethodProcessor.ClientAndServerChannelMethodProcessor>,
                                                      ServerMethodProcessor<FrameCreatingMethodProcessor.ClientAndServerChannelMethodProcessor>
@@ -606,7 +608,7 @@ public class FrameCreatingMethodProcessor implements MethodProcessor<FrameCreati
         @Override
         public void receiveMessageContent(ByteBuffer data)
         {
-            _processedMethods.add(new AMQFrame(_channelId, new ContentBody(data)));
+            _processedMethods.add(new AMQFrame(_channelId, new ContentBody(data, ReceiveBufferPool.retainCurrentBuffer(data))));
         }
 
         @Override
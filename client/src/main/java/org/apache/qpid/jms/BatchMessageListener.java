@@ -0,0 +1,41 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.jms;
+
+import java.util.List;
+
+import javax.jms.Message;
+
+/**
+ * A listener that receives the messages of a consumer in batches rather than one at a time.
+ *
+ * @see MessageConsumer#setBatchMessageListener(BatchMessageListener, int, long)
+ */
+public interface BatchMessageListener
+{
+    /**
+     * Called with the messages delivered to the consumer, in delivery order. When the session acknowledges messages
+     * automatically the whole batch is acknowledged at once after this method returns.
+     *
+     * @param messages the batch, which is never empty and holds no more messages than the maximum batch size
+     */
+    void onMessages(List<Message> messages);
+}
@@ -0,0 +1,48 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.jms;
+
+import javax.jms.Message;
+
+/**
+ * A listener that is notified once a message sent asynchronously has been completed by the broker.
+ *
+ * @see MessageProducer#send(Message, CompletionListener)
+ */
+public interface CompletionListener
+{
+    /**
+     * Called once the broker has completed or confirmed the send of the message.  Completions of the messages sent on
+     * a session are notified in the order in which they were sent.
+     *
+     * @param message the message that was sent
+     */
+    void onCompletion(Message message);
+
+    /**
+     * Called if the message could not be sent, for instance because the broker rejected it or the session was closed
+     * before the send completed.
+     *
+     * @param message the message that was sent
+     * @param exception the reason the send failed
+     */
+    void onException(Message message, Exception exception);
+}
@@ -75,6 +75,7 @@ public interface ConnectionURL
 
     String OPTIONS_COMPRESS_MESSAGES = "compressMessages";
     String OPTIONS_MESSAGES_COMPRESSION_THRESHOLD_SIZE = "messageCompressionThresholdSize";
+    String OPTIONS_MESSAGE_COMPRESSION_CODEC = "messageCompressionCodec";
 
 
     String OPTIONS_DEFAULT_TOPIC_EXCHANGE = "defaultTopicExchange";
@@ -89,6 +90,12 @@ public interface ConnectionURL
      * This option specifies whether User-ID should be attached to each message sent over the connection
      */
     String OPTIONS_POPULATE_USER_ID = "populateJMSXUserID";
+
+    /**
+     * This option specifies the class name of the {@link org.apache.qpid.util.UUIDGen} the producers of the
+     * connection use to generate message ids
+     */
+    String OPTIONS_MESSAGE_ID_GENERATOR = "messageIdGenerator";
     byte  URL_0_8 = 1;
     byte  URL_0_10 = 2;
 
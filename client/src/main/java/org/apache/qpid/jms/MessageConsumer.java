@@ -20,8 +20,61 @@
  */
 package org.apache.qpid.jms;
 
+import java.util.List;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
 /** 
  */
 public interface MessageConsumer extends javax.jms.MessageConsumer
 {
+    /**
+     * Sets a listener that is handed the messages of this consumer in batches. A batch is delivered once it holds
+     * maxBatchSize messages, or, when fewer are available, once lingerTime has elapsed since its first message arrived.
+     * With a linger time of zero a batch holds the messages that were already waiting for the consumer.
+     * <p>
+     * The same rules as for {@link #setMessageListener(javax.jms.MessageListener)} apply, and a null listener
+     * removes it.
+     *
+     * @param listener the listener, or null
+     * @param maxBatchSize the maximum number of messages in a batch, at least one
+     * @param lingerTime the maximum time in milliseconds to wait for a batch to fill up
+     *
+     * @throws JMSException if the listener cannot be set
+     */
+    void setBatchMessageListener(BatchMessageListener listener, int maxBatchSize, long lingerTime) throws JMSException;
+
+    /**
+     * Sets a listener that is called by up to concurrency threads at once. Messages are partitioned by the value of
+     * the given message property, for example JMSXGroupID: messages with the same value are passed to the listener one
+     * at a time, in the order they were delivered, while messages with different values may be processed in parallel.
+     * <p>
+     * Only sessions that acknowledge automatically are supported. A message is acknowledged once it, and every
+     * message delivered to the consumer before it, has been processed, and a message for which the listener throws
+     * is released back to the broker.
+     *
+     * @param listener the listener, or null
+     * @param keyProperty the name of the property to partition messages by
+     * @param concurrency the number of threads calling the listener, at least one
+     *
+     * @throws JMSException if the listener cannot be set, or the session does not acknowledge automatically
+     */
+    void setPartitionedMessageListener(javax.jms.MessageListener listener, String keyProperty, int concurrency)
+            throws JMSException;
+
+    /**
+     * Receives up to maxMessages messages in one call. The call waits for the first message as {@link #receive(long)}
+     * does, but a negative timeout returns immediately like {@link #receiveNoWait()}. Further messages are only taken
+     * if they have already been received by the client, so that the call waits at most once.
+     *
+     * @param maxMessages the maximum number of messages to return, at least one
+     * @param timeout the time in milliseconds to wait for the first message, zero to wait indefinitely, or a negative
+     *                value not to wait at all
+     *
+     * @return the messages in delivery order, or an empty list if none arrived in time or the consumer was closed
+     *
+     * @throws JMSException if the messages cannot be received
+     */
+    List<Message> receive(int maxMessages, long timeout) throws JMSException;
 }
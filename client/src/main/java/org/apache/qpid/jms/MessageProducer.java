@@ -20,6 +20,8 @@
  */
 package org.apache.qpid.jms;
 
+import java.util.List;
+
 import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
@@ -38,4 +40,35 @@ public interface MessageProducer extends javax.jms.MessageProducer
 
     void setDeliveryDelay(long delay);
 
+    /**
+     * Sends a message to the producer's destination without waiting for the broker, notifying the listener once the
+     * broker has completed the send.  Any number of sends may be outstanding at once.
+     *
+     * @param message the message to send
+     * @param completionListener the listener notified when the send completes or fails
+     *
+     * @throws JMSException if the message could not be sent
+     */
+    void send(Message message, CompletionListener completionListener) throws JMSException;
+
+    void send(Message message, int deliveryMode, int priority, long timeToLive,
+              CompletionListener completionListener) throws JMSException;
+
+    void send(Destination destination, Message message, CompletionListener completionListener) throws JMSException;
+
+    void send(Destination destination, Message message, int deliveryMode, int priority, long timeToLive,
+              CompletionListener completionListener) throws JMSException;
+
+    /**
+     * Sends the messages to the producer's destination, in order, writing them to the connection together and, when
+     * the producer waits for the broker, waiting once for the whole batch.
+     *
+     * @param messages the messages to send
+     *
+     * @throws JMSException if the messages could not be sent
+     */
+    void sendBatch(List<? extends Message> messages) throws JMSException;
+
+    void sendBatch(Destination destination, List<? extends Message> messages) throws JMSException;
+
 }
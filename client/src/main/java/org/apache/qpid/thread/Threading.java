@@ -48,4 +48,23 @@ public final class Threading
     {
         return threadFactory;
     }
+
+    /**
+     * Marks a thread created by the thread factory as a daemon thread, or not, where the thread allows it.  Virtual
+     * threads, for example, are always daemon threads.
+     */
+    public static void setDaemon(Thread thread, boolean daemon)
+    {
+        if (thread.isDaemon() != daemon)
+        {
+            try
+            {
+                thread.setDaemon(daemon);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // the thread cannot be a non-daemon thread
+            }
+        }
+    }
 }
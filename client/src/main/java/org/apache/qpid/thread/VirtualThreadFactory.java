@@ -0,0 +1,70 @@
+/*
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ */
+package org.apache.qpid.thread;
+
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Creates virtual threads, which requires Java 21 or later.  Select it by setting the <tt>qpid.thread_factory</tt>
+ * system property to <tt>org.apache.qpid.thread.VirtualThreadFactory</tt>.
+ * <p>
+ * Virtual threads are always daemon threads and have no priority of their own, so a requested priority is ignored.
+ */
+public class VirtualThreadFactory implements ThreadFactory
+{
+    private final LoggingUncaughtExceptionHandler _loggingUncaughtExceptionHandler = new LoggingUncaughtExceptionHandler();
+
+    private final Object _builder;
+    private final Method _unstartedMethod;
+
+    public VirtualThreadFactory() throws Exception
+    {
+        Method ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+        _builder = ofVirtualMethod.invoke(null);
+
+        Class builderClass = Class.forName("java.lang.Thread$Builder");
+        _unstartedMethod = builderClass.getMethod("unstarted", Runnable.class);
+    }
+
+    public Thread createThread(Runnable r) throws Exception
+    {
+        Thread thread;
+        try
+        {
+            thread = (Thread) _unstartedMethod.invoke(_builder, r);
+        }
+        catch (InvocationTargetException e)
+        {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+        thread.setUncaughtExceptionHandler(_loggingUncaughtExceptionHandler);
+        return thread;
+    }
+
+    public Thread createThread(Runnable r, int priority) throws Exception
+    {
+        return createThread(r);
+    }
+
+}
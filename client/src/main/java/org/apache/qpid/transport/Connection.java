@@ -48,8 +48,9 @@ import org.apache.qpid.transport.network.Assembler;
 import org.apache.qpid.transport.network.Disassembler;
 import org.apache.qpid.transport.network.InputHandler;
 import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.OutgoingNetworkTransport;
+import org.apache.qpid.transport.network.Transport;
 import org.apache.qpid.transport.network.TransportActivity;
-import org.apache.qpid.transport.network.io.IoNetworkTransport;
 import org.apache.qpid.transport.network.security.SecurityLayer;
 import org.apache.qpid.transport.network.security.SecurityLayerFactory;
 import org.apache.qpid.transport.util.Waiter;
@@ -228,7 +229,7 @@ public class Connection extends ConnectionInvoker
 
             securityLayer = SecurityLayerFactory.newInstance(getConnectionSettings());
 
-            IoNetworkTransport transport = new IoNetworkTransport();
+            OutgoingNetworkTransport transport = Transport.getOutgoingTransport(settings);
             final InputHandler inputHandler = new InputHandler(new Assembler(this));
             addFrameSizeObserver(inputHandler);
             ExceptionHandlingByteBufferReceiver secureReceiver = securityLayer.receiver(inputHandler);
@@ -416,6 +417,19 @@ public class Connection extends ConnectionInvoker
         s.send(event);
     }
 
+    /**
+     * Encodes the given method ahead of it being sent, if the sender supports that, so that callers can encode
+     * outside of the locks they hold while sending.
+     */
+    public void encode(Method method)
+    {
+        ProtocolEventSender s = sender;
+        if (s instanceof Disassembler)
+        {
+            ((Disassembler) s).encode(method);
+        }
+    }
+
     public void flush()
     {
         if(LOGGER.isDebugEnabled())
@@ -21,9 +21,11 @@ package org.apache.qpid.transport;
  */
 
 
+import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.apache.qpid.transport.codec.BBDecoder;
 import org.apache.qpid.transport.codec.Decoder;
 import org.apache.qpid.transport.codec.Encoder;
 
@@ -68,6 +70,10 @@ public final class MessageProperties extends Struct {
     private byte[] userId;
     private byte[] appId;
     private Map<String,Object> applicationHeaders;
+    // the application headers as received, decoded into applicationHeaders when first asked for
+    private byte[] encodedApplicationHeaders;
+
+    private static final Object ABSENT = new Object();
 
 
     public MessageProperties() {}
@@ -328,16 +334,56 @@ public final class MessageProperties extends Struct {
     public final MessageProperties clearApplicationHeaders() {
         packing_flags &= ~1;
         this.applicationHeaders = null;
+        this.encodedApplicationHeaders = null;
         setDirty(true);
         return this;
     }
 
     public final Map<String,Object> getApplicationHeaders() {
+        if (encodedApplicationHeaders != null)
+        {
+            BBDecoder dec = new BBDecoder();
+            dec.init(ByteBuffer.wrap(encodedApplicationHeaders));
+            this.applicationHeaders = dec.readMap();
+            this.encodedApplicationHeaders = null;
+        }
         return applicationHeaders;
     }
 
+    /**
+     * Returns the value of a single application header.  Until the application headers have been decoded as a whole,
+     * the value is looked up in their encoded form.
+     */
+    public final Object getApplicationHeader(String name) {
+        Object value = lookupApplicationHeader(name);
+        return value == ABSENT ? null : value;
+    }
+
+    public final boolean hasApplicationHeader(String name) {
+        return lookupApplicationHeader(name) != ABSENT;
+    }
+
+    private Object lookupApplicationHeader(String name)
+    {
+        if (encodedApplicationHeaders != null)
+        {
+            BBDecoder dec = new BBDecoder();
+            dec.init(ByteBuffer.wrap(encodedApplicationHeaders));
+            return dec.readMapValue(name, ABSENT);
+        }
+        else if (applicationHeaders != null && applicationHeaders.containsKey(name))
+        {
+            return applicationHeaders.get(name);
+        }
+        else
+        {
+            return ABSENT;
+        }
+    }
+
     public final MessageProperties setApplicationHeaders(Map<String,Object> value) {
         this.applicationHeaders = value;
+        this.encodedApplicationHeaders = null;
         packing_flags |= 1;
         setDirty(true);
         return this;
@@ -387,7 +433,14 @@ public final class MessageProperties extends Struct {
         }
         if ((packing_flags & 1) != 0)
         {
-            enc.writeMap(this.applicationHeaders);
+            if (this.encodedApplicationHeaders != null)
+            {
+                enc.writeEncodedMap(this.encodedApplicationHeaders);
+            }
+            else
+            {
+                enc.writeMap(this.applicationHeaders);
+            }
         }
 
     }
@@ -429,7 +482,8 @@ public final class MessageProperties extends Struct {
         }
         if ((packing_flags & 1) != 0)
         {
-            this.applicationHeaders = dec.readMap();
+            this.applicationHeaders = null;
+            this.encodedApplicationHeaders = dec.readEncodedMap();
         }
 
     }
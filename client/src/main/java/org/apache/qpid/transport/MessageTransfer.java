@@ -28,6 +28,7 @@ import java.util.Map;
 import org.apache.qpid.transport.codec.Decoder;
 import org.apache.qpid.transport.codec.Encoder;
 import org.apache.qpid.transport.network.Frame;
+import org.apache.qpid.transport.network.PooledReceiveBuffer;
 import org.apache.qpid.util.Strings;
 
 
@@ -67,6 +68,7 @@ public final class MessageTransfer extends Method {
     private MessageAcquireMode acquireMode;
     private Header header;
     private ByteBuffer _body;
+    private PooledReceiveBuffer _receiveBuffer;
 
 
     public MessageTransfer() {}
@@ -203,6 +205,7 @@ public final class MessageTransfer extends Method {
     @Override
     public final void setBody(ByteBuffer body)
     {
+        releaseBody();
         if (body == null)
         {
             _bodySize = 0;
@@ -215,6 +218,24 @@ public final class MessageTransfer extends Method {
         }
     }
 
+    @Override
+    public final void setBody(ByteBuffer body, PooledReceiveBuffer receiveBuffer)
+    {
+        setBody(body);
+        _receiveBuffer = receiveBuffer;
+    }
+
+    @Override
+    public final void releaseBody()
+    {
+        if (_receiveBuffer != null)
+        {
+            _receiveBuffer.release();
+            _receiveBuffer = null;
+            _body = null;
+        }
+    }
+
     @Override
     public int getBodySize()
     {
@@ -301,6 +322,7 @@ public final class MessageTransfer extends Method {
 
     public void dispose()
     {
+        releaseBody();
         if (_body != null)
         {
             _body = null;
@@ -24,7 +24,9 @@ import static org.apache.qpid.transport.util.Functions.str;
 
 import java.nio.ByteBuffer;
 
+import org.apache.qpid.transport.network.Disassembler;
 import org.apache.qpid.transport.network.Frame;
+import org.apache.qpid.transport.network.PooledReceiveBuffer;
 
 /**
  * Method
@@ -56,6 +58,7 @@ public abstract class Method extends Struct implements ProtocolEvent
     private boolean batch = false;
     private boolean unreliable = false;
     private CompletionListener completionListener;
+    private Disassembler.EncodedFrames encodedFrames;
 
     public final int getId()
     {
@@ -115,6 +118,16 @@ public abstract class Method extends Struct implements ProtocolEvent
 
     public abstract boolean hasPayload();
 
+    public final Disassembler.EncodedFrames getEncodedFrames()
+    {
+        return encodedFrames;
+    }
+
+    public final void setEncodedFrames(Disassembler.EncodedFrames encodedFrames)
+    {
+        this.encodedFrames = encodedFrames;
+    }
+
     public Header getHeader()
     {
         return null;
@@ -135,6 +148,22 @@ public abstract class Method extends Struct implements ProtocolEvent
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Sets a body that is a view of a pooled receive buffer.  The method takes over the given reference to the
+     * buffer and gives it up when {@link #releaseBody()} is called.
+     */
+    public void setBody(ByteBuffer body, PooledReceiveBuffer receiveBuffer)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Releases the pooled receive buffer backing the body, if any.  The body must not be accessed afterwards.
+     */
+    public void releaseBody()
+    {
+    }
+
     public int getBodySize()
     {
         return 0;
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport;
+
+import static org.apache.qpid.util.Serial.ge;
+import static org.apache.qpid.util.Serial.gt;
+import static org.apache.qpid.util.Serial.le;
+import static org.apache.qpid.util.Serial.lt;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A RangeSet holding its ranges as packed lower/upper pairs in a single int array, ordered by serial number
+ * comparison.  Ranges are located with a binary search and are only materialised as {@link Range} objects when
+ * iterated over or asked for.
+ */
+public class PackedRangeSet implements RangeSet
+{
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private int[] _bounds;
+    private int _size;
+
+    public PackedRangeSet()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PackedRangeSet(int size)
+    {
+        _bounds = new int[2 * Math.max(1, size)];
+    }
+
+    private PackedRangeSet(PackedRangeSet copy)
+    {
+        _bounds = Arrays.copyOf(copy._bounds, Math.max(2, 2 * copy._size));
+        _size = copy._size;
+    }
+
+    public int size()
+    {
+        return _size;
+    }
+
+    public Iterator<Range> iterator()
+    {
+        return new RangeIterator();
+    }
+
+    public Range getFirst()
+    {
+        return range(0);
+    }
+
+    public Range getLast()
+    {
+        return range(_size - 1);
+    }
+
+    public boolean includes(Range range)
+    {
+        int index = indexOfFirstUpperAtLeast(range.getLower());
+        return index < _size
+               && le(lower(index), range.getLower())
+               && le(range.getUpper(), upper(index));
+    }
+
+    public boolean includes(int n)
+    {
+        int index = indexOfFirstUpperAtLeast(n);
+        return index < _size && le(lower(index), n);
+    }
+
+    public void add(Range range)
+    {
+        add(range.getLower(), range.getUpper());
+    }
+
+    public void add(int lower, int upper)
+    {
+        // ranges are usually added in ascending order, so check for an append first
+        if (_size == 0 || lt(upper(_size - 1) + 1, lower))
+        {
+            insert(_size, lower, upper);
+            return;
+        }
+
+        // the ranges touching [lower, upper] are those from the first whose upper bound is not before lower - 1
+        // up to the last whose lower bound is not after upper + 1
+        int first = indexOfFirstUpperAtLeast(lower - 1);
+        int end = first;
+        while (end < _size && le(lower(end), upper + 1))
+        {
+            end++;
+        }
+
+        if (first == end)
+        {
+            insert(first, lower, upper);
+        }
+        else
+        {
+            _bounds[2 * first] = lt(lower(first), lower) ? lower(first) : lower;
+            _bounds[2 * first + 1] = gt(upper(end - 1), upper) ? upper(end - 1) : upper;
+            int removed = end - first - 1;
+            if (removed > 0)
+            {
+                System.arraycopy(_bounds, 2 * end, _bounds, 2 * (first + 1), 2 * (_size - end));
+                _size -= removed;
+            }
+        }
+    }
+
+    public void add(int value)
+    {
+        add(value, value);
+    }
+
+    public void subtract(final RangeSet other)
+    {
+        final Iterator<Range> otherIter = other.iterator();
+        if (_size == 0 || !otherIter.hasNext())
+        {
+            return;
+        }
+
+        // each range of the other set splits at most one of ours in two
+        final int[] result = new int[2 * (_size + other.size())];
+        int count = 0;
+        Range otherRange = otherIter.next();
+        for (int i = 0; i < _size; i++)
+        {
+            int lower = lower(i);
+            int upper = upper(i);
+            boolean remaining = true;
+            while (otherRange != null)
+            {
+                if (lt(otherRange.getUpper(), lower))
+                {
+                    otherRange = otherIter.hasNext() ? otherIter.next() : null;
+                }
+                else if (gt(otherRange.getLower(), upper))
+                {
+                    break;
+                }
+                else
+                {
+                    if (lt(lower, otherRange.getLower()))
+                    {
+                        result[2 * count] = lower;
+                        result[2 * count + 1] = otherRange.getLower() - 1;
+                        count++;
+                    }
+                    if (lt(otherRange.getUpper(), upper))
+                    {
+                        lower = otherRange.getUpper() + 1;
+                        otherRange = otherIter.hasNext() ? otherIter.next() : null;
+                    }
+                    else
+                    {
+                        remaining = false;
+                        break;
+                    }
+                }
+            }
+            if (remaining)
+            {
+                result[2 * count] = lower;
+                result[2 * count + 1] = upper;
+                count++;
+            }
+        }
+        _bounds = result;
+        _size = count;
+    }
+
+    public void clear()
+    {
+        _size = 0;
+    }
+
+    public RangeSet copy()
+    {
+        return new PackedRangeSet(this);
+    }
+
+    private int lower(int index)
+    {
+        return _bounds[2 * index];
+    }
+
+    private int upper(int index)
+    {
+        return _bounds[2 * index + 1];
+    }
+
+    private Range range(int index)
+    {
+        if (index < 0 || index >= _size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        }
+        return Range.newInstance(lower(index), upper(index));
+    }
+
+    /**
+     * @return the index of the first range whose upper bound is not before the given value, or the number of
+     * ranges if there is none
+     */
+    private int indexOfFirstUpperAtLeast(int value)
+    {
+        int low = 0;
+        int high = _size;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (ge(upper(mid), value))
+            {
+                high = mid;
+            }
+            else
+            {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private void insert(int index, int lower, int upper)
+    {
+        if (2 * (_size + 1) > _bounds.length)
+        {
+            _bounds = Arrays.copyOf(_bounds, 2 * _bounds.length);
+        }
+        if (index < _size)
+        {
+            System.arraycopy(_bounds, 2 * index, _bounds, 2 * (index + 1), 2 * (_size - index));
+        }
+        _bounds[2 * index] = lower;
+        _bounds[2 * index + 1] = upper;
+        _size++;
+    }
+
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder();
+        str.append("{");
+        for (int i = 0; i < _size; i++)
+        {
+            if (i > 0)
+            {
+                str.append(", ");
+            }
+            str.append("[").append(lower(i)).append(", ").append(upper(i)).append("]");
+        }
+        str.append("}");
+        return str.toString();
+    }
+
+    private class RangeIterator implements Iterator<Range>
+    {
+        private int _index;
+
+        public boolean hasNext()
+        {
+            return _index < _size;
+        }
+
+        public Range next()
+        {
+            if (_index >= _size)
+            {
+                throw new NoSuchElementException();
+            }
+            return range(_index++);
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport;
+
+/**
+ * The outgoing commands of a session retained for replay, indexed by command id.
+ * <p>
+ * The ids of the retained commands are dense and span no more than the session's command limit, so they are held
+ * in a power-of-two ring array indexed by the low bits of the id.  The array starts small and doubles whenever a
+ * command would land in a slot still holding an older command.  Not thread safe; the session guards it with its
+ * commands lock.
+ */
+final class ReplayBuffer
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Method[] _commands = new Method[INITIAL_CAPACITY];
+    private int _mask = INITIAL_CAPACITY - 1;
+    private int _size;
+
+    Method get(int id)
+    {
+        Method command = _commands[id & _mask];
+        return command != null && command.getId() == id ? command : null;
+    }
+
+    void put(int id, Method command)
+    {
+        Method existing = _commands[id & _mask];
+        while (existing != null && existing.getId() != id)
+        {
+            grow();
+            existing = _commands[id & _mask];
+        }
+        if (existing == null)
+        {
+            _size++;
+        }
+        _commands[id & _mask] = command;
+    }
+
+    Method remove(int id)
+    {
+        int index = id & _mask;
+        Method command = _commands[index];
+        if (command != null && command.getId() == id)
+        {
+            _commands[index] = null;
+            _size--;
+            return command;
+        }
+        return null;
+    }
+
+    int size()
+    {
+        return _size;
+    }
+
+    int capacity()
+    {
+        return _commands.length;
+    }
+
+    private void grow()
+    {
+        final Method[] old = _commands;
+        int capacity = old.length;
+        boolean placed;
+        do
+        {
+            capacity <<= 1;
+            _commands = new Method[capacity];
+            _mask = capacity - 1;
+            placed = true;
+            for (Method command : old)
+            {
+                if (command != null)
+                {
+                    int index = command.getId() & _mask;
+                    if (_commands[index] != null)
+                    {
+                        placed = false;
+                        break;
+                    }
+                    _commands[index] = command;
+                }
+            }
+        }
+        while (!placed);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ReplayBuffer[size=" + _size + ", capacity=" + _commands.length + "]";
+    }
+}
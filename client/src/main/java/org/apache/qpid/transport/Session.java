@@ -113,7 +113,7 @@ public class Session extends SessionInvoker
     // outgoing command count
     private int commandsOut = 0;
     private final int commandLimit = Integer.getInteger("qpid.session.command_limit", 64 * 1024);
-    private Map<Integer,Method> commands = new HashMap<Integer, Method>();
+    private final ReplayBuffer commands = new ReplayBuffer();
     private final Object commandsLock = new Object();
     private int commandBytes = 0;
     private int byteLimit = Integer.getInteger("qpid.session.byte_limit", 1024*1024);
@@ -371,6 +371,28 @@ public class Session extends SessionInvoker
         return commands.remove(id);
     }
 
+    /**
+     * Returns the number of sent commands retained for replay until the broker reports them complete.
+     */
+    public int getReplayBufferCommands()
+    {
+        synchronized (commandsLock)
+        {
+            return commands.size();
+        }
+    }
+
+    /**
+     * Returns the total body size of the sent commands retained for replay.
+     */
+    public int getReplayBufferBytes()
+    {
+        synchronized (commandsLock)
+        {
+            return commandBytes;
+        }
+    }
+
     final void commandPoint(int id)
     {
         synchronized (processedLock)
@@ -622,6 +644,11 @@ public class Session extends SessionInvoker
                 acquireCredit();
             }
 
+            // encode before taking the commands lock, so that sessions sharing the connection only serialize on
+            // the command id assignment and the sending of the encoded frames
+            m.setChannel(channel);
+            connection.encode(m);
+
             synchronized (commandsLock)
             {
                 if (state == DETACHED && m.isUnreliable())
@@ -270,6 +270,64 @@ public abstract class AbstractDecoder implements Decoder
         return result;
     }
 
+    public byte[] readEncodedMap()
+    {
+        long size = readUint32();
+
+        if (size == 0)
+        {
+            return null;
+        }
+
+        byte[] encoded = new byte[4 + (int) size];
+        encoded[0] = (byte) (size >>> 24);
+        encoded[1] = (byte) (size >>> 16);
+        encoded[2] = (byte) (size >>> 8);
+        encoded[3] = (byte) size;
+        Binary content = get((int) size);
+        System.arraycopy(content.array(), content.offset(), encoded, 4, (int) size);
+        return encoded;
+    }
+
+    /**
+     * Reads a map, decoding only the value of the given key and skipping over all other entries.
+     *
+     * @param key the key to look up
+     * @param absent the value to return if the map does not contain the key
+     * @return the value of the key, or <code>absent</code>
+     */
+    public Object readMapValue(String key, Object absent)
+    {
+        long size = readUint32();
+
+        if (size == 0)
+        {
+            return absent;
+        }
+
+        long count = readUint32();
+        Binary target = new Binary(key.getBytes(StandardCharsets.UTF_8));
+        Object result = absent;
+        for (int i = 0; i < count; i++)
+        {
+            Binary entryKey = get(readUint8());
+            Type t = getType(get());
+            if (target.equals(entryKey))
+            {
+                result = read(t);
+            }
+            else
+            {
+                long valueSize = readSize(t);
+                if (valueSize > 0)
+                {
+                    get((int) valueSize);
+                }
+            }
+        }
+        return result;
+    }
+
     public List<Object> readList()
     {
         long size = readUint32();
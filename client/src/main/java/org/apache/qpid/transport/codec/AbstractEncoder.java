@@ -350,6 +350,18 @@ public abstract class AbstractEncoder implements Encoder
         endSize32(pos);
     }
 
+    public void writeEncodedMap(byte[] encodedMap)
+    {
+        if (encodedMap == null)
+        {
+            writeUint32(0);
+        }
+        else
+        {
+            put(encodedMap);
+        }
+    }
+
     protected void writeMapEntries(Map<String,Object> map)
     {
         for (Map.Entry<String,Object> entry : map.entrySet())
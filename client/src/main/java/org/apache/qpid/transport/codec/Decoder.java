@@ -172,6 +172,14 @@ public interface Decoder
      * @return the decoded map.
      */
     Map<String,Object> readMap();
+
+    /**
+     * Reads a map without decoding it.
+     *
+     * @return the encoded map including its size, which can be decoded later with {@link #readMap()} or written
+     * again with {@link Encoder#writeEncodedMap(byte[])}, or null if the encoded map was empty.
+     */
+    byte[] readEncodedMap();
     
     /**
      * A list is an ordered sequence of (type, value) pairs. The (type, value) pair forms an item within the list. 
@@ -171,6 +171,13 @@ public interface Encoder
      * @param map the map to be encoded.
      */
     void writeMap(Map<String,Object> map);
+
+    /**
+     * Writes a map previously read without being decoded by {@link Decoder#readEncodedMap()}.
+     *
+     * @param encodedMap the encoded map including its size, or null for an empty map.
+     */
+    void writeEncodedMap(byte[] encodedMap);
     
     /**
      * A list is an ordered sequence of (type, value) pairs. The (type, value) pair forms an item within the list. 
@@ -130,6 +130,7 @@ public class Assembler implements NetworkEventReceiver, NetworkDelegate
         {
             segment = frame.getBody();
             assemble(frame, segment);
+            frame.release();
         }
         else
         {
@@ -159,6 +160,7 @@ public class Assembler implements NetworkEventReceiver, NetworkDelegate
                 for (Frame f : frames)
                 {
                     segment.put(f.getBody());
+                    f.release();
                 }
                 segment.flip();
                 assemble(frame, segment);
@@ -241,7 +243,8 @@ public class Assembler implements NetworkEventReceiver, NetworkDelegate
             break;
         case BODY:
             command = getIncompleteCommand(channel);
-            command.setBody(segment);
+            // a single frame body is a view of the frame, so the command takes over the frame's receive buffer
+            command.setBody(segment, frame.detachReceiveBuffer());
             setIncompleteCommand(channel, null);
             emit(channel, command);
             break;
@@ -113,7 +113,41 @@ public final class Disassembler implements ProtocolEventSender, ProtocolDelegate
         method(method, SegmentType.COMMAND);
     }
 
+    /**
+     * Encodes the frames of the given method ahead of it being sent, so that the encoding happens outside of any
+     * lock held while sending.  The frames are kept by the method and used when it is next sent through this
+     * disassembler, provided its channel and the frame size have not changed in the meantime.
+     */
+    public void encode(Method method)
+    {
+        method.setEncodedFrames(encode(method, method.getEncodedTrack() == Frame.L4
+                                               ? SegmentType.COMMAND
+                                               : SegmentType.CONTROL));
+    }
+
     private void method(Method method, SegmentType type)
+    {
+        EncodedFrames frames = method.getEncodedFrames();
+        method.setEncodedFrames(null);
+        if (frames == null || !frames.isValidFor(this, method))
+        {
+            frames = encode(method, type);
+        }
+        else
+        {
+            frames.setSync(method.isSync());
+        }
+
+        synchronized (_sendlock)
+        {
+            for (ByteBuffer buffer : frames._buffers)
+            {
+                ByteBufferUtils.transfer(_sender, buffer);
+            }
+        }
+    }
+
+    private EncodedFrames encode(Method method, SegmentType type)
     {
         BBEncoder enc = _encoder.get();
         enc.init();
@@ -165,39 +199,83 @@ public final class Disassembler implements ProtocolEventSender, ProtocolDelegate
             headerLimit = enc.position();
         }
 
-        synchronized (_sendlock)
+        final int maxPayload = _maxPayload;
+        final ByteBuffer encoded = enc.underlyingBuffer();
+        encoded.flip();
+        final ByteBuffer body = payload ? method.getBody() : null;
+
+        int frameCount = frameCount(methodLimit, maxPayload);
+        if (payload)
         {
-            ByteBuffer buf = enc.underlyingBuffer();
-            buf.flip();
-            ByteBuffer copy = ByteBuffer.allocate(buf.remaining());
-            ByteBufferUtils.copyTo(buf, copy);
-            copy.flip();
-
-            final ByteBuffer methodBuf = ByteBufferUtils.view(copy,0, methodLimit);
-            fragment(flags, type, method, methodBuf);
-            if (payload)
+            frameCount += frameCount(headerLimit - methodLimit, maxPayload);
+        }
+        int bodyFrameCount = body == null ? 0 : frameCount(body.remaining(), maxPayload);
+
+        // the method and header segments are copied, interleaved with their frame headers, into a single buffer
+        // which also holds the frame headers of the body fragments; the body itself is not copied
+        final ByteBuffer frames = ByteBuffer.allocate(encoded.remaining()
+                                                      + HEADER_SIZE * (frameCount + bodyFrameCount));
+        final byte track = method.getEncodedTrack() == Frame.L4 ? (byte) 1 : (byte) 0;
+        final int channel = method.getChannel();
+
+        fragment(frames, flags, type, track, channel,
+                 maxPayload, ByteBufferUtils.view(encoded, 0, methodLimit));
+        if (payload)
+        {
+            fragment(frames, body == null ? LAST_SEG : 0x0, SegmentType.HEADER, track, channel, maxPayload,
+                     ByteBufferUtils.view(encoded, methodLimit, headerLimit - methodLimit));
+        }
+
+        final ByteBuffer allFrames = frames.duplicate();
+        allFrames.clear();
+        final ByteBuffer[] buffers = new ByteBuffer[1 + 2 * bodyFrameCount];
+        buffers[0] = ByteBufferUtils.view(allFrames, 0, frames.position());
+        if (body != null)
+        {
+            final ByteBuffer bodyBuf = body.duplicate();
+            int remaining = bodyBuf.remaining();
+            for (int i = 0; i < bodyFrameCount; i++)
             {
-                ByteBuffer body = method.getBody();
-                ByteBuffer headerBuf = ByteBufferUtils.view(copy, methodLimit, headerLimit);
-                fragment(body == null ? LAST_SEG : 0x0, SegmentType.HEADER, method, headerBuf);
-                if (body != null)
+                int size = min(maxPayload, remaining);
+                remaining -= size;
+
+                byte newflags = LAST_SEG;
+                if (i == 0)
                 {
-                    fragment(LAST_SEG, SegmentType.BODY, method, body.duplicate());
+                    newflags |= FIRST_FRAME;
                 }
+                if (remaining == 0)
+                {
+                    newflags |= LAST_FRAME;
+                }
+
+                int headerPosition = frames.position();
+                putFrameHeader(frames, newflags, (byte) SegmentType.BODY.getValue(), track, channel, size);
+                buffers[1 + 2 * i] = ByteBufferUtils.view(allFrames, headerPosition, HEADER_SIZE);
+                buffers[2 + 2 * i] = ByteBufferUtils.view(bodyBuf, 0, size);
+                bodyBuf.position(bodyBuf.position() + size);
             }
         }
+
+        return new EncodedFrames(this, maxPayload, channel, buffers,
+                                 type == SegmentType.COMMAND ? HEADER_SIZE + 3 : -1, method.isSync());
+    }
+
+    private static int frameCount(int segmentSize, int maxPayload)
+    {
+        return segmentSize == 0 ? 1 : (segmentSize + maxPayload - 1) / maxPayload;
     }
 
-    private void fragment(byte flags, SegmentType type, ProtocolEvent event, ByteBuffer buffer)
+    private static void fragment(ByteBuffer frames, byte flags, SegmentType type, byte track, int channel,
+                                 int maxPayload, ByteBuffer segment)
     {
         byte typeb = (byte) type.getValue();
-        byte track = event.getEncodedTrack() == Frame.L4 ? (byte) 1 : (byte) 0;
 
-        int remaining = buffer.remaining();
+        int remaining = segment.remaining();
         boolean first = true;
         while (true)
         {
-            int size = min(_maxPayload, remaining);
+            int size = min(maxPayload, remaining);
             remaining -= size;
 
             byte newflags = flags;
@@ -211,7 +289,12 @@ public final class Disassembler implements ProtocolEventSender, ProtocolDelegate
                 newflags |= LAST_FRAME;
             }
 
-            frame(newflags, typeb, track, event.getChannel(), size, buffer);
+            putFrameHeader(frames, newflags, typeb, track, channel, size);
+            if (size > 0)
+            {
+                frames.put(ByteBufferUtils.view(segment, 0, size));
+                segment.position(segment.position() + size);
+            }
 
             if (remaining == 0)
             {
@@ -220,25 +303,55 @@ public final class Disassembler implements ProtocolEventSender, ProtocolDelegate
         }
     }
 
-    private void frame(byte flags, byte type, byte track, int channel, int size, ByteBuffer buffer)
+    private static void putFrameHeader(ByteBuffer frames, byte flags, byte type, byte track, int channel, int size)
     {
-        ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE);
+        frames.put(flags);
+        frames.put(type);
+        frames.putShort((short) (size + HEADER_SIZE));
+        frames.put((byte) 0);
+        frames.put(track);
+        frames.putShort((short) channel);
+        frames.putInt(0);
+    }
 
-        data.put(0, flags);
-        data.put(1, type);
-        data.putShort(2, (short) (size + HEADER_SIZE));
-        data.put(4, (byte) 0);
-        data.put(5, track);
-        data.putShort(6, (short) channel);
+    /**
+     * The encoded frames of a method, ready to be handed to the sender.
+     */
+    public static final class EncodedFrames
+    {
+        private final Disassembler _disassembler;
+        private final int _maxPayload;
+        private final int _channel;
+        private final ByteBuffer[] _buffers;
+        private final int _syncOffset;
+        private boolean _sync;
 
+        private EncodedFrames(Disassembler disassembler, int maxPayload, int channel, ByteBuffer[] buffers,
+                              int syncOffset, boolean sync)
+        {
+            _disassembler = disassembler;
+            _maxPayload = maxPayload;
+            _channel = channel;
+            _buffers = buffers;
+            _syncOffset = syncOffset;
+            _sync = sync;
+        }
 
-        _sender.send(data);
+        private boolean isValidFor(Disassembler disassembler, Method method)
+        {
+            return _disassembler == disassembler
+                   && _maxPayload == disassembler._maxPayload
+                   && _channel == method.getChannel();
+        }
 
-        if(size > 0)
+        private void setSync(boolean sync)
         {
-            final ByteBuffer view = ByteBufferUtils.view(buffer, 0, size);
-            _sender.send(view);
-            buffer.position(buffer.position() + size);
+            if (_syncOffset >= 0 && sync != _sync)
+            {
+                // the sync flag is the low bit of the session header following the command type
+                _buffers[0].put(_syncOffset, sync ? (byte) 0x01 : (byte) 0x00);
+                _sync = sync;
+            }
         }
     }
 
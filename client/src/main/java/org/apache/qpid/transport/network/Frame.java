@@ -57,15 +57,28 @@ public final class Frame implements NetworkEvent
     final private byte track;
     final private int channel;
     final private ByteBuffer body;
+    private PooledReceiveBuffer receiveBuffer;
 
     public Frame(byte flags, SegmentType type, byte track, int channel,
                  ByteBuffer body)
+    {
+        this(flags, type, track, channel, body, null);
+    }
+
+    /**
+     * @param receiveBuffer the retained pooled chunk the body is a view of, or null if the body is not pooled.  The
+     *                      frame owns the reference until it is {@link #release() released} or
+     *                      {@link #detachReceiveBuffer() detached}.
+     */
+    public Frame(byte flags, SegmentType type, byte track, int channel,
+                 ByteBuffer body, PooledReceiveBuffer receiveBuffer)
     {
         this.flags = flags;
         this.type = type;
         this.track = track;
         this.channel = channel;
         this.body = body;
+        this.receiveBuffer = receiveBuffer;
     }
 
     public ByteBuffer getBody()
@@ -73,6 +86,27 @@ public final class Frame implements NetworkEvent
         return body.slice();
     }
 
+    /**
+     * Hands the reference to the pooled chunk backing the body over to the caller.
+     *
+     * @return the chunk, or null if the body is not pooled or has already been released or detached
+     */
+    public PooledReceiveBuffer detachReceiveBuffer()
+    {
+        PooledReceiveBuffer buffer = receiveBuffer;
+        receiveBuffer = null;
+        return buffer;
+    }
+
+    public void release()
+    {
+        PooledReceiveBuffer buffer = detachReceiveBuffer();
+        if (buffer != null)
+        {
+            buffer.release();
+        }
+    }
+
     public byte getFlags()
     {
         return flags;
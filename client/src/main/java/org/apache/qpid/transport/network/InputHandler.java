@@ -200,7 +200,9 @@ public class InputHandler implements ExceptionHandlingByteBufferReceiver, FrameS
                 return FRAME_BODY;
             }
         case FRAME_BODY:
-            Frame frame = new Frame(flags, type, track, channel, input.slice());
+            // a frame read in one piece is a view of the receive buffer, which must be retained if pooled
+            PooledReceiveBuffer receiveBuffer = ReceiveBufferPool.retainCurrentBuffer(input);
+            Frame frame = new Frame(flags, type, track, channel, input.slice(), receiveBuffer);
             receiver.received(frame);
             needed = Frame.HEADER_SIZE;
             return FRAME_HDR;
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport.network;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference counted chunk of memory into which the network layer reads.  The reader holds one reference while it
+ * fills the chunk; any component that keeps a view of the received bytes beyond the call that delivered them must
+ * {@link #retain()} the chunk and {@link #release()} it once the view is no longer needed.  The chunk is returned to
+ * its pool when the last reference is released.
+ */
+public final class PooledReceiveBuffer
+{
+    private final ReceiveBufferPool _pool;
+    private final byte[] _array;
+    private final AtomicInteger _referenceCount = new AtomicInteger();
+
+    PooledReceiveBuffer(ReceiveBufferPool pool, int size)
+    {
+        _pool = pool;
+        _array = new byte[size];
+    }
+
+    public byte[] array()
+    {
+        return _array;
+    }
+
+    public int getReferenceCount()
+    {
+        return _referenceCount.get();
+    }
+
+    public PooledReceiveBuffer retain()
+    {
+        while (true)
+        {
+            int count = _referenceCount.get();
+            if (count <= 0)
+            {
+                throw new IllegalStateException("Receive buffer has already been released");
+            }
+            if (_referenceCount.compareAndSet(count, count + 1))
+            {
+                return this;
+            }
+        }
+    }
+
+    public void release()
+    {
+        int count = _referenceCount.decrementAndGet();
+        if (count == 0)
+        {
+            _pool.recycle(this);
+        }
+        else if (count < 0)
+        {
+            _referenceCount.incrementAndGet();
+            throw new IllegalStateException("Receive buffer has already been released");
+        }
+    }
+
+    void acquired()
+    {
+        _referenceCount.set(1);
+    }
+}
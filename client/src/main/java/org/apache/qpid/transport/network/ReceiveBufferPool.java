@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport.network;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.qpid.configuration.CommonProperties;
+
+/**
+ * A JVM-wide pool of {@link PooledReceiveBuffer}s of a single size, used by the network readers instead of
+ * allocating a fresh array each time the previous one has been filled past its threshold.
+ * <p>
+ * While a reader delivers bytes read into a pooled chunk, the chunk is published as the {@link #currentBuffer()
+ * current buffer} of the reading thread so that the decoders can retain it for the views they hand on.  Decoders that
+ * cannot track the lifetime of such a view must copy the bytes instead.  A chunk that is never released is simply
+ * left to the garbage collector; it is only ever reused once its reference count has dropped to zero.
+ */
+public final class ReceiveBufferPool
+{
+    private static final int MAX_POOLED_BUFFERS =
+            Integer.getInteger(CommonProperties.IO_NETWORK_TRANSPORT_RECEIVE_BUFFER_POOL_SIZE_PROP_NAME,
+                               CommonProperties.IO_NETWORK_TRANSPORT_RECEIVE_BUFFER_POOL_SIZE_DEFAULT);
+
+    private static final ConcurrentMap<Integer, ReceiveBufferPool> POOLS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<PooledReceiveBuffer> CURRENT_BUFFER = new ThreadLocal<>();
+
+    private final int _bufferSize;
+    private final int _maxPooledBuffers;
+    private final Queue<PooledReceiveBuffer> _pooledBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _pooledCount = new AtomicInteger();
+    private final AtomicLong _allocations = new AtomicLong();
+    private final AtomicLong _reuses = new AtomicLong();
+    private final AtomicLong _releases = new AtomicLong();
+    private final AtomicLong _outstanding = new AtomicLong();
+
+    public ReceiveBufferPool(int bufferSize, int maxPooledBuffers)
+    {
+        _bufferSize = bufferSize;
+        _maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * Returns the shared pool for buffers of the given size, or null if receive buffer pooling is disabled.
+     */
+    public static ReceiveBufferPool getInstance(int bufferSize)
+    {
+        if (MAX_POOLED_BUFFERS <= 0)
+        {
+            return null;
+        }
+        ReceiveBufferPool pool = POOLS.get(bufferSize);
+        if (pool == null)
+        {
+            pool = new ReceiveBufferPool(bufferSize, MAX_POOLED_BUFFERS);
+            ReceiveBufferPool existing = POOLS.putIfAbsent(bufferSize, pool);
+            if (existing != null)
+            {
+                pool = existing;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the pooled chunk backing the bytes currently being delivered on the calling thread, or null if they
+     * are not backed by a pooled chunk.
+     */
+    public static PooledReceiveBuffer currentBuffer()
+    {
+        return CURRENT_BUFFER.get();
+    }
+
+    /**
+     * Returns whether the given buffer is a view of the pooled chunk currently being delivered on the calling thread.
+     */
+    public static boolean isCurrentBuffer(ByteBuffer buffer)
+    {
+        PooledReceiveBuffer current = CURRENT_BUFFER.get();
+        return current != null && buffer.hasArray() && buffer.array() == current.array();
+    }
+
+    /**
+     * Retains the pooled chunk the given buffer is a view of, if it is the chunk currently being delivered on the
+     * calling thread.
+     *
+     * @return the retained chunk, or null if the buffer is not a view of a pooled chunk
+     */
+    public static PooledReceiveBuffer retainCurrentBuffer(ByteBuffer buffer)
+    {
+        return isCurrentBuffer(buffer) ? CURRENT_BUFFER.get().retain() : null;
+    }
+
+    public static void setCurrentBuffer(PooledReceiveBuffer buffer)
+    {
+        if (buffer == null)
+        {
+            CURRENT_BUFFER.remove();
+        }
+        else
+        {
+            CURRENT_BUFFER.set(buffer);
+        }
+    }
+
+    /**
+     * Returns a chunk holding a single reference owned by the caller.
+     */
+    public PooledReceiveBuffer allocate()
+    {
+        PooledReceiveBuffer buffer = _pooledBuffers.poll();
+        if (buffer == null)
+        {
+            buffer = new PooledReceiveBuffer(this, _bufferSize);
+            _allocations.incrementAndGet();
+        }
+        else
+        {
+            _pooledCount.decrementAndGet();
+            _reuses.incrementAndGet();
+        }
+        _outstanding.incrementAndGet();
+        buffer.acquired();
+        return buffer;
+    }
+
+    void recycle(PooledReceiveBuffer buffer)
+    {
+        _releases.incrementAndGet();
+        _outstanding.decrementAndGet();
+        if (_pooledCount.incrementAndGet() <= _maxPooledBuffers)
+        {
+            _pooledBuffers.offer(buffer);
+        }
+        else
+        {
+            _pooledCount.decrementAndGet();
+        }
+    }
+
+    public int getBufferSize()
+    {
+        return _bufferSize;
+    }
+
+    /** Number of chunks that had to be newly allocated. */
+    public long getAllocations()
+    {
+        return _allocations.get();
+    }
+
+    /** Number of chunks handed out again after having been returned to the pool. */
+    public long getReuses()
+    {
+        return _reuses.get();
+    }
+
+    /** Number of chunks whose last reference has been released. */
+    public long getReleases()
+    {
+        return _releases.get();
+    }
+
+    /** Number of chunks handed out whose last reference has not yet been released. */
+    public long getOutstanding()
+    {
+        return _outstanding.get();
+    }
+
+    /** Number of released chunks currently held for reuse. */
+    public int getPooled()
+    {
+        return _pooledCount.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ReceiveBufferPool[bufferSize=" + _bufferSize
+               + ", allocations=" + getAllocations()
+               + ", reuses=" + getReuses()
+               + ", releases=" + getReleases()
+               + ", outstanding=" + getOutstanding()
+               + ", pooled=" + getPooled() + "]";
+    }
+}
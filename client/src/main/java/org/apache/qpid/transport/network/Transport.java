@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport.network;
+
+import org.apache.qpid.client.BrokerDetails;
+import org.apache.qpid.transport.ConnectionSettings;
+import org.apache.qpid.transport.network.io.IoNetworkTransport;
+import org.apache.qpid.transport.network.nio.NioNetworkTransport;
+
+public final class Transport
+{
+    private Transport()
+    {
+    }
+
+    /**
+     * Chooses the network transport implementation for the transport named by
+     * {@link ConnectionSettings#getTransport()}.  The <code>nio</code> transport multiplexes all its connections
+     * over a small pool of selector threads; every other transport uses the blocking, thread-per-socket
+     * {@link IoNetworkTransport}.
+     */
+    public static OutgoingNetworkTransport getOutgoingTransport(ConnectionSettings settings)
+    {
+        if (BrokerDetails.NIO.equalsIgnoreCase(settings.getTransport()))
+        {
+            return new NioNetworkTransport();
+        }
+        return new IoNetworkTransport();
+    }
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -34,15 +35,18 @@ import org.apache.qpid.transport.ConnectionSettings;
 import org.apache.qpid.transport.ExceptionHandlingByteBufferReceiver;
 import org.apache.qpid.transport.TransportException;
 import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.OutgoingNetworkTransport;
 import org.apache.qpid.transport.network.TransportActivity;
 
-public class IoNetworkTransport
+public class IoNetworkTransport implements OutgoingNetworkTransport
 {
 
 
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(IoNetworkTransport.class);
     private static final int TIMEOUT = Integer.getInteger(CommonProperties.IO_NETWORK_TRANSPORT_TIMEOUT_PROP_NAME,
                                                               CommonProperties.IO_NETWORK_TRANSPORT_TIMEOUT_DEFAULT);
+    private static final boolean GATHERING_WRITES =
+            Boolean.getBoolean(CommonProperties.IO_NETWORK_TRANSPORT_GATHERING_WRITES_PROP_NAME);
     private NetworkConnection _connection;
 
     private final static Map<String, Socket> _registeredSockets = new ConcurrentHashMap<>();
@@ -58,6 +62,7 @@ public class IoNetworkTransport
                                 ticker);
     }
 
+    @Override
     public NetworkConnection connect(ConnectionSettings settings,
                                      ExceptionHandlingByteBufferReceiver delegate,
                                      TransportActivity transportActivity)
@@ -109,9 +114,11 @@ public class IoNetworkTransport
 
     private Socket connectTcp(final ConnectionSettings settings)
     {
-        final Socket socket = new Socket();
+        Socket socket = null;
         try
         {
+            // a channel backed socket lets the IoSender gather the outgoing buffers rather than copy them
+            socket = GATHERING_WRITES ? SocketChannel.open().socket() : new Socket();
             socket.setReuseAddress(true);
             socket.setTcpNoDelay(settings.isTcpNodelay());
             socket.setSendBufferSize(settings.getWriteBufferSize());
@@ -140,12 +147,15 @@ public class IoNetworkTransport
         }
         catch (IOException e)
         {
-            try
-            {
-                socket.close();
-            }
-            catch (IOException ignore)
+            if (socket != null)
             {
+                try
+                {
+                    socket.close();
+                }
+                catch (IOException ignore)
+                {
+                }
             }
 
             throw new TransportException("Error connecting to broker", e);
@@ -153,6 +163,7 @@ public class IoNetworkTransport
         return socket;
     }
 
+    @Override
     public void close()
     {
         if(_connection != null)
@@ -166,6 +177,7 @@ public class IoNetworkTransport
         _registeredSockets.put(id, socket);
     }
 
+    @Override
     public NetworkConnection getConnection()
     {
         return _connection;
@@ -36,6 +36,8 @@ import org.slf4j.LoggerFactory;
 import org.apache.qpid.thread.Threading;
 import org.apache.qpid.transport.ExceptionHandlingByteBufferReceiver;
 import org.apache.qpid.transport.TransportException;
+import org.apache.qpid.transport.network.PooledReceiveBuffer;
+import org.apache.qpid.transport.network.ReceiveBufferPool;
 import org.apache.qpid.transport.network.Ticker;
 import org.apache.qpid.util.SystemUtils;
 
@@ -54,6 +56,7 @@ final class IoReceiver implements Runnable
     private final long timeout;
     private final AtomicBoolean closed = new AtomicBoolean(false);
     private final Thread receiverThread;
+    private final ReceiveBufferPool bufferPool;
     private static final boolean shutdownBroken;
 
     private Ticker _ticker;
@@ -68,6 +71,7 @@ final class IoReceiver implements Runnable
         this.bufferSize = bufferSize;
         this.socket = socket;
         this.timeout = timeout;
+        this.bufferPool = ReceiveBufferPool.getInstance(bufferSize);
 
         try
         {
@@ -145,7 +149,8 @@ final class IoReceiver implements Runnable
 
         // I set the read buffer size similar to SO_RCVBUF
         // Haven't tested with a lower value to see if it's better or worse
-        byte[] buffer = new byte[bufferSize];
+        PooledReceiveBuffer pooledBuffer = bufferPool == null ? null : bufferPool.allocate();
+        byte[] buffer = pooledBuffer == null ? new byte[bufferSize] : pooledBuffer.array();
         try
         {
             InputStream in = socket.getInputStream();
@@ -161,12 +166,36 @@ final class IoReceiver implements Runnable
                         if (read > 0)
                         {
                             ByteBuffer b = ByteBuffer.wrap(buffer,offset,read);
-                            receiver.received(b);
+                            if (pooledBuffer == null)
+                            {
+                                receiver.received(b);
+                            }
+                            else
+                            {
+                                ReceiveBufferPool.setCurrentBuffer(pooledBuffer);
+                                try
+                                {
+                                    receiver.received(b);
+                                }
+                                finally
+                                {
+                                    ReceiveBufferPool.setCurrentBuffer(null);
+                                }
+                            }
                             offset+=read;
                             if (offset > threshold)
                             {
                                 offset = 0;
-                                buffer = new byte[bufferSize];
+                                if (pooledBuffer == null)
+                                {
+                                    buffer = new byte[bufferSize];
+                                }
+                                else
+                                {
+                                    pooledBuffer.release();
+                                    pooledBuffer = bufferPool.allocate();
+                                    buffer = pooledBuffer.array();
+                                }
                             }
                         }
                         currentTime =  System.currentTimeMillis();
@@ -222,6 +251,10 @@ final class IoReceiver implements Runnable
         }
         finally
         {
+            if (pooledBuffer != null)
+            {
+                pooledBuffer.release();
+            }
             receiver.closed();
             try
             {
@@ -24,7 +24,16 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.net.ssl.SSLSocket;
 
@@ -36,14 +45,26 @@ import org.apache.qpid.transport.ByteBufferSender;
 import org.apache.qpid.transport.SenderClosedException;
 import org.apache.qpid.transport.SenderException;
 import org.apache.qpid.transport.TransportException;
+import org.apache.qpid.transport.ZeroCopyByteBufferSender;
 import org.apache.qpid.util.SystemUtils;
 
 
-public final class IoSender implements Runnable, ByteBufferSender
+/**
+ * Sends bytes on a socket from a dedicated sender thread.
+ * <p>
+ * If the socket was created by a {@link SocketChannel} the sender works in gathering mode: instead of copying
+ * outgoing bytes into its ring buffer it queues the buffers themselves (copying only those passed to
+ * {@link #send(ByteBuffer)}, which remain owned by the caller) and writes them to the channel with
+ * {@link GatheringByteChannel#write(ByteBuffer[])}.  Buffers handed over with {@link #transfer(ByteBuffer)}
+ * reach the socket without being copied.
+ */
+public final class IoSender implements Runnable, ZeroCopyByteBufferSender
 {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(IoSender.class);
 
+    private static final int MAX_GATHERED_BUFFERS = 64;
+
     // by starting here, we ensure that we always test the wraparound
     // case, we should probably make this configurable somehow so that
     // we can test other cases as well
@@ -54,11 +75,18 @@ public final class IoSender implements Runnable, ByteBufferSender
     private final OutputStream out;
 
     private final byte[] buffer;
+    private final int capacity;
+    private final GatheringByteChannel channel;
+    private final Queue<ByteBuffer> pending;
+    private final AtomicLong pendingBytes = new AtomicLong();
     private volatile int head = START;
     private volatile int tail = START;
     private volatile boolean idle = true;
-    private final Object notFull = new Object();
-    private final Object notEmpty = new Object();
+    // locks rather than monitors, so that a virtual sender thread does not pin its carrier while waiting
+    private final Lock notFullLock = new ReentrantLock();
+    private final Condition notFull = notFullLock.newCondition();
+    private final Lock notEmptyLock = new ReentrantLock();
+    private final Condition notEmpty = notEmptyLock.newCondition();
     private final AtomicBoolean closed = new AtomicBoolean(false);
     private final Thread senderThread;
     private IoReceiver _receiver;
@@ -75,7 +103,10 @@ public final class IoSender implements Runnable, ByteBufferSender
     public IoSender(Socket socket, int bufferSize, long timeout)
     {
         this.socket = socket;
-        this.buffer = new byte[pof2(bufferSize)]; // buffer size must be a power of 2
+        this.capacity = pof2(bufferSize); // buffer size must be a power of 2
+        this.channel = socket.getChannel();
+        this.buffer = channel == null ? new byte[capacity] : null;
+        this.pending = channel == null ? null : new ConcurrentLinkedQueue<ByteBuffer>();
         this.timeout = timeout;
         _socketEndpointDescription = String.format("%s-%s", socket.getLocalSocketAddress(), socket.getRemoteSocketAddress());
 
@@ -119,14 +150,18 @@ public final class IoSender implements Runnable, ByteBufferSender
 
     public void send(ByteBuffer buf)
     {
-        checkNotAlreadyClosed();
-
-        if(!senderThread.isAlive())
+        if (channel != null)
         {
-            throw new SenderException(String.format("sender thread for socket %s is not alive",
-                                                    _socketEndpointDescription));
+            final ByteBuffer copy = ByteBuffer.allocate(buf.remaining());
+            copy.put(buf);
+            copy.flip();
+            enqueue(copy);
+            return;
         }
 
+        checkNotAlreadyClosed();
+        checkSenderThreadAlive();
+
         final int size = buffer.length;
         int remaining = buf.remaining();
 
@@ -138,7 +173,8 @@ public final class IoSender implements Runnable, ByteBufferSender
             if (hd - tl >= size)
             {
                 flush();
-                synchronized (notFull)
+                notFullLock.lock();
+                try
                 {
                     final long start = System.currentTimeMillis();
                     long elapsed = 0;
@@ -146,7 +182,7 @@ public final class IoSender implements Runnable, ByteBufferSender
                     {
                         try
                         {
-                            notFull.wait(timeout - elapsed);
+                            notFull.await(timeout - elapsed, TimeUnit.MILLISECONDS);
                         }
                         catch (InterruptedException e)
                         {
@@ -172,6 +208,10 @@ public final class IoSender implements Runnable, ByteBufferSender
                         }
                     }
                 }
+                finally
+                {
+                    notFullLock.unlock();
+                }
                 continue;
             }
 
@@ -194,14 +234,103 @@ public final class IoSender implements Runnable, ByteBufferSender
         }
     }
 
-    public void flush()
+    @Override
+    public void transfer(ByteBuffer buf)
     {
-        if (idle)
+        if (channel == null)
+        {
+            send(buf);
+        }
+        else
+        {
+            enqueue(buf);
+        }
+    }
+
+    private void enqueue(ByteBuffer buf)
+    {
+        checkNotAlreadyClosed();
+        checkSenderThreadAlive();
+
+        if (pendingBytes.get() >= capacity)
         {
-            synchronized (notEmpty)
+            flush();
+            notFullLock.lock();
+            try
             {
-                notEmpty.notify();
+                final long start = System.currentTimeMillis();
+                long elapsed = 0;
+                while (!closed.get() && pendingBytes.get() >= capacity && elapsed < timeout)
+                {
+                    try
+                    {
+                        notFull.await(timeout - elapsed, TimeUnit.MILLISECONDS);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // pass
+                    }
+                    elapsed = System.currentTimeMillis() - start;
+                }
+
+                checkNotAlreadyClosed();
+
+                if (pendingBytes.get() >= capacity)
+                {
+                    try
+                    {
+                        LOGGER.error("write timed out for socket {}: {} bytes pending",
+                                     _socketEndpointDescription, pendingBytes.get());
+                        throw new SenderException(String.format("write timed out for socket %s: %d bytes pending",
+                                                                _socketEndpointDescription, pendingBytes.get()));
+                    }
+                    finally
+                    {
+                        close(false, false);
+                    }
+                }
             }
+            finally
+            {
+                notFullLock.unlock();
+            }
+        }
+
+        pendingBytes.addAndGet(buf.remaining());
+        pending.add(buf);
+    }
+
+    public void flush()
+    {
+        if (idle)
+        {
+            signalNotEmpty();
+        }
+    }
+
+    private void signalNotEmpty()
+    {
+        notEmptyLock.lock();
+        try
+        {
+            notEmpty.signal();
+        }
+        finally
+        {
+            notEmptyLock.unlock();
+        }
+    }
+
+    private void signalNotFull()
+    {
+        notFullLock.lock();
+        try
+        {
+            notFull.signal();
+        }
+        finally
+        {
+            notFullLock.unlock();
         }
     }
 
@@ -214,15 +343,8 @@ public final class IoSender implements Runnable, ByteBufferSender
     {
         if (!closed.getAndSet(true))
         {
-            synchronized (notFull)
-            {
-                notFull.notify();
-            }
-
-            synchronized (notEmpty)
-            {
-                notEmpty.notify();
-            }
+            signalNotFull();
+            signalNotEmpty();
 
             try
             {
@@ -259,6 +381,108 @@ public final class IoSender implements Runnable, ByteBufferSender
     }
 
     public void run()
+    {
+        if (channel == null)
+        {
+            runCopying();
+        }
+        else
+        {
+            runGathering();
+        }
+
+        if (!shutdownBroken && !(socket instanceof SSLSocket))
+        {
+            try
+            {
+                socket.shutdownOutput();
+            }
+            catch (IOException e)
+            {
+                //pass
+            }
+        }
+    }
+
+    private void runGathering()
+    {
+        final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_BUFFERS];
+        while (true)
+        {
+            int count = 0;
+            long length = 0;
+            ByteBuffer buf;
+            while (count < gathered.length && (buf = pending.poll()) != null)
+            {
+                gathered[count++] = buf;
+                length += buf.remaining();
+            }
+
+            if (count == 0)
+            {
+                if (closed.get())
+                {
+                    break;
+                }
+
+                idle = true;
+
+                notEmptyLock.lock();
+                try
+                {
+                    while (pending.isEmpty() && !closed.get())
+                    {
+                        try
+                        {
+                            notEmpty.await();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            // pass
+                        }
+                    }
+                }
+                finally
+                {
+                    notEmptyLock.unlock();
+                }
+
+                idle = false;
+
+                continue;
+            }
+
+            try
+            {
+                long written = 0;
+                while (written < length)
+                {
+                    written += channel.write(gathered, 0, count);
+                }
+            }
+            catch (IOException e)
+            {
+                LOGGER.info("Exception in thread sending for socket '{}' : {}", _socketEndpointDescription, e.getMessage());
+                exception = e;
+                close(false, false);
+                break;
+            }
+            finally
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    gathered[i] = null;
+                }
+            }
+
+            if (pendingBytes.addAndGet(-length) + length >= capacity)
+            {
+                signalNotFull();
+            }
+        }
+    }
+
+    private void runCopying()
     {
         final int size = buffer.length;
         while (true)
@@ -275,13 +499,14 @@ public final class IoSender implements Runnable, ByteBufferSender
 
                 idle = true;
 
-                synchronized (notEmpty)
+                notEmptyLock.lock();
+                try
                 {
                     while (head == tail && !closed.get())
                     {
                         try
                         {
-                            notEmpty.wait();
+                            notEmpty.await();
                         }
                         catch (InterruptedException e)
                         {
@@ -289,6 +514,10 @@ public final class IoSender implements Runnable, ByteBufferSender
                         }
                     }
                 }
+                finally
+                {
+                    notEmptyLock.unlock();
+                }
 
                 idle = false;
 
@@ -322,22 +551,7 @@ public final class IoSender implements Runnable, ByteBufferSender
             tail += length;
             if (head - tl >= size)
             {
-                synchronized (notFull)
-                {
-                    notFull.notify();
-                }
-            }
-        }
-
-        if (!shutdownBroken && !(socket instanceof SSLSocket))
-        {
-            try
-            {
-                socket.shutdownOutput();
-            }
-            catch (IOException e)
-            {
-                //pass
+                signalNotFull();
             }
         }
     }
@@ -370,6 +584,15 @@ public final class IoSender implements Runnable, ByteBufferSender
         }
     }
 
+    private void checkSenderThreadAlive()
+    {
+        if(!senderThread.isAlive())
+        {
+            throw new SenderException(String.format("sender thread for socket %s is not alive",
+                                                    _socketEndpointDescription));
+        }
+    }
+
     private void checkNotAlreadyClosed()
     {
         if (closed.get())
@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.Principal;
+import java.security.cert.Certificate;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.transport.ByteBufferSender;
+import org.apache.qpid.transport.ExceptionHandlingByteBufferReceiver;
+import org.apache.qpid.transport.SenderException;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.Ticker;
+
+/**
+ * A {@link NetworkConnection} over a non-blocking {@link SocketChannel} whose reads, writes and idle timeout
+ * ticks are all performed by a {@link SelectorThread} shared with other connections.
+ * <p>
+ * As the received bytes are passed to the receiver on the selector thread, a receiver which blocks will stall every
+ * connection served by the same selector thread.
+ */
+public class NioNetworkConnection implements NetworkConnection
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioNetworkConnection.class);
+
+    private final SocketChannel _channel;
+    private final ExceptionHandlingByteBufferReceiver _receiver;
+    private final Ticker _ticker;
+    private final SelectorThread _selectorThread;
+    private final NioSender _sender;
+    private final int _receiveBufferSize;
+    private final String _endpointDescription;
+    private final AtomicBoolean _closeRequested = new AtomicBoolean();
+    private final SocketAddress _remoteAddress;
+    private final SocketAddress _localAddress;
+
+    private volatile long _maxWriteIdleMillis;
+    private volatile long _maxReadIdleMillis;
+
+    // only accessed by the selector thread
+    private SelectionKey _key;
+    private ByteBuffer _readBuffer;
+    private boolean _shutdown;
+
+    private final Runnable _writeTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            doWrite();
+        }
+    };
+
+    NioNetworkConnection(SocketChannel channel,
+                         ExceptionHandlingByteBufferReceiver receiver,
+                         int sendBufferSize,
+                         int receiveBufferSize,
+                         long timeout,
+                         Ticker ticker,
+                         SelectorThread selectorThread)
+    {
+        _channel = channel;
+        _receiver = receiver;
+        _ticker = ticker;
+        _selectorThread = selectorThread;
+        _receiveBufferSize = receiveBufferSize;
+        _remoteAddress = channel.socket().getRemoteSocketAddress();
+        _localAddress = channel.socket().getLocalSocketAddress();
+        _endpointDescription = String.format("%s-%s", _localAddress, _remoteAddress);
+        _sender = new NioSender(this, 2 * sendBufferSize, timeout);
+    }
+
+    @Override
+    public void start()
+    {
+        _selectorThread.register(this);
+    }
+
+    @Override
+    public ByteBufferSender getSender()
+    {
+        return _sender;
+    }
+
+    @Override
+    public void close()
+    {
+        close(true);
+    }
+
+    void close(boolean drain)
+    {
+        if (_closeRequested.compareAndSet(false, true))
+        {
+            if (drain)
+            {
+                _sender.flush();
+                if (!isSelectorThread())
+                {
+                    _sender.awaitDrained();
+                }
+            }
+
+            final Runnable shutdownTask = new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    shutdown(null);
+                }
+            };
+            if (isSelectorThread())
+            {
+                shutdownTask.run();
+            }
+            else
+            {
+                _selectorThread.execute(shutdownTask);
+            }
+
+            final Throwable exception = _sender.getException();
+            if (drain && exception != null)
+            {
+                throw new SenderException(exception);
+            }
+        }
+    }
+
+    boolean isSelectorThread()
+    {
+        return _selectorThread.isSelectorThread();
+    }
+
+    String getEndpointDescription()
+    {
+        return _endpointDescription;
+    }
+
+    void scheduleWrite()
+    {
+        if (isSelectorThread())
+        {
+            doWrite();
+        }
+        else
+        {
+            _selectorThread.execute(_writeTask);
+        }
+    }
+
+    void registered(Selector selector) throws ClosedChannelException
+    {
+        _readBuffer = ByteBuffer.allocate(_receiveBufferSize);
+        _key = _channel.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    void processKey(SelectionKey key)
+    {
+        if (key.isValid() && key.isReadable())
+        {
+            doRead();
+        }
+        if (key.isValid() && key.isWritable())
+        {
+            doWrite();
+        }
+    }
+
+    private void doRead()
+    {
+        try
+        {
+            final int offset = _readBuffer.position();
+            final int read = _channel.read(_readBuffer);
+            if (read == -1)
+            {
+                shutdown(null);
+            }
+            else if (read > 0)
+            {
+                final ByteBuffer received = _readBuffer.duplicate();
+                received.position(offset);
+                received.limit(offset + read);
+                if (_readBuffer.position() > _receiveBufferSize / 2)
+                {
+                    // slices of the old buffer may still be referenced by the decoder, so it is never reused
+                    _readBuffer = ByteBuffer.allocate(_receiveBufferSize);
+                }
+                _receiver.received(received.slice());
+            }
+        }
+        catch (Exception e)
+        {
+            shutdown(_closeRequested.get() ? null : e);
+        }
+    }
+
+    private void doWrite()
+    {
+        if (_shutdown || _key == null)
+        {
+            return;
+        }
+
+        try
+        {
+            final boolean drained = _sender.write(_channel);
+            if (_key.isValid())
+            {
+                _key.interestOps(drained ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.info("Exception sending for socket '{}' : {}", _endpointDescription, e.getMessage());
+            _sender.closed(e);
+            shutdown(null);
+        }
+    }
+
+    int tick(long currentTime)
+    {
+        if (_ticker == null)
+        {
+            return Integer.MAX_VALUE;
+        }
+
+        int tick = _ticker.getTimeToNextTick(currentTime);
+        if (tick <= 0)
+        {
+            tick = _ticker.tick(currentTime);
+        }
+        return tick;
+    }
+
+    void shutdown(Throwable cause)
+    {
+        if (!_shutdown)
+        {
+            _shutdown = true;
+            try
+            {
+                if (cause != null)
+                {
+                    _receiver.exception(cause);
+                }
+            }
+            finally
+            {
+                _sender.closed(cause);
+                _selectorThread.deregister(this);
+                if (_key != null)
+                {
+                    _key.cancel();
+                }
+                try
+                {
+                    _receiver.closed();
+                }
+                finally
+                {
+                    try
+                    {
+                        _channel.close();
+                    }
+                    catch (IOException e)
+                    {
+                        LOGGER.warn("Error closing socket", e);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress()
+    {
+        return _remoteAddress;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress()
+    {
+        return _localAddress;
+    }
+
+    @Override
+    public void setMaxWriteIdleMillis(final long millis)
+    {
+        _maxWriteIdleMillis = millis;
+    }
+
+    @Override
+    public void setMaxReadIdleMillis(final long millis)
+    {
+        _maxReadIdleMillis = millis;
+    }
+
+    @Override
+    public Principal getPeerPrincipal()
+    {
+        // TLS is layered above this connection by the SecurityLayer, the channel itself is never secured
+        return null;
+    }
+
+    @Override
+    public Certificate getPeerCertificate()
+    {
+        return null;
+    }
+
+    @Override
+    public long getMaxReadIdleMillis()
+    {
+        return _maxReadIdleMillis;
+    }
+
+    @Override
+    public long getMaxWriteIdleMillis()
+    {
+        return _maxWriteIdleMillis;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.client.BrokerDetails;
+import org.apache.qpid.configuration.CommonProperties;
+import org.apache.qpid.transport.ConnectionSettings;
+import org.apache.qpid.transport.ExceptionHandlingByteBufferReceiver;
+import org.apache.qpid.transport.TransportException;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.OutgoingNetworkTransport;
+import org.apache.qpid.transport.network.TransportActivity;
+import org.apache.qpid.transport.network.io.IdleTimeoutTicker;
+
+/**
+ * Transport for the <code>nio</code> scheme: the connection is served by one of the threads of the JVM-wide
+ * selector thread pool (sized by {@link CommonProperties#NIO_NETWORK_TRANSPORT_SELECTOR_THREADS_PROP_NAME})
+ * rather than by a dedicated sender and receiver thread.
+ */
+public class NioNetworkTransport implements OutgoingNetworkTransport
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioNetworkTransport.class);
+    private static final int TIMEOUT = Integer.getInteger(CommonProperties.IO_NETWORK_TRANSPORT_TIMEOUT_PROP_NAME,
+                                                          CommonProperties.IO_NETWORK_TRANSPORT_TIMEOUT_DEFAULT);
+
+    private NioNetworkConnection _connection;
+
+    @Override
+    public NetworkConnection connect(ConnectionSettings settings,
+                                     ExceptionHandlingByteBufferReceiver delegate,
+                                     TransportActivity transportActivity)
+    {
+        if (!BrokerDetails.NIO.equalsIgnoreCase(settings.getTransport()))
+        {
+            throw new TransportException("Unknown transport '" + settings.getTransport() + "'");
+        }
+
+        final SocketChannel channel = connectTcp(settings);
+        try
+        {
+            IdleTimeoutTicker ticker = new IdleTimeoutTicker(transportActivity, TIMEOUT);
+            _connection = new NioNetworkConnection(channel,
+                                                   delegate,
+                                                   settings.getWriteBufferSize(),
+                                                   settings.getReadBufferSize(),
+                                                   TIMEOUT,
+                                                   ticker,
+                                                   SelectorThreadPool.getInstance().nextSelectorThread());
+            ticker.setConnection(_connection);
+            _connection.start();
+        }
+        catch (Exception e)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException ioe)
+            {
+                //ignored, throw based on original exception
+            }
+
+            throw new TransportException("Error creating network connection", e);
+        }
+
+        return _connection;
+    }
+
+    private SocketChannel connectTcp(final ConnectionSettings settings)
+    {
+        SocketChannel channel = null;
+        try
+        {
+            channel = SocketChannel.open();
+            final Socket socket = channel.socket();
+            socket.setReuseAddress(true);
+            socket.setTcpNoDelay(settings.isTcpNodelay());
+            socket.setSendBufferSize(settings.getWriteBufferSize());
+            socket.setReceiveBufferSize(settings.getReadBufferSize());
+
+            if (LOGGER.isDebugEnabled())
+            {
+                LOGGER.debug("Socket options SO_RCVBUF : {}, SO_SNDBUF : {}, TCP_NODELAY : {}",
+                             socket.getReceiveBufferSize(),
+                             socket.getSendBufferSize(),
+                             socket.getTcpNoDelay());
+            }
+
+            InetAddress address = InetAddress.getByName(settings.getHost());
+            socket.connect(new InetSocketAddress(address, settings.getPort()), settings.getConnectTimeout());
+            channel.configureBlocking(false);
+
+            if (LOGGER.isDebugEnabled())
+            {
+                LOGGER.debug("Socket connection from {} to {} established",
+                             socket.getLocalSocketAddress(),
+                             socket.getRemoteSocketAddress());
+            }
+            return channel;
+        }
+        catch (IOException e)
+        {
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException ignore)
+                {
+                }
+            }
+
+            throw new TransportException("Error connecting to broker", e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (_connection != null)
+        {
+            _connection.close();
+        }
+    }
+
+    @Override
+    public NetworkConnection getConnection()
+    {
+        return _connection;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.transport.SenderClosedException;
+import org.apache.qpid.transport.SenderException;
+import org.apache.qpid.transport.ZeroCopyByteBufferSender;
+
+/**
+ * Queues outgoing bytes for a {@link NioNetworkConnection}; the queued bytes are written to the channel by the
+ * connection's selector thread.
+ * <p>
+ * As with {@link org.apache.qpid.transport.network.io.IoSender}, the bytes are copied on {@link #send(ByteBuffer)}
+ * so the caller is free to reuse its buffer, whereas buffers passed to {@link #transfer(ByteBuffer)} are queued
+ * as they are.  A sender exceeding the configured capacity is blocked until the selector thread has drained the
+ * queue.  The selector thread itself is never blocked; frames it sends (for instance heartbeats) are always
+ * accepted.
+ */
+final class NioSender implements ZeroCopyByteBufferSender
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioSender.class);
+
+    private final NioNetworkConnection _connection;
+    private final int _capacity;
+    private final long _timeout;
+
+    private final Lock _lock = new ReentrantLock();
+    private final Condition _notFull = _lock.newCondition();
+    private final Condition _drained = _lock.newCondition();
+    private final Deque<ByteBuffer> _queue = new ArrayDeque<>();
+    private long _queuedBytes;
+    private boolean _writeScheduled;
+    private boolean _closed;
+    private Throwable _exception;
+
+    NioSender(NioNetworkConnection connection, int capacity, long timeout)
+    {
+        _connection = connection;
+        _capacity = capacity;
+        _timeout = timeout;
+    }
+
+    @Override
+    public void send(ByteBuffer buf)
+    {
+        final ByteBuffer copy = ByteBuffer.allocate(buf.remaining());
+        copy.put(buf);
+        copy.flip();
+        transfer(copy);
+    }
+
+    @Override
+    public void transfer(ByteBuffer buf)
+    {
+        final int remaining = buf.remaining();
+
+        _lock.lock();
+        try
+        {
+            checkNotClosed();
+
+            if (_queuedBytes + remaining > _capacity && !_queue.isEmpty() && !_connection.isSelectorThread())
+            {
+                if (!_writeScheduled)
+                {
+                    _writeScheduled = true;
+                    _connection.scheduleWrite();
+                }
+                awaitNotFull(remaining);
+            }
+
+            _queue.add(buf);
+            _queuedBytes += remaining;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private void awaitNotFull(final int required)
+    {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(_timeout);
+        while (!_closed && _queuedBytes + required > _capacity && !_queue.isEmpty() && remainingNanos > 0)
+        {
+            try
+            {
+                remainingNanos = _notFull.awaitNanos(remainingNanos);
+            }
+            catch (InterruptedException e)
+            {
+                // pass
+            }
+        }
+
+        checkNotClosed();
+
+        if (_queuedBytes + required > _capacity && !_queue.isEmpty())
+        {
+            LOGGER.error("write timed out for socket {}: {} bytes queued", _connection.getEndpointDescription(), _queuedBytes);
+            _connection.close(false);
+            throw new SenderException(String.format("write timed out for socket %s: %d bytes queued",
+                                                    _connection.getEndpointDescription(), _queuedBytes));
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        final boolean scheduleWrite;
+        _lock.lock();
+        try
+        {
+            scheduleWrite = !_queue.isEmpty() && !_writeScheduled && !_closed;
+            if (scheduleWrite)
+            {
+                _writeScheduled = true;
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+
+        if (scheduleWrite)
+        {
+            _connection.scheduleWrite();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        _connection.close();
+    }
+
+    /**
+     * Writes as much of the queued data as the channel will accept without blocking.  Called on the selector thread.
+     *
+     * @return true if the queue was completely drained
+     */
+    boolean write(GatheringByteChannel channel) throws IOException
+    {
+        _lock.lock();
+        try
+        {
+            while (!_queue.isEmpty())
+            {
+                final long written = channel.write(_queue.toArray(new ByteBuffer[_queue.size()]));
+                _queuedBytes -= written;
+                while (!_queue.isEmpty() && !_queue.peekFirst().hasRemaining())
+                {
+                    _queue.pollFirst();
+                }
+                if (written == 0L)
+                {
+                    break;
+                }
+            }
+
+            _notFull.signalAll();
+            if (_queue.isEmpty())
+            {
+                _writeScheduled = false;
+                _drained.signalAll();
+                return true;
+            }
+            return false;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all queued data has been written, the sender has been closed, or the timeout expires.
+     */
+    void awaitDrained()
+    {
+        _lock.lock();
+        try
+        {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(_timeout);
+            while (!_closed && !_queue.isEmpty() && remainingNanos > 0)
+            {
+                try
+                {
+                    remainingNanos = _drained.awaitNanos(remainingNanos);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    void closed(Throwable cause)
+    {
+        _lock.lock();
+        try
+        {
+            if (!_closed)
+            {
+                _closed = true;
+                if (_exception == null)
+                {
+                    _exception = cause;
+                }
+                _queue.clear();
+                _queuedBytes = 0;
+                _notFull.signalAll();
+                _drained.signalAll();
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    Throwable getException()
+    {
+        _lock.lock();
+        try
+        {
+            return _exception;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private void checkNotClosed()
+    {
+        if (_closed)
+        {
+            throw new SenderClosedException(String.format("sender for socket %s is closed",
+                                                          _connection.getEndpointDescription()), _exception);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.thread.Threading;
+import org.apache.qpid.transport.TransportException;
+
+/**
+ * An event loop serving the reads, writes and idle timeout ticks of any number of {@link NioNetworkConnection}s.
+ * <p>
+ * All state of the connections registered with this thread which relates to the selector (the selection key,
+ * the read buffer, the set of live connections) is confined to the selector thread.  Other threads interact
+ * with it only by submitting tasks through {@link #execute(Runnable)}.
+ */
+final class SelectorThread implements Runnable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SelectorThread.class);
+
+    private final Selector _selector;
+    private final Thread _thread;
+    private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean _wakeupPending = new AtomicBoolean();
+    private final Set<NioNetworkConnection> _connections = new HashSet<>();
+    private long _nextTickTime;
+
+    SelectorThread(String name)
+    {
+        try
+        {
+            _selector = Selector.open();
+        }
+        catch (IOException e)
+        {
+            throw new TransportException("Error opening selector", e);
+        }
+
+        try
+        {
+            _thread = Threading.getThreadFactory().createThread(this);
+        }
+        catch(Exception e)
+        {
+            throw new RuntimeException("Error creating selector thread", e);
+        }
+        _thread.setDaemon(true);
+        _thread.setName(name);
+        _thread.start();
+    }
+
+    boolean isSelectorThread()
+    {
+        return Thread.currentThread() == _thread;
+    }
+
+    void execute(Runnable task)
+    {
+        _tasks.add(task);
+        if (!isSelectorThread() && _wakeupPending.compareAndSet(false, true))
+        {
+            _selector.wakeup();
+        }
+    }
+
+    void register(final NioNetworkConnection connection)
+    {
+        execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    connection.registered(_selector);
+                    _connections.add(connection);
+                    _nextTickTime = 0L;
+                }
+                catch (ClosedChannelException e)
+                {
+                    connection.shutdown(e);
+                }
+            }
+        });
+    }
+
+    void deregister(NioNetworkConnection connection)
+    {
+        _connections.remove(connection);
+    }
+
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            try
+            {
+                select();
+                _wakeupPending.set(false);
+
+                runTasks();
+                processSelectedKeys();
+
+                final long currentTime = System.currentTimeMillis();
+                if (currentTime >= _nextTickTime)
+                {
+                    tick(currentTime);
+                }
+            }
+            catch (IOException | RuntimeException e)
+            {
+                LOGGER.error("Unexpected exception in selector thread '{}'", _thread.getName(), e);
+            }
+        }
+    }
+
+    private void select() throws IOException
+    {
+        if (!_tasks.isEmpty())
+        {
+            _selector.selectNow();
+        }
+        else if (_connections.isEmpty())
+        {
+            _selector.select();
+        }
+        else
+        {
+            final long wait = _nextTickTime - System.currentTimeMillis();
+            if (wait > 0)
+            {
+                _selector.select(wait);
+            }
+            else
+            {
+                _selector.selectNow();
+            }
+        }
+    }
+
+    private void runTasks()
+    {
+        Runnable task;
+        while ((task = _tasks.poll()) != null)
+        {
+            try
+            {
+                task.run();
+            }
+            catch (RuntimeException e)
+            {
+                LOGGER.error("Exception running task on selector thread '{}'", _thread.getName(), e);
+            }
+        }
+    }
+
+    private void processSelectedKeys()
+    {
+        final Iterator<SelectionKey> iterator = _selector.selectedKeys().iterator();
+        while (iterator.hasNext())
+        {
+            final SelectionKey key = iterator.next();
+            iterator.remove();
+            ((NioNetworkConnection) key.attachment()).processKey(key);
+        }
+    }
+
+    private void tick(final long currentTime)
+    {
+        long nextTickTime = Long.MAX_VALUE;
+        for (NioNetworkConnection connection : _connections.toArray(new NioNetworkConnection[_connections.size()]))
+        {
+            final int timeToNextTick = connection.tick(currentTime);
+            nextTickTime = Math.min(nextTickTime, currentTime + (timeToNextTick <= 0 ? 1 : timeToNextTick));
+        }
+        _nextTickTime = nextTickTime;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.configuration.CommonProperties;
+
+/**
+ * The JVM-wide pool of selector threads shared by all connections made through the nio transport.  Connections
+ * are assigned to the threads round-robin and stay with their thread for their lifetime.
+ */
+final class SelectorThreadPool
+{
+    private static final int SIZE =
+            Integer.getInteger(CommonProperties.NIO_NETWORK_TRANSPORT_SELECTOR_THREADS_PROP_NAME,
+                               CommonProperties.NIO_NETWORK_TRANSPORT_SELECTOR_THREADS_DEFAULT);
+
+    private final SelectorThread[] _selectorThreads;
+    private final AtomicInteger _next = new AtomicInteger();
+
+    private static class Holder
+    {
+        private static final SelectorThreadPool INSTANCE = new SelectorThreadPool(SIZE);
+    }
+
+    private SelectorThreadPool(int size)
+    {
+        _selectorThreads = new SelectorThread[Math.max(1, size)];
+        for (int i = 0; i < _selectorThreads.length; i++)
+        {
+            _selectorThreads[i] = new SelectorThread("NioSelector-" + i);
+        }
+    }
+
+    static SelectorThreadPool getInstance()
+    {
+        return Holder.INSTANCE;
+    }
+
+    SelectorThread nextSelectorThread()
+    {
+        return _selectorThreads[(_next.getAndIncrement() & Integer.MAX_VALUE) % _selectorThreads.length];
+    }
+
+    int getSize()
+    {
+        return _selectorThreads.length;
+    }
+}
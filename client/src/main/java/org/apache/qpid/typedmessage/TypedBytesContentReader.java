@@ -28,10 +28,12 @@ import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 
+import org.apache.qpid.util.CompositeByteBuffer;
+
 public class TypedBytesContentReader implements TypedBytesCodes
 {
 
-    private final ByteBuffer _data;
+    private final CompositeByteBuffer _data;
     private final int _position;
     private final int _limit;
 
@@ -44,6 +46,15 @@ public class TypedBytesContentReader implements TypedBytesCodes
 
 
     public TypedBytesContentReader(final ByteBuffer data)
+    {
+        this(new CompositeByteBuffer(data));
+    }
+
+    /**
+     * Reads content held in several fragments, such as the content body frames of a message, without copying them
+     * into a single buffer.
+     */
+    public TypedBytesContentReader(final CompositeByteBuffer data)
     {
         _data = data.duplicate();
         _position = _data.position();
@@ -450,12 +461,14 @@ public class TypedBytesContentReader implements TypedBytesCodes
         try
         {
             _charsetDecoder.reset();
-            ByteBuffer dup = _data.duplicate();
             int pos = _data.position();
             byte b;
             while((b = _data.get()) != 0) {};
-            dup.limit(_data.position()-1);
-            return _charsetDecoder.decode(dup).toString();
+            int length = _data.position() - 1 - pos;
+            _data.position(pos);
+            ByteBuffer encodedString = _data.getByteBuffer(length);
+            _data.get();
+            return _charsetDecoder.decode(encodedString).toString();
 
         }
         catch (CharacterCodingException e)
@@ -613,16 +626,19 @@ public class TypedBytesContentReader implements TypedBytesCodes
     public void reset()
     {
         _byteArrayRemaining = -1;
-        _data.position(_position);
         _data.limit(_limit);
+        _data.position(_position);
     }
 
+    /**
+     * Returns the whole content as a single buffer, which is a copy if the content is fragmented.
+     */
     public ByteBuffer getData()
     {
-        ByteBuffer buf = _data.duplicate();
-        buf.position(_position);
+        CompositeByteBuffer buf = _data.duplicate();
         buf.limit(_limit);
-        return buf;
+        buf.position(_position);
+        return buf.toByteBuffer();
     }
 
     public long size()
@@ -652,9 +668,7 @@ public class TypedBytesContentReader implements TypedBytesCodes
             else
             {
                 _charsetDecoder.reset();
-                ByteBuffer encodedString = _data.slice();
-                encodedString.limit(length);
-                _data.position(_data.position()+length);
+                ByteBuffer encodedString = _data.getByteBuffer(length);
                 CharBuffer string = _charsetDecoder.decode(encodedString);
 
                 return string.toString();
@@ -27,6 +27,9 @@ import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLException;
 
+import org.apache.qpid.transport.ByteBufferSender;
+import org.apache.qpid.transport.ZeroCopyByteBufferSender;
+
 public class ByteBufferUtils
 {
     private static final ByteBuffer EMPTY_BYTE_BUFFER = ByteBuffer.allocate(0);
@@ -98,6 +101,21 @@ public class ByteBufferUtils
         return view.slice();
     }
 
+    /**
+     * Sends a buffer that will not be modified afterwards, without copying it if the sender supports that.
+     */
+    public static void transfer(ByteBufferSender sender, ByteBuffer buf)
+    {
+        if (sender instanceof ZeroCopyByteBufferSender)
+        {
+            ((ZeroCopyByteBufferSender) sender).transfer(buf);
+        }
+        else
+        {
+            sender.send(buf);
+        }
+    }
+
     public static void copyTo(ByteBuffer src, byte[] dst)
     {
         ByteBuffer copy = src.duplicate();
@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.util;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A read-only view over a sequence of buffers, such as the content body frames of a message, which can be read as one
+ * buffer without the fragments first being copied together.
+ * <p>
+ * Like a {@link ByteBuffer} it has a position and a limit, which a duplicate holds independently while sharing the
+ * content.  Multi-byte values are read in big-endian order, even when they span two fragments.
+ */
+public final class CompositeByteBuffer
+{
+    private static final ByteBuffer EMPTY_BYTE_BUFFER = ByteBuffer.allocate(0);
+
+    private final ByteBuffer[] _fragments;
+    // _offsets[i] is the position of the first byte of fragment i, the last element is the capacity
+    private final int[] _offsets;
+
+    private int _position;
+    private int _limit;
+    // the fragment holding the byte at _position, kept so that sequential reads need not search for it
+    private int _fragmentIndex;
+
+    public CompositeByteBuffer(final List<ByteBuffer> fragments)
+    {
+        List<ByteBuffer> nonEmpty = new ArrayList<>(fragments.size());
+        for (ByteBuffer fragment : fragments)
+        {
+            if (fragment.hasRemaining())
+            {
+                nonEmpty.add(fragment.slice());
+            }
+        }
+        _fragments = nonEmpty.toArray(new ByteBuffer[nonEmpty.size()]);
+        _offsets = new int[_fragments.length + 1];
+        for (int i = 0; i < _fragments.length; i++)
+        {
+            _offsets[i + 1] = _offsets[i] + _fragments[i].remaining();
+        }
+        _limit = capacity();
+    }
+
+    public CompositeByteBuffer(final ByteBuffer... fragments)
+    {
+        this(Arrays.asList(fragments));
+    }
+
+    private CompositeByteBuffer(final CompositeByteBuffer other)
+    {
+        _fragments = other._fragments;
+        _offsets = other._offsets;
+        _position = other._position;
+        _limit = other._limit;
+        _fragmentIndex = other._fragmentIndex;
+    }
+
+    public CompositeByteBuffer duplicate()
+    {
+        return new CompositeByteBuffer(this);
+    }
+
+    public int capacity()
+    {
+        return _offsets[_fragments.length];
+    }
+
+    public int position()
+    {
+        return _position;
+    }
+
+    public CompositeByteBuffer position(final int newPosition)
+    {
+        if (newPosition < 0 || newPosition > _limit)
+        {
+            throw new IllegalArgumentException("Position " + newPosition + " is outside [0, " + _limit + "]");
+        }
+        _position = newPosition;
+        return this;
+    }
+
+    public int limit()
+    {
+        return _limit;
+    }
+
+    public CompositeByteBuffer limit(final int newLimit)
+    {
+        if (newLimit < 0 || newLimit > capacity())
+        {
+            throw new IllegalArgumentException("Limit " + newLimit + " is outside [0, " + capacity() + "]");
+        }
+        _limit = newLimit;
+        if (_position > newLimit)
+        {
+            _position = newLimit;
+        }
+        return this;
+    }
+
+    public int remaining()
+    {
+        return _limit - _position;
+    }
+
+    public boolean hasRemaining()
+    {
+        return _position < _limit;
+    }
+
+    public int getFragmentCount()
+    {
+        return _fragments.length;
+    }
+
+    public byte get()
+    {
+        checkRemaining(1);
+        int index = fragmentIndex(_position);
+        byte value = _fragments[index].get(_position - _offsets[index]);
+        _position++;
+        return value;
+    }
+
+    public CompositeByteBuffer get(final byte[] dst, final int offset, final int length)
+    {
+        checkRemaining(length);
+        int copied = 0;
+        while (copied < length)
+        {
+            int index = fragmentIndex(_position);
+            ByteBuffer fragment = _fragments[index].duplicate();
+            fragment.position(_position - _offsets[index]);
+            int count = Math.min(fragment.remaining(), length - copied);
+            fragment.get(dst, offset + copied, count);
+            copied += count;
+            _position += count;
+        }
+        return this;
+    }
+
+    public short getShort()
+    {
+        ByteBuffer fragment = fragmentHolding(2);
+        short value = fragment == null ? (short) getSpanning(2) : fragment.getShort(_position - _offsets[_fragmentIndex]);
+        _position += 2;
+        return value;
+    }
+
+    public char getChar()
+    {
+        return (char) getShort();
+    }
+
+    public int getInt()
+    {
+        ByteBuffer fragment = fragmentHolding(4);
+        int value = fragment == null ? (int) getSpanning(4) : fragment.getInt(_position - _offsets[_fragmentIndex]);
+        _position += 4;
+        return value;
+    }
+
+    public long getLong()
+    {
+        ByteBuffer fragment = fragmentHolding(8);
+        long value = fragment == null ? getSpanning(8) : fragment.getLong(_position - _offsets[_fragmentIndex]);
+        _position += 8;
+        return value;
+    }
+
+    public float getFloat()
+    {
+        return Float.intBitsToFloat(getInt());
+    }
+
+    public double getDouble()
+    {
+        return Double.longBitsToDouble(getLong());
+    }
+
+    /**
+     * Reads the next <code>length</code> bytes as a single buffer: a view if they lie within one fragment, otherwise
+     * a copy.
+     */
+    public ByteBuffer getByteBuffer(final int length)
+    {
+        if (length == 0)
+        {
+            return EMPTY_BYTE_BUFFER.duplicate();
+        }
+        ByteBuffer fragment = fragmentHolding(length);
+        ByteBuffer result;
+        if (fragment != null)
+        {
+            result = ByteBufferUtils.view(fragment, _position - _offsets[_fragmentIndex], length);
+            _position += length;
+        }
+        else
+        {
+            byte[] copy = new byte[length];
+            get(copy, 0, length);
+            result = ByteBuffer.wrap(copy);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the content between the position and the limit as a single buffer, without changing the position.  The
+     * content is only copied if it spans more than one fragment.
+     */
+    public ByteBuffer toByteBuffer()
+    {
+        return duplicate().getByteBuffer(remaining());
+    }
+
+    /**
+     * Returns views of the content between the position and the limit, one per fragment, without changing the position.
+     */
+    public List<ByteBuffer> getFragments()
+    {
+        if (!hasRemaining())
+        {
+            return Collections.emptyList();
+        }
+        List<ByteBuffer> views = new ArrayList<>();
+        int position = _position;
+        int index = fragmentIndex(position);
+        while (position < _limit)
+        {
+            int offset = position - _offsets[index];
+            int length = Math.min(_offsets[index + 1], _limit) - position;
+            views.add(ByteBufferUtils.view(_fragments[index], offset, length));
+            position += length;
+            index++;
+        }
+        return views;
+    }
+
+    /**
+     * Decodes the content between the position and the limit, a fragment at a time, and moves the position to the
+     * limit.
+     */
+    public String decode(final CharsetDecoder decoder) throws CharacterCodingException
+    {
+        List<ByteBuffer> fragments = getFragments();
+        if (fragments.size() <= 1)
+        {
+            String decoded = decoder.decode(fragments.isEmpty() ? EMPTY_BYTE_BUFFER.duplicate() : fragments.get(0))
+                    .toString();
+            _position = _limit;
+            return decoded;
+        }
+
+        decoder.reset();
+        CharBuffer out = CharBuffer.allocate((int) Math.ceil(remaining() * (double) decoder.maxCharsPerByte()));
+        ByteBuffer carry = EMPTY_BYTE_BUFFER;
+        for (ByteBuffer fragment : fragments)
+        {
+            if (carry.hasRemaining())
+            {
+                // complete the character split between the previous fragment and this one
+                int borrowed = Math.min(fragment.remaining(), 16);
+                ByteBuffer joined = ByteBuffer.allocate(carry.remaining() + borrowed);
+                joined.put(carry);
+                joined.put(ByteBufferUtils.view(fragment, 0, borrowed));
+                joined.flip();
+                out = decode(decoder, joined, out, false);
+                int consumed = borrowed - joined.remaining();
+                if (consumed < 0)
+                {
+                    carry = joined;
+                    fragment.position(fragment.position() + borrowed);
+                    continue;
+                }
+                fragment.position(fragment.position() + consumed);
+            }
+            out = decode(decoder, fragment, out, false);
+            carry = fragment;
+        }
+        out = decode(decoder, carry, out, true);
+        CoderResult result = decoder.flush(out);
+        if (result.isError())
+        {
+            result.throwException();
+        }
+        out.flip();
+        _position = _limit;
+        return out.toString();
+    }
+
+    private static CharBuffer decode(final CharsetDecoder decoder,
+                                     final ByteBuffer in,
+                                     CharBuffer out,
+                                     final boolean endOfInput) throws CharacterCodingException
+    {
+        while (true)
+        {
+            CoderResult result = decoder.decode(in, out, endOfInput);
+            if (result.isOverflow())
+            {
+                CharBuffer larger = CharBuffer.allocate(out.capacity() * 2 + 1);
+                out.flip();
+                larger.put(out);
+                out = larger;
+            }
+            else
+            {
+                if (result.isError())
+                {
+                    result.throwException();
+                }
+                return out;
+            }
+        }
+    }
+
+    private void checkRemaining(final int length)
+    {
+        if (length > remaining())
+        {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    /**
+     * Returns the fragment holding the next <code>length</code> bytes, or null if they span fragments.
+     */
+    private ByteBuffer fragmentHolding(final int length)
+    {
+        checkRemaining(length);
+        int index = fragmentIndex(_position);
+        return _offsets[index + 1] - _position >= length ? _fragments[index] : null;
+    }
+
+    private long getSpanning(final int length)
+    {
+        long value = 0L;
+        for (int i = 0; i < length; i++)
+        {
+            value = (value << 8) | (get() & 0xFF);
+        }
+        _position -= length;
+        return value;
+    }
+
+    private int fragmentIndex(final int position)
+    {
+        int index = _fragmentIndex;
+        if (position < _offsets[index] || position >= _offsets[index + 1])
+        {
+            if (position == _offsets[index + 1] && index + 2 < _offsets.length)
+            {
+                index++;
+            }
+            else
+            {
+                index = Arrays.binarySearch(_offsets, position);
+                index = index < 0 ? -index - 2 : Math.min(index, _fragments.length - 1);
+            }
+            _fragmentIndex = index;
+        }
+        return index;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CompositeByteBuffer[pos=" + _position + " lim=" + _limit + " cap=" + capacity()
+               + " fragments=" + _fragments.length + "]";
+    }
+}
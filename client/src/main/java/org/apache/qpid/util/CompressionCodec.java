@@ -0,0 +1,52 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A codec compressing message payloads, identified by the content-encoding that marks a payload it has compressed.
+ *
+ * @see CompressionCodecs
+ */
+public interface CompressionCodec
+{
+    /**
+     * @return the content-encoding of the payloads this codec compresses
+     */
+    String getContentEncoding();
+
+    /**
+     * Compresses the remaining bytes of the given buffer, without changing its position.
+     *
+     * @param input the data to compress
+     * @return a heap buffer holding the compressed data, or null if the data could not be compressed into fewer bytes
+     */
+    ByteBuffer compress(ByteBuffer input);
+
+    /**
+     * Uncompresses the remaining bytes of the given buffer, without changing its position.
+     *
+     * @param input data compressed by this codec
+     * @return a heap buffer holding the uncompressed data, or null if the data could not be uncompressed
+     */
+    ByteBuffer uncompress(ByteBuffer input);
+}
@@ -0,0 +1,124 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.configuration.ClientProperties;
+
+/**
+ * The registry of the compression codecs, keyed by content-encoding.  The gzip and LZ4 codecs are built in, further
+ * codecs, for instance a {@link DeflateCodec} with a dictionary shared by the producers and consumers of a
+ * particular kind of message, are registered by the application or named by the
+ * {@link ClientProperties#QPID_COMPRESSION_CODECS} system property.
+ */
+public final class CompressionCodecs
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressionCodecs.class);
+
+    /** The largest scratch buffer kept by a thread between uses */
+    private static final int MAX_RETAINED_SCRATCH_SIZE = 1024 * 1024;
+
+    private static final ConcurrentMap<String, CompressionCodec> CODECS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<>();
+
+    static
+    {
+        register(new GZIPCodec());
+        register(new LZ4Codec());
+
+        String codecClassNames = System.getProperty(ClientProperties.QPID_COMPRESSION_CODECS);
+        if (codecClassNames != null)
+        {
+            for (String className : codecClassNames.split(","))
+            {
+                if (!"".equals(className.trim()))
+                {
+                    CompressionCodec codec = newCodec(className.trim());
+                    if (codec != null)
+                    {
+                        register(codec);
+                    }
+                }
+            }
+        }
+    }
+
+    private CompressionCodecs()
+    {
+    }
+
+    /**
+     * Registers a codec, replacing any codec already registered for its content-encoding.
+     */
+    public static void register(CompressionCodec codec)
+    {
+        CODECS.put(codec.getContentEncoding(), codec);
+    }
+
+    /**
+     * @return the codec for the given content-encoding, or null if there is none
+     */
+    public static CompressionCodec getCodec(String contentEncoding)
+    {
+        return contentEncoding == null ? null : CODECS.get(contentEncoding);
+    }
+
+    /**
+     * @return a new instance of the named codec, or null if it cannot be created, in which case the codec is ignored
+     * so that the other codecs remain usable
+     */
+    private static CompressionCodec newCodec(String className)
+    {
+        try
+        {
+            return (CompressionCodec) Class.forName(className).newInstance();
+        }
+        catch (ReflectiveOperationException | RuntimeException | LinkageError e)
+        {
+            LOGGER.error("Unable to create compression codec '{}', ignoring it", className, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns a buffer of at least the given size that the calling thread may use until its next call.  The buffer
+     * is reused by later calls on the same thread, so a codec copies its result out of it.
+     */
+    static byte[] scratchBuffer(int size)
+    {
+        byte[] scratch = SCRATCH.get();
+        if (scratch == null || scratch.length < size)
+        {
+            scratch = new byte[size];
+            if (size <= MAX_RETAINED_SCRATCH_SIZE)
+            {
+                SCRATCH.set(scratch);
+            }
+        }
+        return scratch;
+    }
+}
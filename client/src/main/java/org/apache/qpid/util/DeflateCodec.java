@@ -0,0 +1,221 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A zlib codec that may be primed with a pre-shared dictionary.  Small messages of a common shape, such as JSON
+ * documents with the same field names, compress far better against a dictionary holding the strings they have in
+ * common, which the producers and the consumers must register under the same content-encoding.
+ * <p>
+ * The compressed form is the uncompressed length, as a four byte big-endian integer, followed by the zlib stream.
+ * Each thread reuses its own deflater and inflater.
+ */
+public final class DeflateCodec implements CompressionCodec
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeflateCodec.class);
+
+    private static final int LENGTH_SIZE = 4;
+
+    /** A deflate stream cannot expand to more than 1032 times its compressed size */
+    private static final int MAX_EXPANSION_RATIO = 1032;
+
+    private final String _contentEncoding;
+    private final byte[] _dictionary;
+    private final ThreadLocal<Deflater> _deflater;
+    private final ThreadLocal<Inflater> _inflater = new ThreadLocal<Inflater>()
+    {
+        @Override
+        protected Inflater initialValue()
+        {
+            return new Inflater();
+        }
+    };
+
+    public DeflateCodec(final String contentEncoding, final byte[] dictionary)
+    {
+        this(contentEncoding, dictionary, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param contentEncoding the content-encoding identifying payloads compressed by this codec
+     * @param dictionary the pre-shared dictionary, or null for none
+     * @param level the compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public DeflateCodec(final String contentEncoding, final byte[] dictionary, final int level)
+    {
+        _contentEncoding = contentEncoding;
+        _dictionary = dictionary == null ? null : dictionary.clone();
+        _deflater = new ThreadLocal<Deflater>()
+        {
+            @Override
+            protected Deflater initialValue()
+            {
+                return new Deflater(level);
+            }
+        };
+    }
+
+    @Override
+    public String getContentEncoding()
+    {
+        return _contentEncoding;
+    }
+
+    @Override
+    public ByteBuffer compress(final ByteBuffer input)
+    {
+        final int length = input.remaining();
+        if (length <= LENGTH_SIZE)
+        {
+            return null;
+        }
+
+        final byte[] src;
+        final int srcOffset;
+        if (input.hasArray())
+        {
+            src = input.array();
+            srcOffset = input.arrayOffset() + input.position();
+        }
+        else
+        {
+            src = new byte[length];
+            srcOffset = 0;
+            input.duplicate().get(src);
+        }
+
+        final byte[] out = CompressionCodecs.scratchBuffer(length);
+        writeIntBE(out, 0, length);
+        int position = LENGTH_SIZE;
+
+        final Deflater deflater = _deflater.get();
+        deflater.reset();
+        if (_dictionary != null)
+        {
+            deflater.setDictionary(_dictionary);
+        }
+        deflater.setInput(src, srcOffset, length);
+        deflater.finish();
+        while (!deflater.finished())
+        {
+            if (position >= length)
+            {
+                // no smaller than the input
+                return null;
+            }
+            position += deflater.deflate(out, position, length - position);
+        }
+        return ByteBuffer.wrap(Arrays.copyOf(out, position));
+    }
+
+    @Override
+    public ByteBuffer uncompress(final ByteBuffer input)
+    {
+        final int length = input.remaining();
+        if (length <= LENGTH_SIZE)
+        {
+            return null;
+        }
+
+        final byte[] src;
+        final int srcOffset;
+        if (input.hasArray())
+        {
+            src = input.array();
+            srcOffset = input.arrayOffset() + input.position();
+        }
+        else
+        {
+            src = new byte[length];
+            srcOffset = 0;
+            input.duplicate().get(src);
+        }
+
+        final int uncompressedLength = ((src[srcOffset] & 0xff) << 24)
+                                       | ((src[srcOffset + 1] & 0xff) << 16)
+                                       | ((src[srcOffset + 2] & 0xff) << 8)
+                                       | (src[srcOffset + 3] & 0xff);
+        if (uncompressedLength < 0 || (long) uncompressedLength > (long) (length - LENGTH_SIZE) * MAX_EXPANSION_RATIO)
+        {
+            LOGGER.warn("Invalid uncompressed length {} when attempting to uncompress with {}",
+                        uncompressedLength, _contentEncoding);
+            return null;
+        }
+
+        final byte[] out = new byte[uncompressedLength];
+        final Inflater inflater = _inflater.get();
+        inflater.reset();
+        inflater.setInput(src, srcOffset + LENGTH_SIZE, length - LENGTH_SIZE);
+        int inflated = 0;
+        try
+        {
+            while (!inflater.finished() && inflated <= uncompressedLength)
+            {
+                // once the declared length has been reached, the end of the stream is consumed into a spare byte
+                final int count = inflated < uncompressedLength
+                        ? inflater.inflate(out, inflated, uncompressedLength - inflated)
+                        : inflater.inflate(new byte[1]);
+                if (count == 0)
+                {
+                    if (inflater.needsDictionary() && _dictionary != null)
+                    {
+                        inflater.setDictionary(_dictionary);
+                    }
+                    else if (inflater.needsInput() || inflater.needsDictionary())
+                    {
+                        break;
+                    }
+                }
+                inflated += count;
+            }
+        }
+        catch (DataFormatException | IllegalArgumentException e)
+        {
+            // an IllegalArgumentException reports a dictionary other than the one the data was compressed with
+            LOGGER.warn("Unexpected exception when attempting to uncompress with " + _contentEncoding, e);
+            return null;
+        }
+
+        if (!inflater.finished() || inflated != uncompressedLength)
+        {
+            LOGGER.warn("Truncated or corrupt data when attempting to uncompress with " + _contentEncoding);
+            return null;
+        }
+        return ByteBuffer.wrap(out);
+    }
+
+    private static void writeIntBE(final byte[] dst, final int offset, final int value)
+    {
+        dst[offset] = (byte) (value >>> 24);
+        dst[offset + 1] = (byte) (value >>> 16);
+        dst[offset + 2] = (byte) (value >>> 8);
+        dst[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The gzip codec.  Rather than creating streams and a {@link Deflater} or {@link Inflater} for every message as
+ * {@link GZIPUtils} does, each thread reuses its own deflater and inflater and compresses into its scratch buffer, so
+ * that the only allocation is the array holding the result.  Payloads in a form the codec does not expect, such as
+ * several concatenated gzip members, are uncompressed by {@link GZIPUtils} instead.
+ */
+public final class GZIPCodec implements CompressionCodec
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(GZIPCodec.class);
+
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+
+    /** A deflate stream cannot expand to more than 1032 times its compressed size */
+    private static final int MAX_EXPANSION_RATIO = 1032;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>()
+    {
+        @Override
+        protected Deflater initialValue()
+        {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>()
+    {
+        @Override
+        protected Inflater initialValue()
+        {
+            return new Inflater(true);
+        }
+    };
+
+    private static final ThreadLocal<CRC32> CRC = new ThreadLocal<CRC32>()
+    {
+        @Override
+        protected CRC32 initialValue()
+        {
+            return new CRC32();
+        }
+    };
+
+    @Override
+    public String getContentEncoding()
+    {
+        return GZIPUtils.GZIP_CONTENT_ENCODING;
+    }
+
+    @Override
+    public ByteBuffer compress(final ByteBuffer input)
+    {
+        final int length = input.remaining();
+        final int limit = length - TRAILER_SIZE;
+        if (limit <= HEADER_SIZE)
+        {
+            return null;
+        }
+
+        final byte[] src;
+        final int srcOffset;
+        if (input.hasArray())
+        {
+            src = input.array();
+            srcOffset = input.arrayOffset() + input.position();
+        }
+        else
+        {
+            src = new byte[length];
+            srcOffset = 0;
+            input.duplicate().get(src);
+        }
+
+        final byte[] out = CompressionCodecs.scratchBuffer(length);
+        System.arraycopy(HEADER, 0, out, 0, HEADER_SIZE);
+        int position = HEADER_SIZE;
+
+        final Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(src, srcOffset, length);
+        deflater.finish();
+        while (!deflater.finished())
+        {
+            if (position >= limit)
+            {
+                // no smaller than the input
+                return null;
+            }
+            position += deflater.deflate(out, position, limit - position);
+        }
+
+        final CRC32 crc = CRC.get();
+        crc.reset();
+        crc.update(src, srcOffset, length);
+        writeIntLE(out, position, (int) crc.getValue());
+        writeIntLE(out, position + 4, length);
+        return ByteBuffer.wrap(Arrays.copyOf(out, position + TRAILER_SIZE));
+    }
+
+    @Override
+    public ByteBuffer uncompress(final ByteBuffer input)
+    {
+        final int length = input.remaining();
+        if (!input.hasArray() || length < HEADER_SIZE + TRAILER_SIZE)
+        {
+            return uncompressWithStream(input);
+        }
+
+        final byte[] src = input.array();
+        final int start = input.arrayOffset() + input.position();
+        final int end = start + length;
+        if (src[start] != HEADER[0] || src[start + 1] != HEADER[1] || src[start + 2] != HEADER[2])
+        {
+            return uncompressWithStream(input);
+        }
+
+        final int flags = src[start + 3] & 0xff;
+        final int trailer = end - TRAILER_SIZE;
+        int position = start + HEADER_SIZE;
+        if ((flags & FEXTRA) != 0 && position + 2 <= trailer)
+        {
+            position += 2 + ((src[position] & 0xff) | ((src[position + 1] & 0xff) << 8));
+        }
+        if ((flags & FNAME) != 0)
+        {
+            position = skipZeroTerminated(src, position, end);
+        }
+        if ((flags & FCOMMENT) != 0)
+        {
+            position = skipZeroTerminated(src, position, end);
+        }
+        if ((flags & FHCRC) != 0)
+        {
+            position += 2;
+        }
+
+        final int uncompressedLength = readIntLE(src, trailer + 4);
+        if (position > trailer)
+        {
+            return uncompressWithStream(input);
+        }
+        if (uncompressedLength < 0 || (long) uncompressedLength > (long) (trailer - position) * MAX_EXPANSION_RATIO)
+        {
+            LOGGER.warn("Invalid uncompressed length {} when attempting to uncompress with gzip", uncompressedLength);
+            return null;
+        }
+
+        final byte[] out = new byte[uncompressedLength];
+        final Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(src, position, end - position);
+        int inflated = 0;
+        try
+        {
+            while (!inflater.finished() && inflated < uncompressedLength)
+            {
+                final int count = inflater.inflate(out, inflated, uncompressedLength - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                inflated += count;
+            }
+        }
+        catch (DataFormatException e)
+        {
+            LOGGER.warn("Unexpected exception when attempting to uncompress with gzip", e);
+            return null;
+        }
+
+        if (!inflater.finished() || inflater.getRemaining() != TRAILER_SIZE || inflated != uncompressedLength)
+        {
+            return uncompressWithStream(input);
+        }
+
+        final CRC32 crc = CRC.get();
+        crc.reset();
+        crc.update(out, 0, uncompressedLength);
+        if ((int) crc.getValue() != readIntLE(src, trailer))
+        {
+            LOGGER.warn("Checksum mismatch when attempting to uncompress with gzip");
+            return null;
+        }
+        return ByteBuffer.wrap(out);
+    }
+
+    private static ByteBuffer uncompressWithStream(final ByteBuffer input)
+    {
+        final byte[] uncompressed = GZIPUtils.uncompressBufferToArray(input.duplicate());
+        return uncompressed == null ? null : ByteBuffer.wrap(uncompressed);
+    }
+
+    private static int skipZeroTerminated(final byte[] src, int position, final int end)
+    {
+        while (position < end && src[position] != 0)
+        {
+            position++;
+        }
+        return position + 1;
+    }
+
+    private static void writeIntLE(final byte[] dst, final int offset, final int value)
+    {
+        dst[offset] = (byte) value;
+        dst[offset + 1] = (byte) (value >>> 8);
+        dst[offset + 2] = (byte) (value >>> 16);
+        dst[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readIntLE(final byte[] src, final int offset)
+    {
+        return (src[offset] & 0xff)
+               | ((src[offset + 1] & 0xff) << 8)
+               | ((src[offset + 2] & 0xff) << 16)
+               | ((src[offset + 3] & 0xff) << 24);
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pure Java codec using the LZ4 block format, which trades some compression ratio for compressing and
+ * uncompressing several times faster than deflate.
+ * <p>
+ * The compressed form is the uncompressed length, as a four byte big-endian integer, followed by a single LZ4 block.
+ * Each thread reuses its own match table and scratch buffer.
+ */
+public final class LZ4Codec implements CompressionCodec
+{
+    public static final String LZ4_CONTENT_ENCODING = "x-lz4-block";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LZ4Codec.class);
+
+    private static final int LENGTH_SIZE = 4;
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int RUN_MASK = 15;
+    private static final int HASH_LOG = 12;
+
+    /** LZ4 can expand incompressible data by at most one byte in 255 plus a few bytes of overhead */
+    private static final int MAX_EXPANSION_RATIO = 255;
+
+    private static final ThreadLocal<int[]> MATCH_TABLE = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            return new int[1 << HASH_LOG];
+        }
+    };
+
+    @Override
+    public String getContentEncoding()
+    {
+        return LZ4_CONTENT_ENCODING;
+    }
+
+    @Override
+    public ByteBuffer compress(final ByteBuffer input)
+    {
+        final int length = input.remaining();
+        if (length <= MF_LIMIT)
+        {
+            return null;
+        }
+
+        final byte[] src;
+        final int srcOffset;
+        if (input.hasArray())
+        {
+            src = input.array();
+            srcOffset = input.arrayOffset() + input.position();
+        }
+        else
+        {
+            src = new byte[length];
+            srcOffset = 0;
+            input.duplicate().get(src);
+        }
+
+        final byte[] out = CompressionCodecs.scratchBuffer(LENGTH_SIZE + length + length / 255 + 16);
+        out[0] = (byte) (length >>> 24);
+        out[1] = (byte) (length >>> 16);
+        out[2] = (byte) (length >>> 8);
+        out[3] = (byte) length;
+
+        final int compressedLength = compressBlock(src, srcOffset, length, out, LENGTH_SIZE);
+        if (compressedLength >= length)
+        {
+            return null;
+        }
+        return ByteBuffer.wrap(Arrays.copyOf(out, compressedLength));
+    }
+
+    @Override
+    public ByteBuffer uncompress(final ByteBuffer input)
+    {
+        final int length = input.remaining();
+        if (length <= LENGTH_SIZE)
+        {
+            return null;
+        }
+
+        final byte[] src;
+        final int srcOffset;
+        if (input.hasArray())
+        {
+            src = input.array();
+            srcOffset = input.arrayOffset() + input.position();
+        }
+        else
+        {
+            src = new byte[length];
+            srcOffset = 0;
+            input.duplicate().get(src);
+        }
+
+        final int uncompressedLength = ((src[srcOffset] & 0xff) << 24)
+                                       | ((src[srcOffset + 1] & 0xff) << 16)
+                                       | ((src[srcOffset + 2] & 0xff) << 8)
+                                       | (src[srcOffset + 3] & 0xff);
+        if (uncompressedLength < 0 || (long) uncompressedLength > (long) length * MAX_EXPANSION_RATIO)
+        {
+            LOGGER.warn("Invalid uncompressed length {} when attempting to uncompress with LZ4", uncompressedLength);
+            return null;
+        }
+
+        final byte[] out = new byte[uncompressedLength];
+        try
+        {
+            if (uncompressBlock(src, srcOffset + LENGTH_SIZE, srcOffset + length, out) != uncompressedLength)
+            {
+                LOGGER.warn("Truncated data when attempting to uncompress with LZ4");
+                return null;
+            }
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            LOGGER.warn("Corrupt data when attempting to uncompress with LZ4", e);
+            return null;
+        }
+        return ByteBuffer.wrap(out);
+    }
+
+    /**
+     * Compresses the source into the destination as a single LZ4 block, returning the position in the destination
+     * following the block.
+     */
+    private static int compressBlock(final byte[] src, final int srcOffset, final int length,
+                                     final byte[] dst, final int dstOffset)
+    {
+        final int[] matchTable = MATCH_TABLE.get();
+        Arrays.fill(matchTable, -1);
+
+        final int srcEnd = srcOffset + length;
+        final int matchLimit = srcEnd - LAST_LITERALS;
+        final int searchLimit = srcEnd - MF_LIMIT;
+
+        int anchor = srcOffset;
+        int position = srcOffset;
+        int dstPosition = dstOffset;
+        while (position < searchLimit)
+        {
+            final int sequence = readInt(src, position);
+            final int hash = hash(sequence);
+            int reference = matchTable[hash];
+            matchTable[hash] = position;
+
+            if (reference < 0 || position - reference > MAX_DISTANCE || readInt(src, reference) != sequence)
+            {
+                position++;
+                continue;
+            }
+
+            while (position > anchor && reference > srcOffset && src[position - 1] == src[reference - 1])
+            {
+                position--;
+                reference--;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (position + matchLength < matchLimit && src[reference + matchLength] == src[position + matchLength])
+            {
+                matchLength++;
+            }
+
+            dstPosition = writeSequence(src, anchor, position - anchor, position - reference, matchLength,
+                                        dst, dstPosition);
+            position += matchLength;
+            anchor = position;
+        }
+
+        return writeLastLiterals(src, anchor, srcEnd - anchor, dst, dstPosition);
+    }
+
+    private static int writeSequence(final byte[] src, final int literalStart, final int literalLength,
+                                     final int offset, final int matchLength, final byte[] dst, int dstPosition)
+    {
+        final int tokenPosition = dstPosition++;
+        int token;
+        if (literalLength >= RUN_MASK)
+        {
+            token = RUN_MASK << 4;
+            dstPosition = writeLength(literalLength - RUN_MASK, dst, dstPosition);
+        }
+        else
+        {
+            token = literalLength << 4;
+        }
+        System.arraycopy(src, literalStart, dst, dstPosition, literalLength);
+        dstPosition += literalLength;
+
+        dst[dstPosition++] = (byte) offset;
+        dst[dstPosition++] = (byte) (offset >>> 8);
+
+        final int extraMatchLength = matchLength - MIN_MATCH;
+        if (extraMatchLength >= RUN_MASK)
+        {
+            token |= RUN_MASK;
+            dstPosition = writeLength(extraMatchLength - RUN_MASK, dst, dstPosition);
+        }
+        else
+        {
+            token |= extraMatchLength;
+        }
+        dst[tokenPosition] = (byte) token;
+        return dstPosition;
+    }
+
+    private static int writeLastLiterals(final byte[] src, final int literalStart, final int literalLength,
+                                         final byte[] dst, int dstPosition)
+    {
+        if (literalLength >= RUN_MASK)
+        {
+            dst[dstPosition++] = (byte) (RUN_MASK << 4);
+            dstPosition = writeLength(literalLength - RUN_MASK, dst, dstPosition);
+        }
+        else
+        {
+            dst[dstPosition++] = (byte) (literalLength << 4);
+        }
+        System.arraycopy(src, literalStart, dst, dstPosition, literalLength);
+        return dstPosition + literalLength;
+    }
+
+    private static int writeLength(int length, final byte[] dst, int dstPosition)
+    {
+        while (length >= 255)
+        {
+            dst[dstPosition++] = (byte) 255;
+            length -= 255;
+        }
+        dst[dstPosition++] = (byte) length;
+        return dstPosition;
+    }
+
+    /**
+     * Uncompresses the LZ4 block between the given positions of the source into the destination, returning the
+     * number of bytes written.
+     *
+     * @throws IndexOutOfBoundsException if the block is corrupt
+     */
+    private static int uncompressBlock(final byte[] src, int srcPosition, final int srcEnd, final byte[] dst)
+    {
+        int dstPosition = 0;
+        while (true)
+        {
+            final int token = src[srcPosition++] & 0xff;
+
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK)
+            {
+                int extra;
+                do
+                {
+                    extra = src[srcPosition++] & 0xff;
+                    literalLength += extra;
+                }
+                while (extra == 255);
+            }
+            if (srcPosition + literalLength > srcEnd)
+            {
+                throw new IndexOutOfBoundsException("Literals overrun the block");
+            }
+            System.arraycopy(src, srcPosition, dst, dstPosition, literalLength);
+            srcPosition += literalLength;
+            dstPosition += literalLength;
+
+            if (srcPosition >= srcEnd)
+            {
+                return dstPosition;
+            }
+
+            final int offset = (src[srcPosition] & 0xff) | ((src[srcPosition + 1] & 0xff) << 8);
+            srcPosition += 2;
+            if (offset == 0 || offset > dstPosition)
+            {
+                throw new IndexOutOfBoundsException("Invalid match offset " + offset);
+            }
+
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK)
+            {
+                int extra;
+                do
+                {
+                    extra = src[srcPosition++] & 0xff;
+                    matchLength += extra;
+                }
+                while (extra == 255);
+            }
+            matchLength += MIN_MATCH;
+
+            final int matchStart = dstPosition - offset;
+            if (offset >= matchLength)
+            {
+                System.arraycopy(dst, matchStart, dst, dstPosition, matchLength);
+            }
+            else
+            {
+                // the match overlaps the bytes it produces, so it must be copied a byte at a time
+                for (int i = 0; i < matchLength; i++)
+                {
+                    dst[dstPosition + i] = dst[matchStart + i];
+                }
+            }
+            dstPosition += matchLength;
+        }
+    }
+
+    private static int readInt(final byte[] src, final int position)
+    {
+        return (src[position] & 0xff)
+               | ((src[position + 1] & 0xff) << 8)
+               | ((src[position + 2] & 0xff) << 16)
+               | ((src[position + 3] & 0xff) << 24);
+    }
+
+    private static int hash(final int sequence)
+    {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
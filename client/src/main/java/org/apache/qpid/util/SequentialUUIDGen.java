@@ -0,0 +1,58 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.util.UUID;
+
+
+/**
+ * SequentialUUIDGen
+ *
+ * Generates UUIDs made of a random 64 bit prefix, chosen once per generator, and a counter that starts at a random
+ * value and increases with every UUID.  Unlike {@link RandomUUIDGen} and {@link NameUUIDGen} no random number or
+ * digest is computed per UUID, so generating one costs no more than an increment.  The UUIDs carry the version 4
+ * and IETF variant bits so that they remain valid random-form UUIDs.
+ */
+
+public final class SequentialUUIDGen implements UUIDGen
+{
+
+    private static final long VERSION_MASK = 0xF000L;
+    private static final long VERSION_4 = 0x4000L;
+    private static final long VARIANT_MASK = 0xC000000000000000L;
+    private static final long VARIANT_IETF = 0x8000000000000000L;
+
+    private final long prefix;
+    private long counter;
+
+    public SequentialUUIDGen()
+    {
+        UUID seed = UUID.randomUUID();
+        this.prefix = (seed.getMostSignificantBits() & ~VERSION_MASK) | VERSION_4;
+        this.counter = seed.getLeastSignificantBits();
+    }
+
+    public UUID generate()
+    {
+        return new UUID(prefix, (counter++ & ~VARIANT_MASK) | VARIANT_IETF);
+    }
+
+}
@@ -33,6 +33,10 @@ import org.apache.qpid.AMQInvalidArgumentException;
 import org.apache.qpid.configuration.ClientProperties;
 import org.apache.qpid.jms.ConnectionURL;
 import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.util.GZIPCodec;
+import org.apache.qpid.util.LZ4Codec;
+import org.apache.qpid.util.NameUUIDGen;
+import org.apache.qpid.util.SequentialUUIDGen;
 
 public class AMQConnectionUnitTest extends QpidTestCase
 {
@@ -71,6 +75,44 @@ public class AMQConnectionUnitTest extends QpidTestCase
         assertTrue(connection.validateQueueOnSend());
     }
 
+    public void testMessageIdGeneratorViaURL() throws Exception
+    {
+        MockAMQConnection connection = new MockAMQConnection(_url + "&" + ConnectionURL.OPTIONS_MESSAGE_ID_GENERATOR
+                                                             + "='" + SequentialUUIDGen.class.getName() + "'");
+        assertTrue(connection.createMessageIdGenerator() instanceof SequentialUUIDGen);
+
+        connection = new MockAMQConnection(_url);
+        assertTrue(connection.createMessageIdGenerator() instanceof NameUUIDGen);
+    }
+
+    public void testMessageCompressionCodecViaURL() throws Exception
+    {
+        MockAMQConnection connection = new MockAMQConnection(_url + "&" + ConnectionURL.OPTIONS_MESSAGE_COMPRESSION_CODEC
+                                                             + "='" + LZ4Codec.LZ4_CONTENT_ENCODING + "'");
+        assertTrue(connection.getMessageCompressionCodec() instanceof LZ4Codec);
+
+        connection = new MockAMQConnection(_url);
+        assertTrue(connection.getMessageCompressionCodec() instanceof GZIPCodec);
+    }
+
+    public void testUnknownMessageCompressionCodecRejectedWhenCompressing() throws Exception
+    {
+        String url = _url + "&" + ConnectionURL.OPTIONS_MESSAGE_COMPRESSION_CODEC + "='x-unknown'";
+
+        MockAMQConnection connection = new MockAMQConnection(url);
+        assertNull(connection.getMessageCompressionCodec());
+
+        try
+        {
+            new MockAMQConnection(url + "&" + ConnectionURL.OPTIONS_COMPRESS_MESSAGES + "='true'");
+            fail("Exception is expected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // pass
+        }
+    }
+
     public void testExceptionReceived()
     {
         AMQInvalidArgumentException expectedException = new AMQInvalidArgumentException("Test", null);
@@ -18,15 +18,26 @@
  */
 package org.apache.qpid.client;
 
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
@@ -34,8 +45,19 @@ import javax.jms.MessageListener;
 import javax.jms.MessageProducer;
 import javax.jms.StreamMessage;
 
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
 import org.apache.qpid.client.message.AMQPEncodedListMessage;
+import org.apache.qpid.client.message.AbstractJMSMessage;
+import org.apache.qpid.client.message.JMSMapMessage;
+import org.apache.qpid.client.message.JMSTextMessageFactory;
 import org.apache.qpid.client.message.UnprocessedMessage;
+import org.apache.qpid.client.message.UnprocessedMessage_0_10;
+import org.apache.qpid.configuration.ClientProperties;
+import org.apache.qpid.jms.BatchMessageListener;
+import org.apache.qpid.jms.CompletionListener;
 import org.apache.qpid.test.utils.QpidTestCase;
 import org.apache.qpid.transport.*;
 import org.apache.qpid.transport.Connection.SessionFactory;
@@ -51,6 +73,9 @@ import org.apache.qpid.url.AMQBindingURL;
  */
 public class AMQSession_0_10Test extends QpidTestCase
 {
+    private static final int DISPATCHER_POOL_SIZE = 2;
+
+    private static final int PREPROCESSOR_POOL_SIZE = 2;
 
     public void testExceptionOnCommit()
     {
@@ -437,6 +462,84 @@ public class AMQSession_0_10Test extends QpidTestCase
         assertNotNull("ExchangeDeclare event was not sent", event);
     }
 
+    public void testAsynchronousSendsAreCompletedInSendOrder() throws Exception
+    {
+        AMQSession_0_10 session = createAMQSession_0_10();
+        org.apache.qpid.jms.MessageProducer producer =
+                (org.apache.qpid.jms.MessageProducer) session.createProducer(createQueue());
+        final LinkedBlockingQueue<Message> completed = new LinkedBlockingQueue<>();
+        CompletionListener listener = new CompletionListener()
+        {
+            @Override
+            public void onCompletion(final Message message)
+            {
+                completed.add(message);
+            }
+
+            @Override
+            public void onException(final Message message, final Exception exception)
+            {
+            }
+        };
+
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            Message message = session.createTextMessage("Test" + i);
+            messages.add(message);
+            producer.send(message, listener);
+        }
+
+        List<Integer> transferIds = new ArrayList<>();
+        for (ProtocolEvent event : ((MockSession) session.getQpidSession()).getSender().getSendEvents())
+        {
+            if (event instanceof MessageTransfer)
+            {
+                assertTrue("Asynchronous transfer should request completion", ((MessageTransfer) event).isSync());
+                transferIds.add(((MessageTransfer) event).getId());
+            }
+        }
+        assertEquals("Unexpected number of transfers", 3, transferIds.size());
+        assertEquals(3, session.getSendCompletionTracker().getOutstandingCount());
+
+        MockSession qpidSession = (MockSession) session.getQpidSession();
+        qpidSession.completeCommands(transferIds.get(1), transferIds.get(1));
+        assertNull("Completion notified ahead of an earlier send", completed.poll(100, TimeUnit.MILLISECONDS));
+
+        qpidSession.completeCommands(transferIds.get(0), transferIds.get(2));
+        for (Message message : messages)
+        {
+            assertSame("Completions notified out of send order", message, completed.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, session.getSendCompletionTracker().getOutstandingCount());
+    }
+
+    public void testMessageProducerSendBatchFlushesOnce() throws Exception
+    {
+        AMQSession_0_10 session = createAMQSession_0_10();
+        org.apache.qpid.jms.MessageProducer producer =
+                (org.apache.qpid.jms.MessageProducer) session.createProducer(createQueue());
+        MockSender sender = ((MockSession) session.getQpidSession()).getSender();
+        int flushCount = sender.getFlushCount();
+        int eventCount = sender.getSendEvents().size();
+
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            messages.add(session.createTextMessage("Test" + i));
+        }
+        producer.sendBatch(messages);
+
+        List<ProtocolEvent> events = sender.getSendEvents().subList(eventCount, sender.getSendEvents().size());
+        assertEquals("Unexpected number of events", 3, events.size());
+        for (ProtocolEvent event : events)
+        {
+            assertTrue("Unexpected event " + event, event instanceof MessageTransfer);
+            assertTrue("Transfer should not be flushed on its own", ((MessageTransfer) event).isBatch());
+        }
+        assertEquals("The batch should be flushed once", flushCount + 1, sender.getFlushCount());
+    }
+
     public void testCreateStreamMessage() throws Exception
     {
         AMQSession_0_10 session = createAMQSession_0_10();
@@ -541,6 +644,855 @@ public class AMQSession_0_10Test extends QpidTestCase
         }
     }
 
+    public void testFailoverPrepDispatchesRestOfDispatcherBatchFirst() throws Exception
+    {
+        final AMQSession_0_10 session = createAMQSession_0_10(AMQSession_0_10.AUTO_ACKNOWLEDGE);
+
+        final CountDownLatch dispatching = new CountDownLatch(1);
+        final CountDownLatch releaseDispatch = new CountDownLatch(1);
+        UnprocessedMessage[] messages = new UnprocessedMessage[5];
+        for (int i = 0; i < messages.length; i++)
+        {
+            messages[i] = createMockMessage(i + 1, "0");
+        }
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable
+            {
+                dispatching.countDown();
+                releaseDispatch.await(10, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(messages[0]).dispatch(session);
+
+        // the dispatcher takes the first four as one batch and is held up dispatching the first of them
+        for (int i = 0; i < 4; i++)
+        {
+            session.messageReceived(messages[i]);
+        }
+        session.startDispatcherIfNecessary(false);
+        try
+        {
+            assertTrue("Dispatcher did not start dispatching", dispatching.await(10, TimeUnit.SECONDS));
+            session.messageReceived(messages[4]);
+
+            Thread failoverThread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    session.failoverPrep();
+                }
+            });
+            failoverThread.start();
+            final long deadline = System.currentTimeMillis() + 10000L;
+            while (failoverThread.getState() != Thread.State.BLOCKED && failoverThread.isAlive()
+                   && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(10);
+            }
+            releaseDispatch.countDown();
+            failoverThread.join(10000);
+            assertFalse("Failover preparation did not complete", failoverThread.isAlive());
+
+            InOrder order = inOrder((Object[]) messages);
+            for (UnprocessedMessage message : messages)
+            {
+                order.verify(message).dispatch(session);
+            }
+        }
+        finally
+        {
+            releaseDispatch.countDown();
+            session.getDispatcherThread().interrupt();
+        }
+    }
+
+    public void testBatchMessageListenerAcknowledgesBatchAsOneRange() throws Exception
+    {
+        AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        BasicMessageConsumer_0_10 consumer = session.createMessageConsumer(createDestination(), 1, 1, true, false,
+                null, null, false, true);
+
+        final List<List<Message>> batches = new ArrayList<List<Message>>();
+        consumer.setBatchMessageListener(new BatchMessageListener()
+        {
+            public void onMessages(final List<Message> messages)
+            {
+                batches.add(new ArrayList<Message>(messages));
+            }
+        }, 3, 60000L);
+
+        for (int commandId = 0; commandId <= 3; commandId++)
+        {
+            // the delivery tag of a message is the id of the command that transferred it
+            session.getQpidSession().nextCommandId();
+        }
+        for (int deliveryTag = 1; deliveryTag <= 3; deliveryTag++)
+        {
+            consumer.notifyMessage(createJMSMessage(deliveryTag));
+            assertEquals("Unexpected number of batches after message " + deliveryTag,
+                         deliveryTag / 3, batches.size());
+        }
+        assertEquals("Unexpected batch size", 3, batches.get(0).size());
+
+        assertEquals("The batch should be accepted with a single command", 1, countSentAccepts(session));
+        assertTrue("Unexpected unacknowledged message tags", session.getUnacknowledgedMessageTags().isEmpty());
+    }
+
+    public void testMessageConsumerBulkReceive() throws Exception
+    {
+        AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        BasicMessageConsumer_0_10 consumer = session.createMessageConsumer(createDestination(), 1, 1, true, false,
+                null, null, false, true);
+        for (int commandId = 0; commandId <= 3; commandId++)
+        {
+            session.getQpidSession().nextCommandId();
+        }
+        for (int deliveryTag = 1; deliveryTag <= 3; deliveryTag++)
+        {
+            consumer.notifyMessage(createJMSMessage(deliveryTag));
+        }
+
+        List<Message> messages = consumer.receive(2, -1L);
+        assertEquals("Unexpected number of messages", 2, messages.size());
+        assertEquals("Unexpected first message", 1, ((AbstractJMSMessage) messages.get(0)).getDeliveryTag());
+        assertEquals("Unexpected second message", 2, ((AbstractJMSMessage) messages.get(1)).getDeliveryTag());
+
+        messages = consumer.receive(2, -1L);
+        assertEquals("Unexpected number of messages", 1, messages.size());
+        assertEquals("Unexpected third message", 3, ((AbstractJMSMessage) messages.get(0)).getDeliveryTag());
+
+        assertEquals("Each bulk receive should be accepted with a single command", 2, countSentAccepts(session));
+        assertTrue("Unexpected unacknowledged message tags", session.getUnacknowledgedMessageTags().isEmpty());
+    }
+
+    public void testMessageConsumerBulkReceiveWithoutPrefetchReturnsMessagesSentOnFlush() throws Exception
+    {
+        final List<BasicMessageConsumer_0_10> consumers = new ArrayList<BasicMessageConsumer_0_10>();
+        MockSender sender = new MockSender()
+        {
+            @Override
+            public void send(final ProtocolEvent msg)
+            {
+                super.send(msg);
+                if (msg instanceof MessageFlush)
+                {
+                    // the broker sends what the credit left allows before completing the flush
+                    try
+                    {
+                        consumers.get(0).notifyMessage(createJMSMessage(2));
+                        consumers.get(0).notifyMessage(createJMSMessage(3));
+                    }
+                    catch (Exception e)
+                    {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        };
+        AMQSession_0_10 session = createAMQSession_0_10(createConnection(false, sender),
+                                                        javax.jms.Session.AUTO_ACKNOWLEDGE, 0);
+        BasicMessageConsumer_0_10 consumer = session.createMessageConsumer(createDestination(), 0, 0, true, false,
+                null, null, false, true);
+        consumers.add(consumer);
+        for (int commandId = 0; commandId <= 3; commandId++)
+        {
+            session.getQpidSession().nextCommandId();
+        }
+        consumer.notifyMessage(createJMSMessage(1));
+        int syncs = countSentEvents(session, ExecutionSync.class);
+
+        List<Message> messages = consumer.receive(4, -1L);
+        assertEquals("Unexpected number of messages", 3, messages.size());
+        for (int i = 0; i < messages.size(); i++)
+        {
+            assertEquals("Unexpected message", i + 1, ((AbstractJMSMessage) messages.get(i)).getDeliveryTag());
+        }
+        assertEquals("Messages should be collected with a single sync", syncs + 1,
+                     countSentEvents(session, ExecutionSync.class));
+        assertNull("No message should be left behind", consumer.receiveNoWait());
+    }
+
+    public void testPartitionedMessageListenerPreservesOrderPerKey() throws Exception
+    {
+        AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        BasicMessageConsumer_0_10 consumer = session.createMessageConsumer(createDestination(), 1, 1, true, false,
+                null, null, false, true);
+
+        final int numberOfMessages = 40;
+        final String[] keys = {"a", "b", "c"};
+        final Map<String, List<Long>> received = new HashMap<String, List<Long>>();
+        for (String key : keys)
+        {
+            received.put(key, Collections.synchronizedList(new ArrayList<Long>()));
+        }
+        final CountDownLatch processed = new CountDownLatch(numberOfMessages);
+        consumer.setPartitionedMessageListener(new MessageListener()
+        {
+            public void onMessage(final Message message)
+            {
+                try
+                {
+                    received.get(message.getStringProperty("key")).add(((AbstractJMSMessage) message).getDeliveryTag());
+                }
+                catch (JMSException e)
+                {
+                    throw new RuntimeException(e);
+                }
+                processed.countDown();
+            }
+        }, "key", 2);
+
+        for (int commandId = 0; commandId <= numberOfMessages; commandId++)
+        {
+            session.getQpidSession().nextCommandId();
+        }
+        for (int deliveryTag = 1; deliveryTag <= numberOfMessages; deliveryTag++)
+        {
+            consumer.notifyMessage(createJMSMessage(deliveryTag, keys[deliveryTag % keys.length]));
+        }
+
+        assertTrue("Messages were not processed", processed.await(10, TimeUnit.SECONDS));
+        // removing the listener waits for the workers to finish
+        consumer.setMessageListener(null);
+
+        for (String key : keys)
+        {
+            List<Long> tags = received.get(key);
+            for (int i = 1; i < tags.size(); i++)
+            {
+                assertTrue("Messages with key " + key + " out of order: " + tags, tags.get(i - 1) < tags.get(i));
+            }
+        }
+        assertTrue("Unexpected unacknowledged message tags", session.getUnacknowledgedMessageTags().isEmpty());
+    }
+
+    public void testStopWaitsForPartitionedMessageListener() throws Exception
+    {
+        final AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        AMQQueue queue = new AMQQueue(new AMQBindingURL("direct://amq.direct//test?routingkey='test'"));
+        BasicMessageConsumer_0_10 consumer = (BasicMessageConsumer_0_10) session.createConsumer(queue);
+
+        final CountDownLatch listenerRunning = new CountDownLatch(1);
+        final CountDownLatch releaseListener = new CountDownLatch(1);
+        consumer.setPartitionedMessageListener(new MessageListener()
+        {
+            public void onMessage(final Message message)
+            {
+                listenerRunning.countDown();
+                try
+                {
+                    releaseListener.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "key", 2);
+
+        session.getQpidSession().nextCommandId();
+        session.getQpidSession().nextCommandId();
+        consumer.notifyMessage(createJMSMessage(1, "a"));
+        assertTrue("Listener was not called", listenerRunning.await(10, TimeUnit.SECONDS));
+
+        final CountDownLatch stopped = new CountDownLatch(1);
+        Thread stopper = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    session.stop();
+                }
+                catch (Exception e)
+                {
+                    // the assertion on the latch reports the failure
+                    return;
+                }
+                stopped.countDown();
+            }
+        });
+        stopper.start();
+
+        assertFalse("Stop returned while the listener was running", stopped.await(200, TimeUnit.MILLISECONDS));
+        releaseListener.countDown();
+        assertTrue("Stop did not return once the listener finished", stopped.await(10, TimeUnit.SECONDS));
+        stopper.join(10000);
+        consumer.setMessageListener(null);
+    }
+
+    public void testPartitionedMessageListenerMayCloseConsumerWhileDispatcherWaits() throws Exception
+    {
+        final AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        AMQQueue queue = new AMQQueue(new AMQBindingURL("direct://amq.direct//test?routingkey='test'"));
+        final BasicMessageConsumer_0_10 consumer = (BasicMessageConsumer_0_10) session.createConsumer(queue);
+
+        final int numberOfMessages = PartitionedListenerAdapter.IN_FLIGHT_PER_WORKER + 1;
+        final CountDownLatch allHandedOver = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        consumer.setPartitionedMessageListener(new MessageListener()
+        {
+            public void onMessage(final Message message)
+            {
+                if (closed.getCount() == 0)
+                {
+                    return;
+                }
+                try
+                {
+                    allHandedOver.await(10, TimeUnit.SECONDS);
+                    consumer.close();
+                }
+                catch (Exception e)
+                {
+                    // the assertion on the latch reports the failure
+                    return;
+                }
+                closed.countDown();
+            }
+        }, "key", 1);
+
+        for (int commandId = 0; commandId <= numberOfMessages; commandId++)
+        {
+            session.getQpidSession().nextCommandId();
+        }
+
+        // delivers while holding the message delivery lock, as the dispatcher does
+        Thread dispatcher = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                session.lockMessageDelivery();
+                try
+                {
+                    for (int deliveryTag = 1; deliveryTag <= numberOfMessages; deliveryTag++)
+                    {
+                        if (deliveryTag == numberOfMessages)
+                        {
+                            // the worker is full, so the listener closes the consumer while this waits for it
+                            allHandedOver.countDown();
+                        }
+                        consumer.notifyMessage(createJMSMessage(deliveryTag, "a"));
+                    }
+                }
+                catch (Exception e)
+                {
+                    // the assertions on the consumer report the failure
+                }
+                finally
+                {
+                    session.unlockMessageDelivery();
+                }
+            }
+        });
+        dispatcher.start();
+
+        dispatcher.join(10000);
+        assertFalse("Dispatcher still waiting for the listener", dispatcher.isAlive());
+        assertTrue("Consumer was not closed by the listener", closed.await(10, TimeUnit.SECONDS));
+        assertTrue("Consumer should be closed", consumer.isClosed());
+    }
+
+    public void testPartitionedMessageListenerReleasesMessageDeliveredAfterWorkersStopped() throws Exception
+    {
+        AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        BasicMessageConsumer_0_10 consumer = session.createMessageConsumer(createDestination(), 1, 1, true, false,
+                null, null, false, true);
+        consumer.setPartitionedMessageListener(new MockMessageListener(), "key", 2);
+        PartitionedListenerAdapter adapter = (PartitionedListenerAdapter) consumer.getMessageListener();
+        adapter.close(0L);
+
+        session.getQpidSession().nextCommandId();
+        session.getQpidSession().nextCommandId();
+        consumer.notifyMessage(createJMSMessage(1, "a"));
+
+        int releases = 0;
+        for (ProtocolEvent event : ((MockSession) session.getQpidSession()).getSender().getSendEvents())
+        {
+            if (event instanceof MessageRelease)
+            {
+                releases++;
+            }
+        }
+        assertEquals("Message should have been released", 1, releases);
+        assertTrue("Unexpected unacknowledged message tags", session.getUnacknowledgedMessageTags().isEmpty());
+
+        // with the rejected delivery gone, waiting for the listener returns at once
+        adapter.awaitIdle(10000L);
+    }
+
+    public void testPooledDispatcherDeliversEachSessionsMessagesInOrder() throws Exception
+    {
+        setTestSystemProperty(ClientProperties.QPID_DISPATCHER_POOL_SIZE, String.valueOf(DISPATCHER_POOL_SIZE));
+
+        final int numberOfMessages = 50;
+        final int numberOfSessions = DISPATCHER_POOL_SIZE + 2;
+        final CountDownLatch allReceived = new CountDownLatch(numberOfMessages * numberOfSessions);
+        AMQSession_0_10[] sessions = new AMQSession_0_10[numberOfSessions];
+        BasicMessageConsumer_0_10[] consumers = new BasicMessageConsumer_0_10[numberOfSessions];
+        final List<List<Long>> received = new ArrayList<List<Long>>();
+        for (int i = 0; i < numberOfSessions; i++)
+        {
+            final List<Long> sessionReceived = Collections.synchronizedList(new ArrayList<Long>());
+            received.add(sessionReceived);
+            sessions[i] = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+            consumers[i] = createStartedConsumer(sessions[i], new MessageListener()
+            {
+                public void onMessage(final Message message)
+                {
+                    sessionReceived.add(((AbstractJMSMessage) message).getDeliveryTag());
+                    allReceived.countDown();
+                }
+            });
+            assertNull("Session should not have a dispatcher thread of its own", sessions[i].getDispatcherThread());
+        }
+
+        for (int message = 0; message < numberOfMessages; message++)
+        {
+            for (int i = 0; i < numberOfSessions; i++)
+            {
+                receiveTransfer(sessions[i], consumers[i]);
+            }
+        }
+
+        assertTrue("Not all messages were delivered", allReceived.await(10, TimeUnit.SECONDS));
+        List<Long> expected = new ArrayList<Long>();
+        for (long deliveryTag = 1; deliveryTag <= numberOfMessages; deliveryTag++)
+        {
+            expected.add(deliveryTag);
+        }
+        for (int i = 0; i < numberOfSessions; i++)
+        {
+            assertEquals("Unexpected delivery order for session " + i, expected, received.get(i));
+        }
+    }
+
+    public void testPooledDispatcherStopWaitsForRunningListener() throws Exception
+    {
+        setTestSystemProperty(ClientProperties.QPID_DISPATCHER_POOL_SIZE, String.valueOf(DISPATCHER_POOL_SIZE));
+
+        final AMQSession_0_10 blockedSession = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        final CountDownLatch listenerRunning = new CountDownLatch(1);
+        final CountDownLatch releaseListener = new CountDownLatch(1);
+        BasicMessageConsumer_0_10 blockedConsumer = createStartedConsumer(blockedSession, new MessageListener()
+        {
+            public void onMessage(final Message message)
+            {
+                listenerRunning.countDown();
+                try
+                {
+                    releaseListener.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        try
+        {
+            receiveTransfer(blockedSession, blockedConsumer);
+            assertTrue("Listener was not called", listenerRunning.await(10, TimeUnit.SECONDS));
+
+            // the other sessions are served by the rest of the pool meanwhile
+            final CountDownLatch othersReceived = new CountDownLatch(DISPATCHER_POOL_SIZE);
+            for (int i = 0; i < DISPATCHER_POOL_SIZE; i++)
+            {
+                AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+                BasicMessageConsumer_0_10 consumer = createStartedConsumer(session, new MessageListener()
+                {
+                    public void onMessage(final Message message)
+                    {
+                        othersReceived.countDown();
+                    }
+                });
+                receiveTransfer(session, consumer);
+            }
+            assertTrue("Other sessions were not served while a listener was running",
+                       othersReceived.await(10, TimeUnit.SECONDS));
+
+            final CountDownLatch stopped = new CountDownLatch(1);
+            Thread stopper = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        blockedSession.stop();
+                    }
+                    catch (Exception e)
+                    {
+                        // the assertion on the latch reports the failure
+                        return;
+                    }
+                    stopped.countDown();
+                }
+            });
+            stopper.start();
+
+            assertFalse("Stop returned while the listener was running", stopped.await(200, TimeUnit.MILLISECONDS));
+            releaseListener.countDown();
+            assertTrue("Stop did not return once the listener finished", stopped.await(10, TimeUnit.SECONDS));
+            stopper.join(10000);
+        }
+        finally
+        {
+            releaseListener.countDown();
+        }
+    }
+
+    public void testPooledDispatcherListenerMayCloseItsSession() throws Exception
+    {
+        setTestSystemProperty(ClientProperties.QPID_DISPATCHER_POOL_SIZE, String.valueOf(DISPATCHER_POOL_SIZE));
+
+        final AMQSession_0_10 closingSession = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        final CountDownLatch closed = new CountDownLatch(1);
+        BasicMessageConsumer_0_10 closingConsumer = createStartedConsumer(closingSession, new MessageListener()
+        {
+            public void onMessage(final Message message)
+            {
+                try
+                {
+                    closingSession.close();
+                }
+                catch (JMSException e)
+                {
+                    // the assertion on the latch reports the failure
+                    return;
+                }
+                closed.countDown();
+            }
+        });
+        receiveTransfer(closingSession, closingConsumer);
+        assertTrue("Listener did not close its session", closed.await(10, TimeUnit.SECONDS));
+        assertTrue("Session should be closed", closingSession.isClosed());
+
+        // every pool thread is still available to the other sessions
+        final CountDownLatch othersReceived = new CountDownLatch(DISPATCHER_POOL_SIZE + 1);
+        for (int i = 0; i <= DISPATCHER_POOL_SIZE; i++)
+        {
+            AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+            BasicMessageConsumer_0_10 consumer = createStartedConsumer(session, new MessageListener()
+            {
+                public void onMessage(final Message message)
+                {
+                    othersReceived.countDown();
+                }
+            });
+            receiveTransfer(session, consumer);
+        }
+        assertTrue("Other sessions were not served after the close", othersReceived.await(10, TimeUnit.SECONDS));
+    }
+
+    public void testPooledDispatcherResumesWhenSessionRestarted() throws Exception
+    {
+        setTestSystemProperty(ClientProperties.QPID_DISPATCHER_POOL_SIZE, String.valueOf(DISPATCHER_POOL_SIZE));
+
+        AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        final LinkedBlockingQueue<Long> received = new LinkedBlockingQueue<Long>();
+        BasicMessageConsumer_0_10 consumer = createStartedConsumer(session, new MessageListener()
+        {
+            public void onMessage(final Message message)
+            {
+                received.add(((AbstractJMSMessage) message).getDeliveryTag());
+            }
+        });
+
+        receiveTransfer(session, consumer);
+        assertEquals("First message not delivered", Long.valueOf(1), received.poll(10, TimeUnit.SECONDS));
+
+        session.stop();
+        receiveTransfer(session, consumer);
+        assertNull("Message delivered while the session was stopped", received.poll(200, TimeUnit.MILLISECONDS));
+
+        session.start();
+        assertEquals("Message not delivered after the restart", Long.valueOf(2), received.poll(10, TimeUnit.SECONDS));
+    }
+
+    public void testMessagePreprocessorDeliversMessagesInOrder() throws Exception
+    {
+        setTestSystemProperty(ClientProperties.QPID_PREPROCESSOR_POOL_SIZE, String.valueOf(PREPROCESSOR_POOL_SIZE));
+
+        final int numberOfMessages = 50;
+        final CountDownLatch allReceived = new CountDownLatch(numberOfMessages);
+        final List<Long> received = Collections.synchronizedList(new ArrayList<Long>());
+        AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        BasicMessageConsumer_0_10 consumer = createStartedConsumer(session, new MessageListener()
+        {
+            public void onMessage(final Message message)
+            {
+                received.add(((AbstractJMSMessage) message).getDeliveryTag());
+                allReceived.countDown();
+            }
+        });
+
+        for (int message = 0; message < numberOfMessages; message++)
+        {
+            receiveTransfer(session, consumer);
+        }
+
+        assertTrue("Not all messages were delivered", allReceived.await(10, TimeUnit.SECONDS));
+        List<Long> expected = new ArrayList<Long>();
+        for (long deliveryTag = 1; deliveryTag <= numberOfMessages; deliveryTag++)
+        {
+            expected.add(deliveryTag);
+        }
+        assertEquals("Unexpected delivery order", expected, received);
+    }
+
+    public void testMessagePreprocessorBuildFailureSurfacesAsWithoutPreprocessor() throws Exception
+    {
+        AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        AMQQueue queue = new AMQQueue(new AMQBindingURL("direct://amq.direct//test?routingkey='test'"));
+        BasicMessageConsumer_0_10 consumer = (BasicMessageConsumer_0_10) session.createConsumer(queue);
+        UnprocessedMessage_0_10 unpreparedMessage = new UnprocessedMessage_0_10(createMalformedTransfer(consumer));
+        Class<? extends Exception> expected = null;
+        try
+        {
+            consumer.createJMSMessageFromUnprocessedMessage(session.getMessageDelegateFactory(), unpreparedMessage);
+            fail("Building a malformed message should fail");
+        }
+        catch (Exception e)
+        {
+            expected = e.getClass();
+        }
+
+        setTestSystemProperty(ClientProperties.QPID_PREPROCESSOR_POOL_SIZE, String.valueOf(PREPROCESSOR_POOL_SIZE));
+        UnprocessedMessage_0_10 preparedMessage = new UnprocessedMessage_0_10(createMalformedTransfer(consumer));
+        consumer.prepareMessage(preparedMessage);
+        try
+        {
+            preparedMessage.getPreparedMessage(10000L);
+            fail("Building a malformed message should fail");
+        }
+        catch (Exception e)
+        {
+            assertEquals("Unexpected build failure", expected, e.getClass());
+        }
+
+        // the dispatcher logs the failure and goes on to the next message, as it does when building it itself
+        AMQSession_0_10 preprocessingSession = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        final LinkedBlockingQueue<Long> received = new LinkedBlockingQueue<Long>();
+        BasicMessageConsumer_0_10 preprocessingConsumer = createStartedConsumer(preprocessingSession,
+                                                                                new MessageListener()
+        {
+            public void onMessage(final Message message)
+            {
+                received.add(((AbstractJMSMessage) message).getDeliveryTag());
+            }
+        });
+        receiveTransfer(preprocessingSession, preprocessingConsumer);
+        ((MockSession) preprocessingSession.getQpidSession()).received(createMalformedTransfer(preprocessingConsumer));
+        receiveTransfer(preprocessingSession, preprocessingConsumer);
+
+        assertEquals("First message not delivered", Long.valueOf(1), received.poll(10, TimeUnit.SECONDS));
+        assertEquals("Message after the malformed one not delivered", Long.valueOf(3),
+                     received.poll(10, TimeUnit.SECONDS));
+    }
+
+    public void testMessagePreprocessorLeavesExchangeQueryToDispatcher() throws Exception
+    {
+        setTestSystemProperty(ClientProperties.QPID_PREPROCESSOR_POOL_SIZE, String.valueOf(PREPROCESSOR_POOL_SIZE));
+
+        AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.AUTO_ACKNOWLEDGE);
+        AMQQueue queue = new AMQQueue(new AMQBindingURL("direct://amq.direct//test?routingkey='test'"));
+        BasicMessageConsumer_0_10 consumer = (BasicMessageConsumer_0_10) session.createConsumer(queue);
+
+        DeliveryProperties deliveryProperties = new DeliveryProperties();
+        deliveryProperties.setExchange(getTestName() + "_exchange");
+        UnprocessedMessage_0_10 message = new UnprocessedMessage_0_10(
+                createTransfer(consumer, deliveryProperties, new MessageProperties(), ByteBuffer.allocate(0)));
+        consumer.prepareMessage(message);
+        assertNull("Message needing an exchange query should be left to the dispatcher",
+                   message.getPreparedMessage(10000L));
+
+        UnprocessedMessage_0_10 knownExchangeMessage = new UnprocessedMessage_0_10(
+                createTransfer(consumer, new DeliveryProperties(), new MessageProperties(), ByteBuffer.allocate(0)));
+        consumer.prepareMessage(knownExchangeMessage);
+        assertNotNull("Message not needing an exchange query should be built by the preprocessor",
+                      knownExchangeMessage.getPreparedMessage(10000L));
+    }
+
+    public void testRollbackDoesNotWaitForPendingMessageBuilds() throws Exception
+    {
+        setTestSystemProperty(ClientProperties.QPID_PREPROCESSOR_POOL_SIZE, String.valueOf(PREPROCESSOR_POOL_SIZE));
+
+        final AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.SESSION_TRANSACTED);
+        AMQQueue queue = new AMQQueue(new AMQBindingURL("direct://amq.direct//test?routingkey='test'"));
+        BasicMessageConsumer_0_10 consumer = (BasicMessageConsumer_0_10) session.createConsumer(queue);
+        ((MockSession) session.getQpidSession()).receivedCommandPoint(1);
+        session.startDispatcherIfNecessary();
+
+        // occupy every thread of the pool so that the builds of the messages stay pending
+        final CountDownLatch poolBusy = new CountDownLatch(PREPROCESSOR_POOL_SIZE);
+        final CountDownLatch releasePool = new CountDownLatch(1);
+        for (int i = 0; i < PREPROCESSOR_POOL_SIZE; i++)
+        {
+            MessagePreprocessor.getInstance().submit(new Callable<AbstractJMSMessage>()
+            {
+                @Override
+                public AbstractJMSMessage call() throws Exception
+                {
+                    poolBusy.countDown();
+                    releasePool.await();
+                    return null;
+                }
+            });
+        }
+        try
+        {
+            assertTrue("Preprocessor threads not started", poolBusy.await(10, TimeUnit.SECONDS));
+
+            final int numberOfMessages = 3;
+            for (int i = 0; i < numberOfMessages; i++)
+            {
+                receiveTransfer(session, consumer);
+            }
+
+            final CountDownLatch rolledBack = new CountDownLatch(1);
+            Thread rollbackThread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        session.rollback();
+                        rolledBack.countDown();
+                    }
+                    catch (JMSException e)
+                    {
+                        // reported by the latch not being counted down
+                    }
+                }
+            });
+            rollbackThread.start();
+
+            assertTrue("Rollback did not complete while message builds were pending",
+                       rolledBack.await(10, TimeUnit.SECONDS));
+            assertEquals("Unexpected released messages", new HashSet<Integer>(Arrays.asList(1, 2, 3)),
+                         getReleasedTransfers(session));
+            assertNull("Message received after rollback", consumer.receiveNoWait());
+        }
+        finally
+        {
+            releasePool.countDown();
+        }
+    }
+
+    public void testPartitionedMessageListenerRequiresAutomaticAcknowledgement() throws Exception
+    {
+        AMQSession_0_10 session = createAMQSession_0_10(javax.jms.Session.CLIENT_ACKNOWLEDGE);
+        BasicMessageConsumer_0_10 consumer = session.createMessageConsumer(createDestination(), 1, 1, true, false,
+                null, null, false, true);
+        try
+        {
+            consumer.setPartitionedMessageListener(new MockMessageListener(), "key", 2);
+            fail("IllegalStateException is expected");
+        }
+        catch (javax.jms.IllegalStateException e)
+        {
+            // pass
+        }
+        assertNull("Listener should not be set", consumer.getMessageListener());
+    }
+
+    private int countSentAccepts(AMQSession_0_10 session)
+    {
+        return countSentEvents(session, MessageAccept.class);
+    }
+
+    private int countSentEvents(AMQSession_0_10 session, Class<? extends ProtocolEvent> eventClass)
+    {
+        int count = 0;
+        for (ProtocolEvent event : ((MockSession) session.getQpidSession()).getSender().getSendEvents())
+        {
+            if (eventClass.isInstance(event))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private BasicMessageConsumer_0_10 createStartedConsumer(AMQSession_0_10 session, MessageListener listener)
+            throws Exception
+    {
+        AMQQueue queue = new AMQQueue(new AMQBindingURL("direct://amq.direct//test?routingkey='test'"));
+        BasicMessageConsumer_0_10 consumer = (BasicMessageConsumer_0_10) session.createConsumer(queue);
+        consumer.setMessageListener(listener);
+        // the first message received is given the id, and so the delivery tag, 1
+        ((MockSession) session.getQpidSession()).receivedCommandPoint(1);
+        session.startDispatcherIfNecessary();
+        return consumer;
+    }
+
+    private void receiveTransfer(AMQSession_0_10 session, BasicMessageConsumer_0_10 consumer)
+    {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType("text/plain");
+        ((MockSession) session.getQpidSession()).received(createTransfer(consumer, new DeliveryProperties(),
+                                                                         messageProperties, ByteBuffer.allocate(0)));
+    }
+
+    private MessageTransfer createTransfer(BasicMessageConsumer_0_10 consumer, DeliveryProperties deliveryProperties,
+                                           MessageProperties messageProperties, ByteBuffer body)
+    {
+        return new MessageTransfer(consumer.getConsumerTag(), MessageAcceptMode.EXPLICIT,
+                                   MessageAcquireMode.PRE_ACQUIRED, new Header(deliveryProperties, messageProperties),
+                                   body);
+    }
+
+    private MessageTransfer createMalformedTransfer(BasicMessageConsumer_0_10 consumer)
+    {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType(JMSMapMessage.MIME_TYPE);
+        // a map claiming more entries than the body holds
+        ByteBuffer body = ByteBuffer.allocate(4);
+        body.putInt(Integer.MAX_VALUE);
+        body.flip();
+        return createTransfer(consumer, new DeliveryProperties(), messageProperties, body);
+    }
+
+    private Set<Integer> getReleasedTransfers(AMQSession_0_10 session)
+    {
+        Set<Integer> released = new HashSet<Integer>();
+        for (ProtocolEvent event : ((MockSession) session.getQpidSession()).getSender().getSendEvents())
+        {
+            if (event instanceof MessageRelease)
+            {
+                for (Range range : ((MessageRelease) event).getTransfers())
+                {
+                    for (int transfer = range.getLower(); transfer <= range.getUpper(); transfer++)
+                    {
+                        released.add(transfer);
+                    }
+                }
+            }
+        }
+        return released;
+    }
+
+    private AbstractJMSMessage createJMSMessage(long deliveryTag) throws Exception
+    {
+        return new JMSTextMessageFactory().createMessage(deliveryTag, false, new MessageProperties(),
+                                                         new DeliveryProperties(), ByteBuffer.allocate(0));
+    }
+
+    private AbstractJMSMessage createJMSMessage(long deliveryTag, String key) throws Exception
+    {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setApplicationHeaders(Collections.<String, Object>singletonMap("key", key));
+        return new JMSTextMessageFactory().createMessage(deliveryTag, false, messageProperties,
+                                                         new DeliveryProperties(), ByteBuffer.allocate(0));
+    }
+
     private UnprocessedMessage createMockMessage(long deliveryTag, String consumerTag)
     {
         UnprocessedMessage message = mock(UnprocessedMessage.class);
@@ -631,6 +1583,11 @@ public class AMQSession_0_10Test extends QpidTestCase
     }
 
     private AMQSession_0_10 createAMQSession_0_10(boolean throwException, int acknowledgeMode)
+    {
+        return createAMQSession_0_10(createConnection(throwException), acknowledgeMode, 10);
+    }
+
+    private AMQSession_0_10 createAMQSession_0_10(Connection connection, int acknowledgeMode, int prefetch)
     {
         AMQConnection amqConnection = null;
         try
@@ -643,16 +1600,21 @@ public class AMQSession_0_10Test extends QpidTestCase
             fail("Failure to create a mock connection:" + e.getMessage());
         }
         boolean isTransacted = acknowledgeMode == javax.jms.Session.SESSION_TRANSACTED ? true : false;
-        AMQSession_0_10 session = new AMQSession_0_10(createConnection(throwException), amqConnection, 1, isTransacted, acknowledgeMode,
-                 10, 10, "test");
+        AMQSession_0_10 session = new AMQSession_0_10(connection, amqConnection, 1, isTransacted, acknowledgeMode,
+                 prefetch, prefetch, "test");
         return session;
     }
 
     private Connection createConnection(final boolean throwException)
+    {
+        return createConnection(throwException, new MockSender());
+    }
+
+    private Connection createConnection(final boolean throwException, final MockSender sender)
     {
         MockTransportConnection connection = new MockTransportConnection();
         connection.setState(State.OPEN);
-        connection.setSender(new MockSender());
+        connection.setSender(sender);
         connection.setSessionFactory(new SessionFactory()
         {
 
@@ -749,6 +1711,21 @@ public class AMQSession_0_10Test extends QpidTestCase
         {
             return (MockSender) _connection.getSender();
         }
+
+        public void receivedCommandPoint(int commandId)
+        {
+            _delegate.sessionCommandPoint(this, new SessionCommandPoint(commandId, 0));
+        }
+
+        public void received(Method command)
+        {
+            _delegate.command(this, command);
+        }
+
+        public boolean completeCommands(int lower, int upper)
+        {
+            return complete(lower, upper);
+        }
     }
 
     class MockTransportConnection extends Connection
@@ -762,6 +1739,7 @@ public class AMQSession_0_10Test extends QpidTestCase
     class MockSender implements ProtocolEventSender
     {
         private List<ProtocolEvent> _sendEvents = new ArrayList<ProtocolEvent>();
+        private int _flushCount;
 
         private void setIdleTimeout(int i)
         {
@@ -774,6 +1752,7 @@ public class AMQSession_0_10Test extends QpidTestCase
 
         public void flush()
         {
+            _flushCount++;
         }
 
         public void close()
@@ -785,6 +1764,11 @@ public class AMQSession_0_10Test extends QpidTestCase
             return _sendEvents;
         }
 
+        public int getFlushCount()
+        {
+            return _flushCount;
+        }
+
     }
 
 }
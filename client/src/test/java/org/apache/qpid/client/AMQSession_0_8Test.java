@@ -20,14 +20,24 @@
  */
 package org.apache.qpid.client;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 
+import javax.jms.Message;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.apache.qpid.AMQTimeoutException;
 import org.apache.qpid.QpidException;
 import org.apache.qpid.client.message.UnprocessedMessage;
 import org.apache.qpid.client.transport.TestNetworkConnection;
@@ -35,7 +45,9 @@ import org.apache.qpid.configuration.ClientProperties;
 import org.apache.qpid.framing.AMQBody;
 import org.apache.qpid.framing.AMQShortString;
 import org.apache.qpid.framing.BasicConsumeOkBody;
+import org.apache.qpid.framing.BasicQosOkBody;
 import org.apache.qpid.framing.ChannelFlowOkBody;
+import org.apache.qpid.framing.ContentHeaderBody;
 import org.apache.qpid.framing.ExchangeDeclareOkBody;
 import org.apache.qpid.framing.QueueDeclareOkBody;
 import org.apache.qpid.test.utils.QpidTestCase;
@@ -153,6 +165,107 @@ public class AMQSession_0_8Test extends QpidTestCase
         assertEquals("Unexpected consumers", new HashSet<>(Arrays.asList(consumer1, consumer2)), new HashSet<>(session.getConsumers()));
     }
 
+    public void testAdaptivePrefetchDoesNotWaitForQosReply() throws Exception
+    {
+        setTestSystemProperty(ClientProperties.QPID_ADAPTIVE_PREFETCH, "true");
+        setTestSystemProperty(ClientProperties.QPID_ADAPTIVE_PREFETCH_INTERVAL, "0");
+        // pins the window so that it only changes when the test wants it to
+        setTestSystemProperty(ClientProperties.QPID_ADAPTIVE_PREFETCH_MIN, "10");
+        setTestSystemProperty(ClientProperties.QPID_ADAPTIVE_PREFETCH_MAX, "10");
+
+        AMQSession_0_8 session = new AMQSession_0_8(_connection, 1, false, AMQSession.AUTO_ACKNOWLEDGE, 10, 5);
+        FrameCountingConnectionListener listener = new FrameCountingConnectionListener();
+        _connection.setConnectionListener(listener);
+
+        session.adaptPrefetch();
+        assertEquals("QoS should be sent to sample the round trip time", 1, listener.getFrameCount());
+
+        session.adaptPrefetch();
+        assertEquals("QoS should not be sent while the previous one awaits its reply", 1, listener.getFrameCount());
+
+        _connection.getProtocolHandler().methodBodyReceived(1, new BasicQosOkBody());
+
+        session.adaptPrefetch();
+        assertEquals("QoS should not be sent when the window is unchanged", 1, listener.getFrameCount());
+    }
+
+    public void testQosNotSentWhileAdaptiveQosReplyOutstanding() throws Exception
+    {
+        setTestSystemProperty(ClientProperties.QPID_ADAPTIVE_PREFETCH, "true");
+        setTestSystemProperty(ClientProperties.QPID_ADAPTIVE_PREFETCH_INTERVAL, "0");
+        setTestSystemProperty(ClientProperties.QPID_SYNC_OP_TIMEOUT, "100");
+        AMQConnection connection = new MockAMQConnection("amqp://guest:guest@/test?brokerlist='tcp://localhost:5672'");
+        connection.getProtocolHandler().setNetworkConnection(new TestNetworkConnection());
+
+        AMQSession_0_8 session = new AMQSession_0_8(connection, 1, false, AMQSession.AUTO_ACKNOWLEDGE, 10, 5);
+        FrameCountingConnectionListener listener = new FrameCountingConnectionListener();
+        connection.setConnectionListener(listener);
+
+        session.adaptPrefetch();
+        assertEquals("QoS should be sent to sample the round trip time", 1, listener.getFrameCount());
+
+        try
+        {
+            session.setPrefetchLimits(20, 0);
+            fail("Exception is expected");
+        }
+        catch (AMQTimeoutException e)
+        {
+            // pass
+        }
+        assertEquals("QoS should not be sent while an earlier one awaits its reply", 1, listener.getFrameCount());
+    }
+
+    public void testSendBatchEncodesHeadersOfEachSend() throws Exception
+    {
+        setTestSystemProperty(ClientProperties.AMQP_VERSION, "0-9-1");
+        AMQConnection connection = new MockAMQConnection("amqp://guest:guest@/test?brokerlist='tcp://localhost:5672'");
+        connection.setMaximumFrameSize(4096);
+        TestNetworkConnection network = new TestNetworkConnection();
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable
+            {
+                ByteBuffer buffer = ((ByteBuffer) invocation.getArguments()[0]).duplicate();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                written.write(bytes, 0, bytes.length);
+                return null;
+            }
+        }).when(network.getSender()).send(any(ByteBuffer.class));
+        connection.getProtocolHandler().setNetworkConnection(network);
+
+        AMQSession_0_8 session = new AMQSession_0_8(connection, 1, false, AMQSession.AUTO_ACKNOWLEDGE, 1, 1);
+        AMQQueue queue = new AMQQueue(new AMQBindingURL("direct://amq.direct//test?routingkey='test'"));
+        connection.setConnectionListener(new MockReceiveConnectionListener(connection, 1, new ExchangeDeclareOkBody()));
+        BasicMessageProducer_0_8 producer = (BasicMessageProducer_0_8) session.createProducer(queue);
+        connection.setConnectionListener(new FrameCountingConnectionListener());
+
+        Message message = session.createTextMessage("test");
+        producer.sendBatch(Arrays.asList(message, message));
+
+        List<String> messageIds = new ArrayList<String>();
+        ByteBuffer frames = ByteBuffer.wrap(written.toByteArray());
+        while (frames.hasRemaining())
+        {
+            byte type = frames.get();
+            frames.getShort();
+            int size = frames.getInt();
+            ByteBuffer body = frames.slice();
+            body.limit(size);
+            frames.position(frames.position() + size + 1);
+            if (type == ContentHeaderBody.TYPE)
+            {
+                messageIds.add(new ContentHeaderBody(body, size).getProperties().getMessageIdAsString());
+            }
+        }
+        assertEquals("Unexpected number of messages sent", 2, messageIds.size());
+        assertFalse("Each send should have its own message id", messageIds.get(0).equals(messageIds.get(1)));
+        assertEquals("Unexpected message id of the last send", message.getJMSMessageID(), messageIds.get(1));
+    }
+
     private UnprocessedMessage createMockMessage(long deliveryTag, String consumerTag)
     {
         UnprocessedMessage message = mock(UnprocessedMessage.class);
@@ -161,6 +274,22 @@ public class AMQSession_0_8Test extends QpidTestCase
         return message;
     }
 
+    static class FrameCountingConnectionListener extends ConnectionListenerSupport
+    {
+        private int _frameCount;
+
+        @Override
+        public void bytesSent(long count)
+        {
+            _frameCount++;
+        }
+
+        int getFrameCount()
+        {
+            return _frameCount;
+        }
+    }
+
     static class MockReceiveConnectionListener extends ConnectionListenerSupport
     {
         private final AMQConnection _connection;
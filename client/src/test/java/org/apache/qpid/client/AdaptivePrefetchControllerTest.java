@@ -0,0 +1,116 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class AdaptivePrefetchControllerTest extends QpidTestCase
+{
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public void testWindowUnchangedUntilRoundTripMeasured()
+    {
+        AdaptivePrefetchController controller = new AdaptivePrefetchController(100, 1, 10000, 50, 0);
+        consume(controller, 10000);
+
+        assertEquals(100, controller.evaluate(SECOND));
+        assertEquals(10000d, controller.getConsumptionRate(), 0.001d);
+        assertEquals(-1L, controller.getRoundTripTime());
+    }
+
+    public void testWindowGrowsToRateTimesRoundTripPlusMargin()
+    {
+        AdaptivePrefetchController controller = new AdaptivePrefetchController(100, 1, 10000, 50, 0);
+        controller.roundTripMeasured(10 * MILLISECOND);
+        consume(controller, 10000);
+
+        // 10 messages per millisecond over 10 milliseconds, plus 50%
+        assertEquals(150, controller.evaluate(SECOND));
+        assertEquals(150, controller.getWindow());
+    }
+
+    public void testWindowShrinksByAtMostHalf()
+    {
+        AdaptivePrefetchController controller = new AdaptivePrefetchController(1000, 1, 10000, 50, 0);
+        controller.roundTripMeasured(MILLISECOND);
+
+        consume(controller, 1000);
+        assertEquals(500, controller.evaluate(SECOND));
+        consume(controller, 1000);
+        assertEquals(250, controller.evaluate(2 * SECOND));
+    }
+
+    public void testSmallDifferencesDoNotShrinkWindow()
+    {
+        AdaptivePrefetchController controller = new AdaptivePrefetchController(100, 1, 10000, 0, 0);
+        controller.roundTripMeasured(MILLISECOND);
+        consume(controller, 80000);
+
+        assertEquals(100, controller.evaluate(SECOND));
+    }
+
+    public void testStarvedConsumerGrowsWindow()
+    {
+        AdaptivePrefetchController controller = new AdaptivePrefetchController(100, 1, 10000, 50, 0);
+        controller.roundTripMeasured(MILLISECOND);
+        consume(controller, 200);
+        controller.starved();
+
+        assertEquals(200, controller.evaluate(SECOND));
+
+        consume(controller, 200);
+        assertEquals("Starvation should be forgotten once evaluated", 100, controller.evaluate(2 * SECOND));
+    }
+
+    public void testIdleConsumerDoesNotGrowWindow()
+    {
+        AdaptivePrefetchController controller = new AdaptivePrefetchController(100, 1, 10000, 50, 0);
+        controller.roundTripMeasured(MILLISECOND);
+        consume(controller, 5);
+        controller.starved();
+
+        assertEquals(50, controller.evaluate(SECOND));
+    }
+
+    public void testWindowClampedToBounds()
+    {
+        AdaptivePrefetchController controller = new AdaptivePrefetchController(100, 80, 120, 50, 0);
+        controller.roundTripMeasured(10 * MILLISECOND);
+        consume(controller, 10000);
+        assertEquals(120, controller.evaluate(SECOND));
+
+        controller.windowChanged(5);
+        assertEquals(80, controller.getWindow());
+        controller.windowChanged(500);
+        assertEquals(120, controller.getWindow());
+    }
+
+    private void consume(final AdaptivePrefetchController controller, final int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            controller.messageConsumed();
+        }
+    }
+}
@@ -20,10 +20,15 @@
  */
 package org.apache.qpid.client;
 
+import java.util.List;
+
+import org.apache.qpid.QpidException;
+import org.apache.qpid.client.message.AbstractJMSMessage;
 import org.apache.qpid.test.unit.message.TestAMQSession;
 import org.apache.qpid.test.utils.QpidTestCase;
 import org.apache.qpid.url.AMQBindingURL;
 
+import javax.jms.Message;
 import javax.jms.Session;
 
 public class BasicMessageConsumer_0_8_Test extends QpidTestCase
@@ -98,6 +103,59 @@ public class BasicMessageConsumer_0_8_Test extends QpidTestCase
         assertEquals("Reject behaviour was was not as expected", RejectBehaviour.NORMAL, consumer.getRejectBehaviour());
     }
 
+    /**
+     * Test that a bulk receive without prefetch raises the credit for the receive, returns the messages already
+     * delivered in order, and restores the credit when nothing was received.
+     */
+    public void testBulkReceive() throws Exception
+    {
+        String connUrlString = "amqp://guest:guest@/test?brokerlist='tcp://localhost:5672'";
+        AMQConnection conn = new MockAMQConnection(connUrlString);
+        AMQDestination queue = new AMQQueue(new AMQBindingURL("exchangeClass://exchangeName/Destination/Queue"));
+
+        final int[] creditChanges = new int[2];
+        TestAMQSession testSession = new TestAMQSession(conn)
+        {
+            @Override
+            protected boolean ensureCreditForReceive() throws QpidException
+            {
+                creditChanges[0]++;
+                return true;
+            }
+
+            @Override
+            protected void reduceCreditToOriginalSize() throws QpidException
+            {
+                creditChanges[1]++;
+            }
+        };
+        BasicMessageConsumer_0_8 consumer =
+                new BasicMessageConsumer_0_8(0, conn, queue, "", false, null, testSession, null, 0, 0, false, Session.AUTO_ACKNOWLEDGE, false, false);
+
+        List<Message> messages = consumer.receive(2, -1L);
+        assertTrue("No message should have been received", messages.isEmpty());
+        assertEquals("Credit should have been raised for the receive", 1, creditChanges[0]);
+        assertEquals("Credit should have been restored after an empty receive", 1, creditChanges[1]);
+
+        AbstractJMSMessage[] delivered = new AbstractJMSMessage[3];
+        for (int i = 0; i < delivered.length; i++)
+        {
+            delivered[i] = (AbstractJMSMessage) testSession.createTextMessage("message " + i);
+            consumer.notifyMessage(delivered[i]);
+        }
+
+        messages = consumer.receive(2, -1L);
+        assertEquals("Unexpected number of messages", 2, messages.size());
+        assertSame("Unexpected first message", delivered[0], messages.get(0));
+        assertSame("Unexpected second message", delivered[1], messages.get(1));
+        assertEquals("Credit should have been raised for each receive", 2, creditChanges[0]);
+        assertEquals("Credit should be kept while messages are received", 1, creditChanges[1]);
+
+        messages = consumer.receive(2, -1L);
+        assertEquals("Unexpected number of messages", 1, messages.size());
+        assertSame("Unexpected third message", delivered[2], messages.get(0));
+    }
+
 
     protected RejectBehaviour getRejectBehaviour(AMQDestination destination)
     {
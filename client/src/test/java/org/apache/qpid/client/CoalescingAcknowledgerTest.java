@@ -0,0 +1,133 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class CoalescingAcknowledgerTest extends QpidTestCase
+{
+    private final List<String> _acks = new ArrayList<>();
+    private int _flushes;
+    private CoalescingAcknowledger _acknowledger;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _acknowledger = createAcknowledger(10);
+    }
+
+    public void testContiguousTagsAreAcknowledgedCumulatively()
+    {
+        for (long tag = 1; tag <= 5; tag++)
+        {
+            _acknowledger.consumed(tag);
+        }
+        assertTrue("No ack expected before the batch is full", _acks.isEmpty());
+
+        _acknowledger.flush();
+        assertEquals("[5+]", _acks.toString());
+        assertEquals(1, _flushes);
+        assertEquals(5L, _acknowledger.getAcknowledgedThrough());
+
+        _acknowledger.flush();
+        assertEquals("Nothing further should be sent", 1, _acks.size());
+    }
+
+    public void testBatchSizeTriggersAcknowledgement()
+    {
+        _acknowledger = createAcknowledger(3);
+        for (long tag = 1; tag <= 7; tag++)
+        {
+            _acknowledger.consumed(tag);
+        }
+        assertEquals("[3+, 6+]", _acks.toString());
+        assertEquals(1, _acknowledger.getPendingCount());
+    }
+
+    public void testTagsBeyondAGapAreAcknowledgedIndividually()
+    {
+        _acknowledger.consumed(1);
+        // tag 2 is still waiting in another consumer's queue
+        _acknowledger.consumed(3);
+        _acknowledger.consumed(4);
+
+        _acknowledger.flush();
+        assertEquals("[1+, 3, 4]", _acks.toString());
+        assertEquals("Expected a single flush for the batch", 1, _flushes);
+
+        _acks.clear();
+        _acknowledger.consumed(2);
+        _acknowledger.consumed(5);
+        _acknowledger.flush();
+        assertEquals("Run should extend over the tags already acknowledged", "[5+]", _acks.toString());
+    }
+
+    public void testRejectedTagsExtendTheRun()
+    {
+        _acknowledger.consumed(1);
+        _acknowledger.rejected(3);
+        _acknowledger.rejected(2);
+        _acknowledger.consumed(4);
+
+        _acknowledger.flush();
+        assertEquals("[4+]", _acks.toString());
+    }
+
+    public void testRunOfRejectedTagsSendsNothing()
+    {
+        _acknowledger.rejected(1);
+        _acknowledger.rejected(2);
+        _acknowledger.flush();
+        assertTrue(_acks.isEmpty());
+        assertEquals(2L, _acknowledger.getAcknowledgedThrough());
+    }
+
+    public void testResetDiscardsPendingAcknowledgements()
+    {
+        _acknowledger.consumed(1);
+        _acknowledger.consumed(3);
+        _acknowledger.reset(10);
+        _acknowledger.consumed(11);
+
+        _acknowledger.flush();
+        assertEquals("[11+]", _acks.toString());
+    }
+
+    private CoalescingAcknowledger createAcknowledger(final int batchSize)
+    {
+        return new CoalescingAcknowledger(new CoalescingAcknowledger.AckSink()
+        {
+            @Override
+            public void acknowledge(final long deliveryTag, final boolean multiple, final boolean flush)
+            {
+                _acks.add(deliveryTag + (multiple ? "+" : ""));
+                if (flush)
+                {
+                    _flushes++;
+                }
+            }
+        }, batchSize);
+    }
+}
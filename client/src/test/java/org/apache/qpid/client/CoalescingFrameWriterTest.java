@@ -0,0 +1,281 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.framing.AMQDataBlock;
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.ByteBufferSender;
+import org.apache.qpid.transport.SenderException;
+
+public class CoalescingFrameWriterTest extends QpidTestCase
+{
+    private final List<Object> _written = Collections.synchronizedList(new ArrayList<Object>());
+    private final CountDownLatch _firstFrameWriting = new CountDownLatch(1);
+    private final CountDownLatch _releaseFirstFrame = new CountDownLatch(1);
+    private final List<Exception> _failures = Collections.synchronizedList(new ArrayList<Exception>());
+    private volatile boolean _blockFirstFrame;
+    private volatile boolean _failFlush;
+
+    private final CoalescingFrameWriter.FrameSink _sink = new CoalescingFrameWriter.FrameSink()
+    {
+        @Override
+        public void writeFrame(final AMQDataBlock frame)
+        {
+            if (_blockFirstFrame && _written.isEmpty())
+            {
+                _firstFrameWriting.countDown();
+                try
+                {
+                    _releaseFirstFrame.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            _written.add(frame);
+        }
+
+        @Override
+        public void flush()
+        {
+            if (_failFlush)
+            {
+                throw new SenderException("flush failed");
+            }
+            _written.add("flush");
+        }
+    };
+
+    public void testUncontendedFramesAreFlushedIndividually()
+    {
+        CoalescingFrameWriter writer = new CoalescingFrameWriter(_sink, 1024, 0);
+        TestFrame first = new TestFrame(10);
+        TestFrame second = new TestFrame(10);
+
+        writer.write(first, true);
+        writer.write(second, true);
+
+        assertEquals(asList(first, "flush", second, "flush"), _written);
+        assertEquals(2, writer.getFlushCount());
+        assertEquals(2, writer.getFlushedFrameCount());
+        assertEquals(1, writer.getMaxFramesPerFlush());
+    }
+
+    public void testFramesQueuedWhileWritingShareAFlush() throws Exception
+    {
+        CoalescingFrameWriter writer = new CoalescingFrameWriter(_sink, 1024, 0);
+        TestFrame first = new TestFrame(10);
+        Thread firstWriter = startWriter(writer, first);
+
+        List<TestFrame> queued = new ArrayList<>();
+        List<Thread> queuedWriters = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            TestFrame frame = new TestFrame(10);
+            queued.add(frame);
+            queuedWriters.add(startQueuedWriter(writer, frame));
+        }
+        assertEquals("Queued frames should not be written by their callers", 0, _written.size());
+        for (Thread queuedWriter : queuedWriters)
+        {
+            assertTrue("Writer of a queued frame should wait for it to be written", queuedWriter.isAlive());
+        }
+
+        _releaseFirstFrame.countDown();
+        firstWriter.join(10000);
+        for (Thread queuedWriter : queuedWriters)
+        {
+            queuedWriter.join(10000);
+        }
+
+        List<Object> expected = new ArrayList<Object>();
+        expected.add(first);
+        expected.addAll(queued);
+        expected.add("flush");
+        assertEquals(expected, _written);
+        assertEquals(1, writer.getFlushCount());
+        assertEquals(6, writer.getFlushedFrameCount());
+        assertEquals(6, writer.getMaxFramesPerFlush());
+        assertTrue("Unexpected write failure " + _failures, _failures.isEmpty());
+    }
+
+    public void testBatchFlushedWhenSizeReached() throws Exception
+    {
+        CoalescingFrameWriter writer = new CoalescingFrameWriter(_sink, 25, 0);
+        TestFrame first = new TestFrame(10);
+        Thread firstWriter = startWriter(writer, first);
+
+        TestFrame second = new TestFrame(10);
+        TestFrame third = new TestFrame(10);
+        TestFrame fourth = new TestFrame(10);
+        Thread secondWriter = startQueuedWriter(writer, second);
+        Thread thirdWriter = startQueuedWriter(writer, third);
+        Thread fourthWriter = startQueuedWriter(writer, fourth);
+
+        _releaseFirstFrame.countDown();
+        firstWriter.join(10000);
+        secondWriter.join(10000);
+        thirdWriter.join(10000);
+        fourthWriter.join(10000);
+
+        assertEquals(asList(first, second, third, "flush", fourth, "flush"), _written);
+        assertEquals(2, writer.getFlushCount());
+        assertEquals(3, writer.getMaxFramesPerFlush());
+    }
+
+    public void testFlushFailureIsReportedToEveryWriterInTheBatch() throws Exception
+    {
+        _failFlush = true;
+        CoalescingFrameWriter writer = new CoalescingFrameWriter(_sink, 1024, 0);
+        TestFrame first = new TestFrame(10);
+        Thread firstWriter = startWriter(writer, first);
+        Thread secondWriter = startQueuedWriter(writer, new TestFrame(10));
+        Thread thirdWriter = startQueuedWriter(writer, new TestFrame(10));
+
+        _releaseFirstFrame.countDown();
+        firstWriter.join(10000);
+        secondWriter.join(10000);
+        thirdWriter.join(10000);
+
+        assertEquals("Each writer should see the failure", 3, _failures.size());
+        assertEquals("No frame should be left queued", 0, writer.getQueuedFrameCount());
+    }
+
+    public void testUnflushedFramesJoinTheNextFlush()
+    {
+        CoalescingFrameWriter writer = new CoalescingFrameWriter(_sink, 1024, 0);
+        TestFrame first = new TestFrame(10);
+        TestFrame second = new TestFrame(10);
+
+        writer.write(first, false);
+        writer.write(second, true);
+
+        assertEquals(asList(first, second, "flush"), _written);
+        assertEquals(1, writer.getFlushCount());
+        assertEquals(2, writer.getMaxFramesPerFlush());
+    }
+
+    public void testLatencyBudgetHoldsBackFlush() throws Exception
+    {
+        final CoalescingFrameWriter writer = new CoalescingFrameWriter(_sink, 1024, TimeUnit.SECONDS.toMicros(1));
+        final TestFrame first = new TestFrame(10);
+        final TestFrame second = new TestFrame(10);
+
+        Thread laterWriter = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while (_written.isEmpty())
+                {
+                    Thread.yield();
+                }
+                writer.write(second, true);
+            }
+        });
+        laterWriter.start();
+
+        writer.write(first, true);
+        laterWriter.join(10000);
+
+        assertEquals(asList(first, second, "flush"), _written);
+        assertEquals(1, writer.getFlushCount());
+    }
+
+    private Thread startWriter(final CoalescingFrameWriter writer, final TestFrame frame) throws InterruptedException
+    {
+        _blockFirstFrame = true;
+        Thread thread = createWriter(writer, frame);
+        thread.start();
+        assertTrue("First frame not written", _firstFrameWriting.await(10, TimeUnit.SECONDS));
+        return thread;
+    }
+
+    private Thread startQueuedWriter(final CoalescingFrameWriter writer, final TestFrame frame)
+            throws InterruptedException
+    {
+        int queuedFrames = writer.getQueuedFrameCount();
+        Thread thread = createWriter(writer, frame);
+        thread.start();
+        long timeout = System.currentTimeMillis() + 10000;
+        while (writer.getQueuedFrameCount() == queuedFrames && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(1);
+        }
+        assertEquals("Frame not queued", queuedFrames + 1, writer.getQueuedFrameCount());
+        return thread;
+    }
+
+    private Thread createWriter(final CoalescingFrameWriter writer, final TestFrame frame)
+    {
+        return new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    writer.write(frame, true);
+                }
+                catch (SenderException e)
+                {
+                    _failures.add(e);
+                }
+            }
+        });
+    }
+
+    private static List<Object> asList(Object... items)
+    {
+        List<Object> list = new ArrayList<>();
+        Collections.addAll(list, items);
+        return list;
+    }
+
+    private static final class TestFrame extends AMQDataBlock
+    {
+        private final long _size;
+
+        private TestFrame(long size)
+        {
+            _size = size;
+        }
+
+        @Override
+        public long getSize()
+        {
+            return _size;
+        }
+
+        @Override
+        public long writePayload(final ByteBufferSender sender)
+        {
+            return _size;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.client.util;
+
+import java.util.Arrays;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class DeliveryTagQueueTest extends QpidTestCase
+{
+    private final DeliveryTagQueue _queue = new DeliveryTagQueue();
+
+    public void testAddAndDrainKeepOrder()
+    {
+        for (long tag = 1; tag <= 100; tag++)
+        {
+            _queue.add(tag);
+        }
+        assertEquals("Unexpected size", 100, _queue.size());
+
+        long[] tags = _queue.drain();
+        assertEquals("Unexpected number of drained tags", 100, tags.length);
+        for (int i = 0; i < tags.length; i++)
+        {
+            assertEquals("Unexpected tag at " + i, i + 1, tags[i]);
+        }
+        assertTrue("Queue should be empty after drain", _queue.isEmpty());
+    }
+
+    public void testRemove()
+    {
+        for (long tag = 1; tag <= 6; tag++)
+        {
+            _queue.add(tag);
+        }
+
+        assertTrue("Head tag should be removed", _queue.remove(1));
+        assertTrue("Tail tag should be removed", _queue.remove(6));
+        assertTrue("Middle tag should be removed", _queue.remove(3));
+        assertTrue("Middle tag should be removed", _queue.remove(4));
+        assertFalse("Tag should not be removed twice", _queue.remove(3));
+        assertFalse("Unknown tag should not be removed", _queue.remove(7));
+
+        assertEquals("Unexpected tags", Arrays.toString(new long[] {2, 5}), _queue.toString());
+    }
+
+    public void testDrainUpTo()
+    {
+        for (long tag = 1; tag <= 5; tag++)
+        {
+            _queue.add(tag);
+        }
+
+        assertTrue("Unexpected drained tags", Arrays.equals(new long[] {1, 2, 3}, _queue.drainUpTo(3)));
+        assertTrue("Unexpected remaining tags", Arrays.equals(new long[] {4, 5}, _queue.toArray()));
+        assertEquals("Nothing should be drained", 0, _queue.drainUpTo(3).length);
+    }
+
+    public void testOutOfOrderTags()
+    {
+        _queue.add(5);
+        _queue.add(2);
+        _queue.add(9);
+        _queue.add(1);
+
+        assertTrue("Out of order tag should be found", _queue.contains(2));
+        assertTrue("Out of order tag should be removed", _queue.remove(2));
+        assertTrue("Unexpected drained tags", Arrays.equals(new long[] {5, 1}, _queue.drainUpTo(5)));
+        assertTrue("Unexpected remaining tags", Arrays.equals(new long[] {9}, _queue.toArray()));
+
+        _queue.clear();
+        _queue.add(3);
+        _queue.add(4);
+        assertTrue("Tags should be found by search once the queue is ordered again", _queue.contains(4));
+    }
+
+    public void testGrowsAndReusesSpace()
+    {
+        for (long tag = 0; tag < 1000; tag++)
+        {
+            _queue.add(tag);
+            if (tag % 2 == 1)
+            {
+                assertTrue("Oldest tag should be removed", _queue.remove(tag / 2));
+            }
+        }
+
+        assertEquals("Unexpected size", 500, _queue.size());
+        long[] tags = _queue.toArray();
+        for (int i = 0; i < tags.length; i++)
+        {
+            assertEquals("Unexpected tag at " + i, 500 + i, tags[i]);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.client.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class FlowControllingBlockingQueueTest extends QpidTestCase
+{
+    private final List<String> _events = new ArrayList<>();
+    private final FlowControllingBlockingQueue.ThresholdListener _listener =
+            new FlowControllingBlockingQueue.ThresholdListener()
+            {
+                @Override
+                public void aboveThreshold(final int currentValue)
+                {
+                    _events.add("above:" + currentValue);
+                }
+
+                @Override
+                public void underThreshold(final int currentValue)
+                {
+                    _events.add("under:" + currentValue);
+                }
+            };
+
+    public void testThresholdEventsFireOncePerCrossing() throws Exception
+    {
+        FlowControllingBlockingQueue<Integer> queue = new FlowControllingBlockingQueue<>(4, 2, _listener);
+        for (int i = 0; i < 6; i++)
+        {
+            queue.add(i);
+        }
+        assertEquals("[above:4]", _events.toString());
+
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(Integer.valueOf(i), queue.nonBlockingTake());
+        }
+        assertEquals("Queue is not yet under the low threshold", 1, _events.size());
+        assertEquals(Integer.valueOf(4), queue.nonBlockingTake());
+        assertEquals("[above:4, under:1]", _events.toString());
+
+        queue.add(6);
+        queue.add(7);
+        assertEquals("Queue did not reach the high threshold again", 2, _events.size());
+        queue.add(8);
+        assertEquals("[above:4, under:1, above:4]", _events.toString());
+    }
+
+    public void testUnderThresholdNotReportedWithoutAbove() throws Exception
+    {
+        FlowControllingBlockingQueue<Integer> queue = new FlowControllingBlockingQueue<>(4, 2, _listener);
+        queue.add(1);
+        queue.add(2);
+        queue.nonBlockingTake();
+        queue.nonBlockingTake();
+        assertTrue(_events.isEmpty());
+    }
+
+    public void testDrainTo()
+    {
+        FlowControllingBlockingQueue<Integer> queue = new FlowControllingBlockingQueue<>(4, 2, _listener);
+        for (int i = 0; i < 5; i++)
+        {
+            queue.add(i);
+        }
+
+        List<Integer> batch = new ArrayList<>();
+        assertEquals(3, queue.drainTo(batch, 3));
+        assertEquals("[0, 1, 2]", batch.toString());
+        assertEquals("[above:4]", _events.toString());
+
+        assertEquals(2, queue.drainTo(batch, 3));
+        assertEquals("[0, 1, 2, 3, 4]", batch.toString());
+        assertEquals("[above:4, under:0]", _events.toString());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.drainTo(batch, 3));
+        assertEquals(2, _events.size());
+    }
+
+    public void testClearReportsUnderThreshold()
+    {
+        FlowControllingBlockingQueue<Integer> queue = new FlowControllingBlockingQueue<>(2, 1, _listener);
+        queue.add(1);
+        queue.add(2);
+        queue.clear();
+        assertEquals("[above:2, under:0]", _events.toString());
+        assertTrue(queue.isEmpty());
+    }
+
+    public void testTakeWaitsForItem() throws Exception
+    {
+        final FlowControllingBlockingQueue<Integer> queue = new FlowControllingBlockingQueue<>(0, null);
+        final AtomicReference<Integer> taken = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread taker = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    taken.set(queue.take());
+                }
+                catch (InterruptedException e)
+                {
+                    // test fails on the null item
+                }
+                done.countDown();
+            }
+        });
+        taker.start();
+
+        assertFalse("Take should wait for an item", done.await(100, TimeUnit.MILLISECONDS));
+        queue.add(42);
+        assertTrue("Take was not woken by the added item", done.await(10, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(42), taken.get());
+    }
+
+    public void testCloseReleasesWaitingThread() throws Exception
+    {
+        final FlowControllingBlockingQueue<Integer> queue = new FlowControllingBlockingQueue<>(0, null);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread peeker = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    if (queue.blockingPeek() == null)
+                    {
+                        done.countDown();
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    // test fails on the latch
+                }
+            }
+        });
+        peeker.start();
+
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+        queue.close();
+        assertTrue("Peek was not released by close", done.await(10, TimeUnit.SECONDS));
+    }
+
+    public void testInterruptWhileWaiting() throws Exception
+    {
+        final FlowControllingBlockingQueue<Integer> queue = new FlowControllingBlockingQueue<>(0, null);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Thread taker = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    queue.take();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted.countDown();
+                }
+            }
+        });
+        taker.start();
+        Thread.sleep(50);
+        taker.interrupt();
+        assertTrue("Take did not throw InterruptedException", interrupted.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -21,8 +21,11 @@
 package org.apache.qpid.framing;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.ByteBufferSender;
 
 
 public class BasicContentHeaderPropertiesTest extends QpidTestCase
@@ -183,4 +186,123 @@ public class BasicContentHeaderPropertiesTest extends QpidTestCase
         assertEquals(clusterId, _testProperties.getClusterIdAsString());
     }
 
+    public void testSameSizeChangesArePatchedIntoEncodedForm() throws Exception
+    {
+        BasicContentHeaderProperties sent = createSentProperties();
+        ByteBuffer encodedForm = encode(sent);
+        BasicContentHeaderProperties received = receive(encodedForm, sent.getPropertyFlags());
+
+        received.setMessageId("ID:00000000-0000-0000-0000-000000000002");
+        received.setTimestamp(1500000000001L);
+        received.setExpiration(1500000060001L);
+        received.setDeliveryMode((byte) 1);
+        received.setPriority((byte) 9);
+        received.getHeaders().setString("TestString", _testString);
+
+        ByteBuffer patched = send(received);
+        assertSame("Properties should not have been encoded again", encodedForm.array(), patched.array());
+        assertEquals(encode(new BasicContentHeaderProperties(received)), patched);
+
+        BasicContentHeaderProperties decoded = receive(patched, received.getPropertyFlags());
+        assertEquals("ID:00000000-0000-0000-0000-000000000002", decoded.getMessageIdAsString());
+        assertEquals(1500000000001L, decoded.getTimestamp());
+        assertEquals(1500000060001L, decoded.getExpiration());
+        assertEquals(1, decoded.getDeliveryMode());
+        assertEquals(9, decoded.getPriority());
+        assertEquals("user", decoded.getUserIdAsString());
+    }
+
+    public void testOtherChangesDiscardEncodedForm() throws Exception
+    {
+        BasicContentHeaderProperties sent = createSentProperties();
+        ByteBuffer encodedForm = encode(sent);
+        BasicContentHeaderProperties received = receive(encodedForm, sent.getPropertyFlags());
+
+        received.setUserId("another user");
+        assertNotSame(encodedForm.array(), send(received).array());
+        assertEquals("another user", resend(received).getUserIdAsString());
+
+        received = resend(sent);
+        received.setType("type");
+        assertEquals("type", resend(received).getTypeAsString());
+
+        received = resend(sent);
+        received.getHeaders().setInteger("Testint", 1);
+        assertEquals(Integer.valueOf(1), resend(received).getHeaders().getInteger("Testint"));
+    }
+
+    public void testPatchDoesNotAlterBytesAlreadySent() throws Exception
+    {
+        BasicContentHeaderProperties received = resend(createSentProperties());
+
+        ByteBuffer sent = send(received);
+        ByteBuffer sentCopy = ByteBuffer.allocate(sent.remaining());
+        sentCopy.put(sent.duplicate());
+        sentCopy.flip();
+
+        received.setTimestamp(1500000000002L);
+
+        assertEquals(sentCopy, sent);
+        assertEquals(1500000000002L, resend(received).getTimestamp());
+    }
+
+    private BasicContentHeaderProperties createSentProperties()
+    {
+        BasicContentHeaderProperties properties = new BasicContentHeaderProperties();
+        properties.setContentType("text/plain");
+        properties.setHeaders(_testTable);
+        properties.setDeliveryMode((byte) 2);
+        properties.setPriority((byte) 4);
+        properties.setExpiration(1500000060000L);
+        properties.setMessageId("ID:00000000-0000-0000-0000-000000000001");
+        properties.setTimestamp(1500000000000L);
+        properties.setUserId("user");
+        return properties;
+    }
+
+    private ByteBuffer encode(BasicContentHeaderProperties properties)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(properties.getPropertyListSize());
+        properties.writePropertyListPayload(buf);
+        buf.flip();
+        return buf;
+    }
+
+    private ByteBuffer send(BasicContentHeaderProperties properties)
+    {
+        final List<ByteBuffer> sent = new ArrayList<>();
+        properties.writePropertyListPayload(new ByteBufferSender()
+        {
+            @Override
+            public void send(final ByteBuffer msg)
+            {
+                sent.add(msg);
+            }
+
+            @Override
+            public void flush()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        });
+        assertEquals(1, sent.size());
+        return sent.get(0);
+    }
+
+    private BasicContentHeaderProperties receive(ByteBuffer buf, int propertyFlags) throws Exception
+    {
+        BasicContentHeaderProperties received = new BasicContentHeaderProperties();
+        received.populatePropertiesFromBuffer(buf.duplicate(), propertyFlags, buf.remaining());
+        return received;
+    }
+
+    private BasicContentHeaderProperties resend(BasicContentHeaderProperties properties) throws Exception
+    {
+        return receive(encode(properties), properties.getPropertyFlags());
+    }
+
 }
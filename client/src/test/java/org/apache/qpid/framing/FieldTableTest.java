@@ -929,6 +929,34 @@ public class FieldTableTest extends QpidTestCase
         assertTrue("unexpected property value", destinationTable.getBoolean(myBooleanTestProperty));
     }
 
+    public void testSettingUnchangedValueKeepsEncodedForm()
+    {
+        FieldTable encodeTable = new FieldTable();
+        encodeTable.setInteger("int", 1);
+        encodeTable.setString("string", "value");
+        FieldTable table = new FieldTable(ByteBuffer.wrap(encodeTable.getDataAsBytes()));
+
+        table.setInteger("int", 1);
+        table.setString("string", "value");
+        assertNull(table.remove("absent"));
+        assertTrue("Encoded form should be kept", table.isClean());
+
+        table.setInteger("int", 2);
+        assertFalse("Encoded form should be discarded", table.isClean());
+        assertEquals(Integer.valueOf(2), table.getInteger("int"));
+    }
+
+    public void testRemovingPropertyDiscardsEncodedForm()
+    {
+        FieldTable encodeTable = new FieldTable();
+        encodeTable.setInteger("int", 1);
+        FieldTable table = new FieldTable(ByteBuffer.wrap(encodeTable.getDataAsBytes()));
+
+        assertEquals(1, table.remove("int"));
+        assertFalse("Encoded form should be discarded", table.isClean());
+        assertTrue(table.isEmpty());
+    }
+
     private void assertBytesEqual(byte[] expected, byte[] actual)
     {
         Assert.assertEquals(expected.length, actual.length);
@@ -91,6 +91,15 @@ public class BrokerDetailsTest extends QpidTestCase
         assertTrue(broker.getTransport().equals("tcp"));
     }
 
+    public void testNioTransport() throws URLSyntaxException
+    {
+        String url = "nio://localhost:5672";
+
+        BrokerDetails broker = new BrokerDetails(url);
+        assertEquals(BrokerDetails.NIO, broker.getTransport());
+        assertEquals(5672, broker.getPort());
+    }
+
     public void testCheckDefaultPort() throws URLSyntaxException
     {
         String url = "tcp://localhost";
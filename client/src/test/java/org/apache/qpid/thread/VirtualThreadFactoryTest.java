@@ -0,0 +1,87 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.thread;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class VirtualThreadFactoryTest extends QpidTestCase
+{
+    public void testCreateThread() throws Exception
+    {
+        if (!isVirtualThreadSupported())
+        {
+            try
+            {
+                new VirtualThreadFactory();
+                fail("Virtual thread factory should not be available before Java 21");
+            }
+            catch (NoSuchMethodException e)
+            {
+                // pass
+            }
+            return;
+        }
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        Thread thread = new VirtualThreadFactory().createThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ran.countDown();
+            }
+        }, Thread.MAX_PRIORITY);
+
+        assertTrue(thread.isDaemon());
+        assertTrue(thread.getUncaughtExceptionHandler() instanceof LoggingUncaughtExceptionHandler);
+
+        Threading.setDaemon(thread, false);
+        assertTrue("Virtual threads are always daemon threads", thread.isDaemon());
+
+        thread.start();
+        assertTrue("Thread did not run", ran.await(10, TimeUnit.SECONDS));
+    }
+
+    public void testSetDaemon()
+    {
+        Thread thread = new Thread();
+        Threading.setDaemon(thread, true);
+        assertTrue(thread.isDaemon());
+        Threading.setDaemon(thread, false);
+        assertFalse(thread.isDaemon());
+    }
+
+    private boolean isVirtualThreadSupported()
+    {
+        try
+        {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+}
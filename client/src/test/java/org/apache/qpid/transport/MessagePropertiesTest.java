@@ -0,0 +1,121 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.codec.BBDecoder;
+import org.apache.qpid.transport.codec.BBEncoder;
+
+public class MessagePropertiesTest extends QpidTestCase
+{
+    private ByteBuffer encode(MessageProperties props)
+    {
+        BBEncoder enc = new BBEncoder(256);
+        props.write(enc);
+        return enc.segment();
+    }
+
+    private MessageProperties decode(ByteBuffer buf)
+    {
+        BBDecoder dec = new BBDecoder();
+        dec.init(buf);
+        MessageProperties props = new MessageProperties();
+        props.read(dec);
+        return props;
+    }
+
+    private MessageProperties createProperties()
+    {
+        Map<String, Object> headers = new LinkedHashMap<String, Object>();
+        headers.put("string", "value");
+        headers.put("int", 42);
+        headers.put("nested", new LinkedHashMap<String, Object>(headers));
+        headers.put("null", null);
+        headers.put("long", 7L);
+
+        MessageProperties props = new MessageProperties();
+        props.setContentType("text/plain");
+        props.setApplicationHeaders(headers);
+        return props;
+    }
+
+    public void testSingleHeaderLookupOnEncodedForm()
+    {
+        MessageProperties props = decode(encode(createProperties()));
+
+        assertEquals("value", props.getApplicationHeader("string"));
+        assertEquals(42, props.getApplicationHeader("int"));
+        assertEquals(7L, props.getApplicationHeader("long"));
+        assertTrue(props.hasApplicationHeader("null"));
+        assertNull(props.getApplicationHeader("null"));
+        assertFalse(props.hasApplicationHeader("missing"));
+        assertNull(props.getApplicationHeader("missing"));
+        assertEquals("value", ((Map<?, ?>) props.getApplicationHeader("nested")).get("string"));
+        assertEquals("text/plain", props.getContentType());
+    }
+
+    public void testHeadersDecodedOnFirstAccess()
+    {
+        MessageProperties props = decode(encode(createProperties()));
+
+        Map<String, Object> headers = props.getApplicationHeaders();
+        assertEquals(createProperties().getApplicationHeaders(), headers);
+        assertSame(headers, props.getApplicationHeaders());
+
+        headers.put("added", "later");
+        assertEquals("later", props.getApplicationHeader("added"));
+    }
+
+    public void testReencodeWithoutDecodingHeaders()
+    {
+        ByteBuffer original = encode(createProperties());
+        MessageProperties props = decode(original.duplicate());
+
+        assertEquals(original, encode(props));
+        assertEquals(createProperties().getApplicationHeaders(), decode(encode(props)).getApplicationHeaders());
+    }
+
+    public void testReplacedHeadersAreEncoded()
+    {
+        MessageProperties props = decode(encode(createProperties()));
+        Map<String, Object> headers = new LinkedHashMap<String, Object>();
+        headers.put("other", "header");
+        props.setApplicationHeaders(headers);
+
+        MessageProperties copy = decode(encode(props));
+        assertEquals(headers, copy.getApplicationHeaders());
+        assertFalse(copy.hasApplicationHeader("string"));
+    }
+
+    public void testEmptyHeaders()
+    {
+        MessageProperties props = new MessageProperties();
+        props.setApplicationHeaders(new LinkedHashMap<String, Object>());
+
+        MessageProperties copy = decode(encode(props));
+        assertFalse(copy.hasApplicationHeader("string"));
+        assertTrue(copy.getApplicationHeaders().isEmpty());
+    }
+}
@@ -325,6 +325,62 @@ public class RangeSetTest extends QpidTestCase
         checkRange(orig) ;
     }
     
+    public void testAddBridgingSeveralRanges()
+    {
+        final RangeSet set = createRangeSet(0, 1, 4, 5, 8, 9, 12, 13, 20, 21) ;
+        set.add(3, 11) ;
+        check(set) ;
+        checkRange(set, 0, 1, 3, 13, 20, 21) ;
+        set.add(14, 19) ;
+        checkRange(set, 0, 1, 3, 21) ;
+    }
+
+    public void testIncludesWithManyGaps()
+    {
+        final RangeSet set = RangeSetFactory.createRangeSet() ;
+        for (int i = 1000; i >= 0; i -= 2)
+        {
+            set.add(i) ;
+        }
+        check(set) ;
+        assertEquals(501, set.size()) ;
+        for (int i = 0; i <= 1000; i++)
+        {
+            assertEquals("includes " + i, i % 2 == 0, set.includes(i)) ;
+        }
+        assertTrue(set.includes(Range.newInstance(500))) ;
+        assertFalse(set.includes(Range.newInstance(500, 502))) ;
+        assertEquals(0, set.getFirst().getLower()) ;
+        assertEquals(1000, set.getLast().getUpper()) ;
+    }
+
+    public void testSerialWraparound()
+    {
+        final RangeSet set = RangeSetFactory.createRangeSet() ;
+        set.add(Integer.MAX_VALUE - 1, Integer.MAX_VALUE) ;
+        set.add(Integer.MIN_VALUE + 1, Integer.MIN_VALUE + 2) ;
+        assertEquals(2, set.size()) ;
+        check(set) ;
+        set.add(Integer.MIN_VALUE) ;
+        checkRange(set, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 2) ;
+        assertTrue(set.includes(Integer.MAX_VALUE)) ;
+        assertTrue(set.includes(Integer.MIN_VALUE)) ;
+        assertFalse(set.includes(Integer.MIN_VALUE + 3)) ;
+
+        set.subtract(createRangeSet(Integer.MAX_VALUE, Integer.MIN_VALUE)) ;
+        checkRange(set, Integer.MAX_VALUE - 1, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1, Integer.MIN_VALUE + 2) ;
+    }
+
+    public void testCopyIsIndependent()
+    {
+        final RangeSet orig = createRangeSet(0, 5) ;
+        final RangeSet copy = orig.copy() ;
+        copy.add(10) ;
+        orig.clear() ;
+        checkRange(orig) ;
+        checkRange(copy, 0, 5, 10, 10) ;
+    }
+
     private RangeSet createRangeSet(int ... bounds)
     {
         RangeSet set = RangeSetFactory.createRangeSet();
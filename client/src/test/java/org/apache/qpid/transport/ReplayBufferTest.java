@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.transport;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class ReplayBufferTest extends QpidTestCase
+{
+    private final ReplayBuffer _buffer = new ReplayBuffer();
+
+    public void testPutGetRemove()
+    {
+        Method command = createCommand(5);
+        _buffer.put(5, command);
+
+        assertSame(command, _buffer.get(5));
+        assertEquals(1, _buffer.size());
+        assertNull("Different id mapping to the same slot must not be found", _buffer.get(5 + _buffer.capacity()));
+        assertNull(_buffer.remove(5 + _buffer.capacity()));
+
+        assertSame(command, _buffer.remove(5));
+        assertNull(_buffer.get(5));
+        assertNull(_buffer.remove(5));
+        assertEquals(0, _buffer.size());
+    }
+
+    public void testGrowsToHoldOutstandingCommands()
+    {
+        int initialCapacity = _buffer.capacity();
+        int count = initialCapacity * 4 + 3;
+        for (int id = 0; id < count; id++)
+        {
+            _buffer.put(id, createCommand(id));
+        }
+
+        assertEquals(count, _buffer.size());
+        assertTrue(_buffer.capacity() >= count);
+        for (int id = 0; id < count; id++)
+        {
+            assertEquals(id, _buffer.get(id).getId());
+        }
+    }
+
+    public void testSlotsAreReusedOnceCompleted()
+    {
+        int capacity = _buffer.capacity();
+        for (int id = 0; id < capacity * 10; id++)
+        {
+            _buffer.put(id, createCommand(id));
+            if (id >= capacity / 2)
+            {
+                assertNotNull(_buffer.remove(id - capacity / 2));
+            }
+        }
+        assertEquals(capacity, _buffer.capacity());
+        assertEquals(capacity / 2, _buffer.size());
+    }
+
+    public void testIdWraparound()
+    {
+        int first = Integer.MAX_VALUE - 10;
+        for (int i = 0; i < 20; i++)
+        {
+            _buffer.put(first + i, createCommand(first + i));
+        }
+        for (int i = 0; i < 20; i++)
+        {
+            assertEquals(first + i, _buffer.remove(first + i).getId());
+        }
+        assertEquals(0, _buffer.size());
+    }
+
+    private Method createCommand(int id)
+    {
+        Method command = new MessageTransfer();
+        command.setId(id);
+        return command;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.ByteBufferSender;
+import org.apache.qpid.transport.DeliveryProperties;
+import org.apache.qpid.transport.Header;
+import org.apache.qpid.transport.MessageAcceptMode;
+import org.apache.qpid.transport.MessageAcquireMode;
+import org.apache.qpid.transport.MessageProperties;
+import org.apache.qpid.transport.MessageTransfer;
+import org.apache.qpid.transport.ProtocolEvent;
+import org.apache.qpid.transport.ProtocolEventReceiver;
+import org.apache.qpid.transport.ProtocolHeader;
+
+public class DisassemblerTest extends QpidTestCase
+{
+    private static final int MAX_FRAME = 64;
+
+    public void testPreEncodedTransferMatchesInlineEncoding()
+    {
+        MessageTransfer inline = createTransfer(300);
+        inline.setSync(true);
+        byte[] inlineBytes = disassemble(inline, false);
+
+        MessageTransfer preEncoded = createTransfer(300);
+        byte[] preEncodedBytes = disassemble(preEncoded, true);
+
+        assertTrue("Pre-encoded frames differ from inline encoded frames",
+                   Arrays.equals(inlineBytes, preEncodedBytes));
+        assertNull("Encoded frames should be discarded once sent", preEncoded.getEncodedFrames());
+    }
+
+    public void testFragmentedTransferIsReassembled()
+    {
+        MessageTransfer transfer = createTransfer(300);
+        List<ProtocolEvent> events = reassemble(disassemble(transfer, true));
+
+        assertEquals(1, events.size());
+        MessageTransfer received = (MessageTransfer) events.get(0);
+        assertTrue(received.isSync());
+        assertEquals("amq.direct", received.getDestination());
+        assertEquals("text/plain", received.getHeader().getMessageProperties().getContentType());
+        assertTrue(Arrays.equals(transfer.getBodyBytes(), received.getBodyBytes()));
+    }
+
+    public void testEmptyBody()
+    {
+        MessageTransfer transfer = createTransfer(0);
+        List<ProtocolEvent> events = reassemble(disassemble(transfer, true));
+
+        assertEquals(1, events.size());
+        assertEquals(0, ((MessageTransfer) events.get(0)).getBodySize());
+    }
+
+    private MessageTransfer createTransfer(int bodySize)
+    {
+        byte[] body = new byte[bodySize];
+        for (int i = 0; i < bodySize; i++)
+        {
+            body[i] = (byte) i;
+        }
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setContentType("text/plain");
+        return new MessageTransfer("amq.direct",
+                                   MessageAcceptMode.NONE,
+                                   MessageAcquireMode.PRE_ACQUIRED,
+                                   new Header(new DeliveryProperties(), messageProperties),
+                                   ByteBuffer.wrap(body));
+    }
+
+    private byte[] disassemble(MessageTransfer transfer, boolean preEncode)
+    {
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        Disassembler disassembler = new Disassembler(new ByteBufferSender()
+        {
+            @Override
+            public void send(ByteBuffer msg)
+            {
+                byte[] bytes = new byte[msg.remaining()];
+                msg.get(bytes);
+                encoded.write(bytes, 0, bytes.length);
+            }
+
+            @Override
+            public void flush()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        }, MAX_FRAME);
+        disassembler.send(new ProtocolHeader(1, 0, 10));
+
+        transfer.setChannel(1);
+        if (preEncode)
+        {
+            disassembler.encode(transfer);
+            // the sync flag may still be changed after the frames have been encoded
+            transfer.setSync(true);
+        }
+        disassembler.send(transfer);
+        return encoded.toByteArray();
+    }
+
+    private List<ProtocolEvent> reassemble(byte[] bytes)
+    {
+        final List<ProtocolEvent> events = new ArrayList<>();
+        InputHandler inputHandler = new InputHandler(new Assembler(new ProtocolEventReceiver()
+        {
+            @Override
+            public void received(ProtocolEvent msg)
+            {
+                if (!(msg instanceof ProtocolHeader))
+                {
+                    events.add(msg);
+                }
+            }
+
+            @Override
+            public void exception(Throwable t)
+            {
+            }
+
+            @Override
+            public void closed()
+            {
+            }
+        }));
+        inputHandler.received(ByteBuffer.wrap(bytes));
+        return events;
+    }
+}
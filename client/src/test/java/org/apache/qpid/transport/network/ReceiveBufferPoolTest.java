@@ -0,0 +1,214 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.ByteBufferSender;
+import org.apache.qpid.transport.DeliveryProperties;
+import org.apache.qpid.transport.Header;
+import org.apache.qpid.transport.MessageAcceptMode;
+import org.apache.qpid.transport.MessageAcquireMode;
+import org.apache.qpid.transport.MessageProperties;
+import org.apache.qpid.transport.MessageTransfer;
+import org.apache.qpid.transport.ProtocolEvent;
+import org.apache.qpid.transport.ProtocolEventReceiver;
+import org.apache.qpid.transport.ProtocolHeader;
+
+public class ReceiveBufferPoolTest extends QpidTestCase
+{
+    public void testReleasedBufferIsReused()
+    {
+        ReceiveBufferPool pool = new ReceiveBufferPool(16, 2);
+
+        PooledReceiveBuffer buffer = pool.allocate();
+        assertEquals(1, buffer.getReferenceCount());
+        assertEquals(16, buffer.array().length);
+        assertEquals(1, pool.getAllocations());
+        assertEquals(1, pool.getOutstanding());
+
+        buffer.release();
+        assertEquals(1, pool.getReleases());
+        assertEquals(0, pool.getOutstanding());
+        assertEquals(1, pool.getPooled());
+
+        assertSame(buffer, pool.allocate());
+        assertEquals(1, pool.getReuses());
+        assertEquals(1, pool.getAllocations());
+        assertEquals(0, pool.getPooled());
+    }
+
+    public void testRetainedBufferIsNotReused()
+    {
+        ReceiveBufferPool pool = new ReceiveBufferPool(16, 2);
+
+        PooledReceiveBuffer buffer = pool.allocate();
+        buffer.retain();
+        buffer.release();
+        assertEquals(1, buffer.getReferenceCount());
+        assertEquals(0, pool.getPooled());
+        assertNotSame(buffer, pool.allocate());
+
+        buffer.release();
+        assertEquals(1, pool.getPooled());
+    }
+
+    public void testReleaseOfReleasedBufferFails()
+    {
+        ReceiveBufferPool pool = new ReceiveBufferPool(16, 2);
+
+        PooledReceiveBuffer buffer = pool.allocate();
+        buffer.release();
+        try
+        {
+            buffer.release();
+            fail("Exception not thrown");
+        }
+        catch (IllegalStateException e)
+        {
+            // pass
+        }
+        try
+        {
+            buffer.retain();
+            fail("Exception not thrown");
+        }
+        catch (IllegalStateException e)
+        {
+            // pass
+        }
+    }
+
+    public void testPoolIsBounded()
+    {
+        ReceiveBufferPool pool = new ReceiveBufferPool(16, 1);
+
+        PooledReceiveBuffer first = pool.allocate();
+        PooledReceiveBuffer second = pool.allocate();
+        first.release();
+        second.release();
+        assertEquals(1, pool.getPooled());
+        assertEquals(2, pool.getReleases());
+    }
+
+    public void testCurrentBufferIsRetainedOnlyForItsViews()
+    {
+        ReceiveBufferPool pool = new ReceiveBufferPool(16, 2);
+        PooledReceiveBuffer buffer = pool.allocate();
+
+        assertNull(ReceiveBufferPool.retainCurrentBuffer(ByteBuffer.wrap(buffer.array())));
+
+        ReceiveBufferPool.setCurrentBuffer(buffer);
+        try
+        {
+            assertSame(buffer, ReceiveBufferPool.currentBuffer());
+            assertNull(ReceiveBufferPool.retainCurrentBuffer(ByteBuffer.allocate(16)));
+            assertSame(buffer, ReceiveBufferPool.retainCurrentBuffer(ByteBuffer.wrap(buffer.array(), 4, 8)));
+            assertEquals(2, buffer.getReferenceCount());
+        }
+        finally
+        {
+            ReceiveBufferPool.setCurrentBuffer(null);
+        }
+        assertNull(ReceiveBufferPool.currentBuffer());
+    }
+
+    public void testTransferBodyHoldsReceiveBufferUntilReleased()
+    {
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        Disassembler disassembler = new Disassembler(new ByteBufferSender()
+        {
+            @Override
+            public void send(ByteBuffer msg)
+            {
+                byte[] bytes = new byte[msg.remaining()];
+                msg.get(bytes);
+                encoded.write(bytes, 0, bytes.length);
+            }
+
+            @Override
+            public void flush()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        }, 4096);
+        disassembler.send(new ProtocolHeader(1, 0, 10));
+        disassembler.send(new MessageTransfer("amq.direct",
+                                              MessageAcceptMode.NONE,
+                                              MessageAcquireMode.PRE_ACQUIRED,
+                                              new Header(new DeliveryProperties(), new MessageProperties()),
+                                              ByteBuffer.wrap("hello".getBytes())));
+
+        final MessageTransfer[] received = new MessageTransfer[1];
+        InputHandler inputHandler = new InputHandler(new Assembler(new ProtocolEventReceiver()
+        {
+            @Override
+            public void received(ProtocolEvent msg)
+            {
+                if (msg instanceof MessageTransfer)
+                {
+                    received[0] = (MessageTransfer) msg;
+                }
+            }
+
+            @Override
+            public void exception(Throwable t)
+            {
+            }
+
+            @Override
+            public void closed()
+            {
+            }
+        }));
+
+        ReceiveBufferPool pool = new ReceiveBufferPool(4096, 2);
+        PooledReceiveBuffer buffer = pool.allocate();
+        byte[] bytes = encoded.toByteArray();
+        System.arraycopy(bytes, 0, buffer.array(), 0, bytes.length);
+
+        ReceiveBufferPool.setCurrentBuffer(buffer);
+        try
+        {
+            inputHandler.received(ByteBuffer.wrap(buffer.array(), 0, bytes.length));
+        }
+        finally
+        {
+            ReceiveBufferPool.setCurrentBuffer(null);
+        }
+        buffer.release();
+
+        assertNotNull("Transfer not received", received[0]);
+        assertEquals("hello", received[0].getBodyString());
+        assertEquals("Body should hold the only reference", 1, buffer.getReferenceCount());
+        assertEquals(0, pool.getPooled());
+
+        received[0].releaseBody();
+        assertEquals(0, pool.getOutstanding());
+        assertEquals(1, pool.getPooled());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class IoSenderTest extends QpidTestCase
+{
+    private ServerSocket _serverSocket;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _serverSocket = new ServerSocket();
+        _serverSocket.bind(new InetSocketAddress("localhost", 0));
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        try
+        {
+            _serverSocket.close();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testCopyingSend() throws Exception
+    {
+        Socket socket = new Socket();
+        socket.connect(_serverSocket.getLocalSocketAddress());
+        sendAndVerify(socket);
+    }
+
+    public void testGatheringSendAndTransfer() throws Exception
+    {
+        Socket socket = SocketChannel.open().socket();
+        socket.connect(_serverSocket.getLocalSocketAddress());
+        sendAndVerify(socket);
+    }
+
+    private void sendAndVerify(final Socket socket) throws Exception
+    {
+        try (Socket peer = _serverSocket.accept())
+        {
+            IoSender sender = new IoSender(socket, 1024, 10000);
+            sender.initiate();
+
+            byte[] expected = new byte[100000];
+            for (int i = 0; i < expected.length; i++)
+            {
+                expected[i] = (byte) i;
+            }
+
+            ByteBuffer reused = ByteBuffer.allocate(100);
+            for (int i = 0; i < expected.length; i += 1000)
+            {
+                reused.clear();
+                reused.put(expected, i, 100);
+                reused.flip();
+                sender.send(reused);
+                sender.transfer(ByteBuffer.wrap(expected, i + 100, 900));
+            }
+            sender.flush();
+
+            InputStream in = peer.getInputStream();
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            while (received.size() < expected.length)
+            {
+                int read = in.read(buf);
+                assertTrue("Unexpected end of stream", read != -1);
+                received.write(buf, 0, read);
+            }
+            assertTrue("Unexpected bytes received", Arrays.equals(expected, received.toByteArray()));
+
+            sender.close();
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+}
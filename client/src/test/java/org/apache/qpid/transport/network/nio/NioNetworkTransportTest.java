@@ -0,0 +1,230 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.client.BrokerDetails;
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.ConnectionSettings;
+import org.apache.qpid.transport.ExceptionHandlingByteBufferReceiver;
+import org.apache.qpid.transport.SenderClosedException;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.Transport;
+import org.apache.qpid.transport.network.TransportActivity;
+
+public class NioNetworkTransportTest extends QpidTestCase
+{
+    private ServerSocket _serverSocket;
+    private Thread _echoThread;
+    private final RecordingReceiver _receiver = new RecordingReceiver();
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _serverSocket = new ServerSocket();
+        _serverSocket.setReuseAddress(true);
+        _serverSocket.bind(new InetSocketAddress("localhost", 0));
+        _echoThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try (Socket socket = _serverSocket.accept())
+                {
+                    InputStream in = socket.getInputStream();
+                    OutputStream out = socket.getOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = in.read(buffer)) != -1)
+                    {
+                        if (read == 1 && buffer[0] == 'X')
+                        {
+                            break;
+                        }
+                        out.write(buffer, 0, read);
+                        out.flush();
+                    }
+                }
+                catch (Exception e)
+                {
+                    // test server closed
+                }
+            }
+        });
+        _echoThread.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        try
+        {
+            _serverSocket.close();
+            _echoThread.join(5000);
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testTransportSelectedBySettings()
+    {
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setTransport(BrokerDetails.NIO);
+        assertTrue(Transport.getOutgoingTransport(settings) instanceof NioNetworkTransport);
+    }
+
+    public void testSendAndReceive() throws Exception
+    {
+        NetworkConnection connection = connect();
+
+        byte[] payload = new byte[200000];
+        for (int i = 0; i < payload.length; i++)
+        {
+            payload[i] = (byte) ('a' + (i % 26));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        for (int i = 0; i < payload.length; i += 1000)
+        {
+            buffer.limit(i + 1000);
+            buffer.position(i);
+            connection.getSender().send(buffer);
+        }
+        connection.getSender().flush();
+
+        assertTrue("Echoed bytes not received", _receiver.awaitBytes(payload.length, 10000));
+        assertTrue("Unexpected echoed bytes", Arrays.equals(payload, _receiver.getBytes()));
+
+        connection.close();
+        assertTrue("Receiver not closed", _receiver._closed.await(10, TimeUnit.SECONDS));
+        assertNull("Unexpected exception", _receiver._exception);
+
+        try
+        {
+            connection.getSender().send(ByteBuffer.wrap(payload));
+            fail("Exception not thrown");
+        }
+        catch (SenderClosedException e)
+        {
+            // pass
+        }
+    }
+
+    public void testPeerCloseNotifiesReceiver() throws Exception
+    {
+        NetworkConnection connection = connect();
+        connection.getSender().send(ByteBuffer.wrap(new byte[]{'X'}));
+        connection.getSender().flush();
+
+        assertTrue("Receiver not closed", _receiver._closed.await(10, TimeUnit.SECONDS));
+        connection.close();
+    }
+
+    private NetworkConnection connect()
+    {
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setTransport(BrokerDetails.NIO);
+        settings.setHost("localhost");
+        settings.setPort(_serverSocket.getLocalPort());
+        return new NioNetworkTransport().connect(settings, _receiver, new NoopTransportActivity());
+    }
+
+    private static class RecordingReceiver implements ExceptionHandlingByteBufferReceiver
+    {
+        private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream();
+        private final CountDownLatch _closed = new CountDownLatch(1);
+        private volatile Throwable _exception;
+
+        @Override
+        public synchronized void received(final ByteBuffer msg)
+        {
+            while (msg.hasRemaining())
+            {
+                _bytes.write(msg.get());
+            }
+            notifyAll();
+        }
+
+        @Override
+        public void exception(final Throwable t)
+        {
+            _exception = t;
+        }
+
+        @Override
+        public void closed()
+        {
+            _closed.countDown();
+        }
+
+        synchronized boolean awaitBytes(int count, long timeout) throws InterruptedException
+        {
+            long end = System.currentTimeMillis() + timeout;
+            while (_bytes.size() < count && System.currentTimeMillis() < end)
+            {
+                wait(end - System.currentTimeMillis());
+            }
+            return _bytes.size() >= count;
+        }
+
+        synchronized byte[] getBytes()
+        {
+            return _bytes.toByteArray();
+        }
+    }
+
+    private static class NoopTransportActivity implements TransportActivity
+    {
+        @Override
+        public long getLastReadTime()
+        {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long getLastWriteTime()
+        {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void writerIdle()
+        {
+        }
+
+        @Override
+        public void readerIdle()
+        {
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.typedmessage.TypedBytesContentReader;
+
+public class CompositeByteBufferTest extends QpidTestCase
+{
+    public void testPrimitivesSpanningFragments()
+    {
+        ByteBuffer expected = ByteBuffer.allocate(2 + 4 + 8 + 8);
+        expected.putShort((short) 0x1234);
+        expected.putInt(0xCAFEBABE);
+        expected.putLong(0x0102030405060708L);
+        expected.putDouble(Math.PI);
+        expected.flip();
+
+        CompositeByteBuffer buffer = split(expected, 1, 3, 5, 2);
+        assertEquals(expected.remaining(), buffer.remaining());
+        assertEquals((short) 0x1234, buffer.getShort());
+        assertEquals(0xCAFEBABE, buffer.getInt());
+        assertEquals(0x0102030405060708L, buffer.getLong());
+        assertEquals(Math.PI, buffer.getDouble());
+        assertFalse(buffer.hasRemaining());
+
+        try
+        {
+            buffer.get();
+            fail("Exception not thrown");
+        }
+        catch (BufferUnderflowException e)
+        {
+            // pass
+        }
+    }
+
+    public void testBulkGetAndPositioning()
+    {
+        byte[] bytes = new byte[20];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte) i;
+        }
+        CompositeByteBuffer buffer = split(ByteBuffer.wrap(bytes), 4, 7);
+        assertEquals(3, buffer.getFragmentCount());
+
+        buffer.position(2);
+        byte[] dst = new byte[12];
+        buffer.get(dst, 0, dst.length);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 2, 14), dst));
+
+        buffer.position(9).limit(12);
+        assertEquals(3, buffer.remaining());
+        assertEquals(9, buffer.get());
+
+        CompositeByteBuffer duplicate = buffer.duplicate();
+        duplicate.get();
+        assertEquals(10, buffer.position());
+        assertEquals(11, duplicate.position());
+    }
+
+    public void testGetByteBufferReturnsViewWithinFragmentAndCopyAcrossFragments()
+    {
+        ByteBuffer first = ByteBuffer.wrap(new byte[]{1, 2, 3, 4});
+        ByteBuffer second = ByteBuffer.wrap(new byte[]{5, 6, 7, 8});
+        CompositeByteBuffer buffer = new CompositeByteBuffer(first, second);
+
+        ByteBuffer view = buffer.getByteBuffer(3);
+        assertEquals(3, view.remaining());
+        assertSame("Expected a view of the first fragment", first.array(), view.array());
+
+        ByteBuffer spanning = buffer.getByteBuffer(3);
+        assertEquals(4, spanning.get());
+        assertEquals(5, spanning.get());
+        assertEquals(6, spanning.get());
+        assertEquals(6, buffer.position());
+
+        ByteBuffer whole = buffer.toByteBuffer();
+        assertEquals(2, whole.remaining());
+        assertEquals(6, buffer.position());
+    }
+
+    public void testDecodeCharacterSplitAcrossFragments() throws Exception
+    {
+        String text = "caf\u00e9 \u20ac\u20ac and more";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int split = 1; split < bytes.length; split++)
+        {
+            CompositeByteBuffer buffer = split(ByteBuffer.wrap(bytes), split);
+            assertEquals("Unexpected decode at split " + split,
+                         text, buffer.decode(StandardCharsets.UTF_8.newDecoder()));
+        }
+    }
+
+    public void testTypedBytesReaderAcrossFragments() throws Exception
+    {
+        ByteBuffer encoded = ByteBuffer.allocate(64);
+        encoded.putInt(42);
+        encoded.put("hello".getBytes(StandardCharsets.UTF_8));
+        encoded.put((byte) 0);
+        encoded.putLong(-1L);
+        encoded.flip();
+
+        TypedBytesContentReader reader = new TypedBytesContentReader(split(encoded, 2, 4, 3));
+        assertEquals(42, reader.readIntImpl());
+        assertEquals("hello", reader.readStringImpl());
+        assertEquals(-1L, reader.readLongImpl());
+        assertEquals(0, reader.remaining());
+    }
+
+    private static CompositeByteBuffer split(ByteBuffer data, int... sizes)
+    {
+        ByteBuffer source = data.duplicate();
+        ByteBuffer[] fragments = new ByteBuffer[sizes.length + 1];
+        for (int i = 0; i < sizes.length; i++)
+        {
+            fragments[i] = ByteBufferUtils.view(source, 0, sizes[i]);
+            source.position(source.position() + sizes[i]);
+        }
+        fragments[sizes.length] = source.slice();
+        return new CompositeByteBuffer(fragments);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class CompressionCodecsTest extends QpidTestCase
+{
+    private static final String JSON_RECORD =
+            "{\"orderId\":%d,\"customer\":\"customer-%d\",\"status\":\"SHIPPED\",\"items\":[{\"sku\":\"A-%d\",\"qty\":%d}]}";
+
+    public void testBuiltInCodecsAreRegistered()
+    {
+        assertTrue(CompressionCodecs.getCodec(GZIPUtils.GZIP_CONTENT_ENCODING) instanceof GZIPCodec);
+        assertTrue(CompressionCodecs.getCodec(LZ4Codec.LZ4_CONTENT_ENCODING) instanceof LZ4Codec);
+        assertNull(CompressionCodecs.getCodec("x-unknown"));
+        assertNull(CompressionCodecs.getCodec(null));
+    }
+
+    public void testGZIPCodecIsCompatibleWithGZIPUtils()
+    {
+        GZIPCodec codec = new GZIPCodec();
+        byte[] data = jsonRecords(200);
+
+        ByteBuffer compressed = codec.compress(ByteBuffer.wrap(data));
+        assertTrue("Compression didn't compress", compressed.remaining() < data.length);
+        assertTrue(Arrays.equals(data, GZIPUtils.uncompressBufferToArray(compressed.duplicate())));
+        assertEquals(ByteBuffer.wrap(data), codec.uncompress(compressed));
+
+        byte[] streamCompressed = GZIPUtils.compressBufferToArray(ByteBuffer.wrap(data));
+        assertEquals(ByteBuffer.wrap(data), codec.uncompress(ByteBuffer.wrap(streamCompressed)));
+    }
+
+    public void testLZ4CodecRoundTrips()
+    {
+        LZ4Codec codec = new LZ4Codec();
+        Random random = new Random(7);
+        for (int size : new int[]{64, 1000, 4096, 65536, 200000})
+        {
+            byte[] repetitive = new byte[size];
+            for (int i = 0; i < size; i++)
+            {
+                repetitive[i] = (byte) ("abcabcabd".charAt(i % 9) + (random.nextInt(50) == 0 ? 1 : 0));
+            }
+            assertRoundTrip(codec, repetitive);
+        }
+
+        byte[] run = new byte[5000];
+        Arrays.fill(run, (byte) 'x');
+        assertRoundTrip(codec, run);
+        assertRoundTrip(codec, jsonRecords(500));
+    }
+
+    public void testCodecsDeclineIncompressibleData()
+    {
+        byte[] data = new byte[4096];
+        new Random(3).nextBytes(data);
+        assertNull(new GZIPCodec().compress(ByteBuffer.wrap(data)));
+        assertNull(new LZ4Codec().compress(ByteBuffer.wrap(data)));
+        assertNull(new DeflateCodec("x-deflate", null).compress(ByteBuffer.wrap(data)));
+    }
+
+    public void testCompressionLeavesInputPositionUnchanged()
+    {
+        byte[] data = jsonRecords(20);
+        ByteBuffer input = ByteBuffer.allocate(data.length + 10);
+        input.position(10);
+        input.put(data);
+        input.position(10);
+        ByteBuffer slice = input.slice();
+
+        assertRoundTrip(new LZ4Codec(), slice);
+        assertEquals(0, slice.position());
+        assertRoundTrip(new GZIPCodec(), slice);
+        assertEquals(0, slice.position());
+    }
+
+    public void testDictionaryImprovesCompressionOfSmallMessages()
+    {
+        byte[] dictionary = jsonRecords(3);
+        DeflateCodec withDictionary = new DeflateCodec("x-deflate-orders", dictionary);
+        DeflateCodec withoutDictionary = new DeflateCodec("x-deflate", null);
+        byte[] data = String.format(JSON_RECORD, 123456, 42, 7, 3).getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer compressed = withDictionary.compress(ByteBuffer.wrap(data));
+        assertNotNull(compressed);
+        ByteBuffer compressedWithoutDictionary = withoutDictionary.compress(ByteBuffer.wrap(data));
+        assertTrue("Dictionary should improve compression",
+                   compressedWithoutDictionary == null || compressed.remaining() < compressedWithoutDictionary.remaining());
+
+        assertEquals(ByteBuffer.wrap(data), withDictionary.uncompress(compressed.duplicate()));
+        assertNull("Data compressed with a dictionary should not uncompress without it",
+                   withoutDictionary.uncompress(compressed.duplicate()));
+        assertNull("Data compressed with a dictionary should not uncompress with another",
+                   new DeflateCodec("x-deflate-other", "something else".getBytes(StandardCharsets.UTF_8))
+                           .uncompress(compressed.duplicate()));
+    }
+
+    public void testCorruptDataIsNotUncompressed()
+    {
+        byte[] data = jsonRecords(50);
+        LZ4Codec codec = new LZ4Codec();
+        ByteBuffer compressed = codec.compress(ByteBuffer.wrap(data));
+        ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(compressed.array(), compressed.remaining() / 2));
+        assertNull(codec.uncompress(truncated));
+    }
+
+    public void testImplausibleUncompressedLengthIsRejected()
+    {
+        byte[] data = jsonRecords(50);
+
+        byte[] gzipped = toArray(new GZIPCodec().compress(ByteBuffer.wrap(data)));
+        // the gzip trailer ends with the uncompressed length, little endian
+        gzipped[gzipped.length - 4] = (byte) 0xff;
+        gzipped[gzipped.length - 3] = (byte) 0xff;
+        gzipped[gzipped.length - 2] = (byte) 0xff;
+        gzipped[gzipped.length - 1] = (byte) 0x7f;
+        assertNull(new GZIPCodec().uncompress(ByteBuffer.wrap(gzipped)));
+
+        DeflateCodec deflateCodec = new DeflateCodec("x-deflate-test", null);
+        byte[] deflated = toArray(deflateCodec.compress(ByteBuffer.wrap(data)));
+        deflated[0] = (byte) 0x7f;
+        deflated[1] = (byte) 0xff;
+        deflated[2] = (byte) 0xff;
+        deflated[3] = (byte) 0xff;
+        assertNull(deflateCodec.uncompress(ByteBuffer.wrap(deflated)));
+    }
+
+    private static void assertRoundTrip(CompressionCodec codec, byte[] data)
+    {
+        assertRoundTrip(codec, ByteBuffer.wrap(data));
+    }
+
+    private static void assertRoundTrip(CompressionCodec codec, ByteBuffer data)
+    {
+        ByteBuffer compressed = codec.compress(data);
+        assertNotNull("Data should compress (size " + data.remaining() + ")", compressed);
+        assertTrue("Compression didn't compress", compressed.remaining() < data.remaining());
+        assertEquals("Compression not reversible", data, codec.uncompress(compressed));
+    }
+
+    private static byte[] toArray(ByteBuffer buffer)
+    {
+        byte[] array = new byte[buffer.remaining()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+
+    private static byte[] jsonRecords(int count)
+    {
+        StringBuilder records = new StringBuilder("[");
+        for (int i = 0; i < count; i++)
+        {
+            records.append(String.format(JSON_RECORD, i, i % 17, i * 31, i % 5)).append(',');
+        }
+        return records.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
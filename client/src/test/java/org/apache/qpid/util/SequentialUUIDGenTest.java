@@ -0,0 +1,63 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class SequentialUUIDGenTest extends QpidTestCase
+{
+    public void testGeneratesValidRandomFormUUIDs()
+    {
+        SequentialUUIDGen generator = new SequentialUUIDGen();
+        for (int i = 0; i < 100; i++)
+        {
+            UUID uuid = generator.generate();
+            assertEquals("Unexpected version", 4, uuid.version());
+            assertEquals("Unexpected variant", 2, uuid.variant());
+            assertEquals("UUID should survive a round trip through its string form",
+                         uuid, UUID.fromString(uuid.toString()));
+        }
+    }
+
+    public void testUUIDsAreUniqueAndShareTheGeneratorPrefix()
+    {
+        SequentialUUIDGen generator = new SequentialUUIDGen();
+        Set<UUID> generated = new HashSet<>();
+        UUID first = generator.generate();
+        generated.add(first);
+        for (int i = 0; i < 1000; i++)
+        {
+            UUID uuid = generator.generate();
+            assertTrue("Duplicate UUID " + uuid, generated.add(uuid));
+            assertEquals(first.getMostSignificantBits(), uuid.getMostSignificantBits());
+        }
+    }
+
+    public void testGeneratorsUseDistinctPrefixes()
+    {
+        assertFalse(new SequentialUUIDGen().generate().getMostSignificantBits()
+                    == new SequentialUUIDGen().generate().getMostSignificantBits());
+    }
+}